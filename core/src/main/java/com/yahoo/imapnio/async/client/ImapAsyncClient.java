@@ -3,10 +3,13 @@ package com.yahoo.imapnio.async.client;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -23,19 +26,24 @@ import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 import com.yahoo.imapnio.async.internal.ImapAsyncSessionImpl;
+import com.yahoo.imapnio.async.netty.ImapByteCountingHandler;
 import com.yahoo.imapnio.async.netty.ImapClientConnectHandler;
+import com.yahoo.imapnio.async.netty.ImapFairDispatchHandler;
+import com.yahoo.imapnio.async.netty.ImapFlushConsolidationHandler;
+import com.yahoo.imapnio.async.netty.ImapWireCaptureHandler;
 import com.yahoo.imapnio.client.ImapClientRespReader;
 import com.yahoo.imapnio.command.ImapClientRespDecoder;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
@@ -43,6 +51,7 @@ import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.GenericFutureListener;
 
 /**
@@ -56,6 +65,12 @@ public class ImapAsyncClient {
     /** Handler name for ssl handler. */
     public static final String SSL_HANDLER = "sslHandler";
 
+    /** Handler name for the byte counter next to the socket. */
+    public static final String SOCKET_BYTE_COUNTER = "socketByteCounter";
+
+    /** Handler name for the byte counter after SSL and compression handlers. */
+    public static final String PLAIN_BYTE_COUNTER = "plainByteCounter";
+
     /** Handler name for idle sate handler. */
     private static final String IDLE_STATE_HANDLER_NAME = "idlestateHandler";
 
@@ -74,6 +89,18 @@ public class ImapAsyncClient {
     /** Debug record. */
     private static final String CONNECT_RESULT_REC = "[{},{}] connect operationComplete. result={}, imapServerUri={}, sniNames={}";
 
+    /** String decoder shared by all channels. */
+    private static final StringDecoder STRING_DECODER = new StringDecoder();
+
+    /** String encoder shared by all channels. */
+    private static final StringEncoder STRING_ENCODER = new StringEncoder();
+
+    /** Decoder of server responses shared by all channels. */
+    private static final ImapClientRespDecoder IMAP_RESPONSE_DECODER = new ImapClientRespDecoder();
+
+    /** Shift spreading the high bits of an affinity key hash code to the low bits choosing the event loop. */
+    private static final int HASH_SPREAD_SHIFT = 16;
+
     /** Client context not available. */
     private static final String NA_CLIENT_CONTEXT = "NA";
 
@@ -90,39 +117,85 @@ public class ImapAsyncClient {
     /** Event loop group that will serve all channels for IMAP client. */
     private final EventLoopGroup group;
 
+    /** Event loops of the group, listed once since the group does not change, to choose from by affinity key. */
+    private final List<EventLoop> eventLoops;
+
     /** The SSL context. */
     private final SslContext sslContext;
 
+    /** Cache of server capabilities and namespaces, null if not enabled. */
+    @Nullable
+    private final ImapServerInfoCache serverInfoCache;
+
+    /** Capture of the traffic of all sessions, null if not enabled. */
+    @Nullable
+    private final ImapWireCapture wireCapture;
+
+    /** Scheduler of response dispatch among tenants, null if not enabled. */
+    @Nullable
+    private final ImapTenantScheduler tenantScheduler;
+
+    /** Admission control of connects per server host, null if not enabled. */
+    @Nullable
+    private final ImapHostAdmissionControl admissionControl;
+
+    /** Total bytes read from the socket by all sessions. */
+    private final LongAdder socketBytesRead = new LongAdder();
+
+    /** Total bytes written to the socket by all sessions. */
+    private final LongAdder socketBytesWritten = new LongAdder();
+
+    /** Total plain bytes read by all sessions. */
+    private final LongAdder plainBytesRead = new LongAdder();
+
+    /** Total plain bytes written by all sessions. */
+    private final LongAdder plainBytesWritten = new LongAdder();
+
     /**
      * This class initialized the pipeline with the right handlers.
      */
-    final class ImapClientChannelInitializer extends ChannelInitializer<SocketChannel> {
+    final class ImapClientChannelInitializer extends ChannelInitializer<Channel> {
         /** Read timeout for channel. */
         private int imapReadTimeoutValue;
 
         /** Unit for IdleStateHandler parameters. */
         private TimeUnit timeUnit;
 
+        /** Flag whether the channel is initialized with the minimal memory footprint. */
+        private boolean isLowFootprint;
+
         /**
          * Initializes @{code ImapClientChannelInitializer} with the read time out value.
          *
          * @param imapReadTimeoutValue timeout value for server not responding after write command is sent
+         * @param unit unit of the timeout value
+         * @param isLowFootprint flag whether the channel is initialized with the minimal memory footprint, without byte counters
          */
-        private ImapClientChannelInitializer(final int imapReadTimeoutValue, final TimeUnit unit) {
+        private ImapClientChannelInitializer(final int imapReadTimeoutValue, final TimeUnit unit, final boolean isLowFootprint) {
             this.imapReadTimeoutValue = imapReadTimeoutValue;
             this.timeUnit = unit;
+            this.isLowFootprint = isLowFootprint;
         }
 
         @Override
-        protected void initChannel(final SocketChannel ch) {
+        protected void initChannel(final Channel ch) {
             final ChannelPipeline pipeline = ch.pipeline();
 
+            final ImapClientRespReader respReader = new ImapClientRespReader(Integer.MAX_VALUE);
+            if (isLowFootprint) {
+                respReader.setDiscardAfterReads(1); // holds only the unread bytes of a partial response between reads
+            } else {
+                // SSL handler is added between the counters once connected, and compression handlers after SSL handler once enabled
+                pipeline.addLast(SOCKET_BYTE_COUNTER, new ImapByteCountingHandler(socketBytesRead, socketBytesWritten)); // duplex
+                pipeline.addLast(PLAIN_BYTE_COUNTER, new ImapByteCountingHandler(plainBytesRead, plainBytesWritten)); // duplex
+            }
             // setting all idle timeout to ensure event will only be triggered when both read and write not happened for the given time
             pipeline.addLast(IDLE_STATE_HANDLER_NAME, new IdleStateHandler(0, 0, imapReadTimeoutValue, timeUnit)); // duplex
-            pipeline.addLast(IMAP_LINE_DECODER_HANDLER_NAME, new ImapClientRespReader(Integer.MAX_VALUE)); // inbound
-            pipeline.addLast(STRING_DECODER_HANDLER_NAME, new StringDecoder()); // inbound
-            pipeline.addLast(STRING_ENCODER_HANDLER_NAME, new StringEncoder()); // outbound
-            pipeline.addLast(STRING_IMAP_MSG_RESPONSE_NAME, new ImapClientRespDecoder()); // inbound to convert to IMAPResponse
+            pipeline.addLast(IMAP_LINE_DECODER_HANDLER_NAME, respReader); // inbound
+            // stateless handlers are shared by all channels
+            pipeline.addLast(STRING_DECODER_HANDLER_NAME, STRING_DECODER); // inbound
+            pipeline.addLast(STRING_ENCODER_HANDLER_NAME, STRING_ENCODER); // outbound
+            pipeline.addLast(STRING_IMAP_MSG_RESPONSE_NAME, IMAP_RESPONSE_DECODER); // inbound to convert to IMAPResponse
         }
     }
 
@@ -136,6 +209,18 @@ public class ImapAsyncClient {
         this(new Bootstrap(), new NioEventLoopGroup(numOfThreads), LoggerFactory.getLogger(ImapAsyncClient.class));
     }
 
+    /**
+     * Constructs a NIO based IMAP client with the optional features set in the given configuration, such as a server info cache, wire capture,
+     * tenant scheduler and admission control, in any combination.
+     *
+     * @param numOfThreads number of threads to be used by IMAP client
+     * @param clientConfig the optional features shared by all sessions, taken when constructing
+     * @throws SSLException when encountering an error to create a SslContext for this client
+     */
+    public ImapAsyncClient(final int numOfThreads, @Nonnull final ImapAsyncClientConfig clientConfig) throws SSLException {
+        this(new Bootstrap(), new NioEventLoopGroup(numOfThreads), LoggerFactory.getLogger(ImapAsyncClient.class), clientConfig);
+    }
+
     /**
      * Constructs a NIO based IMAP client.
      *
@@ -145,12 +230,37 @@ public class ImapAsyncClient {
      * @throws SSLException when encountering an error to create a SslContext for this client
      */
     ImapAsyncClient(@Nonnull final Bootstrap bootstrap, @Nonnull final EventLoopGroup group, @Nonnull final Logger logger) throws SSLException {
+        this(bootstrap, group, logger, new ImapAsyncClientConfig());
+    }
+
+    /**
+     * Constructs a NIO based IMAP client.
+     *
+     * @param bootstrap a {@link Bootstrap} instance that makes it easy to bootstrap a {@link Channel} to use for clients
+     * @param group an @{link EventLoopGroup} instance allowing registering {@link Channel}s for processing later selection during the event loop
+     * @param logger Logger instance
+     * @param clientConfig the optional features shared by all sessions, taken when constructing
+     * @throws SSLException when encountering an error to create a SslContext for this client
+     */
+    ImapAsyncClient(@Nonnull final Bootstrap bootstrap, @Nonnull final EventLoopGroup group, @Nonnull final Logger logger,
+            @Nonnull final ImapAsyncClientConfig clientConfig) throws SSLException {
+        this.serverInfoCache = clientConfig.getServerInfoCache();
+        this.wireCapture = clientConfig.getWireCapture();
+        this.tenantScheduler = clientConfig.getTenantScheduler();
+        this.admissionControl = clientConfig.getAdmissionControl();
         this.sslContext = SslContextBuilder.forClient().build();
         this.logger = logger;
         this.bootstrap = bootstrap;
         this.group = group;
+        final List<EventLoop> loops = new ArrayList<EventLoop>();
+        for (final EventExecutor executor : group) {
+            loops.add((EventLoop) executor);
+        }
+        this.eventLoops = Collections.unmodifiableList(loops);
         bootstrap.channel(NioSocketChannel.class); // for client
         bootstrap.group(group);
+        // commands are encoded straight into buffers from the channel allocator, pooling them avoids allocating and copying per write
+        bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
     }
 
     /**
@@ -182,28 +292,93 @@ public class ImapAsyncClient {
     public Future<ImapAsyncCreateSessionResponse> createSession(@Nonnull final URI serverUri, @Nonnull final ImapAsyncSessionConfig config,
             @Nullable final InetSocketAddress localAddress, @Nullable final List<String> sniNames, @Nonnull final DebugMode logOpt,
             @Nonnull final Object sessionCtx) {
+        return createSession(serverUri, config, localAddress, sniNames, logOpt, sessionCtx, null);
+    }
+
+    /**
+     * Connects to the remote server asynchronously and returns a future for the ImapSession if connection is established. Sessions created with
+     * equal affinity keys, for example the account they belong to, are served by the same event loop, so their futures and callbacks run on the
+     * same thread and can be coordinated without locking.
+     *
+     * @param serverUri IMAP server URI
+     * @param config configuration to be used for this session/connection
+     * @param localAddress the local network interface to us
+     * @param sniNames Server Name Indication names list
+     * @param logOpt session logging option for the session to be created
+     * @param sessionCtx context associated with the session created. Its toString() will be called upon displaying exception or debug logging
+     * @param affinityKey key choosing the event loop of the session by its hash code, null to let the event loop group choose
+     * @return the ChannelFuture object
+     */
+    public ImapFuture<ImapAsyncCreateSessionResponse> createSession(@Nonnull final URI serverUri, @Nonnull final ImapAsyncSessionConfig config,
+            @Nullable final InetSocketAddress localAddress, @Nullable final List<String> sniNames, @Nonnull final DebugMode logOpt,
+            @Nonnull final Object sessionCtx, @Nullable final Object affinityKey) {
 
         final boolean isSessionDebugOn = (logOpt == DebugMode.DEBUG_ON);
         // ------------------------------------------------------------
         // obtain config values
         final int connectionTimeMillis = config.getConnectionTimeoutMillis();
         final int readTimeMillis = config.getReadTimeoutMillis();
+        final boolean isLowFootprint = config.isLowFootprintEnabled();
+        final String tenantId = config.getTenantId();
+        final boolean isFlushConsolidation = config.isFlushConsolidationEnabled();
+        final int maxConsolidatedFlushes = config.getMaxConsolidatedFlushes();
+
+        // every session connects with its own copy of bootstrap, as sessions of different configs may be created concurrently, and the copy for
+        // an affinity key registers the channel to the event loop of the key
+        final Bootstrap connector = (affinityKey != null) ? bootstrap.clone(getEventLoop(affinityKey)) : bootstrap.clone();
 
         // ------------------------------------------------------------
         // setup ChannelInitializer, handlers here need to be session-less
-        bootstrap.handler(new ImapClientChannelInitializer(readTimeMillis, TimeUnit.MILLISECONDS));
+        connector.handler(new ImapClientChannelInitializer(readTimeMillis, TimeUnit.MILLISECONDS, isLowFootprint));
 
         // ------------------------------------------------------------
         // connect to remote server now, setup connection timeout time before connection
-        bootstrap.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectionTimeMillis);
+        connector.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectionTimeMillis);
 
         final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        try {
+            config.validateCompressionEngine();
+        } catch (final ImapAsyncClientException e) { // fails fast rather than once server has switched to compression
+            sessionFuture.done(e);
+            return sessionFuture;
+        }
+        if (admissionControl != null) {
+            try {
+                admissionControl.acquire(serverUri);
+            } catch (final ImapAsyncClientException e) { // fails fast without creating a channel
+                sessionFuture.done(e);
+                return sessionFuture;
+            }
+        }
+        // the connect completes its own future, so the bookkeeping below is not replaced by callbacks the caller sets on the session future
+        final ImapFuture<ImapAsyncCreateSessionResponse> connectFuture = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        connectFuture.setDoneCallback(new Consumer<ImapAsyncCreateSessionResponse>() {
+            @Override
+            public void accept(final ImapAsyncCreateSessionResponse response) {
+                if (admissionControl != null) {
+                    admissionControl.release(serverUri, null);
+                }
+                if (serverInfoCache != null) { // cached entries of the server are dropped when its greeting advertises different capabilities
+                    serverInfoCache.validateGreeting(serverUri, response.getServerGreeting());
+                }
+                sessionFuture.done(response);
+            }
+        });
+        connectFuture.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                if (admissionControl != null) {
+                    admissionControl.release(serverUri, cause);
+                }
+                sessionFuture.done(cause);
+            }
+        });
         final ChannelFuture nettyConnectFuture;
         if (null != localAddress) {
             final InetSocketAddress remoteAddress = new InetSocketAddress(serverUri.getHost(), serverUri.getPort());
-            nettyConnectFuture = bootstrap.connect(remoteAddress, localAddress);
+            nettyConnectFuture = connector.connect(remoteAddress, localAddress);
         } else {
-            nettyConnectFuture = bootstrap.connect(serverUri.getHost(), serverUri.getPort());
+            nettyConnectFuture = connector.connect(serverUri.getHost(), serverUri.getPort());
         }
 
         // setup listener to handle connection done event
@@ -211,44 +386,67 @@ public class ImapAsyncClient {
             @Override
             public void operationComplete(final io.netty.util.concurrent.Future<? super Void> future) {
                 if (future.isSuccess()) {
-
-                    // add the session specific handlers
                     final Channel ch = nettyConnectFuture.channel();
-                    final ChannelPipeline pipeline = ch.pipeline();
-
-                    // ------------------------------------------------------------
-                    // setup session
-                    final boolean isSSL = serverUri.getScheme().toLowerCase().equals(IMAPS);
-
-                    if (isSSL) {
-                        final List<SNIServerName> serverNames = new ArrayList<SNIServerName>();
-                        if (null != sniNames && !sniNames.isEmpty()) { // SNI support
-                            for (final String sni : sniNames) {
-                                serverNames.add(new SNIHostName(sni));
+                    try {
+                        // add the session specific handlers
+                        final ChannelPipeline pipeline = ch.pipeline();
+
+                        // ------------------------------------------------------------
+                        // setup session
+                        final boolean isSSL = serverUri.getScheme().toLowerCase().equals(IMAPS);
+
+                        if (isSSL) {
+                            final SslHandler sslHandler;
+                            final List<SNIServerName> serverNames = new ArrayList<SNIServerName>();
+                            if (null != sniNames && !sniNames.isEmpty()) { // SNI support
+                                for (final String sni : sniNames) {
+                                    serverNames.add(new SNIHostName(sni));
+                                }
+                                final SSLParameters params = new SSLParameters();
+                                params.setServerNames(serverNames);
+                                final SSLEngine engine = sslContext.newEngine(ch.alloc());
+                                engine.setSSLParameters(params);
+                                sslHandler = new SslHandler(engine);
+                            } else {
+                                sslHandler = sslContext.newHandler(ch.alloc(), serverUri.getHost(), serverUri.getPort());
+                            }
+                            if (isLowFootprint) { // no byte counter to follow
+                                sslHandler.setDiscardAfterReads(1);
+                                pipeline.addFirst(SSL_HANDLER, sslHandler); // in/outbound
+                            } else {
+                                pipeline.addAfter(SOCKET_BYTE_COUNTER, SSL_HANDLER, sslHandler); // in/outbound
                             }
-                            final SSLParameters params = new SSLParameters();
-                            params.setServerNames(serverNames);
-                            final SSLEngine engine = sslContext.newEngine(ch.alloc());
-                            engine.setSSLParameters(params);
-                            pipeline.addFirst(SSL_HANDLER, new SslHandler(engine)); // in/outbound
-                        } else {
-                            // in/outbound
-                            pipeline.addFirst(SSL_HANDLER, sslContext.newHandler(ch.alloc(), serverUri.getHost(), serverUri.getPort()));
                         }
-                    }
 
-                    final long sessionId = sessionCount.incrementAndGet();
-                    sessionCount.compareAndSet(Long.MAX_VALUE - 1, 1); // roll back to 1 if reaching the max
-                    pipeline.addLast(ImapClientConnectHandler.HANDLER_NAME, new ImapClientConnectHandler(sessionFuture,
-                            LoggerFactory.getLogger(ImapAsyncSessionImpl.class), logOpt, sessionId, sessionCtx));
+                        final long sessionId = sessionCount.incrementAndGet();
+                        sessionCount.compareAndSet(Long.MAX_VALUE - 1, 1); // roll back to 1 if reaching the max
+                        if (tenantScheduler != null && tenantId != null) { // frames are decoded and handled within the budget of the tenant
+                            pipeline.addAfter(IMAP_LINE_DECODER_HANDLER_NAME, ImapFairDispatchHandler.HANDLER_NAME,
+                                    new ImapFairDispatchHandler(tenantScheduler, tenantId));
+                        }
+                        if (wireCapture != null) { // captures the response frames, including the greeting
+                            pipeline.addAfter(IMAP_LINE_DECODER_HANDLER_NAME, ImapWireCaptureHandler.HANDLER_NAME,
+                                    new ImapWireCaptureHandler(wireCapture, sessionId));
+                        }
+                        if (isFlushConsolidation) { // last so that it is the first outbound handler to see the flushes
+                            pipeline.addLast(ImapFlushConsolidationHandler.HANDLER_NAME, new ImapFlushConsolidationHandler(maxConsolidatedFlushes));
+                        }
+                        pipeline.addLast(ImapClientConnectHandler.HANDLER_NAME, new ImapClientConnectHandler(connectFuture,
+                                LoggerFactory.getLogger(ImapAsyncSessionImpl.class), logOpt, sessionId, sessionCtx, config));
 
-                    if (logger.isTraceEnabled() || isSessionDebugOn) {
-                        logger.debug(CONNECT_RESULT_REC, sessionId, sessionCtx.toString(), "success", serverUri.toASCIIString(), sniNames);
+                        if (logger.isTraceEnabled() || isSessionDebugOn) {
+                            logger.debug(CONNECT_RESULT_REC, sessionId, sessionCtx.toString(), "success", serverUri.toASCIIString(), sniNames);
+                        }
+                        // connect action is not done until we receive the first OK response from server, so we CANNOT call it done here
+                    } catch (final RuntimeException e) { // such as an invalid SNI name, the connect is failed so its admission is released
+                        ch.close();
+                        final ImapAsyncClientException ex = new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION, e);
+                        connectFuture.done(ex);
+                        logger.error(CONNECT_RESULT_REC, "NA", sessionCtx.toString(), "failure", serverUri.toASCIIString(), sniNames, ex);
                     }
-                    // connect action is not done until we receive the first OK response from server, so we CANNOT call it done here
                 } else { // failure case
                     final ImapAsyncClientException ex = new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION, future.cause());
-                    sessionFuture.done(ex);
+                    connectFuture.done(ex);
                     logger.error(CONNECT_RESULT_REC, "NA", sessionCtx.toString(), "failure", serverUri.toASCIIString(), sniNames, ex);
                 }
             }
@@ -257,6 +455,105 @@ public class ImapAsyncClient {
         return sessionFuture;
     }
 
+    /**
+     * Connects asynchronously to an endpoint of the group, chosen by the strategy of the group, and returns a future for the ImapSession if
+     * connection is established. The endpoint is marked unhealthy if it fails to connect or to greet, and the session is counted as active on it
+     * till closed.
+     *
+     * @param endpointGroup the endpoints to choose from
+     * @param config configuration to be used for this session/connection
+     * @param localAddress the local network interface to us
+     * @param sniNames Server Name Indication names list
+     * @param logOpt session logging option for the session to be created
+     * @param sessionCtx context associated with the session created. Its toString() will be called upon displaying exception or debug logging
+     * @return the future of the session
+     */
+    public ImapFuture<ImapAsyncCreateSessionResponse> createSession(@Nonnull final ImapEndpointGroup endpointGroup,
+            @Nonnull final ImapAsyncSessionConfig config, @Nullable final InetSocketAddress localAddress, @Nullable final List<String> sniNames,
+            @Nonnull final DebugMode logOpt, @Nonnull final Object sessionCtx) {
+        final ImapEndpointGroup.Endpoint endpoint = endpointGroup.select();
+        final long startMillis = endpointGroup.currentTimeMillis();
+        final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        final ImapFuture<ImapAsyncCreateSessionResponse> connectFuture = createSession(endpoint.getUri(), config, localAddress, sniNames, logOpt,
+                sessionCtx, null);
+        connectFuture.setDoneCallback(new Consumer<ImapAsyncCreateSessionResponse>() {
+            @Override
+            public void accept(final ImapAsyncCreateSessionResponse response) {
+                endpointGroup.connected(endpoint, endpointGroup.currentTimeMillis() - startMillis);
+                final ImapAsyncSession session = response.getSession();
+                if (session instanceof ImapAsyncSessionImpl) {
+                    ((ImapAsyncSessionImpl) session).getCloseFuture().addListener(new GenericFutureListener<io.netty.util.concurrent.Future<Void>>() {
+                        @Override
+                        public void operationComplete(final io.netty.util.concurrent.Future<Void> future) {
+                            endpointGroup.closed(endpoint);
+                        }
+                    });
+                }
+                sessionFuture.done(response);
+            }
+        });
+        connectFuture.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                endpointGroup.failed(endpoint, cause);
+                sessionFuture.done(cause);
+            }
+        });
+        return sessionFuture;
+    }
+
+    /**
+     * Chooses the event loop for an affinity key, the same one for equal keys as long as the event loop group is not changed.
+     *
+     * @param affinityKey the affinity key
+     * @return the event loop for the key
+     */
+    private EventLoop getEventLoop(@Nonnull final Object affinityKey) {
+        if (eventLoops.isEmpty()) {
+            return group.next();
+        }
+        final int hash = affinityKey.hashCode();
+        return eventLoops.get(Math.floorMod(hash ^ (hash >>> HASH_SPREAD_SHIFT), eventLoops.size()));
+    }
+
+    /**
+     * @return the cache of server capabilities and namespaces shared by the sessions of this client, null if not enabled
+     */
+    @Nullable
+    public ImapServerInfoCache getServerInfoCache() {
+        return serverInfoCache;
+    }
+
+    /**
+     * @return the scheduler of response dispatch among tenants, null if not enabled
+     */
+    @Nullable
+    public ImapTenantScheduler getTenantScheduler() {
+        return tenantScheduler;
+    }
+
+    /**
+     * @return the admission control of connects per server host, null if not enabled
+     */
+    @Nullable
+    public ImapHostAdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    /**
+     * @return the bytes exchanged with servers by all sessions created by this client
+     */
+    public ImapWireStats getWireStats() {
+        return new ImapWireStats(socketBytesRead.sum(), socketBytesWritten.sum(), plainBytesRead.sum(), plainBytesWritten.sum());
+    }
+
+    /**
+     * @return the event loop group serving all channels of this client
+     */
+    EventLoopGroup getEventLoopGroup() {
+        return group;
+    }
+
     /**
      * Closes all of the sessions within a client, and shutdown the event group.
      */
@@ -0,0 +1,91 @@
+package com.yahoo.imapnio.async.client;
+
+import javax.annotation.Nullable;
+
+/**
+ * Class for the optional features of {@link ImapAsyncClient}, shared by all its sessions. Features are disabled unless set, and any of them can be
+ * combined. The client takes the settings when it is constructed, later changes do not apply to it.
+ */
+public final class ImapAsyncClientConfig {
+
+    /** Cache of server capabilities and namespaces, null if not enabled. */
+    private ImapServerInfoCache serverInfoCache;
+
+    /** Capture of the traffic of all sessions, null if not enabled. */
+    private ImapWireCapture wireCapture;
+
+    /** Scheduler of response dispatch among tenants, null if not enabled. */
+    private ImapTenantScheduler tenantScheduler;
+
+    /** Admission control of connects per server host, null if not enabled. */
+    private ImapHostAdmissionControl admissionControl;
+
+    /**
+     * @return the cache of server capabilities and namespaces, null if not enabled
+     */
+    @Nullable
+    public ImapServerInfoCache getServerInfoCache() {
+        return serverInfoCache;
+    }
+
+    /**
+     * Sets the cache of server capabilities and namespaces shared by all sessions, validated against the greeting of every session created.
+     *
+     * @param serverInfoCache the cache, null to disable it
+     */
+    public void setServerInfoCache(@Nullable final ImapServerInfoCache serverInfoCache) {
+        this.serverInfoCache = serverInfoCache;
+    }
+
+    /**
+     * @return the capture of the traffic of all sessions, null if not enabled
+     */
+    @Nullable
+    public ImapWireCapture getWireCapture() {
+        return wireCapture;
+    }
+
+    /**
+     * Sets the capture of the traffic of all sessions into a ring file, to be read back after an incident. Sensitive command lines are captured as
+     * their debug data.
+     *
+     * @param wireCapture the capture, owned and closed by caller, null to disable it
+     */
+    public void setWireCapture(@Nullable final ImapWireCapture wireCapture) {
+        this.wireCapture = wireCapture;
+    }
+
+    /**
+     * @return the scheduler of response dispatch among tenants, null if not enabled
+     */
+    @Nullable
+    public ImapTenantScheduler getTenantScheduler() {
+        return tenantScheduler;
+    }
+
+    /**
+     * Sets the scheduler dispatching the responses of sessions fairly among their tenants, as set in session configuration.
+     *
+     * @param tenantScheduler the scheduler, null to disable it
+     */
+    public void setTenantScheduler(@Nullable final ImapTenantScheduler tenantScheduler) {
+        this.tenantScheduler = tenantScheduler;
+    }
+
+    /**
+     * @return the admission control of connects per server host, null if not enabled
+     */
+    @Nullable
+    public ImapHostAdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    /**
+     * Sets the admission control of connects per server host, so connects to a degraded host fail fast instead of piling up.
+     *
+     * @param admissionControl the admission control, null to disable it
+     */
+    public void setAdmissionControl(@Nullable final ImapHostAdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+}
@@ -1,10 +1,13 @@
 package com.yahoo.imapnio.async.client;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 import javax.mail.search.SearchException;
 
+import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.request.ImapRequest;
 import com.yahoo.imapnio.async.response.ImapAsyncResponse;
@@ -23,6 +26,16 @@ public interface ImapAsyncSession {
         DEBUG_ON
     }
 
+    /**
+     * Flag to decide how a command is handled when it is executed while the session is in IDLE state.
+     */
+    public enum IdleMode {
+        /** Executing a command while idling is not allowed, caller terminates IDLE before executing the command. */
+        IDLE_MANUAL,
+        /** IDLE is suspended by sending DONE, the command is executed, and IDLE is resumed with the same {@code IdleCommand} and future. */
+        IDLE_AUTO_SUSPEND
+    }
+
     /**
      * Starts the compression, assuming caller verified the support of compression capability in server.
      *
@@ -42,6 +55,13 @@ public interface ImapAsyncSession {
      */
     void setDebugMode(DebugMode debugMode);
 
+    /**
+     * Sets how a command executed while the session is in IDLE state is handled. Default is {@link IdleMode#IDLE_MANUAL}.
+     *
+     * @param idleMode the IDLE mode
+     */
+    void setIdleMode(@Nonnull IdleMode idleMode);
+
     /**
      * Sends a IMAP command to the server.
      *
@@ -53,6 +73,61 @@ public interface ImapAsyncSession {
      */
     <T> ImapFuture<ImapAsyncResponse> execute(ImapRequest command) throws ImapAsyncClientException;
 
+    /**
+     * Sends a IMAP command to the server, giving each untagged response to the consumer as it arrives instead of keeping it till the command is
+     * done, so large results, such as FETCH of many messages, can be processed with constant memory. The response of the returned future only
+     * has the continuation and tagged responses. The consumer is called on the I/O thread of the session, hence it should not block.
+     *
+     * @param command the command request
+     * @param responseConsumer consumer of the untagged responses
+     * @return the future object for this command
+     * @throws ImapAsyncClientException on failure
+     */
+    ImapFuture<ImapAsyncResponse> execute(@Nonnull ImapRequest command, @Nonnull Consumer<IMAPResponse> responseConsumer)
+            throws ImapAsyncClientException;
+
+    /**
+     * Sends the given IMAP commands to the server one after another, each as soon as the previous one completes, for example the commands
+     * returned by {@code UidFetchCommand.split}. The response lines of all commands are merged in order into one response. When a command is
+     * answered with a tagged NO or BAD, the remaining commands are not sent and the returned future is done with the lines collected so far, the
+     * failing tagged response being the last one. The returned future fails with the first exception encountered, and the remaining commands are
+     * not sent.
+     *
+     * @param commands the command requests, at least one
+     * @return the future object for all commands
+     * @throws ImapAsyncClientException on failure
+     */
+    ImapFuture<ImapAsyncResponse> executeAll(@Nonnull List<? extends ImapRequest> commands) throws ImapAsyncClientException;
+
+    /**
+     * Sends the given IMAP commands to the server one after another like {@link #executeAll(List)}, giving the untagged responses of all commands
+     * to the consumer as they arrive, see {@link #execute(ImapRequest, Consumer)}.
+     *
+     * @param commands the command requests, at least one
+     * @param responseConsumer consumer of the untagged responses
+     * @return the future object for all commands
+     * @throws ImapAsyncClientException on failure
+     */
+    ImapFuture<ImapAsyncResponse> executeAll(@Nonnull List<? extends ImapRequest> commands, @Nonnull Consumer<IMAPResponse> responseConsumer)
+            throws ImapAsyncClientException;
+
+    /**
+     * Creates a publisher of the untagged responses of the command, which is sent to the server once the publisher is subscribed. The subscriber
+     * demand controls reading from the server, so responses of large FETCH or SEARCH results can be processed by a slow consumer with bounded
+     * memory.
+     *
+     * @param command the command request
+     * @return the publisher of the command responses
+     */
+    ImapResponsePublisher createPublisher(@Nonnull ImapRequest command);
+
+    /**
+     * Returns the bytes this session exchanged with the server so far, on the socket and as plain IMAP data, showing what compression saves.
+     *
+     * @return the snapshot of the byte counts
+     */
+    ImapWireStats getWireStats();
+
     /**
      * Terminates the current running command.
      *
@@ -1,5 +1,8 @@
 package com.yahoo.imapnio.async.client;
 
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
 /**
  * Class for IMAP Client connection and channel settings.
  */
@@ -11,6 +14,55 @@ public final class ImapAsyncSessionConfig {
     /** Default IMAP command response read from server timeout value in milliseconds. */
     public static final int DEFAULT_READ_TIMEOUT_MILLIS = 10000;
 
+    /** Default deflate compression level, from 0 (no compression) to 9 (best compression). */
+    public static final int DEFAULT_COMPRESSION_LEVEL = 5;
+
+    /** Default base two logarithm of the deflate window size. */
+    public static final int DEFAULT_COMPRESSION_WINDOW_BITS = 15;
+
+    /** Default deflate memory level, from 1 (least memory) to 9 (fastest). */
+    public static final int DEFAULT_COMPRESSION_MEM_LEVEL = 8;
+
+    /** Default maximum number of flushes consolidated into one when flush consolidation is enabled. */
+    public static final int DEFAULT_MAX_CONSOLIDATED_FLUSHES = 256;
+
+    /** Lowest deflate compression level. */
+    private static final int MIN_COMPRESSION_LEVEL = 0;
+
+    /** Highest deflate compression level. */
+    private static final int MAX_COMPRESSION_LEVEL = 9;
+
+    /** Lowest base two logarithm of the deflate window size. */
+    private static final int MIN_COMPRESSION_WINDOW_BITS = 9;
+
+    /** Highest base two logarithm of the deflate window size. */
+    private static final int MAX_COMPRESSION_WINDOW_BITS = 15;
+
+    /** Lowest deflate memory level. */
+    private static final int MIN_COMPRESSION_MEM_LEVEL = 1;
+
+    /** Highest deflate memory level. */
+    private static final int MAX_COMPRESSION_MEM_LEVEL = 9;
+
+    /** Class of JZlib that Netty compresses with when window bits or memory level are not the JDK defaults. */
+    private static final String JZLIB_CLASS_NAME = "com.jcraft.jzlib.Deflater";
+
+    /** Flag whether JZlib is in the class path. */
+    private static final boolean IS_JZLIB_AVAILABLE = isClassAvailable(JZLIB_CLASS_NAME);
+
+    /**
+     * Engine to compress and decompress with once COMPRESS=DEFLATE, RFC 4978, is enabled.
+     */
+    public enum CompressionEngine {
+        /** Deflater and Inflater of JDK. Window bits and memory level are not applicable, the JDK defaults are used. */
+        JDK,
+        /**
+         * Engine chosen by Netty {@code ZlibCodecFactory}, which honors window bits and memory level by using JZlib when they are not the JDK
+         * defaults, in which case JZlib has to be in the class path.
+         */
+        ZLIB_CODEC_FACTORY
+    }
+
     /**
      * Maximum time in milliseconds for opening a connection, this maps to CONNECT_TIMEOUT_MILLIS in @{code ChannelOption}, it will be used when
      * establishing a connection.
@@ -22,6 +74,33 @@ public final class ImapAsyncSessionConfig {
      */
     private int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
 
+    /** Deflate compression level used when compression is enabled. */
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+
+    /** Base two logarithm of the deflate window size used when compression is enabled. */
+    private int compressionWindowBits = DEFAULT_COMPRESSION_WINDOW_BITS;
+
+    /** Deflate memory level used when compression is enabled. */
+    private int compressionMemLevel = DEFAULT_COMPRESSION_MEM_LEVEL;
+
+    /** Engine to compress and decompress with. */
+    private CompressionEngine compressionEngine = CompressionEngine.JDK;
+
+    /** Flag whether compression is enabled automatically after authentication when server advertises COMPRESS=DEFLATE. */
+    private boolean isAutoCompressEnabled = false;
+
+    /** Flag whether the session is created with the minimal memory footprint, for holding a large number of mostly idle connections. */
+    private boolean isLowFootprintEnabled = false;
+
+    /** Tenant the session works for, scheduled fairly against other tenants by the client scheduler if any, null if not set. */
+    private String tenantId;
+
+    /** Flag whether consecutive flushes to server are consolidated into one. */
+    private boolean isFlushConsolidationEnabled = false;
+
+    /** Maximum number of flushes consolidated into one. */
+    private int maxConsolidatedFlushes = DEFAULT_MAX_CONSOLIDATED_FLUSHES;
+
     /**
      * @return Maximum time for opening a connection
      */
@@ -53,4 +132,196 @@ public final class ImapAsyncSessionConfig {
     public void setReadTimeoutMillis(final int readTimeoutMillis) {
         this.readTimeoutMillis = readTimeoutMillis;
     }
+
+    /**
+     * @return the deflate compression level used when compression is enabled
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the deflate compression level, trading CPU for bandwidth.
+     *
+     * @param compressionLevel from 0 (no compression) to 9 (best compression)
+     * @throws ImapAsyncClientException when the level is out of range
+     */
+    public void setCompressionLevel(final int compressionLevel) throws ImapAsyncClientException {
+        if (compressionLevel < MIN_COMPRESSION_LEVEL || compressionLevel > MAX_COMPRESSION_LEVEL) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * @return the base two logarithm of the deflate window size used when compression is enabled
+     */
+    public int getCompressionWindowBits() {
+        return compressionWindowBits;
+    }
+
+    /**
+     * Sets the base two logarithm of the deflate window size, applicable to {@link CompressionEngine#ZLIB_CODEC_FACTORY} only.
+     *
+     * @param compressionWindowBits from 9 to 15, larger gives better compression with more memory
+     * @throws ImapAsyncClientException when the window bits are out of range
+     */
+    public void setCompressionWindowBits(final int compressionWindowBits) throws ImapAsyncClientException {
+        if (compressionWindowBits < MIN_COMPRESSION_WINDOW_BITS || compressionWindowBits > MAX_COMPRESSION_WINDOW_BITS) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.compressionWindowBits = compressionWindowBits;
+    }
+
+    /**
+     * @return the deflate memory level used when compression is enabled
+     */
+    public int getCompressionMemLevel() {
+        return compressionMemLevel;
+    }
+
+    /**
+     * Sets the deflate memory level, applicable to {@link CompressionEngine#ZLIB_CODEC_FACTORY} only.
+     *
+     * @param compressionMemLevel from 1 (least memory) to 9 (fastest)
+     * @throws ImapAsyncClientException when the memory level is out of range
+     */
+    public void setCompressionMemLevel(final int compressionMemLevel) throws ImapAsyncClientException {
+        if (compressionMemLevel < MIN_COMPRESSION_MEM_LEVEL || compressionMemLevel > MAX_COMPRESSION_MEM_LEVEL) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.compressionMemLevel = compressionMemLevel;
+    }
+
+    /**
+     * @return the engine to compress and decompress with
+     */
+    public CompressionEngine getCompressionEngine() {
+        return compressionEngine;
+    }
+
+    /**
+     * Sets the engine to compress and decompress with.
+     *
+     * @param compressionEngine the engine
+     */
+    public void setCompressionEngine(final CompressionEngine compressionEngine) {
+        this.compressionEngine = compressionEngine;
+    }
+
+    /**
+     * Validates the compression engine can be created with the compression settings, that is JZlib is in the class path when
+     * {@link CompressionEngine#ZLIB_CODEC_FACTORY} is given window bits or memory level other than the JDK defaults. Checked before connecting and
+     * before compression is started, so a missing JZlib fails the caller instead of the connection once server has switched to compression.
+     *
+     * @throws ImapAsyncClientException when the settings need JZlib, which is not in the class path
+     */
+    public void validateCompressionEngine() throws ImapAsyncClientException {
+        final boolean isJZlibRequired = compressionEngine == CompressionEngine.ZLIB_CODEC_FACTORY
+                && (compressionWindowBits != DEFAULT_COMPRESSION_WINDOW_BITS || compressionMemLevel != DEFAULT_COMPRESSION_MEM_LEVEL);
+        if (isJZlibRequired && !IS_JZLIB_AVAILABLE) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+    }
+
+    /**
+     * @return true if compression is enabled automatically after authentication when server advertises COMPRESS=DEFLATE
+     */
+    public boolean isAutoCompressEnabled() {
+        return isAutoCompressEnabled;
+    }
+
+    /**
+     * Sets whether compression is enabled automatically after authentication, when server advertises COMPRESS=DEFLATE in the capability response
+     * code or an untagged CAPABILITY response of the authentication. The authentication future is done once compression is enabled.
+     *
+     * @param isAutoCompressEnabled true to enable compression automatically
+     */
+    public void setAutoCompressEnabled(final boolean isAutoCompressEnabled) {
+        this.isAutoCompressEnabled = isAutoCompressEnabled;
+    }
+
+    /**
+     * @return true if the session is created with the minimal memory footprint
+     */
+    public boolean isLowFootprintEnabled() {
+        return isLowFootprintEnabled;
+    }
+
+    /**
+     * Sets whether the session is created with the minimal memory footprint, for holding a large number of mostly idle connections. Such a session
+     * has no byte counters, hence it is not counted in wire stats, and its decoders discard the consumed bytes of partially received responses
+     * after every read.
+     *
+     * @param isLowFootprintEnabled true to create the session with the minimal memory footprint
+     */
+    public void setLowFootprintEnabled(final boolean isLowFootprintEnabled) {
+        this.isLowFootprintEnabled = isLowFootprintEnabled;
+    }
+
+    /**
+     * @return the tenant the session works for, null if not set
+     */
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    /**
+     * Sets the tenant the session works for. When the client has a {@link ImapTenantScheduler}, the responses of the session are dispatched within
+     * the budget of its tenant, so tenants with heavy workloads do not delay the others sharing the event loops.
+     *
+     * @param tenantId the tenant id, null to dispatch the responses of the session without budget
+     */
+    public void setTenantId(final String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    /**
+     * @return true if consecutive flushes to server are consolidated into one
+     */
+    public boolean isFlushConsolidationEnabled() {
+        return isFlushConsolidationEnabled;
+    }
+
+    /**
+     * Sets whether consecutive flushes to server are consolidated into one, so requests sent back to back, such as pipelined commands, bulk STORE
+     * or APPEND with its literal, go out in one write to socket and one TLS record. Flushes are delayed till the event loop is done with the current
+     * read, or with its current round of tasks, or till {@link #getMaxConsolidatedFlushes()} flushes are pending.
+     *
+     * @param isFlushConsolidationEnabled true to consolidate flushes
+     */
+    public void setFlushConsolidationEnabled(final boolean isFlushConsolidationEnabled) {
+        this.isFlushConsolidationEnabled = isFlushConsolidationEnabled;
+    }
+
+    /**
+     * @return maximum number of flushes consolidated into one
+     */
+    public int getMaxConsolidatedFlushes() {
+        return maxConsolidatedFlushes;
+    }
+
+    /**
+     * Sets the maximum number of flushes consolidated into one, after which the pending writes are flushed right away.
+     *
+     * @param maxConsolidatedFlushes maximum number of flushes, at least 1
+     */
+    public void setMaxConsolidatedFlushes(final int maxConsolidatedFlushes) {
+        this.maxConsolidatedFlushes = maxConsolidatedFlushes;
+    }
+
+    /**
+     * Checks whether the given class is in the class path, without initializing it.
+     *
+     * @param className name of the class
+     * @return true if the class can be loaded
+     */
+    private static boolean isClassAvailable(final String className) {
+        try {
+            Class.forName(className, false, ImapAsyncSessionConfig.class.getClassLoader());
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,301 @@
+package com.yahoo.imapnio.async.client;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * This class is a pool of IMAP server endpoints serving the same mailboxes, which {@link ImapAsyncClient} connects through to balance sessions on
+ * the client side instead of through a proxy. Every session is created to the endpoint chosen by the strategy of the group among the healthy ones;
+ * an endpoint failing to connect or to greet is unhealthy for a while, and skipped unless all endpoints are.
+ *
+ * <p>
+ * Sessions are counted as active on their endpoint from the moment it is chosen, so sessions reconnecting at once after the loss of an endpoint
+ * are spread over the others instead of all choosing the same least loaded one.
+ * </p>
+ */
+public final class ImapEndpointGroup {
+
+    /** Weight of a new connect latency in the moving average. */
+    private static final double LATENCY_SMOOTHING = 0.3;
+
+    /** Latency floor in milliseconds, keeping weights finite. */
+    private static final double MIN_LATENCY_MILLIS = 1d;
+
+    /** Results of a connect marking its endpoint unhealthy. */
+    private static final Set<FailureType> ENDPOINT_FAILURES = Collections.unmodifiableSet(EnumSet.of(FailureType.CONNECTION_FAILED_EXCEPTION,
+            FailureType.CONNECTION_FAILED_WITHOUT_OK_RESPONSE, FailureType.CONNECTION_FAILED_EXCEED_IDLE_MAX, FailureType.CONNECTION_INACTIVE,
+            FailureType.CONNECTION_CIRCUIT_OPEN));
+
+    /**
+     * Strategy choosing the endpoint of a new session.
+     */
+    public enum Strategy {
+        /** Endpoints in turn. */
+        ROUND_ROBIN,
+        /** Endpoint with the least active sessions, in turn among equals. */
+        LEAST_ACTIVE_SESSIONS,
+        /** Endpoint chosen randomly with weights inverse to its connect latency, endpoints without latency yet are weighted as the fastest. */
+        LATENCY_WEIGHTED
+    }
+
+    /**
+     * An endpoint of the group.
+     */
+    public static final class Endpoint {
+
+        /** Server URI of the endpoint. */
+        private final URI uri;
+
+        /** Number of sessions created or being created to the endpoint and not closed. */
+        private final AtomicInteger activeSessions = new AtomicInteger();
+
+        /** Bits of the moving average of the time to connect and get the greeting in milliseconds, negative if not known yet. */
+        private final AtomicLong latencyBits = new AtomicLong(Double.doubleToLongBits(-1d));
+
+        /** Time the endpoint is unhealthy till, in milliseconds. */
+        private volatile long unhealthyUntilMillis;
+
+        /**
+         * Initializes an {@code Endpoint}.
+         *
+         * @param uri server URI of the endpoint
+         */
+        private Endpoint(@Nonnull final URI uri) {
+            this.uri = uri;
+        }
+
+        /**
+         * @return the server URI of the endpoint
+         */
+        public URI getUri() {
+            return uri;
+        }
+
+        /**
+         * @return the number of sessions created or being created to the endpoint and not closed
+         */
+        public int getActiveSessions() {
+            return activeSessions.get();
+        }
+
+        /**
+         * @return the moving average of the time to connect and get the greeting in milliseconds, negative if not known yet
+         */
+        public double getLatencyMillis() {
+            return Double.longBitsToDouble(latencyBits.get());
+        }
+    }
+
+    /** The endpoints. */
+    private final List<Endpoint> endpoints;
+
+    /** Strategy choosing the endpoints. */
+    private final Strategy strategy;
+
+    /** Time an endpoint is skipped after failing, in milliseconds. */
+    private final long unhealthyMillis;
+
+    /** Clock to time the unhealthy endpoints and the connects with. */
+    private final Clock clock;
+
+    /** Random generator of the latency weighted choice, null to use the one of the current thread. */
+    @Nullable
+    private final Random random;
+
+    /** Turn of the next choice. */
+    private final AtomicInteger turn = new AtomicInteger();
+
+    /**
+     * Initializes a {@code ImapEndpointGroup}.
+     *
+     * @param uris server URIs of the endpoints
+     * @param strategy strategy choosing the endpoint of a new session
+     * @param unhealthyMillis time an endpoint is skipped after failing to connect or greet, in milliseconds
+     * @throws ImapAsyncClientException when no endpoint is given or the time is not positive
+     */
+    public ImapEndpointGroup(@Nonnull final List<URI> uris, @Nonnull final Strategy strategy, final long unhealthyMillis)
+            throws ImapAsyncClientException {
+        this(uris, strategy, unhealthyMillis, Clock.systemUTC(), null);
+    }
+
+    /**
+     * Initializes a {@code ImapEndpointGroup} with the given clock and random generator.
+     *
+     * @param uris server URIs of the endpoints
+     * @param strategy strategy choosing the endpoint of a new session
+     * @param unhealthyMillis time an endpoint is skipped after failing to connect or greet, in milliseconds
+     * @param clock clock to time the unhealthy endpoints and the connects with
+     * @param random random generator of the latency weighted choice, null to use the one of the current thread
+     * @throws ImapAsyncClientException when no endpoint is given or the time is not positive
+     */
+    ImapEndpointGroup(@Nonnull final List<URI> uris, @Nonnull final Strategy strategy, final long unhealthyMillis, @Nonnull final Clock clock,
+            @Nullable final Random random) throws ImapAsyncClientException {
+        if (uris.isEmpty() || unhealthyMillis <= 0) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        final List<Endpoint> list = new ArrayList<Endpoint>(uris.size());
+        for (final URI uri : uris) {
+            list.add(new Endpoint(uri));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.strategy = strategy;
+        this.unhealthyMillis = unhealthyMillis;
+        this.clock = clock;
+        this.random = random;
+    }
+
+    /**
+     * @return the endpoints of the group
+     */
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return the strategy choosing the endpoint of a new session
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @param endpoint the endpoint
+     * @return true if the endpoint has not failed recently
+     */
+    public boolean isHealthy(@Nonnull final Endpoint endpoint) {
+        return clock.millis() >= endpoint.unhealthyUntilMillis;
+    }
+
+    /**
+     * @return the current time in milliseconds, by the clock of the group
+     */
+    long currentTimeMillis() {
+        return clock.millis();
+    }
+
+    /**
+     * Chooses the endpoint of a new session among the healthy ones, or among all of them if none is healthy, and counts the session as active on
+     * it. The session has to be reported by {@link #connected(Endpoint, long)} or {@link #failed(Endpoint, Exception)}, and once connected by
+     * {@link #closed(Endpoint)}.
+     *
+     * @return the chosen endpoint
+     */
+    Endpoint select() {
+        final long now = clock.millis();
+        final List<Endpoint> candidates = new ArrayList<Endpoint>(endpoints.size());
+        for (final Endpoint endpoint : endpoints) {
+            if (now >= endpoint.unhealthyUntilMillis) {
+                candidates.add(endpoint);
+            }
+        }
+        final List<Endpoint> choices = candidates.isEmpty() ? endpoints : candidates; // all down, trying them is better than failing
+        final int start = Math.floorMod(turn.getAndIncrement(), choices.size());
+        Endpoint chosen = choices.get(start);
+        switch (strategy) {
+        case LEAST_ACTIVE_SESSIONS:
+            for (int i = 1; i < choices.size(); i++) {
+                final Endpoint endpoint = choices.get((start + i) % choices.size());
+                if (endpoint.activeSessions.get() < chosen.activeSessions.get()) {
+                    chosen = endpoint;
+                }
+            }
+            break;
+        case LATENCY_WEIGHTED:
+            chosen = chooseByLatency(choices);
+            break;
+        default:
+            break;
+        }
+        chosen.activeSessions.incrementAndGet();
+        return chosen;
+    }
+
+    /**
+     * Chooses an endpoint randomly with weights inverse to its connect latency.
+     *
+     * @param choices the endpoints to choose from
+     * @return the chosen endpoint
+     */
+    private Endpoint chooseByLatency(@Nonnull final List<Endpoint> choices) {
+        double fastest = Double.MAX_VALUE;
+        for (final Endpoint endpoint : choices) {
+            final double latency = endpoint.getLatencyMillis();
+            if (latency >= 0) {
+                fastest = Math.min(fastest, Math.max(latency, MIN_LATENCY_MILLIS));
+            }
+        }
+        if (fastest == Double.MAX_VALUE) { // no latency known yet
+            fastest = MIN_LATENCY_MILLIS;
+        }
+        final double[] weights = new double[choices.size()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            final double latency = choices.get(i).getLatencyMillis();
+            weights[i] = 1d / ((latency >= 0) ? Math.max(latency, MIN_LATENCY_MILLIS) : fastest);
+            total += weights[i];
+        }
+        double point = ((random != null) ? random.nextDouble() : ThreadLocalRandom.current().nextDouble()) * total;
+        for (int i = 0; i < weights.length; i++) {
+            point -= weights[i];
+            if (point < 0) {
+                return choices.get(i);
+            }
+        }
+        return choices.get(weights.length - 1);
+    }
+
+    /**
+     * Records a session connected to the endpoint, making it healthy.
+     *
+     * @param endpoint the endpoint
+     * @param elapsedMillis time taken to connect and get the greeting in milliseconds
+     */
+    void connected(@Nonnull final Endpoint endpoint, final long elapsedMillis) {
+        // sessions to the same endpoint connect on different event loops, the average is updated only if no other connect did meanwhile
+        long bits;
+        double average;
+        do {
+            bits = endpoint.latencyBits.get();
+            final double latency = Double.longBitsToDouble(bits);
+            average = (latency < 0) ? elapsedMillis : latency + LATENCY_SMOOTHING * (elapsedMillis - latency);
+        } while (!endpoint.latencyBits.compareAndSet(bits, Double.doubleToLongBits(average)));
+        endpoint.unhealthyUntilMillis = 0;
+    }
+
+    /**
+     * Records a session failing to connect to the endpoint, marking the endpoint unhealthy if it failed to connect or to greet.
+     *
+     * @param endpoint the endpoint
+     * @param cause the failure
+     */
+    void failed(@Nonnull final Endpoint endpoint, @Nonnull final Exception cause) {
+        endpoint.activeSessions.decrementAndGet();
+        if (cause instanceof ImapAsyncClientException && ENDPOINT_FAILURES.contains(((ImapAsyncClientException) cause).getFaiureType())) {
+            endpoint.unhealthyUntilMillis = clock.millis() + unhealthyMillis;
+        }
+    }
+
+    /**
+     * Records a session to the endpoint closed.
+     *
+     * @param endpoint the endpoint
+     */
+    void closed(@Nonnull final Endpoint endpoint) {
+        endpoint.activeSessions.decrementAndGet();
+    }
+}
@@ -7,6 +7,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 
@@ -30,6 +31,12 @@ public class ImapFuture<V> implements Future<V> {
     private final AtomicReference<V> resultRef = new AtomicReference<V>();
     /** Wait interval when the user calls get(). */
     private static final int GET_WAIT_INTERVAL_MILLIS = 1000;
+    /** Callback invoked with the result when the future completes successfully. */
+    private Consumer<V> doneCallback;
+    /** Callback invoked with the cause when the future completes with an exception. */
+    private Consumer<Exception> exceptionCallback;
+    /** Callback invoked when the future is cancelled. */
+    private Runnable canceledCallback;
 
     /**
      * Is this Future cancelled.
@@ -63,13 +70,18 @@ public class ImapFuture<V> implements Future<V> {
      * @param result the result to be set
      */
     public void done(@Nonnull final V result) {
+        final Consumer<V> callback;
         synchronized (lock) {
+            callback = isDone.get() ? null : doneCallback;
             if (!isDone.get()) {
                 resultRef.set(result);
                 isDone.set(true);
             }
             lock.notify();
         }
+        if (callback != null) {
+            callback.accept(result);
+        }
     }
 
     /**
@@ -88,7 +100,11 @@ public class ImapFuture<V> implements Future<V> {
      * @param cancelled true if the call was the result of a cancellation
      */
     private void done(final Exception cause, final boolean cancelled) {
+        final Consumer<Exception> callback;
+        final Runnable cancelCallback;
         synchronized (lock) {
+            callback = (isDone.get() || cancelled) ? null : exceptionCallback;
+            cancelCallback = (isDone.get() || !cancelled) ? null : canceledCallback;
             if (!isDone.get()) {
                 causeRef.set(cause);
                 isDone.set(true);
@@ -96,6 +112,65 @@ public class ImapFuture<V> implements Future<V> {
             }
             lock.notify();
         }
+        if (callback != null) {
+            callback.accept(cause);
+        }
+        if (cancelCallback != null) {
+            cancelCallback.run();
+        }
+    }
+
+    /**
+     * Sets the callback invoked with the result when this future completes successfully. It is invoked right away if the future has already
+     * completed successfully. The callback runs on the thread completing the future, normally the channel event loop, so it must not block.
+     *
+     * @param callback the callback
+     */
+    public void setDoneCallback(@Nonnull final Consumer<V> callback) {
+        synchronized (lock) {
+            if (!isDone.get()) {
+                doneCallback = callback;
+                return;
+            }
+        }
+        if (causeRef.get() == null) {
+            callback.accept(resultRef.get());
+        }
+    }
+
+    /**
+     * Sets the callback invoked with the cause when this future completes with an exception. It is invoked right away if the future has already
+     * failed. The callback runs on the thread completing the future, normally the channel event loop, so it must not block.
+     *
+     * @param callback the callback
+     */
+    public void setExceptionCallback(@Nonnull final Consumer<Exception> callback) {
+        synchronized (lock) {
+            if (!isDone.get()) {
+                exceptionCallback = callback;
+                return;
+            }
+        }
+        if (causeRef.get() != null && !isCancelled.get()) {
+            callback.accept(causeRef.get());
+        }
+    }
+
+    /**
+     * Sets the callback invoked when this future is cancelled. It is invoked right away if the future has already been cancelled.
+     *
+     * @param callback the callback
+     */
+    public void setCanceledCallback(@Nonnull final Runnable callback) {
+        synchronized (lock) {
+            if (!isDone.get()) {
+                canceledCallback = callback;
+                return;
+            }
+        }
+        if (isCancelled.get()) {
+            callback.run();
+        }
     }
 
     @Override
@@ -0,0 +1,256 @@
+package com.yahoo.imapnio.async.client;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * This class controls the admission of new connections per server host, so a degraded host does not pile up connects waiting for their timeout
+ * and hold the event loops and file descriptors that healthy hosts need. For every host:
+ * <ul>
+ * <li>the number of connects in progress, from creating the channel till the server greeting, is capped</li>
+ * <li>new sessions are rate limited by a token bucket, allowing a burst on top of the sustained rate</li>
+ * <li>a circuit breaker opens after consecutive connect failures, during which connects fail fast; once the open time is over, one connect is let
+ * through as a probe, closing the circuit if it succeeds and opening it again if it fails</li>
+ * </ul>
+ * Rejected connects fail right away with {@link FailureType#CONNECTION_THROTTLED} or {@link FailureType#CONNECTION_CIRCUIT_OPEN}, without a
+ * channel being created.
+ */
+public final class ImapHostAdmissionControl {
+
+    /** Separator of the key parts. */
+    private static final char KEY_SEP = ':';
+
+    /** Number of milliseconds in a second. */
+    private static final double MILLIS_PER_SECOND = 1000d;
+
+    /** Results of a connect counted as failures of the host. */
+    private static final Set<FailureType> HOST_FAILURES = Collections.unmodifiableSet(EnumSet.of(FailureType.CONNECTION_FAILED_EXCEPTION,
+            FailureType.CONNECTION_FAILED_WITHOUT_OK_RESPONSE, FailureType.CONNECTION_FAILED_EXCEED_IDLE_MAX));
+
+    /**
+     * State of the circuit breaker of a host.
+     */
+    public enum CircuitState {
+        /** Host is healthy, connects are admitted. */
+        CLOSED,
+        /** Host is unhealthy, connects fail fast. */
+        OPEN,
+        /** Open time is over, one connect is probing the host. */
+        HALF_OPEN
+    }
+
+    /**
+     * Admission state of a host, guarded by itself.
+     */
+    private static final class HostState {
+
+        /** Number of connects in progress. */
+        private int connectsInProgress;
+
+        /** Tokens available to new sessions. */
+        private double tokens;
+
+        /** Time the tokens were last refilled at, in milliseconds. */
+        private long refillMillis;
+
+        /** Number of consecutive connect failures. */
+        private int failures;
+
+        /** State of the circuit breaker. */
+        private CircuitState circuitState = CircuitState.CLOSED;
+
+        /** Time the circuit was opened at, in milliseconds. */
+        private long openedMillis;
+
+        /**
+         * Initializes a {@code HostState} with a full bucket.
+         *
+         * @param tokens tokens of a full bucket
+         * @param nowMillis current time in milliseconds
+         */
+        HostState(final double tokens, final long nowMillis) {
+            this.tokens = tokens;
+            this.refillMillis = nowMillis;
+        }
+    }
+
+    /** Maximum number of connects in progress per host. */
+    private final int maxConnectsInProgress;
+
+    /** Sustained number of new sessions per second per host. */
+    private final double sessionsPerSecond;
+
+    /** Number of new sessions allowed in a burst per host, the capacity of the token bucket. */
+    private final int maxBurst;
+
+    /** Number of consecutive connect failures opening the circuit. */
+    private final int failureThreshold;
+
+    /** Time the circuit stays open before a probe is let through, in milliseconds. */
+    private final long openMillis;
+
+    /** Clock to refill the buckets and time the open circuits with. */
+    private final Clock clock;
+
+    /** States of the hosts. */
+    private final ConcurrentHashMap<String, HostState> hosts = new ConcurrentHashMap<String, HostState>();
+
+    /**
+     * Initializes a {@code ImapHostAdmissionControl}.
+     *
+     * @param maxConnectsInProgress maximum number of connects in progress per host
+     * @param sessionsPerSecond sustained number of new sessions per second per host
+     * @param maxBurst number of new sessions allowed in a burst per host
+     * @param failureThreshold number of consecutive connect failures opening the circuit of a host
+     * @param openMillis time the circuit stays open before a probe is let through, in milliseconds
+     * @throws ImapAsyncClientException when any of the limits is not positive
+     */
+    public ImapHostAdmissionControl(final int maxConnectsInProgress, final double sessionsPerSecond, final int maxBurst, final int failureThreshold,
+            final long openMillis) throws ImapAsyncClientException {
+        this(maxConnectsInProgress, sessionsPerSecond, maxBurst, failureThreshold, openMillis, Clock.systemUTC());
+    }
+
+    /**
+     * Initializes a {@code ImapHostAdmissionControl} with the given clock.
+     *
+     * @param maxConnectsInProgress maximum number of connects in progress per host
+     * @param sessionsPerSecond sustained number of new sessions per second per host
+     * @param maxBurst number of new sessions allowed in a burst per host
+     * @param failureThreshold number of consecutive connect failures opening the circuit of a host
+     * @param openMillis time the circuit stays open before a probe is let through, in milliseconds
+     * @param clock clock to refill the buckets and time the open circuits with
+     * @throws ImapAsyncClientException when any of the limits is not positive
+     */
+    ImapHostAdmissionControl(final int maxConnectsInProgress, final double sessionsPerSecond, final int maxBurst, final int failureThreshold,
+            final long openMillis, @Nonnull final Clock clock) throws ImapAsyncClientException {
+        if (maxConnectsInProgress <= 0 || sessionsPerSecond <= 0 || maxBurst <= 0 || failureThreshold <= 0 || openMillis <= 0) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.maxConnectsInProgress = maxConnectsInProgress;
+        this.sessionsPerSecond = sessionsPerSecond;
+        this.maxBurst = maxBurst;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @param serverUri the server URI
+     * @return the key of the host, made of host and port
+     */
+    private static String toKey(@Nonnull final URI serverUri) {
+        final String host = serverUri.getHost() != null ? serverUri.getHost().toLowerCase(Locale.ENGLISH) : "";
+        return host + KEY_SEP + serverUri.getPort();
+    }
+
+    /**
+     * @param serverUri the server URI
+     * @return the state of the host, created if absent
+     */
+    private HostState getHostState(@Nonnull final URI serverUri) {
+        final String key = toKey(serverUri);
+        final HostState state = hosts.get(key);
+        if (state != null) {
+            return state;
+        }
+        final HostState newState = new HostState(maxBurst, clock.millis());
+        final HostState prev = hosts.putIfAbsent(key, newState);
+        return (prev != null) ? prev : newState;
+    }
+
+    /**
+     * Admits a connect to the host of the server, which has to be followed by {@link #release(URI, Exception)} once the connect is done.
+     *
+     * @param serverUri the server URI
+     * @throws ImapAsyncClientException when the circuit of the host is open, or too many connects are in progress or made recently
+     */
+    void acquire(@Nonnull final URI serverUri) throws ImapAsyncClientException {
+        final HostState state = getHostState(serverUri);
+        synchronized (state) {
+            final long now = clock.millis();
+            if (state.circuitState == CircuitState.HALF_OPEN
+                    || (state.circuitState == CircuitState.OPEN && now - state.openedMillis < openMillis)) { // probe in progress or still open
+                throw new ImapAsyncClientException(FailureType.CONNECTION_CIRCUIT_OPEN);
+            }
+            if (state.connectsInProgress >= maxConnectsInProgress) {
+                throw new ImapAsyncClientException(FailureType.CONNECTION_THROTTLED);
+            }
+            state.tokens = Math.min(maxBurst, state.tokens + (now - state.refillMillis) * sessionsPerSecond / MILLIS_PER_SECOND);
+            state.refillMillis = now;
+            if (state.tokens < 1) {
+                throw new ImapAsyncClientException(FailureType.CONNECTION_THROTTLED);
+            }
+            state.tokens--;
+            state.connectsInProgress++;
+            if (state.circuitState == CircuitState.OPEN) { // open time is over, this connect probes the host
+                state.circuitState = CircuitState.HALF_OPEN;
+            }
+        }
+    }
+
+    /**
+     * Records the result of a connect admitted by {@link #acquire(URI)}. Failures to reach the host or to get its greeting count towards opening
+     * its circuit, a session created closes it; other failures, such as invalid input, do not tell the health of the host and are not counted.
+     *
+     * @param serverUri the server URI
+     * @param cause the failure of the connect, null if the session is created
+     */
+    void release(@Nonnull final URI serverUri, final Exception cause) {
+        final HostState state = getHostState(serverUri);
+        final boolean isHostFailure = cause instanceof ImapAsyncClientException
+                && HOST_FAILURES.contains(((ImapAsyncClientException) cause).getFaiureType());
+        synchronized (state) {
+            state.connectsInProgress--;
+            if (cause == null) {
+                state.failures = 0;
+                state.circuitState = CircuitState.CLOSED;
+            } else if (isHostFailure) {
+                state.failures++;
+                if (state.circuitState == CircuitState.HALF_OPEN || state.failures >= failureThreshold) {
+                    state.circuitState = CircuitState.OPEN;
+                    state.openedMillis = clock.millis();
+                }
+            } else if (state.circuitState == CircuitState.HALF_OPEN) { // probe told nothing, the next connect probes again
+                state.circuitState = CircuitState.OPEN;
+            }
+        }
+    }
+
+    /**
+     * @param serverUri the server URI
+     * @return the state of the circuit breaker of the host, which is reported as open till a connect probes the host after the open time
+     */
+    public CircuitState getCircuitState(@Nonnull final URI serverUri) {
+        final HostState state = hosts.get(toKey(serverUri));
+        if (state == null) {
+            return CircuitState.CLOSED;
+        }
+        synchronized (state) {
+            return state.circuitState;
+        }
+    }
+
+    /**
+     * @param serverUri the server URI
+     * @return the number of connects in progress to the host
+     */
+    public int getConnectsInProgress(@Nonnull final URI serverUri) {
+        final HostState state = hosts.get(toKey(serverUri));
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.connectsInProgress;
+        }
+    }
+}
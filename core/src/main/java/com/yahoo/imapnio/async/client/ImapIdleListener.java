@@ -0,0 +1,53 @@
+package com.yahoo.imapnio.async.client;
+
+import javax.annotation.Nonnull;
+
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.IMAPResponse;
+
+/**
+ * This interface defines the callbacks for the events server sends to a session in IDLE state, managed by {@link ImapIdleManager}. Callbacks are
+ * called on the I/O thread of the session as the responses arrive, hence they should not block.
+ */
+public interface ImapIdleListener {
+
+    /**
+     * Called when server reports the number of messages in the selected mailbox, usually because new messages arrived.
+     *
+     * @param session the session in IDLE state
+     * @param messageCount the number of messages in the mailbox
+     */
+    void onExists(@Nonnull ImapAsyncSession session, int messageCount);
+
+    /**
+     * Called when server reports a message is expunged from the selected mailbox.
+     *
+     * @param session the session in IDLE state
+     * @param messageNumber the message sequence number of the expunged message
+     */
+    void onExpunge(@Nonnull ImapAsyncSession session, int messageNumber);
+
+    /**
+     * Called when server reports changes of a message, such as its flags.
+     *
+     * @param session the session in IDLE state
+     * @param fetchResponse the fetch response of the message
+     */
+    void onFetch(@Nonnull ImapAsyncSession session, @Nonnull FetchResponse fetchResponse);
+
+    /**
+     * Called for the other untagged responses, such as RECENT or BYE, and for the fetch responses that cannot be parsed.
+     *
+     * @param session the session in IDLE state
+     * @param response the server response
+     */
+    void onOtherResponse(@Nonnull ImapAsyncSession session, @Nonnull IMAPResponse response);
+
+    /**
+     * Called when IDLE ends because of an error, such as a closed channel or server rejecting IDLE. The session is no longer managed afterwards.
+     *
+     * @param session the session
+     * @param cause the cause of the error
+     */
+    void onIdleFailed(@Nonnull ImapAsyncSession session, @Nonnull Exception cause);
+}
@@ -0,0 +1,307 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.IdleCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+/**
+ * This class keeps sessions in IDLE state, RFC 2177, on behalf of callers. It renews IDLE for each session by sending DONE and issuing IDLE again
+ * before server drops the idling client, using one timer wheel for all the sessions, so a large number of sessions can be kept without a thread
+ * each. Server responses are given to {@link ImapIdleListener} as they arrive, without polling. Commands can be executed on a managed session set
+ * to {@link ImapAsyncSession.IdleMode#IDLE_AUTO_SUSPEND}, IDLE is resumed by the session afterwards.
+ */
+public final class ImapIdleManager {
+
+    /** Default interval to renew IDLE, below the 29 minutes after which server may log out an idling client. */
+    public static final long DEFAULT_RENEW_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(25);
+
+    /** Tick duration of the timer wheel created by this class, in seconds. */
+    private static final long TICK_SECONDS = 1L;
+
+    /** EXISTS response key. */
+    private static final String EXISTS = "EXISTS";
+
+    /** EXPUNGE response key. */
+    private static final String EXPUNGE = "EXPUNGE";
+
+    /** FETCH response key. */
+    private static final String FETCH = "FETCH";
+
+    /** Timer wheel scheduling the renewals of all the sessions. */
+    private final Timer timer;
+
+    /** Flag whether the timer is created by this class and should be stopped on shutdown. */
+    private final boolean isTimerOwned;
+
+    /** Interval to renew IDLE, in milliseconds. */
+    private final long renewIntervalMillis;
+
+    /** Sessions in IDLE state. */
+    private final ConcurrentHashMap<ImapAsyncSession, IdleEntry> entries = new ConcurrentHashMap<ImapAsyncSession, IdleEntry>();
+
+    /**
+     * Initializes a {@code ImapIdleManager} with its own timer wheel and the default renew interval.
+     */
+    public ImapIdleManager() {
+        this(new HashedWheelTimer(TICK_SECONDS, TimeUnit.SECONDS), DEFAULT_RENEW_INTERVAL_MILLIS, true);
+    }
+
+    /**
+     * Initializes a {@code ImapIdleManager} with a timer shared with others. The timer is not stopped on shutdown.
+     *
+     * @param timer the timer to schedule the renewals with
+     * @param renewIntervalMillis interval to renew IDLE, in milliseconds
+     */
+    public ImapIdleManager(@Nonnull final Timer timer, final long renewIntervalMillis) {
+        this(timer, renewIntervalMillis, false);
+    }
+
+    /**
+     * Initializes a {@code ImapIdleManager}.
+     *
+     * @param timer the timer to schedule the renewals with
+     * @param renewIntervalMillis interval to renew IDLE, in milliseconds
+     * @param isTimerOwned flag whether the timer should be stopped on shutdown
+     */
+    private ImapIdleManager(@Nonnull final Timer timer, final long renewIntervalMillis, final boolean isTimerOwned) {
+        this.timer = timer;
+        this.renewIntervalMillis = renewIntervalMillis;
+        this.isTimerOwned = isTimerOwned;
+    }
+
+    /**
+     * Starts IDLE on the session and keeps renewing it until {@link #stopIdle(ImapAsyncSession)} is called or IDLE fails. The session should have a
+     * mailbox selected and no command in progress.
+     *
+     * @param session the session to idle
+     * @param listener the listener of the server responses
+     * @throws ImapAsyncClientException when the session is already idling or IDLE command cannot be sent
+     */
+    public void startIdle(@Nonnull final ImapAsyncSession session, @Nonnull final ImapIdleListener listener) throws ImapAsyncClientException {
+        final IdleEntry entry = new IdleEntry(session, listener);
+        if (entries.putIfAbsent(session, entry) != null) {
+            throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED);
+        }
+        try {
+            entry.issueIdle();
+        } catch (final ImapAsyncClientException e) {
+            entries.remove(session, entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Stops IDLE on the session by sending DONE. The session is no longer managed afterwards.
+     *
+     * @param session the idling session
+     * @return the future of the IDLE command, done when server completes it
+     * @throws ImapAsyncClientException when the session is not idling or DONE cannot be sent
+     */
+    public ImapFuture<ImapAsyncResponse> stopIdle(@Nonnull final ImapAsyncSession session) throws ImapAsyncClientException {
+        final IdleEntry entry = entries.remove(session);
+        if (entry == null) {
+            throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED);
+        }
+        return entry.stop();
+    }
+
+    /**
+     * @param session the session
+     * @return true if the session is idling under this manager
+     */
+    public boolean isIdling(@Nonnull final ImapAsyncSession session) {
+        return entries.containsKey(session);
+    }
+
+    /**
+     * @return the number of sessions idling under this manager
+     */
+    public int getIdleSessionCount() {
+        return entries.size();
+    }
+
+    /**
+     * Stops the timer if it is created by this class. Sessions are not stopped from idling, but they are no longer renewed.
+     */
+    public void shutdown() {
+        if (isTimerOwned) {
+            timer.stop();
+        }
+    }
+
+    /**
+     * IDLE state of a session. It receives the untagged responses as the consumer of IDLE command, and renews IDLE as the timer task.
+     */
+    private final class IdleEntry implements Consumer<IMAPResponse>, TimerTask {
+
+        /** The idling session. */
+        private final ImapAsyncSession session;
+
+        /** Listener of the server responses. */
+        private final ImapIdleListener listener;
+
+        /** The IDLE command in progress. */
+        private IdleCommand command;
+
+        /** The scheduled renewal. */
+        private Timeout renewTimeout;
+
+        /** Flag whether DONE is sent for the IDLE command in progress. */
+        private boolean isDoneSent;
+
+        /** Future given to caller of stop, null if the entry is not stopped. */
+        private ImapFuture<ImapAsyncResponse> stopFuture;
+
+        /**
+         * Initializes a {@code IdleEntry}.
+         *
+         * @param session the session
+         * @param listener listener of the server responses
+         */
+        IdleEntry(@Nonnull final ImapAsyncSession session, @Nonnull final ImapIdleListener listener) {
+            this.session = session;
+            this.listener = listener;
+        }
+
+        /**
+         * Issues IDLE command and schedules its renewal.
+         *
+         * @throws ImapAsyncClientException when IDLE command cannot be sent
+         */
+        synchronized void issueIdle() throws ImapAsyncClientException {
+            command = new IdleCommand(this);
+            isDoneSent = false;
+            final ImapFuture<ImapAsyncResponse> future = session.execute(command);
+            renewTimeout = timer.newTimeout(this, renewIntervalMillis, TimeUnit.MILLISECONDS);
+            future.setExceptionCallback(new Consumer<Exception>() {
+                @Override
+                public void accept(final Exception cause) {
+                    failed(cause);
+                }
+            });
+            future.setDoneCallback(new Consumer<ImapAsyncResponse>() {
+                @Override
+                public void accept(final ImapAsyncResponse response) {
+                    idleDone(response);
+                }
+            });
+        }
+
+        /**
+         * Sends DONE so server completes IDLE command, and IDLE is issued again once it is completed.
+         *
+         * @param timeout the timeout of this task
+         */
+        @Override
+        public synchronized void run(final Timeout timeout) {
+            if (stopFuture != null || timeout != renewTimeout) {
+                return;
+            }
+            try {
+                isDoneSent = true;
+                session.terminateCommand(command);
+            } catch (final ImapAsyncClientException e) {
+                failed(e);
+            }
+        }
+
+        /**
+         * Stops idling, sending DONE unless it has been sent for renewal.
+         *
+         * @return the future done when server completes IDLE command
+         * @throws ImapAsyncClientException when DONE cannot be sent
+         */
+        synchronized ImapFuture<ImapAsyncResponse> stop() throws ImapAsyncClientException {
+            stopFuture = new ImapFuture<ImapAsyncResponse>();
+            renewTimeout.cancel();
+            if (!isDoneSent) {
+                isDoneSent = true;
+                session.terminateCommand(command);
+            }
+            return stopFuture;
+        }
+
+        /**
+         * Handles the completion of IDLE command, issuing IDLE again unless the entry is stopped.
+         *
+         * @param response the responses of IDLE command
+         */
+        private synchronized void idleDone(@Nonnull final ImapAsyncResponse response) {
+            renewTimeout.cancel();
+            if (stopFuture != null) {
+                stopFuture.done(response);
+                return;
+            }
+
+            IMAPResponse tagged = null;
+            for (final IMAPResponse r : response.getResponseLines()) {
+                tagged = r;
+            }
+            if (tagged == null || !tagged.isOK()) { // server does not allow IDLE, issuing it again would not help
+                failed(new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED));
+                return;
+            }
+            try {
+                issueIdle();
+            } catch (final ImapAsyncClientException e) {
+                failed(e);
+            }
+        }
+
+        /**
+         * Handles the failure of IDLE, removing the entry from the manager.
+         *
+         * @param cause the cause of the failure
+         */
+        private synchronized void failed(@Nonnull final Exception cause) {
+            renewTimeout.cancel();
+            entries.remove(session, this);
+            if (stopFuture != null) {
+                stopFuture.done(cause);
+                return;
+            }
+            listener.onIdleFailed(session, cause);
+        }
+
+        /**
+         * Gives the untagged server response to the listener by its type.
+         *
+         * @param response the server response
+         */
+        @Override
+        public void accept(final IMAPResponse response) {
+            if (response.keyEquals(EXISTS)) {
+                listener.onExists(session, response.getNumber());
+            } else if (response.keyEquals(EXPUNGE)) {
+                listener.onExpunge(session, response.getNumber());
+            } else if (response.keyEquals(FETCH)) {
+                final FetchResponse fetchResponse;
+                try {
+                    fetchResponse = new FetchResponse(response);
+                } catch (final IOException | ProtocolException e) {
+                    listener.onOtherResponse(session, response);
+                    return;
+                }
+                listener.onFetch(session, fetchResponse);
+            } else {
+                listener.onOtherResponse(session, response);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.yahoo.imapnio.async.client;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Class for the reconnect settings of {@link ImapResilientSession}.
+ */
+public final class ImapReconnectConfig {
+
+    /** Default maximum number of connection attempts for one reconnect. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /** Default backoff before the second attempt in milliseconds. */
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 200;
+
+    /** Default maximum backoff between attempts in milliseconds. */
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30000;
+
+    /** Default maximum number of times a command safe to retry is sent again after reconnecting. */
+    public static final int DEFAULT_MAX_COMMAND_RETRIES = 2;
+
+    /** Maximum number of connection attempts for one reconnect. */
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    /** Backoff before the second attempt in milliseconds, doubled for every further attempt. */
+    private long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+
+    /** Maximum backoff between attempts in milliseconds. */
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+
+    /** Maximum number of times a command safe to retry is sent again after reconnecting. */
+    private int maxCommandRetries = DEFAULT_MAX_COMMAND_RETRIES;
+
+    /**
+     * @return maximum number of connection attempts for one reconnect
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Sets the maximum number of connection attempts for one reconnect, after which the waiting commands fail.
+     *
+     * @param maxAttempts maximum number of attempts, at least 1
+     * @throws ImapAsyncClientException when the number is less than 1
+     */
+    public void setMaxAttempts(final int maxAttempts) throws ImapAsyncClientException {
+        if (maxAttempts < 1) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @return backoff before the second attempt in milliseconds
+     */
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * Sets the backoff before the second attempt in milliseconds. It is doubled for every further attempt up to the maximum backoff, and a random
+     * jitter of up to half of it is taken off, so that sessions disconnected together do not reconnect together.
+     *
+     * @param initialBackoffMillis backoff in milliseconds, not negative
+     * @throws ImapAsyncClientException when the backoff is negative
+     */
+    public void setInitialBackoffMillis(final long initialBackoffMillis) throws ImapAsyncClientException {
+        if (initialBackoffMillis < 0) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * @return maximum backoff between attempts in milliseconds
+     */
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * Sets the maximum backoff between attempts in milliseconds.
+     *
+     * @param maxBackoffMillis maximum backoff in milliseconds, not negative
+     * @throws ImapAsyncClientException when the backoff is negative
+     */
+    public void setMaxBackoffMillis(final long maxBackoffMillis) throws ImapAsyncClientException {
+        if (maxBackoffMillis < 0) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * @return maximum number of times a command safe to retry is sent again after reconnecting
+     */
+    public int getMaxCommandRetries() {
+        return maxCommandRetries;
+    }
+
+    /**
+     * Sets the maximum number of times a command safe to retry is sent again after reconnecting, 0 to fail such commands like others.
+     *
+     * @param maxCommandRetries maximum number of retries, not negative
+     * @throws ImapAsyncClientException when the number is negative
+     */
+    public void setMaxCommandRetries(final int maxCommandRetries) throws ImapAsyncClientException {
+        if (maxCommandRetries < 0) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.maxCommandRetries = maxCommandRetries;
+    }
+}
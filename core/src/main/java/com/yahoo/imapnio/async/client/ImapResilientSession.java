@@ -0,0 +1,1024 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.mail.search.SearchException;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.MODSEQ;
+import com.sun.mail.imap.protocol.MailboxInfo;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.EnableCommand;
+import com.yahoo.imapnio.async.request.ExamineFolderCommand;
+import com.yahoo.imapnio.async.request.ImapCommandType;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.SelectFolderCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+import com.yahoo.imapnio.async.response.ImapResponseMapper;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * This class is an {@link ImapAsyncSession} that reconnects when its connection fails, so transient network failures do not surface as failed
+ * sessions to be rebuilt by the application. Upon a connection failure, a new session is created with jittered exponential backoff between attempts,
+ * authenticated with a new command from the given supplier, since commands are cleaned up once done, and brought back to the state of the failed
+ * one: QRESYNC is enabled again if it was enabled, and the selected folder is selected or examined again. The folder is selected with QRESYNC
+ * parameters, the UIDVALIDITY and the highest mod-sequence seen, only when a restore listener is set through
+ * {@link #setRestoreListener(Consumer)}, since the changes missed are reported by the VANISHED (EARLIER) and FETCH responses of the restore;
+ * otherwise caller resynchronizes the folder itself after a reconnect, see {@link #getReconnectCount()}.
+ *
+ * <p>
+ * Commands that give the same result when sent again, such as UID FETCH, UID SEARCH, UID STORE, NOOP, LIST or STATUS, are sent again once
+ * reconnected, up to {@link ImapReconnectConfig#getMaxCommandRetries()} times; untagged responses given to a response consumer before the failure
+ * may hence be given again. Other commands fail with the connection failure, unless they were not sent at all, while the reconnect happens in the
+ * background for the commands to follow. The state restored is the one set through {@link #connect()} and the commands executed through this
+ * session; commands run by {@link #executeAll(List)} or a publisher are not sent again.
+ * </p>
+ */
+public class ImapResilientSession implements ImapAsyncSession {
+
+    /** Capability of quick folder resynchronization, RFC 7162. */
+    private static final String QRESYNC = "QRESYNC";
+
+    /** Response code giving the highest mod-sequence of the selected folder. */
+    private static final String HIGHESTMODSEQ = "HIGHESTMODSEQ";
+
+    /** Key of the untagged FETCH response. */
+    private static final String FETCH = "FETCH";
+
+    /** Key of the untagged response to ENABLE. */
+    private static final String ENABLED = "ENABLED";
+
+    /** Maximum number of times the initial backoff is doubled, keeping it from overflowing. */
+    private static final int MAX_BACKOFF_DOUBLINGS = 30;
+
+    /** Types of the commands giving the same result when sent again after reconnecting, given the selected folder is restored. */
+    private static final Set<ImapCommandType> RETRYABLE_TYPES = Collections.unmodifiableSet(EnumSet.of(ImapCommandType.CAPABILITY,
+            ImapCommandType.CHECK, ImapCommandType.EXAMINE_FOLDER, ImapCommandType.ID, ImapCommandType.LIST, ImapCommandType.LSUB,
+            ImapCommandType.NAMESPACE, ImapCommandType.NOOP, ImapCommandType.SELECT_FOLDER, ImapCommandType.STATUS, ImapCommandType.UID_FETCH,
+            ImapCommandType.UID_SEARCH, ImapCommandType.UID_STORE_FLAGS));
+
+    /** Failures of the connection, after which the session is reconnected, including connects rejected by admission control. */
+    private static final Set<FailureType> CONNECTION_FAILURES = Collections.unmodifiableSet(EnumSet.of(
+            FailureType.CONNECTION_FAILED_WITHOUT_OK_RESPONSE, FailureType.CONNECTION_FAILED_EXCEPTION, FailureType.CONNECTION_FAILED_EXCEED_IDLE_MAX,
+            FailureType.CONNECTION_INACTIVE, FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, FailureType.WRITE_TO_SERVER_FAILED,
+            FailureType.CHANNEL_EXCEPTION, FailureType.CHANNEL_DISCONNECTED, FailureType.CHANNEL_TIMEOUT, FailureType.CONNECTION_CIRCUIT_OPEN,
+            FailureType.CONNECTION_THROTTLED));
+
+    /** Callback ignoring the result of a reconnect. */
+    private static final Consumer<Exception> IGNORE_RESULT = new Consumer<Exception>() {
+        @Override
+        public void accept(final Exception cause) {
+        }
+    };
+
+    /** Subscription given to subscribers failed before subscribing. */
+    private static final ImapResponseSubscription NO_SUBSCRIPTION = new ImapResponseSubscription() {
+        @Override
+        public void request(final long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    /**
+     * Failure of a connect whose authentication server rejected, giving the rejection to {@link #connect()} and failing the waiting commands.
+     */
+    private static final class AuthenticationRejectedException extends ImapAsyncClientException {
+
+        /** Required for serialization. */
+        private static final long serialVersionUID = 1L;
+
+        /** The response rejecting the authentication. */
+        private final transient ImapAsyncResponse response;
+
+        /**
+         * Initializes a {@code AuthenticationRejectedException}.
+         *
+         * @param response the response rejecting the authentication
+         */
+        AuthenticationRejectedException(@Nonnull final ImapAsyncResponse response) {
+            super(FailureType.RECONNECT_FAILED);
+            this.response = response;
+        }
+    }
+
+    /**
+     * A command safe to retry, whose cleanup is deferred till it is not sent again.
+     */
+    private static final class RetryableRequest implements ImapRequest {
+
+        /** The command. */
+        private final ImapRequest command;
+
+        /**
+         * Initializes a {@code RetryableRequest}.
+         *
+         * @param command the command
+         */
+        RetryableRequest(@Nonnull final ImapRequest command) {
+            this.command = command;
+        }
+
+        @Override
+        public boolean isCommandLineDataSensitive() {
+            return command.isCommandLineDataSensitive();
+        }
+
+        @Override
+        public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
+            return command.getCommandLineBytes(alloc);
+        }
+
+        @Override
+        public String getCommandLine() throws ImapAsyncClientException {
+            return command.getCommandLine();
+        }
+
+        @Override
+        public ImapCommandType getCommandType() {
+            return command.getCommandType();
+        }
+
+        @Override
+        public String getDebugData() {
+            return command.getDebugData();
+        }
+
+        @Override
+        public ConcurrentLinkedQueue<IMAPResponse> getStreamingResponsesQueue() {
+            return command.getStreamingResponsesQueue();
+        }
+
+        @Override
+        public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse, @Nonnull final ByteBufAllocator alloc)
+                throws ImapAsyncClientException {
+            return command.getNextCommandLineAfterContinuation(serverResponse, alloc);
+        }
+
+        @Override
+        public ByteBuf getTerminateCommandLine(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
+            return command.getTerminateCommandLine(alloc);
+        }
+
+        @Override
+        public void cleanup() {
+            // cleaned up by release() once the command is not sent again
+        }
+
+        /**
+         * Cleans up the command.
+         */
+        void release() {
+            command.cleanup();
+        }
+    }
+
+    /**
+     * A command executed through this session, sent again after reconnecting when it is safe to.
+     */
+    private final class CommandRun {
+
+        /** The command given by caller. */
+        private final ImapRequest command;
+
+        /** The request sent to server, wrapping the command if it is safe to retry. */
+        private final ImapRequest request;
+
+        /** Consumer of the untagged responses, null to keep them in the response. */
+        private final Consumer<IMAPResponse> responseConsumer;
+
+        /** Folder name of SELECT or EXAMINE, taken before the command is cleaned up, null for other commands. */
+        private final String folderName;
+
+        /** Future given to caller. */
+        private final ImapFuture<ImapAsyncResponse> future = new ImapFuture<ImapAsyncResponse>();
+
+        /** Number of times the command has been sent again. */
+        private int retries;
+
+        /**
+         * Initializes a {@code CommandRun}.
+         *
+         * @param command the command
+         * @param responseConsumer consumer of the untagged responses, null to keep them in the response
+         */
+        CommandRun(@Nonnull final ImapRequest command, @Nullable final Consumer<IMAPResponse> responseConsumer) {
+            this.command = command;
+            this.request = RETRYABLE_TYPES.contains(command.getCommandType()) ? new RetryableRequest(command) : command;
+            this.responseConsumer = responseConsumer;
+            if (command instanceof SelectFolderCommand) {
+                folderName = ((SelectFolderCommand) command).getFolderName();
+            } else if (command instanceof ExamineFolderCommand) {
+                folderName = ((ExamineFolderCommand) command).getFolderName();
+            } else {
+                folderName = null;
+            }
+        }
+
+        /**
+         * Sends the command with the current session, connecting first if not connected yet.
+         *
+         * @param isFirst true if the command is sent for the first time, in which case failures other than of connection are thrown
+         * @throws ImapAsyncClientException when the command is not allowed in the first time
+         */
+        void send(final boolean isFirst) throws ImapAsyncClientException {
+            final ImapAsyncSession current = session;
+            if (current == null) {
+                awaitReconnect(null, new Consumer<Exception>() {
+                    @Override
+                    public void accept(final Exception cause) {
+                        resend(cause);
+                    }
+                });
+                return;
+            }
+            final ImapFuture<ImapAsyncResponse> sent;
+            try {
+                sent = (responseConsumer != null) ? current.execute(request, new Consumer<IMAPResponse>() {
+                    @Override
+                    public void accept(final IMAPResponse r) {
+                        trackModSeq(r);
+                        responseConsumer.accept(r);
+                    }
+                }) : current.execute(request);
+            } catch (final ImapAsyncClientException e) {
+                if (!isConnectionFailure(e)) {
+                    if (isFirst) {
+                        runs.remove(command);
+                        throw e;
+                    }
+                    complete(e);
+                    return;
+                }
+                retryAfterReconnect(current, e); // not sent, so it can be sent once reconnected whether or not it is safe to retry
+                return;
+            }
+            sent.setExceptionCallback(new Consumer<Exception>() {
+                @Override
+                public void accept(final Exception cause) {
+                    if (request != command && isConnectionFailure(cause)) {
+                        retryAfterReconnect(current, cause);
+                    } else {
+                        if (isConnectionFailure(cause)) { // reconnects for the commands to follow
+                            awaitReconnect(current, IGNORE_RESULT);
+                        }
+                        complete(cause);
+                    }
+                }
+            });
+            sent.setDoneCallback(new Consumer<ImapAsyncResponse>() {
+                @Override
+                public void accept(final ImapAsyncResponse response) {
+                    for (final IMAPResponse r : response.getResponseLines()) {
+                        trackModSeq(r);
+                    }
+                    trackState(command.getCommandType(), folderName, response);
+                    runs.remove(command);
+                    release();
+                    future.done(response);
+                }
+            });
+        }
+
+        /**
+         * Sends the command again once reconnected, or fails it if it has been sent again too many times.
+         *
+         * @param failedSession the session the command failed in
+         * @param cause the failure
+         */
+        private void retryAfterReconnect(@Nonnull final ImapAsyncSession failedSession, @Nonnull final Exception cause) {
+            if (retries >= reconnectConfig.getMaxCommandRetries()) {
+                awaitReconnect(failedSession, IGNORE_RESULT);
+                complete(cause);
+                return;
+            }
+            retries++;
+            awaitReconnect(failedSession, new Consumer<Exception>() {
+                @Override
+                public void accept(final Exception reconnectCause) {
+                    resend(reconnectCause);
+                }
+            });
+        }
+
+        /**
+         * Sends the command again after the reconnect, or fails it with the cause of the failed reconnect.
+         *
+         * @param reconnectCause cause of the failed reconnect, null if reconnected
+         */
+        private void resend(@Nullable final Exception reconnectCause) {
+            if (reconnectCause != null) {
+                complete(reconnectCause);
+                return;
+            }
+            try {
+                send(false);
+            } catch (final ImapAsyncClientException e) {
+                complete(e);
+            }
+        }
+
+        /**
+         * Fails the command.
+         *
+         * @param cause the failure
+         */
+        private void complete(@Nonnull final Exception cause) {
+            runs.remove(command);
+            release();
+            future.done(cause);
+        }
+
+        /**
+         * Cleans up the command if it is safe to retry, which the session does not clean up.
+         */
+        private void release() {
+            if (request != command) {
+                ((RetryableRequest) request).release();
+            }
+        }
+    }
+
+    /** The client creating the sessions. */
+    private final ImapAsyncClient client;
+
+    /** IMAP server URI, null if connecting through an endpoint group. */
+    @Nullable
+    private final URI serverUri;
+
+    /** Endpoints to connect to, null if connecting to the server URI. */
+    @Nullable
+    private final ImapEndpointGroup endpointGroup;
+
+    /** Configuration of the sessions. */
+    private final ImapAsyncSessionConfig config;
+
+    /** Server Name Indication names, null if not used. */
+    private final List<String> sniNames;
+
+    /** Reconnect settings. */
+    private final ImapReconnectConfig reconnectConfig;
+
+    /** Supplier of a new authentication command for every session created. */
+    private final Supplier<ImapRequest> authenticator;
+
+    /** Context of the sessions, given to client upon creating them. */
+    private final Object sessionCtx;
+
+    /** Lock guarding the reconnect state. */
+    private final Object lock = new Object();
+
+    /** Callbacks waiting for the reconnect in progress, given null when reconnected or the cause of failure, guarded by lock. */
+    private final List<Consumer<Exception>> reconnectWaiters = new ArrayList<Consumer<Exception>>();
+
+    /** Commands in progress, for terminating them. */
+    private final ConcurrentHashMap<ImapRequest, CommandRun> runs = new ConcurrentHashMap<ImapRequest, CommandRun>();
+
+    /** Number of reconnects started after a connection failure. */
+    private final AtomicLong reconnectCount = new AtomicLong();
+
+    /** Flag whether a reconnect is in progress, guarded by lock. */
+    private boolean isReconnecting;
+
+    /** The session in use, null before connected. */
+    private volatile ImapAsyncSession session;
+
+    /** Response of the authentication of the session in use. */
+    private volatile ImapAsyncResponse authResponse;
+
+    /** Flag whether a session has been authenticated, after which a rejected authentication fails the reconnect. */
+    private volatile boolean isAuthenticated;
+
+    /** Debugging mode given to the sessions. */
+    private volatile DebugMode debugMode = DebugMode.DEBUG_OFF;
+
+    /** IDLE mode given to the sessions. */
+    private volatile IdleMode idleMode = IdleMode.IDLE_MANUAL;
+
+    /** Name of the selected folder, null if none. */
+    private volatile String selectedFolder;
+
+    /** Flag whether the selected folder is examined, that is, read-only. */
+    private volatile boolean isReadOnly;
+
+    /** UIDVALIDITY of the selected folder, -1 if not known. */
+    private volatile long uidValidity = -1;
+
+    /** Highest mod-sequence of the selected folder seen in its HIGHESTMODSEQ response codes and FETCH responses, -1 if not known. */
+    private volatile long highestModSeq = -1;
+
+    /** Flag whether QRESYNC has been enabled. */
+    private volatile boolean isQResyncEnabled;
+
+    /** Listener given the responses restoring the state of a new session, null if not set. */
+    private volatile Consumer<ImapAsyncResponse> restoreListener;
+
+    /** Flag whether this session is closed. */
+    private volatile boolean isClosed;
+
+    /**
+     * Initializes a {@code ImapResilientSession}, which connects when {@link #connect()} is called or the first command is executed.
+     *
+     * @param client the client creating the sessions
+     * @param serverUri IMAP server URI
+     * @param config configuration of the sessions
+     * @param sniNames Server Name Indication names, null if not used
+     * @param reconnectConfig reconnect settings
+     * @param authenticator supplier of a new authentication command for every session created, such as LOGIN or AUTHENTICATE
+     * @param sessionCtx context of the sessions, its toString() will be called upon displaying exception or debug logging
+     */
+    public ImapResilientSession(@Nonnull final ImapAsyncClient client, @Nonnull final URI serverUri, @Nonnull final ImapAsyncSessionConfig config,
+            @Nullable final List<String> sniNames, @Nonnull final ImapReconnectConfig reconnectConfig,
+            @Nonnull final Supplier<ImapRequest> authenticator, @Nonnull final Object sessionCtx) {
+        this.client = client;
+        this.serverUri = serverUri;
+        this.endpointGroup = null;
+        this.config = config;
+        this.sniNames = sniNames;
+        this.reconnectConfig = reconnectConfig;
+        this.authenticator = authenticator;
+        this.sessionCtx = sessionCtx;
+    }
+
+    /**
+     * Initializes a {@code ImapResilientSession} connecting through an endpoint group, which connects when {@link #connect()} is called or the first
+     * command is executed. Every attempt connects to the endpoint chosen by the group, and the first attempt after a connection failure is delayed
+     * randomly by up to the initial backoff, so the sessions of a lost endpoint do not all reconnect at once.
+     *
+     * @param client the client creating the sessions
+     * @param endpointGroup endpoints to connect to
+     * @param config configuration of the sessions
+     * @param sniNames Server Name Indication names, null if not used
+     * @param reconnectConfig reconnect settings
+     * @param authenticator supplier of a new authentication command for every session created, such as LOGIN or AUTHENTICATE
+     * @param sessionCtx context of the sessions, its toString() will be called upon displaying exception or debug logging
+     */
+    public ImapResilientSession(@Nonnull final ImapAsyncClient client, @Nonnull final ImapEndpointGroup endpointGroup,
+            @Nonnull final ImapAsyncSessionConfig config, @Nullable final List<String> sniNames, @Nonnull final ImapReconnectConfig reconnectConfig,
+            @Nonnull final Supplier<ImapRequest> authenticator, @Nonnull final Object sessionCtx) {
+        this.client = client;
+        this.serverUri = null;
+        this.endpointGroup = endpointGroup;
+        this.config = config;
+        this.sniNames = sniNames;
+        this.reconnectConfig = reconnectConfig;
+        this.authenticator = authenticator;
+        this.sessionCtx = sessionCtx;
+    }
+
+    /**
+     * Connects and authenticates, with the same attempts and backoff as a reconnect. The future completes with the authentication response, which
+     * caller checks for being OK; it completes right away if already connected. A session whose authentication is rejected is closed, so a later
+     * call connects again, with new credentials from the supplier for example.
+     *
+     * @return the future of the authentication response
+     */
+    public ImapFuture<ImapAsyncResponse> connect() {
+        final ImapFuture<ImapAsyncResponse> future = new ImapFuture<ImapAsyncResponse>();
+        awaitReconnect(null, new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                if (cause instanceof AuthenticationRejectedException) {
+                    future.done(((AuthenticationRejectedException) cause).response);
+                } else if (cause != null) {
+                    future.done(cause);
+                } else {
+                    future.done(authResponse);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return the number of reconnects started after a connection failure
+     */
+    public long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    /**
+     * @return the name of the selected folder, which is restored upon reconnect, null if none
+     */
+    @Nullable
+    public String getSelectedFolder() {
+        return selectedFolder;
+    }
+
+    /**
+     * Sets the listener given the response lines of the commands restoring the state after a reconnect, ENABLE and SELECT or EXAMINE, before any
+     * command is sent with the new session. With the listener set, the folder is selected with QRESYNC parameters when QRESYNC is enabled and the
+     * folder had UIDVALIDITY and mod-sequence, hence the VANISHED (EARLIER) and FETCH responses it is given report the changes missed while
+     * disconnected. If the UIDVALIDITY in the response differs from the one before, or the folder was selected without QRESYNC parameters, caller
+     * resynchronizes the folder in full. The listener is called on the I/O thread of the session, hence it should not block.
+     *
+     * @param listener the listener, null to select the folder without QRESYNC parameters
+     */
+    public void setRestoreListener(@Nullable final Consumer<ImapAsyncResponse> listener) {
+        this.restoreListener = listener;
+    }
+
+    /**
+     * Waits for the session failed in to be replaced, reconnecting if no reconnect is in progress.
+     *
+     * @param failedSession the session that failed, null if not connected yet
+     * @param waiter callback given null when reconnected, or the cause of failure
+     */
+    private void awaitReconnect(@Nullable final ImapAsyncSession failedSession, @Nonnull final Consumer<Exception> waiter) {
+        if (isClosed) {
+            waiter.accept(new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL));
+            return;
+        }
+        final boolean isReplaced;
+        final boolean isStarting;
+        synchronized (lock) {
+            isReplaced = !isReconnecting && session != failedSession;
+            isStarting = !isReplaced && !isReconnecting;
+            if (!isReplaced) {
+                reconnectWaiters.add(waiter);
+                isReconnecting = true;
+            }
+            if (isStarting) {
+                session = null; // closed below, commands wait for the new one
+            }
+        }
+        if (isReplaced) {
+            waiter.accept(null);
+            return;
+        }
+        if (isStarting) {
+            if (failedSession != null) {
+                reconnectCount.incrementAndGet();
+                failedSession.close();
+                if (endpointGroup != null) { // spreads the reconnects of the sessions of a lost endpoint
+                    scheduleConnect(1, ThreadLocalRandom.current().nextLong(reconnectConfig.getInitialBackoffMillis() + 1));
+                    return;
+                }
+            }
+            connect(1);
+        }
+    }
+
+    /**
+     * Creates a session and restores the state.
+     *
+     * @param attempt the number of the attempt, starting from 1
+     */
+    private void connect(final int attempt) {
+        if (isClosed) {
+            finishReconnect(null, new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL));
+            return;
+        }
+        final ImapFuture<ImapAsyncCreateSessionResponse> createFuture = (endpointGroup != null)
+                ? client.createSession(endpointGroup, config, null, sniNames, debugMode, sessionCtx)
+                : client.createSession(serverUri, config, null, sniNames, debugMode, sessionCtx, null);
+        createFuture.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                retryOrFail(attempt, null, cause);
+            }
+        });
+        createFuture.setDoneCallback(new Consumer<ImapAsyncCreateSessionResponse>() {
+            @Override
+            public void accept(final ImapAsyncCreateSessionResponse response) {
+                authenticate(attempt, response.getSession());
+            }
+        });
+    }
+
+    /**
+     * Authenticates the new session.
+     *
+     * @param attempt the number of the attempt
+     * @param newSession the new session
+     */
+    private void authenticate(final int attempt, @Nonnull final ImapAsyncSession newSession) {
+        newSession.setDebugMode(debugMode);
+        newSession.setIdleMode(idleMode);
+        final ImapFuture<ImapAsyncResponse> authFuture;
+        try {
+            authFuture = newSession.execute(authenticator.get());
+        } catch (final ImapAsyncClientException e) {
+            retryOrFail(attempt, newSession, e);
+            return;
+        }
+        authFuture.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                retryOrFail(attempt, newSession, cause);
+            }
+        });
+        authFuture.setDoneCallback(new Consumer<ImapAsyncResponse>() {
+            @Override
+            public void accept(final ImapAsyncResponse response) {
+                if (!isOk(response)) { // trying again does not help, and the unauthenticated session is not kept for commands
+                    newSession.close();
+                    finishReconnect(null, isAuthenticated ? new ImapAsyncClientException(FailureType.RECONNECT_FAILED)
+                            : new AuthenticationRejectedException(response)); // first connect, caller checks the response
+                    return;
+                }
+                authResponse = response;
+                isAuthenticated = true;
+                restoreState(attempt, newSession);
+            }
+        });
+    }
+
+    /**
+     * Enables QRESYNC again if it was enabled, and selects the folder selected in the failed session.
+     *
+     * @param attempt the number of the attempt
+     * @param newSession the new session
+     */
+    private void restoreState(final int attempt, @Nonnull final ImapAsyncSession newSession) {
+        final List<ImapRequest> commands = new ArrayList<ImapRequest>();
+        if (isQResyncEnabled) {
+            commands.add(new EnableCommand(new String[] { QRESYNC }));
+        }
+        final Consumer<ImapAsyncResponse> listener = restoreListener;
+        final String folder = selectedFolder;
+        if (folder != null) {
+            // the changes reported by QRESYNC parameters are only known to caller through the listener
+            final boolean isResync = listener != null && isQResyncEnabled && uidValidity > 0 && highestModSeq > 0;
+            if (isReadOnly) {
+                commands.add(isResync ? new ExamineFolderCommand(folder, uidValidity, highestModSeq) : new ExamineFolderCommand(folder));
+            } else {
+                commands.add(isResync ? new SelectFolderCommand(folder, uidValidity, highestModSeq) : new SelectFolderCommand(folder));
+            }
+        }
+        if (commands.isEmpty()) {
+            finishReconnect(newSession, null);
+            return;
+        }
+        final ImapFuture<ImapAsyncResponse> restoreFuture;
+        try {
+            restoreFuture = newSession.executeAll(commands);
+        } catch (final ImapAsyncClientException e) {
+            retryOrFail(attempt, newSession, e);
+            return;
+        }
+        restoreFuture.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                retryOrFail(attempt, newSession, cause);
+            }
+        });
+        restoreFuture.setDoneCallback(new Consumer<ImapAsyncResponse>() {
+            @Override
+            public void accept(final ImapAsyncResponse response) {
+                if (folder != null) {
+                    trackState(isReadOnly ? ImapCommandType.EXAMINE_FOLDER : ImapCommandType.SELECT_FOLDER, folder, response);
+                }
+                if (listener != null) {
+                    listener.accept(response);
+                }
+                finishReconnect(newSession, null);
+            }
+        });
+    }
+
+    /**
+     * Tries again after the backoff upon a connection failure, or fails the reconnect.
+     *
+     * @param attempt the number of the failed attempt
+     * @param newSession the session created in the attempt, null if none
+     * @param cause the failure
+     */
+    private void retryOrFail(final int attempt, @Nullable final ImapAsyncSession newSession, @Nonnull final Exception cause) {
+        if (newSession != null) {
+            newSession.close();
+        }
+        if (isClosed || attempt >= reconnectConfig.getMaxAttempts() || !isConnectionFailure(cause)) {
+            finishReconnect(null, new ImapAsyncClientException(FailureType.RECONNECT_FAILED, cause));
+            return;
+        }
+        scheduleConnect(attempt + 1, getBackoffMillis(attempt));
+    }
+
+    /**
+     * Schedules an attempt to create a session and restore the state.
+     *
+     * @param attempt the number of the attempt
+     * @param delayMillis the delay in milliseconds
+     */
+    private void scheduleConnect(final int attempt, final long delayMillis) {
+        client.getEventLoopGroup().schedule(new Runnable() {
+            @Override
+            public void run() {
+                connect(attempt);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the backoff after a failed attempt: the initial backoff doubled for every further attempt, capped by the maximum, less a random jitter
+     * of up to half of it.
+     *
+     * @param attempt the number of the failed attempt
+     * @return the backoff in milliseconds
+     */
+    long getBackoffMillis(final int attempt) {
+        final long backoff = Math.min(reconnectConfig.getMaxBackoffMillis(),
+                reconnectConfig.getInitialBackoffMillis() << Math.min(attempt - 1, MAX_BACKOFF_DOUBLINGS));
+        return backoff - ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * Ends the reconnect, giving the result to the waiting callbacks.
+     *
+     * @param newSession the new session, null if failed
+     * @param cause cause of the failure, null if reconnected
+     */
+    private void finishReconnect(@Nullable final ImapAsyncSession newSession, @Nullable final Exception cause) {
+        Exception result = cause;
+        if (isClosed && newSession != null) { // closed while reconnecting
+            newSession.close();
+            result = new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL);
+        }
+        final List<Consumer<Exception>> waiters;
+        synchronized (lock) {
+            if (result == null) {
+                session = newSession;
+            }
+            isReconnecting = false;
+            waiters = new ArrayList<Consumer<Exception>>(reconnectWaiters);
+            reconnectWaiters.clear();
+        }
+        for (final Consumer<Exception> waiter : waiters) {
+            waiter.accept(result);
+        }
+    }
+
+    /**
+     * Keeps track of the session state changed by a completed command.
+     *
+     * @param type type of the command
+     * @param folderName folder name of SELECT or EXAMINE, null for other commands
+     * @param response response of the command
+     */
+    private void trackState(@Nonnull final ImapCommandType type, @Nullable final String folderName, @Nonnull final ImapAsyncResponse response) {
+        switch (type) {
+        case SELECT_FOLDER:
+        case EXAMINE_FOLDER:
+            // a failed SELECT or EXAMINE leaves no folder selected, RFC 3501
+            selectedFolder = isOk(response) ? folderName : null;
+            isReadOnly = type == ImapCommandType.EXAMINE_FOLDER;
+            uidValidity = -1;
+            highestModSeq = -1;
+            if (selectedFolder != null) {
+                final Collection<IMAPResponse> lines = response.getResponseLines();
+                try {
+                    final MailboxInfo info = new ImapResponseMapper().readValue(lines.toArray(new IMAPResponse[lines.size()]), MailboxInfo.class);
+                    uidValidity = info.uidvalidity;
+                    highestModSeq = info.highestmodseq;
+                } catch (final ImapAsyncClientException | ParsingException e) {
+                    // folder is selected again without QRESYNC
+                }
+            }
+            break;
+        case CLOSE:
+        case UNSELECT:
+            if (isOk(response)) {
+                selectedFolder = null;
+            }
+            break;
+        case ENABLE:
+            for (final IMAPResponse r : response.getResponseLines()) {
+                if (r.keyEquals(ENABLED) && r.getRest().toUpperCase(Locale.ENGLISH).contains(QRESYNC)) {
+                    isQResyncEnabled = true;
+                }
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Raises the highest mod-sequence of the selected folder to the one in a HIGHESTMODSEQ response code or a FETCH response, if higher. Responses
+     * are only parsed when QRESYNC is enabled and the folder has mod-sequences, and copies are parsed so the response can still be read from the
+     * start.
+     *
+     * @param r a response of a command
+     */
+    private void trackModSeq(@Nonnull final IMAPResponse r) {
+        if (!isQResyncEnabled || selectedFolder == null || highestModSeq < 0) {
+            return;
+        }
+        long modSeq = -1;
+        try {
+            if (r.isOK()) {
+                final IMAPResponse copy = new IMAPResponse(r);
+                copy.skipSpaces();
+                if (copy.readByte() == '[' && HIGHESTMODSEQ.equalsIgnoreCase(copy.readAtom())) {
+                    modSeq = copy.readLong();
+                }
+            } else if (r.isUnTagged() && r.keyEquals(FETCH)) {
+                final MODSEQ item = new FetchResponse(new IMAPResponse(r)).getItem(MODSEQ.class);
+                if (item != null) {
+                    modSeq = item.modseq;
+                }
+            }
+        } catch (final IOException | ProtocolException e) {
+            return; // not a response giving the mod-sequence
+        }
+        if (modSeq > highestModSeq) {
+            highestModSeq = modSeq;
+        }
+    }
+
+    /**
+     * @param response the response of a command
+     * @return true if the tagged response, the last one, is OK
+     */
+    private static boolean isOk(@Nonnull final ImapAsyncResponse response) {
+        IMAPResponse last = null;
+        for (final IMAPResponse r : response.getResponseLines()) {
+            last = r;
+        }
+        return last != null && last.isTagged() && last.isOK();
+    }
+
+    /**
+     * @param cause the failure
+     * @return true if the failure is of the connection
+     */
+    private static boolean isConnectionFailure(@Nonnull final Exception cause) {
+        return cause instanceof ImapAsyncClientException && CONNECTION_FAILURES.contains(((ImapAsyncClientException) cause).getFaiureType());
+    }
+
+    /**
+     * @return the session in use
+     * @throws ImapAsyncClientException when not connected or closed
+     */
+    private ImapAsyncSession getSession() throws ImapAsyncClientException {
+        final ImapAsyncSession current = session;
+        if (current == null || isClosed) {
+            throw new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL);
+        }
+        return current;
+    }
+
+    /**
+     * Gives the result of a future of the session in use to a new future, reconnecting for the commands to follow upon a connection failure.
+     *
+     * @param current the session in use
+     * @param future the future of the session
+     * @return the new future
+     */
+    private ImapFuture<ImapAsyncResponse> watch(@Nonnull final ImapAsyncSession current, @Nonnull final ImapFuture<ImapAsyncResponse> future) {
+        final ImapFuture<ImapAsyncResponse> watched = new ImapFuture<ImapAsyncResponse>();
+        future.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                if (isConnectionFailure(cause)) {
+                    awaitReconnect(current, IGNORE_RESULT);
+                }
+                watched.done(cause);
+            }
+        });
+        future.setDoneCallback(new Consumer<ImapAsyncResponse>() {
+            @Override
+            public void accept(final ImapAsyncResponse response) {
+                watched.done(response);
+            }
+        });
+        return watched;
+    }
+
+    @Override
+    public <T> ImapFuture<ImapAsyncResponse> startCompression() throws ImapAsyncClientException, SearchException, IOException {
+        final ImapAsyncSession current = getSession();
+        return watch(current, current.startCompression());
+    }
+
+    @Override
+    public void setDebugMode(final DebugMode newMode) {
+        debugMode = newMode;
+        final ImapAsyncSession current = session;
+        if (current != null) {
+            current.setDebugMode(newMode);
+        }
+    }
+
+    @Override
+    public void setIdleMode(@Nonnull final IdleMode newMode) {
+        idleMode = newMode;
+        final ImapAsyncSession current = session;
+        if (current != null) {
+            current.setIdleMode(newMode);
+        }
+    }
+
+    @Override
+    public <T> ImapFuture<ImapAsyncResponse> execute(@Nonnull final ImapRequest command) throws ImapAsyncClientException {
+        return executeCommand(command, null);
+    }
+
+    @Override
+    public ImapFuture<ImapAsyncResponse> execute(@Nonnull final ImapRequest command, @Nonnull final Consumer<IMAPResponse> responseConsumer)
+            throws ImapAsyncClientException {
+        return executeCommand(command, responseConsumer);
+    }
+
+    /**
+     * Executes the command, sending it again after reconnecting when it is safe to.
+     *
+     * @param command the command
+     * @param responseConsumer consumer of the untagged responses, null to keep them in the response
+     * @return the future of the command
+     * @throws ImapAsyncClientException when this session is closed or the command is not allowed
+     */
+    private ImapFuture<ImapAsyncResponse> executeCommand(@Nonnull final ImapRequest command, @Nullable final Consumer<IMAPResponse> responseConsumer)
+            throws ImapAsyncClientException {
+        if (isClosed) {
+            throw new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL);
+        }
+        final CommandRun run = new CommandRun(command, responseConsumer);
+        runs.put(command, run);
+        run.send(true);
+        return run.future;
+    }
+
+    @Override
+    public ImapFuture<ImapAsyncResponse> executeAll(@Nonnull final List<? extends ImapRequest> commands) throws ImapAsyncClientException {
+        final ImapAsyncSession current = getSession();
+        return watch(current, current.executeAll(commands));
+    }
+
+    @Override
+    public ImapFuture<ImapAsyncResponse> executeAll(@Nonnull final List<? extends ImapRequest> commands,
+            @Nonnull final Consumer<IMAPResponse> responseConsumer) throws ImapAsyncClientException {
+        final ImapAsyncSession current = getSession();
+        return watch(current, current.executeAll(commands, responseConsumer));
+    }
+
+    @Override
+    public ImapResponsePublisher createPublisher(@Nonnull final ImapRequest command) {
+        final ImapAsyncSession current = session;
+        if (current != null && !isClosed) {
+            return current.createPublisher(command);
+        }
+        return new ImapResponsePublisher() {
+            @Override
+            public void subscribe(@Nonnull final ImapResponseSubscriber subscriber) {
+                subscriber.onSubscribe(NO_SUBSCRIPTION);
+                subscriber.onError(new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL));
+            }
+        };
+    }
+
+    @Override
+    public ImapWireStats getWireStats() {
+        final ImapAsyncSession current = session;
+        return current != null ? current.getWireStats() : new ImapWireStats(0, 0, 0, 0);
+    }
+
+    @Override
+    public ImapFuture<ImapAsyncResponse> terminateCommand(@Nonnull final ImapRequest command) throws ImapAsyncClientException {
+        final ImapAsyncSession current = getSession();
+        final CommandRun run = runs.get(command);
+        if (run == null) {
+            return watch(current, current.terminateCommand(command));
+        }
+        current.terminateCommand(run.request); // the future of the command is already given to caller
+        return run.future;
+    }
+
+    @Override
+    public ImapFuture<Boolean> close() {
+        isClosed = true;
+        final ImapAsyncSession current = session;
+        if (current != null) {
+            return current.close();
+        }
+        final ImapFuture<Boolean> future = new ImapFuture<Boolean>();
+        future.done(Boolean.TRUE);
+        return future;
+    }
+}
@@ -0,0 +1,18 @@
+package com.yahoo.imapnio.async.client;
+
+import javax.annotation.Nonnull;
+
+/**
+ * This interface publishes the untagged responses of a command to a subscriber as it demands them, modeled after the Reactive Streams publisher.
+ * The command is sent to server when the subscriber subscribes. Reading from server is paused while the subscriber does not keep up, so the
+ * number of responses held in memory stays bounded regardless of how fast server sends.
+ */
+public interface ImapResponsePublisher {
+
+    /**
+     * Subscribes to the responses and sends the command. A publisher accepts one subscriber only, others are given an error.
+     *
+     * @param subscriber the subscriber
+     */
+    void subscribe(@Nonnull ImapResponseSubscriber subscriber);
+}
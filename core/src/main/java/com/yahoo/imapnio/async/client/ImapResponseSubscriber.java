@@ -0,0 +1,42 @@
+package com.yahoo.imapnio.async.client;
+
+import javax.annotation.Nonnull;
+
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+/**
+ * This interface receives the untagged responses of a command from {@link ImapResponsePublisher}, no more than requested through its
+ * {@link ImapResponseSubscription}. Methods are called serially, and should not block since they are usually called on the I/O thread of the
+ * session.
+ */
+public interface ImapResponseSubscriber {
+
+    /**
+     * Called once before any other method, giving the subscription to request responses with.
+     *
+     * @param subscription the subscription
+     */
+    void onSubscribe(@Nonnull ImapResponseSubscription subscription);
+
+    /**
+     * Called for each untagged response, as requested.
+     *
+     * @param response the untagged response
+     */
+    void onNext(@Nonnull IMAPResponse response);
+
+    /**
+     * Called when the command fails. No more method is called afterwards.
+     *
+     * @param cause the cause of the failure
+     */
+    void onError(@Nonnull Exception cause);
+
+    /**
+     * Called when the command is done and all its untagged responses are given. No more method is called afterwards.
+     *
+     * @param response the continuation and tagged responses of the command
+     */
+    void onComplete(@Nonnull ImapAsyncResponse response);
+}
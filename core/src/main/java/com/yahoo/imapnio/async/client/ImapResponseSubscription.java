@@ -0,0 +1,19 @@
+package com.yahoo.imapnio.async.client;
+
+/**
+ * This interface lets a {@link ImapResponseSubscriber} signal its demand of responses to {@link ImapResponsePublisher}.
+ */
+public interface ImapResponseSubscription {
+
+    /**
+     * Requests more responses. Demand accumulates, and reading from server resumes once the buffered responses are given.
+     *
+     * @param n the number of responses to add to the demand, positive
+     */
+    void request(long n);
+
+    /**
+     * Cancels the subscription. The command still runs to its end on server since IMAP cannot abort it, but its responses are dropped.
+     */
+    void cancel();
+}
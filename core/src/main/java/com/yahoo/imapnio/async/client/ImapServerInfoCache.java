@@ -0,0 +1,253 @@
+package com.yahoo.imapnio.async.client;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.sun.mail.iap.ParsingException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.Namespaces;
+import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.response.ImapResponseMapper;
+
+/**
+ * This class caches the capabilities and namespaces of IMAP servers, keyed by server URI, so sessions to a server cluster advertising the same
+ * values can skip the CAPABILITY and NAMESPACE round trips. Entries expire after the configured time to live. All entries of a server are
+ * invalidated when its greeting, or a capability response seen by a session, differs from the cached one.
+ *
+ * <p>
+ * {@link ImapAsyncClient} only validates the greetings against this cache. Sessions do not fill it in: callers put the capability and namespaces
+ * they obtain with {@link #putCapability(URI, Capability)} and {@link #putNamespaces(URI, Namespaces)}, and give the capability a session obtains
+ * later, such as in the response to LOGIN or AUTHENTICATE, to {@link #validateCapability(URI, Capability)}.
+ * </p>
+ */
+public final class ImapServerInfoCache {
+
+    /** Capability response code in server greeting. */
+    private static final String CAPABILITY_CODE = "CAPABILITY";
+
+    /** Separator between scheme, host and port in the cache key. */
+    private static final String KEY_SEP = ":";
+
+    /**
+     * A cached value along with its expiry time.
+     *
+     * @param <T> the type of the value
+     */
+    private static final class CachedValue<T> {
+
+        /** The cached value. */
+        private final T value;
+
+        /** Time in milliseconds when the value expires. */
+        private final long expireAtMillis;
+
+        /**
+         * Initializes a {@code CachedValue}.
+         *
+         * @param value the value
+         * @param expireAtMillis time in milliseconds when the value expires
+         */
+        CachedValue(@Nonnull final T value, final long expireAtMillis) {
+            this.value = value;
+            this.expireAtMillis = expireAtMillis;
+        }
+    }
+
+    /** Time to live of the entries in milliseconds. */
+    private final long ttlMillis;
+
+    /** Clock to check expiry with. */
+    private final Clock clock;
+
+    /** Capabilities given in server greetings. */
+    private final ConcurrentHashMap<String, CachedValue<Capability>> greetingCapas = new ConcurrentHashMap<String, CachedValue<Capability>>();
+
+    /** Capabilities given to sessions, usually after authentication. */
+    private final ConcurrentHashMap<String, CachedValue<Capability>> capas = new ConcurrentHashMap<String, CachedValue<Capability>>();
+
+    /** Namespaces of servers. */
+    private final ConcurrentHashMap<String, CachedValue<Namespaces>> namespaces = new ConcurrentHashMap<String, CachedValue<Namespaces>>();
+
+    /**
+     * Initializes a {@code ImapServerInfoCache}.
+     *
+     * @param ttlMillis time to live of the entries in milliseconds
+     */
+    public ImapServerInfoCache(final long ttlMillis) {
+        this(ttlMillis, Clock.systemUTC());
+    }
+
+    /**
+     * Initializes a {@code ImapServerInfoCache} with the given clock.
+     *
+     * @param ttlMillis time to live of the entries in milliseconds
+     * @param clock clock to check expiry with
+     */
+    ImapServerInfoCache(final long ttlMillis, @Nonnull final Clock clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @param serverUri the server URI
+     * @return the cache key of the server, made of scheme, host and port
+     */
+    private static String toKey(@Nonnull final URI serverUri) {
+        final String scheme = serverUri.getScheme() != null ? serverUri.getScheme().toLowerCase(Locale.ENGLISH) : "";
+        final String host = serverUri.getHost() != null ? serverUri.getHost().toLowerCase(Locale.ENGLISH) : "";
+        return scheme + KEY_SEP + host + KEY_SEP + serverUri.getPort();
+    }
+
+    /**
+     * Gets the value of the server if it is not expired, removing it when it is.
+     *
+     * @param <T> the type of the value
+     * @param cache the cache to look up
+     * @param key the cache key of the server
+     * @return the value, null if not found or expired
+     */
+    @Nullable
+    private <T> T get(@Nonnull final ConcurrentHashMap<String, CachedValue<T>> cache, @Nonnull final String key) {
+        final CachedValue<T> cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (clock.millis() >= cached.expireAtMillis) {
+            cache.remove(key, cached);
+            return null;
+        }
+        return cached.value;
+    }
+
+    /**
+     * Puts the value of the server.
+     *
+     * @param <T> the type of the value
+     * @param cache the cache to put to
+     * @param key the cache key of the server
+     * @param value the value
+     */
+    private <T> void put(@Nonnull final ConcurrentHashMap<String, CachedValue<T>> cache, @Nonnull final String key, @Nonnull final T value) {
+        cache.put(key, new CachedValue<T>(value, clock.millis() + ttlMillis));
+    }
+
+    /**
+     * Returns the cached capability of the server, which callers can give to commands requiring a {@code Capability} instead of sending
+     * CAPABILITY command.
+     *
+     * @param serverUri the server URI
+     * @return the capability, null if not cached or expired
+     */
+    @Nullable
+    public Capability getCapability(@Nonnull final URI serverUri) {
+        return get(capas, toKey(serverUri));
+    }
+
+    /**
+     * Caches the capability of the server.
+     *
+     * @param serverUri the server URI
+     * @param capability the capability
+     */
+    public void putCapability(@Nonnull final URI serverUri, @Nonnull final Capability capability) {
+        put(capas, toKey(serverUri), capability);
+    }
+
+    /**
+     * Returns the cached namespaces of the server.
+     *
+     * @param serverUri the server URI
+     * @return the namespaces, null if not cached or expired
+     */
+    @Nullable
+    public Namespaces getNamespaces(@Nonnull final URI serverUri) {
+        return get(namespaces, toKey(serverUri));
+    }
+
+    /**
+     * Caches the namespaces of the server.
+     *
+     * @param serverUri the server URI
+     * @param ns the namespaces
+     */
+    public void putNamespaces(@Nonnull final URI serverUri, @Nonnull final Namespaces ns) {
+        put(namespaces, toKey(serverUri), ns);
+    }
+
+    /**
+     * Compares the capability a session obtained from the server with the cached one, invalidating all entries of the server when they differ. It is
+     * not called by the client, callers give it the capability their sessions obtain.
+     *
+     * @param serverUri the server URI
+     * @param capability the capability obtained by the session
+     * @return true if the cached capability is the same or none is cached; false if entries were invalidated
+     */
+    public boolean validateCapability(@Nonnull final URI serverUri, @Nonnull final Capability capability) {
+        final String key = toKey(serverUri);
+        final Capability cached = get(capas, key);
+        if (cached == null || cached.equals(capability)) {
+            return true;
+        }
+        invalidate(key);
+        return false;
+    }
+
+    /**
+     * Compares the capabilities in the server greeting with the ones in the previous greeting, invalidating all entries of the server when they
+     * differ. Greeting without capabilities is ignored.
+     *
+     * @param serverUri the server URI
+     * @param greeting the server greeting
+     * @return true if the greeting capabilities are the same as before or unknown; false if entries were invalidated
+     */
+    public boolean validateGreeting(@Nonnull final URI serverUri, @Nonnull final IMAPResponse greeting) {
+        final IMAPResponse code = new IMAPResponse(greeting); // shares the bytes of the greeting, which is still read from the start by caller
+        code.skipSpaces();
+        if (code.readByte() != '[' || !CAPABILITY_CODE.equalsIgnoreCase(code.readAtom())) {
+            return true;
+        }
+        final Capability capability;
+        try {
+            // parses a copy so the greeting given to caller can still be read from the start
+            capability = new ImapResponseMapper().readValue(new IMAPResponse[] { new IMAPResponse(greeting) }, Capability.class);
+        } catch (final ImapAsyncClientException | ParsingException e) {
+            return true;
+        }
+
+        final String key = toKey(serverUri);
+        final Capability cached = get(greetingCapas, key);
+        put(greetingCapas, key, capability);
+        if (cached == null || cached.equals(capability)) {
+            return true;
+        }
+        capas.remove(key);
+        namespaces.remove(key);
+        return false;
+    }
+
+    /**
+     * Invalidates all entries of the server.
+     *
+     * @param serverUri the server URI
+     */
+    public void invalidate(@Nonnull final URI serverUri) {
+        invalidate(toKey(serverUri));
+    }
+
+    /**
+     * Invalidates all entries of the server.
+     *
+     * @param key the cache key of the server
+     */
+    private void invalidate(@Nonnull final String key) {
+        greetingCapas.remove(key);
+        capas.remove(key);
+        namespaces.remove(key);
+    }
+}
@@ -0,0 +1,294 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+import io.netty.util.concurrent.EventExecutor;
+
+/**
+ * This class schedules the dispatch of server responses fairly among the tenants sharing the event loops of a client. In every tick of an event
+ * loop, the responses of a tenant are dispatched till the tenant has used up its budget of bytes or responses on that loop; the remaining ones are
+ * queued and dispatched in the next ticks, after the event loop has served the I/O of other channels, with tenants taking turns. Heavy workloads
+ * such as large FETCH exports are thus spread over ticks instead of delaying interactive sessions of other tenants.
+ *
+ * <p>
+ * The budgets are kept per event loop and only accessed on the event loop, hence without locking. Queue depth of tenants can be read from any
+ * thread. Tenants are only kept while they have usage in the current tick or queued responses, so tenants coming and going do not pile up.
+ * </p>
+ */
+public final class ImapTenantScheduler {
+
+    /**
+     * A dispatcher with responses queued because its tenant used up its budget.
+     */
+    public interface PendingDispatch {
+        /**
+         * Dispatches the queued responses as long as the tenant budget allows.
+         *
+         * @return true if responses are still queued, false if all are dispatched
+         */
+        boolean dispatchPending();
+    }
+
+    /**
+     * Budget used by a tenant in the current tick of an event loop, and its dispatchers waiting for the next tick.
+     */
+    private static final class TenantState {
+
+        /** Tick of the event loop the usage belongs to. */
+        private long tick;
+
+        /** Bytes dispatched in the tick. */
+        private long bytes;
+
+        /** Responses dispatched in the tick. */
+        private int responses;
+
+        /** Dispatchers waiting for budget, in arrival order. */
+        private final ArrayDeque<PendingDispatch> waiting = new ArrayDeque<PendingDispatch>();
+
+        /** Flag whether the tenant is in the turns of the event loop. */
+        private boolean isInTurn;
+    }
+
+    /**
+     * Scheduling state of one event loop.
+     */
+    private final class LoopState implements Runnable {
+
+        /** The event loop. */
+        private final EventExecutor loop;
+
+        /** Current tick, advanced when the tick ends. */
+        private long tick;
+
+        /** Flag whether the end of the current tick has been scheduled. */
+        private boolean isTickEndScheduled;
+
+        /** States of the tenants served by this loop. */
+        private final HashMap<String, TenantState> tenants = new HashMap<String, TenantState>();
+
+        /** Tenants with waiting dispatchers, taking turns in this order. */
+        private final ArrayDeque<TenantState> turns = new ArrayDeque<TenantState>();
+
+        /**
+         * Initializes a {@code LoopState}.
+         *
+         * @param loop the event loop
+         */
+        LoopState(@Nonnull final EventExecutor loop) {
+            this.loop = loop;
+        }
+
+        /**
+         * @param tenantId the tenant id
+         * @return the state of the tenant, with its usage reset if it belongs to a past tick
+         */
+        private TenantState getTenant(@Nonnull final String tenantId) {
+            TenantState tenant = tenants.get(tenantId);
+            if (tenant == null) {
+                tenant = new TenantState();
+                tenants.put(tenantId, tenant);
+            }
+            if (tenant.tick != tick) {
+                tenant.tick = tick;
+                tenant.bytes = 0;
+                tenant.responses = 0;
+            }
+            return tenant;
+        }
+
+        /**
+         * Schedules the end of the current tick. Being a scheduled task, it runs in the next round of the event loop, after the I/O of that round.
+         */
+        private void scheduleTickEnd() {
+            if (!isTickEndScheduled) {
+                isTickEndScheduled = true;
+                loop.schedule(this, 0, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Ends the current tick, dropping the tenants without waiting dispatchers, then lets every tenant with waiting dispatchers dispatch within
+         * its new budget, starting with the tenant after the one that started in the last tick.
+         */
+        @Override
+        public void run() {
+            isTickEndScheduled = false;
+            tick++;
+            // usage of the ended tick no longer counts, so only tenants with waiting dispatchers are kept
+            final Iterator<TenantState> it = tenants.values().iterator();
+            while (it.hasNext()) {
+                if (!it.next().isInTurn) {
+                    it.remove();
+                }
+            }
+            final int numOfTurns = turns.size();
+            for (int i = 0; i < numOfTurns; i++) {
+                final TenantState tenant = turns.poll();
+                while (!tenant.waiting.isEmpty() && !tenant.waiting.peek().dispatchPending()) {
+                    tenant.waiting.poll();
+                }
+                if (tenant.waiting.isEmpty()) {
+                    tenant.isInTurn = false;
+                } else {
+                    turns.add(tenant);
+                }
+            }
+            if (!turns.isEmpty()) {
+                scheduleTickEnd();
+            }
+        }
+    }
+
+    /** Adds up queue depths, removing the tenant when nothing is queued for it any more. */
+    private static final BiFunction<Long, Long, Long> ADD_QUEUE_DEPTH = new BiFunction<Long, Long, Long>() {
+        @Override
+        public Long apply(final Long depth, final Long delta) {
+            final long sum = depth + delta;
+            return sum != 0 ? sum : null;
+        }
+    };
+
+    /** Maximum bytes of responses dispatched per tenant in one tick of an event loop. */
+    private final long maxBytesPerTick;
+
+    /** Maximum number of responses dispatched per tenant in one tick of an event loop. */
+    private final int maxResponsesPerTick;
+
+    /** Scheduling states of the event loops. */
+    private final ConcurrentHashMap<EventExecutor, LoopState> loops = new ConcurrentHashMap<EventExecutor, LoopState>();
+
+    /** Number of responses queued per tenant, over all event loops, for the tenants with queued responses only. */
+    private final ConcurrentHashMap<String, Long> queueDepths = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Initializes a {@code ImapTenantScheduler}.
+     *
+     * @param maxBytesPerTick maximum bytes of responses dispatched per tenant in one tick of an event loop
+     * @param maxResponsesPerTick maximum number of responses dispatched per tenant in one tick of an event loop
+     * @throws ImapAsyncClientException when a budget is not positive
+     */
+    public ImapTenantScheduler(final long maxBytesPerTick, final int maxResponsesPerTick) throws ImapAsyncClientException {
+        if (maxBytesPerTick <= 0 || maxResponsesPerTick <= 0) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.maxBytesPerTick = maxBytesPerTick;
+        this.maxResponsesPerTick = maxResponsesPerTick;
+    }
+
+    /**
+     * @param loop the event loop
+     * @return the scheduling state of the event loop
+     */
+    private LoopState getLoop(@Nonnull final EventExecutor loop) {
+        LoopState state = loops.get(loop);
+        if (state == null) {
+            final LoopState newState = new LoopState(loop);
+            state = loops.putIfAbsent(loop, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Charges a response to the budget of its tenant if the tenant has budget left in the current tick. The first response of a tick is always
+     * allowed, however large, so every tenant makes progress. Must be called on the event loop.
+     *
+     * @param loop the event loop dispatching the response
+     * @param tenantId the tenant id
+     * @param bytes size of the response in bytes
+     * @return true if the response can be dispatched now, false if it has to wait for the next tick
+     */
+    public boolean tryDispatch(@Nonnull final EventExecutor loop, @Nonnull final String tenantId, final int bytes) {
+        final LoopState state = getLoop(loop);
+        final TenantState tenant = state.getTenant(tenantId);
+        if (tenant.responses >= maxResponsesPerTick || tenant.bytes >= maxBytesPerTick) {
+            return false;
+        }
+        tenant.responses++;
+        tenant.bytes += bytes;
+        state.scheduleTickEnd();
+        return true;
+    }
+
+    /**
+     * Lets a dispatcher with queued responses dispatch them in the next ticks, in turn with other tenants. Must be called on the event loop.
+     *
+     * @param loop the event loop of the dispatcher
+     * @param tenantId the tenant id
+     * @param dispatch the dispatcher
+     */
+    public void defer(@Nonnull final EventExecutor loop, @Nonnull final String tenantId, @Nonnull final PendingDispatch dispatch) {
+        final LoopState state = getLoop(loop);
+        final TenantState tenant = state.getTenant(tenantId);
+        tenant.waiting.add(dispatch);
+        if (!tenant.isInTurn) {
+            tenant.isInTurn = true;
+            state.turns.add(tenant);
+        }
+        state.scheduleTickEnd();
+    }
+
+    /**
+     * Updates the number of responses queued for a tenant. The tenant is dropped once nothing is queued for it.
+     *
+     * @param tenantId the tenant id
+     * @param delta the change of the number of queued responses
+     */
+    public void addQueueDepth(@Nonnull final String tenantId, final long delta) {
+        if (delta != 0) {
+            queueDepths.merge(tenantId, delta, ADD_QUEUE_DEPTH);
+        }
+    }
+
+    /**
+     * @param tenantId the tenant id
+     * @return the number of responses of the tenant queued for budget, over all event loops
+     */
+    public long getQueueDepth(@Nonnull final String tenantId) {
+        final Long depth = queueDepths.get(tenantId);
+        return depth != null ? depth : 0;
+    }
+
+    /**
+     * @return the number of responses queued for budget per tenant, over all event loops, for the tenants with queued responses
+     */
+    public Map<String, Long> getQueueDepths() {
+        return new HashMap<String, Long>(queueDepths);
+    }
+
+    /**
+     * @param loop the event loop
+     * @return the number of tenants the event loop keeps state for
+     */
+    int getTenantCount(@Nonnull final EventExecutor loop) {
+        return getLoop(loop).tenants.size();
+    }
+
+    /**
+     * @return maximum bytes of responses dispatched per tenant in one tick of an event loop
+     */
+    public long getMaxBytesPerTick() {
+        return maxBytesPerTick;
+    }
+
+    /**
+     * @return maximum number of responses dispatched per tenant in one tick of an event loop
+     */
+    public int getMaxResponsesPerTick() {
+        return maxResponsesPerTick;
+    }
+}
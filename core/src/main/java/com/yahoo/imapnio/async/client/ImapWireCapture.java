@@ -0,0 +1,265 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * This class captures the IMAP traffic of all sessions of a client into a fixed-size memory-mapped ring file, so the recent traffic is kept at
+ * near-zero cost and can be read back with {@link ImapWireCaptureDecoder} after an incident. Each frame is copied straight from its buffer into the
+ * mapped file without logging or string conversion; when the ring is full the oldest frames are overwritten. The file is overwritten when a capture
+ * is created on it, and it remains open until {@link #close()} is called, which is not done by the client.
+ *
+ * <p>
+ * The file starts with a header of {@link #FILE_HEADER_LEN} bytes: magic, ring capacity and the position after the last record. Records follow,
+ * aligned to {@link #ALIGNMENT} bytes: magic, record length, absolute position, timestamp, session id, type, flags and payload length, then the
+ * payload. A record that does not fit before the end of the ring is written at its start, after a padding record.
+ * </p>
+ */
+public final class ImapWireCapture implements Closeable {
+
+    /**
+     * Direction of a captured frame.
+     */
+    public enum Direction {
+        /** Frame received from server. */
+        INBOUND,
+        /** Frame sent to server. */
+        OUTBOUND
+    }
+
+    /** Magic number at the start of the file, "IMAPRING". */
+    static final long FILE_MAGIC = 0x494D415052494E47L;
+
+    /** Length of the file header. */
+    static final int FILE_HEADER_LEN = 64;
+
+    /** Offset of ring capacity in the file header. */
+    static final int CAPACITY_OFFSET = 8;
+
+    /** Offset of the position after the last record in the file header. */
+    static final int WRITE_POSITION_OFFSET = 16;
+
+    /** Magic number at the start of every record, "REC1". */
+    static final int RECORD_MAGIC = 0x52454331;
+
+    /** Length of the record header. */
+    static final int RECORD_HEADER_LEN = 40;
+
+    /** Offset of record length in the record header. */
+    static final int LENGTH_OFFSET = 4;
+
+    /** Offset of absolute position in the record header, which tells a record from the leftover of an overwritten one. */
+    static final int POSITION_OFFSET = 8;
+
+    /** Offset of timestamp in milliseconds in the record header. */
+    static final int TIMESTAMP_OFFSET = 16;
+
+    /** Offset of session id in the record header. */
+    static final int SESSION_ID_OFFSET = 24;
+
+    /** Offset of record type in the record header. */
+    static final int TYPE_OFFSET = 32;
+
+    /** Offset of flags in the record header. */
+    static final int FLAGS_OFFSET = 33;
+
+    /** Offset of payload length in the record header. */
+    static final int PAYLOAD_LEN_OFFSET = 36;
+
+    /** Alignment of records. */
+    static final int ALIGNMENT = 8;
+
+    /** Record type filling the end of the ring that the next record does not fit in. */
+    static final byte TYPE_PADDING = 0;
+
+    /** Record type of a frame received from server. */
+    static final byte TYPE_INBOUND = 1;
+
+    /** Record type of a frame sent to server. */
+    static final byte TYPE_OUTBOUND = 2;
+
+    /** Flag of a record whose payload is the debug data of a sensitive command instead of the frame. */
+    static final byte FLAG_REDACTED = 1;
+
+    /** Flag of a record whose payload is cut to the maximum payload length. */
+    static final byte FLAG_TRUNCATED = 2;
+
+    /** Minimum ring capacity. */
+    static final int MIN_CAPACITY = 4096;
+
+    /** Divisor of ring capacity giving the maximum payload length, so one large frame does not wipe out the ring. */
+    private static final int MAX_PAYLOAD_DIVISOR = 8;
+
+    /** The mapped file. */
+    private final MappedByteBuffer ring;
+
+    /** Capacity of the ring, excluding the file header. */
+    private final int capacity;
+
+    /** Maximum payload length of a record. */
+    private final int maxPayloadLen;
+
+    /** Absolute position after the last reserved record, growing past the capacity as the ring wraps. */
+    private final AtomicLong writePosition = new AtomicLong();
+
+    /** Flag whether the capture is closed. */
+    private volatile boolean isClosed;
+
+    /**
+     * Initializes a {@code ImapWireCapture}, creating or overwriting the ring file.
+     *
+     * @param file the ring file
+     * @param capacityBytes capacity of the ring in bytes, excluding the file header, rounded down to a multiple of {@link #ALIGNMENT}
+     * @throws IOException when the file cannot be created or mapped
+     * @throws ImapAsyncClientException when the capacity is below {@link #MIN_CAPACITY}
+     */
+    public ImapWireCapture(@Nonnull final Path file, final int capacityBytes) throws IOException, ImapAsyncClientException {
+        if (capacityBytes < MIN_CAPACITY) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.capacity = capacityBytes - capacityBytes % ALIGNMENT;
+        this.maxPayloadLen = capacity / MAX_PAYLOAD_DIVISOR;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(0); // drops the records of the previous capture
+            raf.setLength(FILE_HEADER_LEN + capacity);
+            ring = raf.getChannel().map(MapMode.READ_WRITE, 0, FILE_HEADER_LEN + capacity);
+        }
+        ring.putLong(0, FILE_MAGIC);
+        ring.putInt(CAPACITY_OFFSET, capacity);
+        ring.putLong(WRITE_POSITION_OFFSET, 0);
+    }
+
+    /**
+     * Captures a frame, copying the readable bytes of the buffer without changing its reader index.
+     *
+     * @param sessionId the session id
+     * @param direction direction of the frame
+     * @param frame the frame
+     */
+    public void capture(final long sessionId, @Nonnull final Direction direction, @Nonnull final ByteBuf frame) {
+        append(sessionId, direction, (byte) 0, frame);
+    }
+
+    /**
+     * Captures the debug data of a frame with sensitive data, such as credentials, in place of the frame.
+     *
+     * @param sessionId the session id
+     * @param direction direction of the frame
+     * @param debugData the data to capture instead of the frame
+     */
+    public void captureRedacted(final long sessionId, @Nonnull final Direction direction, @Nonnull final String debugData) {
+        append(sessionId, direction, FLAG_REDACTED, Unpooled.wrappedBuffer(debugData.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Appends a record to the ring.
+     *
+     * @param sessionId the session id
+     * @param direction direction of the frame
+     * @param flags flags of the record
+     * @param payload the payload
+     */
+    private void append(final long sessionId, @Nonnull final Direction direction, final byte flags, @Nonnull final ByteBuf payload) {
+        if (isClosed) {
+            return;
+        }
+        int payloadLen = payload.readableBytes();
+        byte recordFlags = flags;
+        if (payloadLen > maxPayloadLen) {
+            payloadLen = maxPayloadLen;
+            recordFlags |= FLAG_TRUNCATED;
+        }
+        final int recordLen = align(RECORD_HEADER_LEN + payloadLen);
+        final long position = reserve(recordLen);
+        final int offset = FILE_HEADER_LEN + (int) (position % capacity);
+
+        writeHeader(offset, recordLen, position);
+        ring.putLong(offset + TIMESTAMP_OFFSET, System.currentTimeMillis());
+        ring.putLong(offset + SESSION_ID_OFFSET, sessionId);
+        ring.put(offset + TYPE_OFFSET, direction == Direction.INBOUND ? TYPE_INBOUND : TYPE_OUTBOUND);
+        ring.put(offset + FLAGS_OFFSET, recordFlags);
+        ring.putInt(offset + PAYLOAD_LEN_OFFSET, payloadLen);
+        final ByteBuffer dst = ring.duplicate();
+        dst.limit(offset + RECORD_HEADER_LEN + payloadLen).position(offset + RECORD_HEADER_LEN);
+        payload.getBytes(payload.readerIndex(), dst);
+        ring.putInt(offset, RECORD_MAGIC); // written last so that a record is valid only once it is complete
+        ring.putLong(WRITE_POSITION_OFFSET, position + recordLen);
+    }
+
+    /**
+     * Reserves space for a record, skipping to the start of the ring when the record does not fit before its end. Writers of concurrent sessions
+     * reserve disjoint space, hence they do not block each other.
+     *
+     * @param recordLen length of the record
+     * @return the absolute position of the record
+     */
+    private long reserve(final int recordLen) {
+        while (true) {
+            final long current = writePosition.get();
+            final int remaining = capacity - (int) (current % capacity);
+            final long position = remaining < recordLen ? current + remaining : current;
+            if (writePosition.compareAndSet(current, position + recordLen)) {
+                if (position != current && remaining >= RECORD_HEADER_LEN) { // shorter space is skipped by decoder without a record
+                    final int offset = FILE_HEADER_LEN + capacity - remaining;
+                    writeHeader(offset, remaining, current);
+                    ring.put(offset + TYPE_OFFSET, TYPE_PADDING);
+                    ring.putInt(offset, RECORD_MAGIC);
+                }
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Writes the length and the position of a record.
+     *
+     * @param offset offset of the record in the file
+     * @param recordLen length of the record
+     * @param position absolute position of the record
+     */
+    private void writeHeader(final int offset, final int recordLen, final long position) {
+        ring.putInt(offset, 0); // invalidates the overwritten record until this one is complete
+        ring.putInt(offset + LENGTH_OFFSET, recordLen);
+        ring.putLong(offset + POSITION_OFFSET, position);
+    }
+
+    /**
+     * @param len the length
+     * @return the length rounded up to a multiple of {@link #ALIGNMENT}
+     */
+    private static int align(final int len) {
+        return (len + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @return capacity of the ring in bytes, excluding the file header
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Stops capturing and flushes the ring to the file.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        ring.putLong(WRITE_POSITION_OFFSET, writePosition.get());
+        ring.force();
+    }
+}
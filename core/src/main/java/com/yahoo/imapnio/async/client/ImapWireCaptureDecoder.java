@@ -0,0 +1,275 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.client.ImapWireCapture.Direction;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * This class reads back the ring file written by {@link ImapWireCapture}, oldest record first. It can be run as a tool taking the ring file and the
+ * text file to write the records to:
+ *
+ * <pre>
+ * java -cp imapnio.core.jar com.yahoo.imapnio.async.client.ImapWireCaptureDecoder ring.bin capture.txt
+ * </pre>
+ */
+public final class ImapWireCaptureDecoder {
+
+    /** Number of arguments of the tool. */
+    private static final int NUM_OF_ARGS = 2;
+
+    /** Record line of the text output: timestamp, session id, direction and flags. */
+    private static final String RECORD_LINE = "%s [%d] %s:%s%s ";
+
+    /** Client marker. */
+    private static final String CLIENT = "C";
+
+    /** Server marker. */
+    private static final String SERVER = "S";
+
+    /** Marker of redacted records. */
+    private static final String REDACTED = " (redacted)";
+
+    /** Marker of truncated records. */
+    private static final String TRUNCATED = " (truncated)";
+
+    /** Line separator of the text output. */
+    private static final String NEW_LINE = "\n";
+
+    /**
+     * A captured frame.
+     */
+    public static final class Record {
+
+        /** Time in milliseconds when the frame was captured. */
+        private final long timestampMillis;
+
+        /** Id of the session. */
+        private final long sessionId;
+
+        /** Direction of the frame. */
+        private final Direction direction;
+
+        /** Flag whether the payload is the debug data of a sensitive command. */
+        private final boolean isRedacted;
+
+        /** Flag whether the payload is cut. */
+        private final boolean isTruncated;
+
+        /** The captured bytes. */
+        private final byte[] payload;
+
+        /**
+         * Initializes a {@code Record}.
+         *
+         * @param timestampMillis time in milliseconds when the frame was captured
+         * @param sessionId id of the session
+         * @param direction direction of the frame
+         * @param isRedacted flag whether the payload is the debug data of a sensitive command
+         * @param isTruncated flag whether the payload is cut
+         * @param payload the captured bytes
+         */
+        Record(final long timestampMillis, final long sessionId, @Nonnull final Direction direction, final boolean isRedacted,
+                final boolean isTruncated, @Nonnull final byte[] payload) {
+            this.timestampMillis = timestampMillis;
+            this.sessionId = sessionId;
+            this.direction = direction;
+            this.isRedacted = isRedacted;
+            this.isTruncated = isTruncated;
+            this.payload = payload;
+        }
+
+        /**
+         * @return time in milliseconds when the frame was captured
+         */
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        /**
+         * @return id of the session
+         */
+        public long getSessionId() {
+            return sessionId;
+        }
+
+        /**
+         * @return direction of the frame
+         */
+        public Direction getDirection() {
+            return direction;
+        }
+
+        /**
+         * @return true if the payload is the debug data of a sensitive command instead of the frame
+         */
+        public boolean isRedacted() {
+            return isRedacted;
+        }
+
+        /**
+         * @return true if the payload is cut to the maximum payload length
+         */
+        public boolean isTruncated() {
+            return isTruncated;
+        }
+
+        /**
+         * @return the captured bytes
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * Private constructor to avoid constructing instance of this class.
+     */
+    private ImapWireCaptureDecoder() {
+    }
+
+    /**
+     * Reads the records in the ring file, oldest first.
+     *
+     * @param file the ring file
+     * @return the records
+     * @throws IOException when the file cannot be read
+     * @throws ImapAsyncClientException when the file is not a ring file
+     */
+    public static List<Record> read(@Nonnull final Path file) throws IOException, ImapAsyncClientException {
+        final ByteBuffer ring;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < ImapWireCapture.FILE_HEADER_LEN) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            ring = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final int capacity = ring.getInt(ImapWireCapture.CAPACITY_OFFSET);
+        if (ring.getLong(0) != ImapWireCapture.FILE_MAGIC || capacity <= 0 || ring.limit() < ImapWireCapture.FILE_HEADER_LEN + capacity) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+
+        final long writePosition = ring.getLong(ImapWireCapture.WRITE_POSITION_OFFSET);
+        final long start = writePosition <= capacity ? 0 : findOldest(ring, capacity, writePosition);
+        final List<Record> records = new ArrayList<Record>();
+        if (start < 0) {
+            return records;
+        }
+        long position = start;
+        // records written after the position in the header was last updated are read as well, till a record is missing or the ring is walked
+        while (position - start < capacity) {
+            final int ringOffset = (int) (position % capacity);
+            if (capacity - ringOffset < ImapWireCapture.RECORD_HEADER_LEN) { // the end of ring too short for a record
+                position += capacity - ringOffset;
+                continue;
+            }
+            final int offset = ImapWireCapture.FILE_HEADER_LEN + ringOffset;
+            final int recordLen = ring.getInt(offset + ImapWireCapture.LENGTH_OFFSET);
+            if (!isRecordAt(ring, offset, position) || recordLen < ImapWireCapture.RECORD_HEADER_LEN || recordLen > capacity - ringOffset) {
+                break;
+            }
+            final byte type = ring.get(offset + ImapWireCapture.TYPE_OFFSET);
+            if (type != ImapWireCapture.TYPE_PADDING) {
+                final int payloadLen = ring.getInt(offset + ImapWireCapture.PAYLOAD_LEN_OFFSET);
+                if (payloadLen < 0 || payloadLen > recordLen - ImapWireCapture.RECORD_HEADER_LEN) {
+                    break;
+                }
+                final byte[] payload = new byte[payloadLen];
+                final ByteBuffer src = ring.duplicate();
+                src.position(offset + ImapWireCapture.RECORD_HEADER_LEN);
+                src.get(payload);
+                final byte flags = ring.get(offset + ImapWireCapture.FLAGS_OFFSET);
+                final long sessionId = ring.getLong(offset + ImapWireCapture.SESSION_ID_OFFSET);
+                records.add(new Record(ring.getLong(offset + ImapWireCapture.TIMESTAMP_OFFSET), sessionId,
+                        type == ImapWireCapture.TYPE_INBOUND ? Direction.INBOUND : Direction.OUTBOUND, (flags & ImapWireCapture.FLAG_REDACTED) != 0,
+                        (flags & ImapWireCapture.FLAG_TRUNCATED) != 0, payload));
+            }
+            position += recordLen;
+        }
+        return records;
+    }
+
+    /**
+     * Finds the oldest record not overwritten in a wrapped ring, scanning the last lap before the write position for the first intact record.
+     *
+     * @param ring the ring file
+     * @param capacity capacity of the ring
+     * @param writePosition the position after the last record, as written in the file header
+     * @return the absolute position of the oldest record, -1 if none is found
+     */
+    private static long findOldest(@Nonnull final ByteBuffer ring, final int capacity, final long writePosition) {
+        final long writeOffset = writePosition % capacity;
+        final long alignedStart = writePosition - writeOffset + (writeOffset + ImapWireCapture.ALIGNMENT - 1) / ImapWireCapture.ALIGNMENT
+                * ImapWireCapture.ALIGNMENT;
+        // records of the previous lap start a capacity before the write position, those already overwritten by newer records are skipped
+        for (long position = alignedStart - capacity; position < alignedStart; position += ImapWireCapture.ALIGNMENT) {
+            final int ringOffset = (int) (position % capacity);
+            if (capacity - ringOffset >= ImapWireCapture.RECORD_HEADER_LEN
+                    && isRecordAt(ring, ImapWireCapture.FILE_HEADER_LEN + ringOffset, position)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param ring the ring file
+     * @param offset offset in the file
+     * @param position the absolute position expected
+     * @return true if a complete record of the position is at the offset
+     */
+    private static boolean isRecordAt(@Nonnull final ByteBuffer ring, final int offset, final long position) {
+        return offset + ImapWireCapture.RECORD_HEADER_LEN <= ring.limit() && ring.getInt(offset) == ImapWireCapture.RECORD_MAGIC
+                && ring.getLong(offset + ImapWireCapture.POSITION_OFFSET) == position;
+    }
+
+    /**
+     * Writes the records as text, one header line per record followed by the payload.
+     *
+     * @param records the records
+     * @param writer the writer to write to
+     * @throws IOException when writing fails
+     */
+    public static void write(@Nonnull final List<Record> records, @Nonnull final Writer writer) throws IOException {
+        for (final Record r : records) {
+            writer.write(String.format(RECORD_LINE, Instant.ofEpochMilli(r.getTimestampMillis()), r.getSessionId(),
+                    r.getDirection() == Direction.OUTBOUND ? CLIENT : SERVER, r.isRedacted() ? REDACTED : "", r.isTruncated() ? TRUNCATED : ""));
+            final String payload = new String(r.getPayload(), StandardCharsets.UTF_8);
+            writer.write(payload);
+            if (!payload.endsWith(NEW_LINE)) {
+                writer.write(NEW_LINE);
+            }
+        }
+    }
+
+    /**
+     * Decodes a ring file to a text file.
+     *
+     * @param args the ring file and the text file to write
+     * @throws IOException when the files cannot be read or written
+     * @throws ImapAsyncClientException when the arguments are missing or the file is not a ring file
+     */
+    public static void main(final String[] args) throws IOException, ImapAsyncClientException {
+        if (args.length != NUM_OF_ARGS) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        final List<Record> records = read(Paths.get(args[0]));
+        try (Writer writer = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            write(records, writer);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.yahoo.imapnio.async.client;
+
+/**
+ * This class is a snapshot of the bytes a session, or all sessions of a client, exchanged with the server. Socket bytes are counted next to the
+ * socket, including SSL overhead and compressed data; plain bytes are the IMAP data after SSL and COMPRESS=DEFLATE are removed. Comparing them gives
+ * what compression saves, net of SSL framing.
+ */
+public final class ImapWireStats {
+
+    /** Bytes read from the socket. */
+    private final long socketBytesRead;
+
+    /** Bytes written to the socket. */
+    private final long socketBytesWritten;
+
+    /** Plain bytes read, after decryption and decompression. */
+    private final long plainBytesRead;
+
+    /** Plain bytes written, before compression and encryption. */
+    private final long plainBytesWritten;
+
+    /**
+     * Initializes a {@code ImapWireStats}.
+     *
+     * @param socketBytesRead bytes read from the socket
+     * @param socketBytesWritten bytes written to the socket
+     * @param plainBytesRead plain bytes read, after decryption and decompression
+     * @param plainBytesWritten plain bytes written, before compression and encryption
+     */
+    public ImapWireStats(final long socketBytesRead, final long socketBytesWritten, final long plainBytesRead, final long plainBytesWritten) {
+        this.socketBytesRead = socketBytesRead;
+        this.socketBytesWritten = socketBytesWritten;
+        this.plainBytesRead = plainBytesRead;
+        this.plainBytesWritten = plainBytesWritten;
+    }
+
+    /**
+     * @return bytes read from the socket
+     */
+    public long getSocketBytesRead() {
+        return socketBytesRead;
+    }
+
+    /**
+     * @return bytes written to the socket
+     */
+    public long getSocketBytesWritten() {
+        return socketBytesWritten;
+    }
+
+    /**
+     * @return plain bytes read, after decryption and decompression
+     */
+    public long getPlainBytesRead() {
+        return plainBytesRead;
+    }
+
+    /**
+     * @return plain bytes written, before compression and encryption
+     */
+    public long getPlainBytesWritten() {
+        return plainBytesWritten;
+    }
+
+    /**
+     * @param plainBytes plain bytes
+     * @param socketBytes socket bytes
+     * @return ratio of plain bytes to socket bytes, 1 when nothing is counted on the socket
+     */
+    private static double ratio(final long plainBytes, final long socketBytes) {
+        return socketBytes == 0 ? 1.0d : (double) plainBytes / socketBytes;
+    }
+
+    /**
+     * @return ratio of plain bytes read to socket bytes read, above 1 when compression saves more than SSL costs
+     */
+    public double getReadCompressionRatio() {
+        return ratio(plainBytesRead, socketBytesRead);
+    }
+
+    /**
+     * @return ratio of plain bytes written to socket bytes written, above 1 when compression saves more than SSL costs
+     */
+    public double getWriteCompressionRatio() {
+        return ratio(plainBytesWritten, socketBytesWritten);
+    }
+
+    /**
+     * @return ratio of all plain bytes to all socket bytes, above 1 when compression saves more than SSL costs
+     */
+    public double getCompressionRatio() {
+        return ratio(plainBytesRead + plainBytesWritten, socketBytesRead + socketBytesWritten);
+    }
+}
@@ -0,0 +1,45 @@
+package com.yahoo.imapnio.async.data;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * This class provides the UIDs assigned by server to appended messages, given by the APPENDUID response code (RFC 4315). For a MULTIAPPEND
+ * (RFC 3502), the UIDs are in the order the messages were sent.
+ */
+public final class AppendUidResult {
+
+    /** UIDVALIDITY of the destination mailbox. */
+    private final long uidValidity;
+
+    /** UIDs of the appended messages. */
+    @Nonnull
+    private final List<Long> uids;
+
+    /**
+     * Initializes a {@code AppendUidResult} object.
+     *
+     * @param uidValidity UIDVALIDITY of the destination mailbox
+     * @param uids UIDs of the appended messages in the order the messages were sent
+     */
+    public AppendUidResult(final long uidValidity, @Nonnull final List<Long> uids) {
+        this.uidValidity = uidValidity;
+        this.uids = uids;
+    }
+
+    /**
+     * @return UIDVALIDITY of the destination mailbox
+     */
+    public long getUidValidity() {
+        return uidValidity;
+    }
+
+    /**
+     * @return UIDs of the appended messages in the order the messages were sent
+     */
+    @Nonnull
+    public List<Long> getUids() {
+        return uids;
+    }
+}
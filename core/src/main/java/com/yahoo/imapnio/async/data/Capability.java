@@ -1,16 +1,25 @@
 package com.yahoo.imapnio.async.data;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
 
 /**
- * This class provides the functionality to allow callers to obtain capabilities given by imap server.
+ * This class provides the functionality to allow callers to obtain capabilities given by imap server. Well-known capabilities are kept in an enum
+ * bitset, so checking them does not allocate. Values of capabilities, such as AUTH mechanisms, and capabilities that are not well-known are kept
+ * in a map.
  */
 public final class Capability {
 
-    /** Capability list. */
+    /** Well-known capabilities supported by server. */
+    private final EnumSet<KnownCapability> knownCapas;
+
+    /** Values of capabilities, and capabilities that are not well-known, keyed by upper case name. */
     private final Map<String, List<String>> capas;
 
     /**
@@ -19,9 +28,42 @@ public final class Capability {
      * @param capabilities map of capability name with its values if existing
      */
     public Capability(@Nonnull final Map<String, List<String>> capabilities) {
+        this.knownCapas = EnumSet.noneOf(KnownCapability.class);
+        this.capas = new HashMap<String, List<String>>();
+        for (final Map.Entry<String, List<String>> entry : capabilities.entrySet()) {
+            final KnownCapability known = KnownCapability.fromName(entry.getKey());
+            if (known == null) {
+                capas.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            knownCapas.add(known);
+            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                capas.put(known.getName(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Initializes the @{code Capability} class.
+     *
+     * @param knownCapabilities the well-known capabilities supported by server
+     * @param capabilities map of upper case capability name with its values, for capabilities having values and the ones not well-known
+     */
+    public Capability(@Nonnull final EnumSet<KnownCapability> knownCapabilities, @Nonnull final Map<String, List<String>> capabilities) {
+        this.knownCapas = knownCapabilities;
         this.capas = capabilities;
     }
 
+    /**
+     * Returns true if the well-known capability is supported from server; false otherwise.
+     *
+     * @param capa the capability to find
+     * @return true if the capability is supported from server
+     */
+    public boolean hasCapability(@Nonnull final KnownCapability capa) {
+        return knownCapas.contains(capa);
+    }
+
     /**
      * Returns true if the capability is supported from server; false otherwise.
      *
@@ -29,7 +71,11 @@ public final class Capability {
      * @return true if the capability is supported from server
      */
     public boolean hasCapability(@Nonnull final String capaName) {
-        return capas.containsKey(capaName.toUpperCase());
+        final KnownCapability known = KnownCapability.fromName(capaName);
+        if (known != null) {
+            return knownCapas.contains(known);
+        }
+        return capas.containsKey(capaName) || capas.containsKey(capaName.toUpperCase(Locale.ENGLISH));
     }
 
     /**
@@ -40,6 +86,33 @@ public final class Capability {
      * @return list of values for a specific capability name, List is immutable
      */
     public List<String> getCapability(@Nonnull final String capaName) {
-        return capas.get(capaName.toUpperCase());
+        final KnownCapability known = KnownCapability.fromName(capaName);
+        if (known != null) {
+            if (!knownCapas.contains(known)) {
+                return null;
+            }
+            final List<String> values = capas.get(known.getName());
+            return (values != null) ? values : Collections.<String>emptyList();
+        }
+        final List<String> values = capas.get(capaName);
+        return (values != null) ? values : capas.get(capaName.toUpperCase(Locale.ENGLISH));
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int hc = 1;
+        hc = prime * hc + knownCapas.hashCode();
+        hc = prime * hc + capas.hashCode();
+        return hc;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof Capability) {
+            final Capability o = (Capability) obj;
+            return knownCapas.equals(o.knownCapas) && capas.equals(o.capas);
+        }
+        return false;
     }
 }
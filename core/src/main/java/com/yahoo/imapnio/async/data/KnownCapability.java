@@ -0,0 +1,124 @@
+package com.yahoo.imapnio.async.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * This enum defines the well-known capabilities a server can advertise. For a capability having values, such as AUTH=PLAIN or COMPRESS=DEFLATE,
+ * the name is the part before the equal sign.
+ */
+public enum KnownCapability {
+    /** IMAP4rev1, RFC 3501. */
+    IMAP4REV1("IMAP4REV1"),
+    /** AUTH mechanisms, RFC 3501. */
+    AUTH("AUTH"),
+    /** STARTTLS, RFC 3501. */
+    STARTTLS("STARTTLS"),
+    /** LOGINDISABLED, RFC 3501. */
+    LOGINDISABLED("LOGINDISABLED"),
+    /** SASL initial client response, RFC 4959. */
+    SASL_IR("SASL-IR"),
+    /** Non-synchronizing literals, RFC 7888. */
+    LITERAL_PLUS("LITERAL+"),
+    /** Non-synchronizing literals up to 4096 bytes, RFC 7888. */
+    LITERAL_MINUS("LITERAL-"),
+    /** IDLE, RFC 2177. */
+    IDLE("IDLE"),
+    /** MOVE, RFC 6851. */
+    MOVE("MOVE"),
+    /** UIDPLUS, RFC 4315. */
+    UIDPLUS("UIDPLUS"),
+    /** MULTIAPPEND, RFC 3502. */
+    MULTIAPPEND("MULTIAPPEND"),
+    /** CONDSTORE, RFC 7162. */
+    CONDSTORE("CONDSTORE"),
+    /** QRESYNC, RFC 7162. */
+    QRESYNC("QRESYNC"),
+    /** COMPRESS, RFC 4978. */
+    COMPRESS("COMPRESS"),
+    /** ESEARCH, RFC 4731. */
+    ESEARCH("ESEARCH"),
+    /** ENABLE, RFC 5161. */
+    ENABLE("ENABLE"),
+    /** ID, RFC 2971. */
+    ID("ID"),
+    /** NAMESPACE, RFC 2342. */
+    NAMESPACE("NAMESPACE"),
+    /** UNSELECT, RFC 3691. */
+    UNSELECT("UNSELECT"),
+    /** CHILDREN, RFC 3348. */
+    CHILDREN("CHILDREN"),
+    /** SPECIAL-USE, RFC 6154. */
+    SPECIAL_USE("SPECIAL-USE"),
+    /** LIST-EXTENDED, RFC 5258. */
+    LIST_EXTENDED("LIST-EXTENDED"),
+    /** LIST-STATUS, RFC 5819. */
+    LIST_STATUS("LIST-STATUS"),
+    /** BINARY, RFC 3516. */
+    BINARY("BINARY"),
+    /** SORT, RFC 5256. */
+    SORT("SORT"),
+    /** THREAD, RFC 5256. */
+    THREAD("THREAD"),
+    /** QUOTA, RFC 2087. */
+    QUOTA("QUOTA"),
+    /** UTF8, RFC 6855. */
+    UTF8("UTF8"),
+    /** XLIST, legacy special folder listing. */
+    XLIST("XLIST");
+
+    /** All the values, kept so lookups do not clone the array from values(). */
+    private static final KnownCapability[] ALL = values();
+
+    /** Capabilities by their name. */
+    private static final Map<String, KnownCapability> BY_NAME = new HashMap<String, KnownCapability>();
+
+    static {
+        for (final KnownCapability capa : ALL) {
+            BY_NAME.put(capa.capaName, capa);
+        }
+    }
+
+    /** Capability name as sent by server, in upper case. */
+    private final String capaName;
+
+    /**
+     * Initializes a {@code KnownCapability}.
+     *
+     * @param capaName the capability name in upper case
+     */
+    KnownCapability(@Nonnull final String capaName) {
+        this.capaName = capaName;
+    }
+
+    /**
+     * @return the capability name as sent by server, in upper case
+     */
+    @Nonnull
+    public String getName() {
+        return capaName;
+    }
+
+    /**
+     * Finds the well-known capability with the given name, ignoring case, without allocating.
+     *
+     * @param name the capability name, without any value
+     * @return the capability, null if it is not a well-known one
+     */
+    @Nullable
+    public static KnownCapability fromName(@Nonnull final String name) {
+        final KnownCapability capa = BY_NAME.get(name);
+        if (capa != null) {
+            return capa;
+        }
+        for (final KnownCapability c : ALL) {
+            if (c.capaName.equalsIgnoreCase(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+}
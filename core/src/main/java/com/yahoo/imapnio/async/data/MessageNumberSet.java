@@ -229,32 +229,67 @@ public final class MessageNumberSet {
         // remove duplicates
         final Set<MessageNumberSet> elems = new LinkedHashSet<>(Arrays.asList(msgsets));
 
-        int i = 0; // msgset index
         final StringBuilder s = new StringBuilder();
-        final int size = elems.size();
-        long start, end;
-
         for (final MessageNumberSet elem : elems) {
-            start = elem.start;
-            end = elem.end;
-
-            if (elem.seqType == SequenceType.LAST_MESSAGE_ONLY) {
-                s.append('*');
-            } else if (elem.seqType == SequenceType.LAST_MESSAGE_END) {
-                s.append(start).append(':').append('*');
-            } else if (end > start) {
-                s.append(start).append(':').append(end);
-            } else { // end == start means only one element
-                s.append(start);
+            if (s.length() > 0) {
+                s.append(',');
             }
+            elem.appendTo(s);
+        }
+        return s.toString();
+    }
+
+    /**
+     * Converts an array of MessageNumberSet into one or more IMAP RFC3501 sequence-set strings, each no longer than the given length, so a large
+     * fragmented set can be sent in several commands whose lines stay under the server limit. A single seq-range longer than the limit, which
+     * cannot happen with a sensible limit, is still returned in its own string.
+     *
+     * @param msgsets array of MessageNumberSet
+     * @param maxLength maximum length of each sequence-set string
+     * @return the sequence-set strings in the order of the given MessageNumberSet, empty if msgsets is null or empty
+     */
+    @Nonnull
+    public static List<String> buildStrings(@Nullable final MessageNumberSet[] msgsets, final int maxLength) {
+        final List<String> result = new ArrayList<>();
+        if (msgsets == null || msgsets.length == 0) {
+            return result;
+        }
 
-            i++; // increment to next round
-            if (i >= size) { // No more MessageNumberSet objects
-                break;
-            } else {
+        // remove duplicates
+        final Set<MessageNumberSet> elems = new LinkedHashSet<>(Arrays.asList(msgsets));
+
+        final StringBuilder s = new StringBuilder();
+        final StringBuilder range = new StringBuilder();
+        for (final MessageNumberSet elem : elems) {
+            range.setLength(0);
+            elem.appendTo(range);
+            if (s.length() > 0 && s.length() + 1 + range.length() > maxLength) {
+                result.add(s.toString());
+                s.setLength(0);
+            }
+            if (s.length() > 0) {
                 s.append(',');
             }
+            s.append(range);
+        }
+        result.add(s.toString());
+        return result;
+    }
+
+    /**
+     * Appends this seq-range in RFC3501 syntax.
+     *
+     * @param s the builder to append to
+     */
+    private void appendTo(@Nonnull final StringBuilder s) {
+        if (seqType == SequenceType.LAST_MESSAGE_ONLY) {
+            s.append('*');
+        } else if (seqType == SequenceType.LAST_MESSAGE_END) {
+            s.append(start).append(':').append('*');
+        } else if (end > start) {
+            s.append(start).append(':').append(end);
+        } else { // end == start means only one element
+            s.append(start);
         }
-        return s.toString();
     }
 }
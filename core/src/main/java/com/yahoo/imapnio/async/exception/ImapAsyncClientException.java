@@ -55,7 +55,16 @@ public class ImapAsyncClientException extends Exception {
         UNKNOWN_PARSE_RESULT_TYPE("Given class type to parse to is unknown."),
 
         /** Invalid input. */
-        INVALID_INPUT("Input is invalid.");
+        INVALID_INPUT("Input is invalid."),
+
+        /** Reconnecting to server and restoring the session state failed. */
+        RECONNECT_FAILED("Reconnecting and restoring session failed."),
+
+        /** Connection to server was rejected since the circuit breaker of the server is open. */
+        CONNECTION_CIRCUIT_OPEN("Connection rejected, server is unhealthy."),
+
+        /** Connection to server was rejected by the limit of concurrent connects or of the rate of new sessions. */
+        CONNECTION_THROTTLED("Connection rejected, too many connections to server.");
 
         /** The error message associated with this failure type. */
         @Nonnull
@@ -2,38 +2,62 @@ package com.yahoo.imapnio.async.internal;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.mail.search.SearchException;
 
 import org.slf4j.Logger;
 
+import com.sun.mail.iap.ParsingException;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.client.ImapAsyncClient;
 import com.yahoo.imapnio.async.client.ImapAsyncSession;
+import com.yahoo.imapnio.async.client.ImapAsyncSessionConfig;
+import com.yahoo.imapnio.async.client.ImapAsyncSessionConfig.CompressionEngine;
 import com.yahoo.imapnio.async.client.ImapFuture;
+import com.yahoo.imapnio.async.client.ImapResponsePublisher;
+import com.yahoo.imapnio.async.client.ImapResponseSubscriber;
+import com.yahoo.imapnio.async.client.ImapResponseSubscription;
+import com.yahoo.imapnio.async.client.ImapWireStats;
+import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.KnownCapability;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.netty.ImapByteCountingHandler;
 import com.yahoo.imapnio.async.netty.ImapClientCommandRespHandler;
 import com.yahoo.imapnio.async.netty.ImapCommandChannelEventProcessor;
+import com.yahoo.imapnio.async.netty.ImapFairDispatchHandler;
+import com.yahoo.imapnio.async.netty.ImapWireCaptureHandler;
+import com.yahoo.imapnio.async.request.AppendCommand;
 import com.yahoo.imapnio.async.request.IdleCommand;
+import com.yahoo.imapnio.async.request.ImapCommandType;
 import com.yahoo.imapnio.async.request.ImapRequest;
 import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+import com.yahoo.imapnio.async.response.ImapResponseMapper;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.compression.JdkZlibDecoder;
 import io.netty.handler.codec.compression.JdkZlibEncoder;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateEvent;
 
 /**
@@ -59,17 +83,53 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     /** Tag prefix. */
     private static final char A = 'a';
 
+    /** Radix used to write the tag sequence as ASCII digits. */
+    private static final int RADIX = 10;
+
+    /** Initial capacity for the tag buffer, enough for the prefix, the maximum long digits and the trailing space. */
+    private static final int TAG_BUF_LEN = 24;
+
+    /** Number of components in the command buffer, the tag and the command line itself. */
+    private static final int CMD_BUF_COMPONENTS = 2;
+
     /** Deflater handler name for enabling server compress. */
     private static final String ZLIB_DECODER = "DEFLATER";
 
     /** Inflater handler name for enabling server compress. */
     private static final String ZLIB_ENCODER = "INFLATER";
 
+    /** Handler name for writing chunked literal data. */
+    private static final String CHUNKED_WRITER = "chunkedWriter";
+
+    /** Number of responses buffered for a publisher subscriber, at or above which reading from server is paused. */
+    private static final int PUBLISHER_PAUSE_THRESHOLD = 64;
+
+    /** Number of responses buffered for a publisher subscriber, at or below which paused reading from server is resumed. */
+    private static final int PUBLISHER_RESUME_THRESHOLD = 16;
+
+    /** Subscription given to the subscribers rejected by a publisher. */
+    private static final ImapResponseSubscription REJECTED_SUBSCRIPTION = new ImapResponseSubscription() {
+        @Override
+        public void request(final long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    /** Deflate compression mechanism. */
+    private static final String DEFLATE = "DEFLATE";
+
     /** Literal for NA. */
     private static final String NA = "NA";
 
+    /** Updater of the tag sequence, so the sequence is a plain field instead of an object per session. */
+    private static final AtomicLongFieldUpdater<ImapAsyncSessionImpl> TAG_SEQUENCE = AtomicLongFieldUpdater.newUpdater(ImapAsyncSessionImpl.class,
+            "tagSequence");
+
     /** The Netty channel object. */
-    private AtomicReference<Channel> channelRef = new AtomicReference<Channel>();
+    private final Channel channel;
 
     /** Session Id. */
     private long sessionId;
@@ -78,6 +138,35 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     @Nonnull
     private Object sessionCtx;
 
+    /** Session configuration, for compression settings. */
+    @Nonnull
+    private final ImapAsyncSessionConfig config;
+
+    /** Flag whether compression is enabled on the channel. */
+    private volatile boolean isCompressionEnabled;
+
+    /** Byte counter next to the socket, null if the pipeline has none. */
+    @Nullable
+    private final ImapByteCountingHandler socketByteCounter;
+
+    /** Byte counter after SSL and compression handlers, null if the pipeline has none. */
+    @Nullable
+    private final ImapByteCountingHandler plainByteCounter;
+
+    /** Handler capturing the frames of this session, null if wire capture is not enabled. */
+    @Nullable
+    private final ImapWireCaptureHandler wireCaptureHandler;
+
+    /** Handler dispatching the responses of this session within the budget of its tenant, null if fair scheduling is not enabled. */
+    @Nullable
+    private final ImapFairDispatchHandler fairDispatchHandler;
+
+    /** Flag whether reading from server is paused by a response publisher, during which server is not timed out. */
+    private volatile boolean isReadPausedByPublisher;
+
+    /** Flag whether the next idle event is ignored, as reading from server has just been resumed by a response publisher. */
+    private volatile boolean isIdleEventIgnored;
+
     /** Producer queue. */
     private ConcurrentLinkedQueue<ImapCommandEntry> requestsQueue;
 
@@ -85,10 +174,19 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     private Logger logger;
 
     /** Debug mode. */
-    private AtomicReference<DebugMode> debugModeRef = new AtomicReference<DebugMode>();
+    private volatile DebugMode debugMode;
 
-    /** Sequence number for tag. */
-    private AtomicLong tagSequence;
+    /** Sequence number for tag, updated through {@link #TAG_SEQUENCE}. */
+    private volatile long tagSequence;
+
+    /** IDLE mode. */
+    private volatile IdleMode idleMode = IdleMode.IDLE_MANUAL;
+
+    /** IDLE suspended for running a command, null when IDLE is not suspended. */
+    private IdleSuspension idleSuspension;
+
+    /** Lock guarding the transitions of IDLE suspension between caller and I/O threads. */
+    private final Object idleLock = new Object();
 
     /**
      * This class handles and manages response from server and determines whether the job for this request is done. When the request is done, it sets
@@ -124,19 +222,33 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
         @Nonnull
         private final ImapFuture<ImapAsyncResponse> future;
 
+        /** Consumer given the untagged responses as they arrive instead of keeping them, null if they are kept. */
+        @Nullable
+        private final Consumer<IMAPResponse> responseConsumer;
+
+        /** Flag whether server has sent a continuation request for this command. */
+        private boolean isContinuationReceived;
+
+        /** Flag whether the terminate command line is sent for this command. */
+        private boolean isTerminateSent;
+
         /**
          * Initializes a newly created {@code ImapCommandJob} object so that it can handle the command responses and determine whether the request is
          * done.
          *
          * @param cmd ImapRequest instance
          * @param future ImapFuture instance
+         * @param responseConsumer consumer of the untagged responses, null to use the one of IDLE command, or to keep the responses
          */
-        ImapCommandEntry(@Nonnull final ImapRequest cmd, @Nonnull final ImapFuture<ImapAsyncResponse> future) {
+        ImapCommandEntry(@Nonnull final ImapRequest cmd, @Nonnull final ImapFuture<ImapAsyncResponse> future,
+                @Nullable final Consumer<IMAPResponse> responseConsumer) {
             this.cmd = cmd;
             this.state = CommandState.REQUEST_IN_PREPARATION;
             this.responses = (cmd.getStreamingResponsesQueue() != null) ? cmd.getStreamingResponsesQueue()
                     : new ConcurrentLinkedQueue<IMAPResponse>();
             this.future = future;
+            this.responseConsumer = (responseConsumer == null && cmd instanceof IdleCommand) ? ((IdleCommand) cmd).getResponseConsumer()
+                    : responseConsumer;
         }
 
         /**
@@ -175,6 +287,375 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
         public ImapRequest getRequest() {
             return cmd;
         }
+
+        /**
+         * @return the consumer of the untagged responses, null if they are kept in the responses
+         */
+        @Nullable
+        public Consumer<IMAPResponse> getResponseConsumer() {
+            return responseConsumer;
+        }
+
+        /**
+         * @return true if server has sent a continuation request for this command
+         */
+        boolean isContinuationReceived() {
+            return isContinuationReceived;
+        }
+
+        /**
+         * @param isContinuationReceived flag whether server has sent a continuation request for this command
+         */
+        void setContinuationReceived(final boolean isContinuationReceived) {
+            this.isContinuationReceived = isContinuationReceived;
+        }
+
+        /**
+         * @return true if the terminate command line is sent for this command
+         */
+        boolean isTerminateSent() {
+            return isTerminateSent;
+        }
+
+        /**
+         * @param isTerminateSent flag whether the terminate command line is sent for this command
+         */
+        void setTerminateSent(final boolean isTerminateSent) {
+            this.isTerminateSent = isTerminateSent;
+        }
+    }
+
+    /**
+     * IDLE suspended for running a command in {@link IdleMode#IDLE_AUTO_SUSPEND} mode. The IDLE entry is kept out of the requests queue, with its
+     * command and future untouched, while the command runs, and is put back when IDLE is resumed.
+     */
+    private static final class IdleSuspension {
+
+        /** Entry of the suspended IDLE command. */
+        @Nonnull
+        private final ImapCommandEntry idleEntry;
+
+        /** Entry of the command to run while IDLE is suspended. */
+        @Nonnull
+        private final ImapCommandEntry cmdEntry;
+
+        /** Flag whether IDLE should be completed instead of resumed after the command, since caller terminated it or server rejected it. */
+        private boolean isResumeCancelled;
+
+        /** Tagged response completing IDLE on suspension, given to IDLE responses only when IDLE is not resumed. */
+        private IMAPResponse idleTaggedResponse;
+
+        /**
+         * Initializes a {@code IdleSuspension}.
+         *
+         * @param idleEntry entry of the suspended IDLE command
+         * @param cmdEntry entry of the command to run
+         */
+        IdleSuspension(@Nonnull final ImapCommandEntry idleEntry, @Nonnull final ImapCommandEntry cmdEntry) {
+            this.idleEntry = idleEntry;
+            this.cmdEntry = cmdEntry;
+        }
+    }
+
+    /**
+     * This class sends a list of commands one after another, each from the completion of the previous one, and merges their responses. Cancelling
+     * the future for all the commands stops sending the remaining ones.
+     */
+    private final class CommandChain implements Consumer<ImapAsyncResponse> {
+
+        /** Commands not yet sent. */
+        private final Iterator<? extends ImapRequest> commands;
+
+        /** Response lines of the completed commands, in order. */
+        private final List<IMAPResponse> responses;
+
+        /** Future for all the commands. */
+        private final ImapFuture<ImapAsyncResponse> future;
+
+        /** Consumer of the untagged responses of all the commands, null if they are kept. */
+        @Nullable
+        private final Consumer<IMAPResponse> responseConsumer;
+
+        /**
+         * Initializes a {@code CommandChain} object.
+         *
+         * @param commands the commands to send
+         * @param responseConsumer consumer of the untagged responses of all the commands, null to keep them
+         */
+        CommandChain(@Nonnull final List<? extends ImapRequest> commands, @Nullable final Consumer<IMAPResponse> responseConsumer) {
+            this.commands = commands.iterator();
+            this.responses = new ArrayList<IMAPResponse>();
+            this.future = new ImapFuture<ImapAsyncResponse>();
+            this.responseConsumer = responseConsumer;
+        }
+
+        /**
+         * Sends the next command and sets up the callbacks of its future.
+         *
+         * @throws ImapAsyncClientException when the command cannot be sent
+         */
+        void executeNext() throws ImapAsyncClientException {
+            final ImapFuture<ImapAsyncResponse> cmdFuture = executeCommand(commands.next(), responseConsumer);
+            cmdFuture.setExceptionCallback(new Consumer<Exception>() {
+                @Override
+                public void accept(final Exception cause) {
+                    future.done(cause);
+                }
+            });
+            cmdFuture.setCanceledCallback(new Runnable() {
+                @Override
+                public void run() {
+                    future.cancel(false);
+                }
+            });
+            cmdFuture.setDoneCallback(this);
+        }
+
+        @Override
+        public void accept(final ImapAsyncResponse response) {
+            if (future.isCancelled()) { // caller gave up on the commands, the remaining ones are not sent
+                return;
+            }
+            IMAPResponse last = null;
+            for (final IMAPResponse line : response.getResponseLines()) {
+                responses.add(line);
+                last = line;
+            }
+            if (!commands.hasNext() || (last != null && last.isTagged() && !last.isOK())) { // NO or BAD ends the chain
+                future.done(new ImapAsyncResponse(responses));
+                return;
+            }
+            try {
+                executeNext();
+            } catch (final ImapAsyncClientException e) {
+                future.done(e);
+            }
+        }
+
+        /**
+         * @return the future for all the commands
+         */
+        ImapFuture<ImapAsyncResponse> getFuture() {
+            return future;
+        }
+    }
+
+    /**
+     * This class publishes the untagged responses of a command to its subscriber as demanded. Responses exceeding the demand are buffered, and
+     * reading from server is paused when the buffer grows, until the subscriber requests enough of them. Server is not timed out while reading is
+     * paused, since it is the subscriber that is behind.
+     *
+     * <p>
+     * The state is guarded by this publisher, while the subscriber is signalled outside the lock by one thread at a time, so a subscriber blocking
+     * or calling back into other locks does not hold up the event loop adding responses.
+     * </p>
+     */
+    private final class ResponsePublisher implements ImapResponsePublisher, ImapResponseSubscription, Consumer<IMAPResponse> {
+
+        /** The command to publish the responses of. */
+        private final ImapRequest command;
+
+        /** Responses not yet demanded by the subscriber. */
+        private final ArrayDeque<IMAPResponse> buffer = new ArrayDeque<IMAPResponse>();
+
+        /** The subscriber, null before subscribed. */
+        private ImapResponseSubscriber subscriber;
+
+        /** Number of responses requested but not yet given. */
+        private long demand;
+
+        /** Flag whether a thread is signalling subscriber, to keep signals in order and avoid recursion when subscriber requests from onNext. */
+        private boolean isDraining;
+
+        /** Flag whether reading from server is paused by this publisher. */
+        private boolean isReadPaused;
+
+        /** Flag whether subscriber has cancelled, or is given or to be given onComplete or onError. */
+        private boolean isTerminated;
+
+        /** Response of the command once it is done, null before. */
+        private ImapAsyncResponse doneResponse;
+
+        /** Error to give to subscriber, null if none. */
+        private Exception pendingError;
+
+        /**
+         * Initializes a {@code ResponsePublisher} object.
+         *
+         * @param command the command to publish the responses of
+         */
+        ResponsePublisher(@Nonnull final ImapRequest command) {
+            this.command = command;
+        }
+
+        @Override
+        public void subscribe(@Nonnull final ImapResponseSubscriber newSubscriber) {
+            final boolean isRejected;
+            synchronized (this) {
+                isRejected = (subscriber != null);
+                if (!isRejected) {
+                    subscriber = newSubscriber;
+                }
+            }
+            if (isRejected) {
+                newSubscriber.onSubscribe(REJECTED_SUBSCRIPTION);
+                newSubscriber.onError(new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED, sessionId, sessionCtx));
+                return;
+            }
+            newSubscriber.onSubscribe(this);
+
+            final ImapFuture<ImapAsyncResponse> future;
+            try {
+                future = executeCommand(command, this);
+            } catch (final ImapAsyncClientException e) {
+                fail(e);
+                return;
+            }
+            future.setExceptionCallback(new Consumer<Exception>() {
+                @Override
+                public void accept(final Exception cause) {
+                    fail(cause);
+                }
+            });
+            future.setDoneCallback(new Consumer<ImapAsyncResponse>() {
+                @Override
+                public void accept(final ImapAsyncResponse response) {
+                    complete(response);
+                }
+            });
+        }
+
+        @Override
+        public void accept(final IMAPResponse response) {
+            synchronized (this) {
+                if (isTerminated) {
+                    return;
+                }
+                buffer.add(response);
+            }
+            drain();
+            synchronized (this) {
+                if (!isTerminated && !isReadPaused && buffer.size() >= PUBLISHER_PAUSE_THRESHOLD) {
+                    isReadPaused = true;
+                    isReadPausedByPublisher = true;
+                    setAutoRead(false);
+                }
+            }
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                fail(new ImapAsyncClientException(FailureType.INVALID_INPUT, sessionId, sessionCtx));
+                return;
+            }
+            synchronized (this) {
+                if (isTerminated) {
+                    return;
+                }
+                demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n; // caps the overflow
+            }
+            drain();
+            synchronized (this) {
+                if (buffer.size() <= PUBLISHER_RESUME_THRESHOLD) {
+                    resumeRead();
+                }
+            }
+        }
+
+        @Override
+        public synchronized void cancel() {
+            isTerminated = true;
+            pendingError = null;
+            buffer.clear();
+            resumeRead();
+        }
+
+        /**
+         * Completes the subscriber once the buffered responses are given.
+         *
+         * @param response the response of the command
+         */
+        private void complete(@Nonnull final ImapAsyncResponse response) {
+            synchronized (this) {
+                doneResponse = response;
+            }
+            drain();
+        }
+
+        /**
+         * Gives the error to subscriber, dropping the buffered responses.
+         *
+         * @param cause the cause of the failure
+         */
+        private void fail(@Nonnull final Exception cause) {
+            synchronized (this) {
+                if (isTerminated) {
+                    return;
+                }
+                isTerminated = true;
+                pendingError = cause;
+                buffer.clear();
+                resumeRead();
+            }
+            drain();
+        }
+
+        /**
+         * Gives the buffered responses to subscriber as demanded, then the error if any, or the completion when the command is done and no response
+         * is left. Only one thread signals subscriber at a time, the others leave the signals they enable to it.
+         */
+        private void drain() {
+            synchronized (this) {
+                if (isDraining) {
+                    return;
+                }
+                isDraining = true;
+            }
+            while (true) {
+                IMAPResponse next = null;
+                Exception error = null;
+                ImapAsyncResponse completion = null;
+                synchronized (this) {
+                    if (pendingError != null) {
+                        error = pendingError;
+                        pendingError = null;
+                    } else if (isTerminated) {
+                        isDraining = false;
+                        return;
+                    } else if (demand > 0 && !buffer.isEmpty()) {
+                        demand--;
+                        next = buffer.poll();
+                    } else if (buffer.isEmpty() && doneResponse != null) {
+                        isTerminated = true;
+                        resumeRead();
+                        completion = doneResponse;
+                    } else {
+                        isDraining = false;
+                        return;
+                    }
+                }
+                if (next != null) {
+                    subscriber.onNext(next);
+                } else if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    subscriber.onComplete(completion);
+                }
+            }
+        }
+
+        /**
+         * Resumes reading from server if this publisher has paused it. Server is timed afresh from then on, see {@link #handleIdleEvent}.
+         */
+        private void resumeRead() {
+            if (isReadPaused) {
+                isReadPaused = false;
+                isReadPausedByPublisher = false;
+                isIdleEventIgnored = true;
+                setAutoRead(true);
+            }
+        }
     }
 
     /**
@@ -189,16 +670,52 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
      */
     public ImapAsyncSessionImpl(@Nonnull final Channel channel, @Nonnull final Logger logger, @Nonnull final DebugMode debugMode,
             final long sessionId, final ChannelPipeline pipeline, @Nonnull final Object sessionCtx) {
-        this.channelRef.set(channel);
+        this(channel, logger, debugMode, sessionId, pipeline, sessionCtx, new ImapAsyncSessionConfig());
+    }
+
+    /**
+     * Initializes an imap session that supports async operations.
+     *
+     * @param channel Channel object established for this session
+     * @param logger Logger object
+     * @param debugMode Flag for debugging
+     * @param sessionId the session id
+     * @param pipeline the ChannelPipeline object
+     * @param sessionCtx context for client to store information
+     * @param config the session configuration, for compression settings
+     */
+    public ImapAsyncSessionImpl(@Nonnull final Channel channel, @Nonnull final Logger logger, @Nonnull final DebugMode debugMode,
+            final long sessionId, final ChannelPipeline pipeline, @Nonnull final Object sessionCtx, @Nonnull final ImapAsyncSessionConfig config) {
+        this.config = config;
+        this.channel = channel;
         this.logger = logger;
-        this.debugModeRef.set(debugMode);
+        this.debugMode = debugMode;
         this.sessionId = sessionId;
         this.requestsQueue = new ConcurrentLinkedQueue<ImapCommandEntry>();
-        this.tagSequence = new AtomicLong(0);
         this.sessionCtx = sessionCtx;
+        this.socketByteCounter = getHandler(pipeline, ImapAsyncClient.SOCKET_BYTE_COUNTER, ImapByteCountingHandler.class);
+        this.plainByteCounter = getHandler(pipeline, ImapAsyncClient.PLAIN_BYTE_COUNTER, ImapByteCountingHandler.class);
+        this.wireCaptureHandler = getHandler(pipeline, ImapWireCaptureHandler.HANDLER_NAME, ImapWireCaptureHandler.class);
+        this.fairDispatchHandler = getHandler(pipeline, ImapFairDispatchHandler.HANDLER_NAME, ImapFairDispatchHandler.class);
         pipeline.addLast(ImapClientCommandRespHandler.HANDLER_NAME, new ImapClientCommandRespHandler(this));
     }
 
+    /**
+     * Finds the handler in the pipeline, kept by the session so it remains available after the channel is closed.
+     *
+     * @param <H> the type of the handler
+     * @param pipeline the pipeline
+     * @param name the handler name
+     * @param type the class of the handler
+     * @return the handler, null if the pipeline has none
+     */
+    @Nullable
+    private static <H extends ChannelHandler> H getHandler(@Nonnull final ChannelPipeline pipeline, @Nonnull final String name,
+            @Nonnull final Class<H> type) {
+        final ChannelHandler handler = pipeline.get(name);
+        return type.isInstance(handler) ? type.cast(handler) : null;
+    }
+
     /**
      * @return returns the user information
      */
@@ -207,12 +724,28 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     }
 
     /**
-     * Generates a new tag.
+     * Generates a new tag and writes it, followed by a space, to the given buffer as ASCII, without building an intermediate String.
      *
-     * @return the new tag that was not used
+     * @param buf the buffer to write the tag to
      */
-    private String getNextTag() {
-        return new StringBuilder().append(A).append(tagSequence.incrementAndGet()).toString();
+    private void writeNextTag(@Nonnull final ByteBuf buf) {
+        final long seq = TAG_SEQUENCE.incrementAndGet(this);
+        buf.writeByte(A);
+
+        // count the digits first so they can be set from the lowest one backwards
+        int numDigits = 1;
+        for (long n = seq / RADIX; n > 0; n /= RADIX) {
+            numDigits++;
+        }
+        final int start = buf.writerIndex();
+        buf.ensureWritable(numDigits + 1);
+        long n = seq;
+        for (int i = start + numDigits - 1; i >= start; i--) {
+            buf.setByte(i, (int) ('0' + n % RADIX));
+            n /= RADIX;
+        }
+        buf.writerIndex(start + numDigits);
+        buf.writeByte(SPACE);
     }
 
     /**
@@ -221,39 +754,243 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
     private boolean isDebugEnabled() {
         // when trace is enabled, log for all sessions
         // when debug is enabled && session debug is on, we print specific session
-        return logger.isTraceEnabled() || (logger.isDebugEnabled() && debugModeRef.get() == DebugMode.DEBUG_ON);
+        return logger.isTraceEnabled() || (logger.isDebugEnabled() && debugMode == DebugMode.DEBUG_ON);
+    }
+
+    /**
+     * @return the future notified when the channel of this session is closed, by either side
+     */
+    public ChannelFuture getCloseFuture() {
+        return channel.closeFuture();
     }
 
     @Override
     public void setDebugMode(@Nonnull final DebugMode newOption) {
-        this.debugModeRef.set(newOption);
+        this.debugMode = newOption;
+    }
+
+    @Override
+    public void setIdleMode(@Nonnull final IdleMode newMode) {
+        this.idleMode = newMode;
     }
 
     @Override
     public ImapFuture<ImapAsyncResponse> execute(@Nonnull final ImapRequest command) throws ImapAsyncClientException {
+        return executeCommand(command, null);
+    }
+
+    @Override
+    public ImapFuture<ImapAsyncResponse> execute(@Nonnull final ImapRequest command, @Nonnull final Consumer<IMAPResponse> responseConsumer)
+            throws ImapAsyncClientException {
+        return executeCommand(command, responseConsumer);
+    }
+
+    /**
+     * Sends the command to server, or suspends IDLE in progress for it in {@link IdleMode#IDLE_AUTO_SUSPEND} mode.
+     *
+     * @param command the command
+     * @param responseConsumer consumer of the untagged responses, null to keep them in the responses
+     * @return the future of the command
+     * @throws ImapAsyncClientException when the command is not allowed or cannot be sent
+     */
+    private ImapFuture<ImapAsyncResponse> executeCommand(@Nonnull final ImapRequest command, @Nullable final Consumer<IMAPResponse> responseConsumer)
+            throws ImapAsyncClientException {
         if (isChannelClosed()) { // fail fast instead of entering to sendRequest() to fail
             throw new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, sessionId, sessionCtx);
         }
-        if (!requestsQueue.isEmpty()) { // when prior command is in process, do not allow the new one
-            throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED, sessionId, sessionCtx);
+        if (!requestsQueue.isEmpty()) { // when prior command is in process, do not allow the new one unless it is IDLE to suspend
+            final ImapFuture<ImapAsyncResponse> suspendedCmdFuture = suspendIdle(command, responseConsumer);
+            if (suspendedCmdFuture == null) {
+                throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED, sessionId, sessionCtx);
+            }
+            return suspendedCmdFuture;
         }
 
         final ImapFuture<ImapAsyncResponse> cmdFuture = new ImapFuture<ImapAsyncResponse>();
-        requestsQueue.add(new ImapCommandEntry(command, cmdFuture));
+        requestsQueue.add(new ImapCommandEntry(command, cmdFuture, responseConsumer));
+        sendCommand(command);
+        return cmdFuture;
+    }
 
-        final ByteBuf buf = Unpooled.buffer();
-        final String tag = getNextTag();
-        buf.writeBytes(tag.getBytes(StandardCharsets.US_ASCII));
-        buf.writeByte(SPACE);
-        buf.writeBytes(command.getCommandLineBytes());
+    /**
+     * Sends the command line of the given command, prefixed by a new tag, to server.
+     *
+     * @param command the command
+     * @throws ImapAsyncClientException when channel is closed or the command line cannot be built
+     */
+    private void sendCommand(@Nonnull final ImapRequest command) throws ImapAsyncClientException {
+        // tag is written to a small pooled buffer and combined with the command line without copying the command line again
+        final ByteBufAllocator alloc = channel.alloc();
+        final ByteBuf cmdBuf = command.getCommandLineBytes(alloc);
+        final ByteBuf tagBuf = alloc.buffer(TAG_BUF_LEN);
+        writeNextTag(tagBuf);
+        final CompositeByteBuf buf = alloc.compositeBuffer(CMD_BUF_COMPONENTS);
+        buf.addComponents(true, tagBuf, cmdBuf);
 
         sendRequest(buf, command);
 
-        return cmdFuture;
+        if (command instanceof AppendCommand) {
+            final AppendCommand appendCmd = (AppendCommand) command;
+            if (appendCmd.isDataStreamed() && appendCmd.isNonSynchronizingLiteral()) { // no continuation from server, data follows right away
+                writeStreamedData(appendCmd);
+                sendRequest(appendCmd.getLiteralEnd(alloc), command);
+            }
+        }
+    }
+
+    /**
+     * Suspends IDLE in progress to run the given command when the session is in {@link IdleMode#IDLE_AUTO_SUSPEND} mode. DONE is sent right away if
+     * server has accepted IDLE, otherwise once its continuation request arrives. The command is sent when server completes IDLE.
+     *
+     * @param command the command to run
+     * @param responseConsumer consumer of the untagged responses of the command, null to keep them in the responses
+     * @return the future of the command, null if IDLE cannot be suspended for it
+     * @throws ImapAsyncClientException when DONE cannot be sent
+     */
+    private ImapFuture<ImapAsyncResponse> suspendIdle(@Nonnull final ImapRequest command, @Nullable final Consumer<IMAPResponse> responseConsumer)
+            throws ImapAsyncClientException {
+        if (idleMode != IdleMode.IDLE_AUTO_SUSPEND || command instanceof IdleCommand) {
+            return null;
+        }
+        synchronized (idleLock) {
+            final ImapCommandEntry idleEntry = getFirstEntry();
+            if (idleSuspension != null || idleEntry == null || !(idleEntry.getRequest() instanceof IdleCommand) || idleEntry.isTerminateSent()) {
+                return null;
+            }
+            final ImapFuture<ImapAsyncResponse> cmdFuture = new ImapFuture<ImapAsyncResponse>();
+            idleSuspension = new IdleSuspension(idleEntry, new ImapCommandEntry(command, cmdFuture, responseConsumer));
+            if (idleEntry.isContinuationReceived()) {
+                sendIdleDone(idleEntry);
+            }
+            return cmdFuture;
+        }
+    }
+
+    /**
+     * Sends DONE to complete IDLE.
+     *
+     * @param idleEntry entry of the IDLE command
+     * @throws ImapAsyncClientException when channel is closed
+     */
+    private void sendIdleDone(@Nonnull final ImapCommandEntry idleEntry) throws ImapAsyncClientException {
+        idleEntry.setTerminateSent(true);
+        final ImapRequest idleCmd = idleEntry.getRequest();
+        sendRequest(idleCmd.getTerminateCommandLine(channel.alloc()), idleCmd);
+    }
+
+    /**
+     * Handles the tagged response of the suspended IDLE, or of the command run while IDLE is suspended. When IDLE is completed, the command is sent
+     * with IDLE kept out of the queue. When the command is completed, IDLE is resumed with the same command and future, unless caller has
+     * terminated it or server has rejected it, in which case IDLE future is done.
+     *
+     * @param curEntry the entry the tagged response is for
+     * @param serverResponse the tagged response
+     * @return true if the response is handled as part of IDLE suspension; false otherwise
+     * @throws ImapAsyncClientException when sending the command or IDLE fails
+     */
+    private boolean handleIdleSuspensionTagged(@Nonnull final ImapCommandEntry curEntry, @Nonnull final IMAPResponse serverResponse)
+            throws ImapAsyncClientException {
+        final IdleSuspension suspension;
+        synchronized (idleLock) {
+            suspension = idleSuspension;
+            if (suspension == null) {
+                return false;
+            }
+            if (curEntry == suspension.idleEntry) {
+                // IDLE is done, keep its command untouched and run the pending command
+                suspension.isResumeCancelled |= !serverResponse.isOK();
+                suspension.idleTaggedResponse = serverResponse;
+                requestsQueue.poll();
+                requestsQueue.add(suspension.cmdEntry);
+                sendCommand(suspension.cmdEntry.getRequest());
+                return true;
+            }
+            if (curEntry != suspension.cmdEntry) {
+                return false;
+            }
+            idleSuspension = null;
+        }
+
+        curEntry.getResponses().add(serverResponse);
+        final ImapAsyncResponse cmdResponse = new ImapAsyncResponse(curEntry.getResponses());
+        removeFirstEntry();
+        final ImapCommandEntry idleEntry = suspension.idleEntry;
+        try {
+            if (suspension.isResumeCancelled) {
+                idleEntry.getRequest().cleanup();
+                idleEntry.getResponses().add(suspension.idleTaggedResponse);
+                idleEntry.getFuture().done(new ImapAsyncResponse(idleEntry.getResponses()));
+            } else {
+                idleEntry.setState(ImapCommandEntry.CommandState.REQUEST_IN_PREPARATION);
+                idleEntry.setContinuationReceived(false);
+                idleEntry.setTerminateSent(false);
+                requestsQueue.add(idleEntry);
+                sendCommand(idleEntry.getRequest());
+            }
+        } finally { // the command is answered by server even if IDLE cannot be resumed, in which case only IDLE fails
+            curEntry.getFuture().done(cmdResponse);
+        }
+        return true;
+    }
+
+    @Override
+    public ImapFuture<ImapAsyncResponse> executeAll(@Nonnull final List<? extends ImapRequest> commands) throws ImapAsyncClientException {
+        return executeChain(commands, null);
+    }
+
+    @Override
+    public ImapFuture<ImapAsyncResponse> executeAll(@Nonnull final List<? extends ImapRequest> commands,
+            @Nonnull final Consumer<IMAPResponse> responseConsumer) throws ImapAsyncClientException {
+        return executeChain(commands, responseConsumer);
+    }
+
+    /**
+     * Sends the commands one after another.
+     *
+     * @param commands the commands, at least one
+     * @param responseConsumer consumer of the untagged responses of all the commands, null to keep them in the responses
+     * @return the future for all the commands
+     * @throws ImapAsyncClientException when the commands are empty or the first one cannot be sent
+     */
+    private ImapFuture<ImapAsyncResponse> executeChain(@Nonnull final List<? extends ImapRequest> commands,
+            @Nullable final Consumer<IMAPResponse> responseConsumer) throws ImapAsyncClientException {
+        if (commands.isEmpty()) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        final CommandChain chain = new CommandChain(commands, responseConsumer);
+        chain.executeNext();
+        return chain.getFuture();
+    }
+
+    @Override
+    public ImapResponsePublisher createPublisher(@Nonnull final ImapRequest command) {
+        return new ResponsePublisher(command);
+    }
+
+    /**
+     * Turns on or off reading from server automatically.
+     *
+     * @param isAutoRead true to read from server as data arrives; false to stop reading, which makes server slow down by TCP flow control
+     */
+    private void setAutoRead(final boolean isAutoRead) {
+        if (fairDispatchHandler != null) { // it may also pause reading for its queued responses
+            fairDispatchHandler.setSessionReadPaused(!isAutoRead);
+        } else {
+            channel.config().setAutoRead(isAutoRead);
+        }
+    }
+
+    @Override
+    public ImapWireStats getWireStats() {
+        final ImapByteCountingHandler socket = socketByteCounter;
+        final ImapByteCountingHandler plain = plainByteCounter;
+        return new ImapWireStats(socket != null ? socket.getBytesRead() : 0, socket != null ? socket.getBytesWritten() : 0,
+                plain != null ? plain.getBytesRead() : 0, plain != null ? plain.getBytesWritten() : 0);
     }
 
     @Override
     public <T> ImapFuture<ImapAsyncResponse> startCompression() throws ImapAsyncClientException, SearchException, IOException {
+        config.validateCompressionEngine();
         final ImapFuture<ImapAsyncResponse> future = execute(new CompressCommand());
         return future;
     }
@@ -262,7 +999,7 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
      * @return true if channel is closed; false otherwise
      */
     boolean isChannelClosed() {
-        return !channelRef.get().isActive();
+        return !channel.isActive();
     }
 
     /**
@@ -279,25 +1016,60 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
                     (!command.isCommandLineDataSensitive()) ? request.toString(StandardCharsets.UTF_8) : command.getDebugData());
         }
         if (isChannelClosed()) {
+            request.release(); // not handed over to channel, which releases it once written
             throw new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, sessionId, sessionCtx);
         }
 
         // ChannelPromise is the suggested ChannelFuture that allows caller to setup listener before the action is made
         // this is useful for light-speed operation.
-        final Channel channel = channelRef.get();
+        if (wireCaptureHandler != null) {
+            wireCaptureHandler.captureRequest(request, command);
+        }
+
         final ChannelPromise writeFuture = channel.newPromise();
         writeFuture.addListener(this); // "this" listens to write future done in operationComplete() to handle exception in writing.
         channel.writeAndFlush(request, writeFuture);
     }
 
+    /**
+     * Writes the streamed literal data of the given append command to server without flushing. A file region is used when the connection is
+     * neither encrypted nor compressed so the data is sent with zero copy, otherwise the data is read in chunks by a {@link ChunkedWriteHandler}.
+     *
+     * @param command the append command with streamed data
+     * @throws ImapAsyncClientException when channel is closed or the data cannot be opened
+     */
+    private void writeStreamedData(@Nonnull final AppendCommand command) throws ImapAsyncClientException {
+        if (isChannelClosed()) {
+            throw new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, sessionId, sessionCtx);
+        }
+
+        final ChannelPipeline pipeline = channel.pipeline();
+        final boolean isZeroCopyAllowed = pipeline.get(ImapAsyncClient.SSL_HANDLER) == null && pipeline.get(ZLIB_ENCODER) == null;
+        final Object data = command.getStreamedData(isZeroCopyAllowed);
+        if (!isZeroCopyAllowed && pipeline.get(CHUNKED_WRITER) == null) {
+            pipeline.addLast(CHUNKED_WRITER, new ChunkedWriteHandler()); // last so that it is the first outbound handler
+        }
+        final ChannelPromise writeFuture = channel.newPromise();
+        writeFuture.addListener(this);
+        channel.write(data, writeFuture);
+    }
+
     @Override
     public ImapFuture<ImapAsyncResponse> terminateCommand(@Nonnull final ImapRequest command) throws ImapAsyncClientException {
+        synchronized (idleLock) {
+            if (idleSuspension != null && idleSuspension.idleEntry.getRequest() == command) {
+                // DONE is sent, or will be, for suspending IDLE, so IDLE is completed instead of resumed
+                idleSuspension.isResumeCancelled = true;
+                return idleSuspension.idleEntry.getFuture();
+            }
+        }
         if (requestsQueue.isEmpty()) {
             throw new ImapAsyncClientException(FailureType.COMMAND_NOT_ALLOWED, sessionId, sessionCtx);
         }
 
         final ImapCommandEntry entry = requestsQueue.peek();
-        sendRequest(entry.getRequest().getTerminateCommandLine(), command);
+        entry.setTerminateSent(true);
+        sendRequest(entry.getRequest().getTerminateCommandLine(channel.alloc()), command);
         return entry.getFuture();
     }
 
@@ -366,6 +1138,22 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
         logger.error(SESSION_LOG_WITH_EXCEPTION, sessionId, getUserInfo(), cause);
         entry.getFuture().done(cause);
 
+        // suspended IDLE and the command waiting for it will not complete either
+        final IdleSuspension suspension;
+        synchronized (idleLock) {
+            suspension = idleSuspension;
+            idleSuspension = null;
+        }
+        if (suspension != null) {
+            if (suspension.idleEntry != entry) {
+                suspension.idleEntry.getRequest().cleanup();
+                suspension.idleEntry.getFuture().done(cause);
+            }
+            if (suspension.cmdEntry != entry) {
+                suspension.cmdEntry.getFuture().done(cause);
+            }
+        }
+
         // close session when encountering channel exception since the health of session is frail/unknown.
         close();
     }
@@ -384,34 +1172,78 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
             return;
         }
 
+        // server is not read while a response publisher waits for its subscriber, and is given a full period once read again
+        if (isReadPausedByPublisher) {
+            return;
+        }
+        if (isIdleEventIgnored) {
+            isIdleEventIgnored = false;
+            return;
+        }
+
         // error out for any other commands sent but server is not responding
         requestDoneWithException(new ImapAsyncClientException(FailureType.CHANNEL_TIMEOUT, sessionId, sessionCtx));
     }
 
     @Override
     public <T> void handleChannelResponse(@Nonnull final IMAPResponse serverResponse) {
+        if (isIdleEventIgnored) { // server has responded since reading was resumed
+            isIdleEventIgnored = false;
+        }
         final ImapCommandEntry curEntry = getFirstEntry();
         if (curEntry == null) {
             return;
         }
 
         final ImapRequest currentCmd = curEntry.getRequest();
-        final Collection<IMAPResponse> responses = curEntry.getResponses();
-        responses.add(serverResponse);
-
         if (isDebugEnabled()) { // logging all server responses when enabled
             logger.debug(SERVER_LOG_REC, sessionId, getUserInfo(), serverResponse.toString());
         }
 
+        final Consumer<IMAPResponse> consumer = curEntry.getResponseConsumer();
+        if (consumer != null && serverResponse.isUnTagged()) { // pushes to consumer as it arrives, instead of keeping it till the command is done
+            consumer.accept(serverResponse);
+            return;
+        }
+
+        if (serverResponse.isTagged()) { // suspended IDLE and the command run meanwhile are completed by their own rules
+            try {
+                if (handleIdleSuspensionTagged(curEntry, serverResponse)) {
+                    return;
+                }
+            } catch (final ImapAsyncClientException | RuntimeException e) {
+                requestDoneWithException(new ImapAsyncClientException(FailureType.CHANNEL_EXCEPTION, e, sessionId, sessionCtx));
+                return;
+            }
+        }
+
+        final Collection<IMAPResponse> responses = curEntry.getResponses();
+        responses.add(serverResponse);
+
         // server sends continuation message (+) for next request
         if (serverResponse.isContinuation()) {
             try {
                 curEntry.setState(ImapCommandEntry.CommandState.RESPONSES_DONE);
-                final ByteBuf cmdAfterContinue = currentCmd.getNextCommandLineAfterContinuation(serverResponse);
+                final ByteBuf cmdAfterContinue = currentCmd.getNextCommandLineAfterContinuation(serverResponse, channel.alloc());
                 if (cmdAfterContinue == null) {
-                    return; // no data from client after continuation, we leave, this is for Idle
+                    // no data from client after continuation, this is for Idle, which is completed now if a command waits for it
+                    synchronized (idleLock) {
+                        curEntry.setContinuationReceived(true);
+                        if (idleSuspension != null && idleSuspension.idleEntry == curEntry && !curEntry.isTerminateSent()) {
+                            sendIdleDone(curEntry);
+                        }
+                    }
+                    return;
                 }
                 curEntry.setState(ImapCommandEntry.CommandState.REQUEST_IN_PREPARATION); // preparing to send request so setting to correct state
+                if (currentCmd instanceof AppendCommand && ((AppendCommand) currentCmd).isDataStreamed()) {
+                    try {
+                        writeStreamedData((AppendCommand) currentCmd);
+                    } catch (final ImapAsyncClientException | RuntimeException e) { // the literal end is not sent either
+                        cmdAfterContinue.release();
+                        throw e;
+                    }
+                }
                 sendRequest(cmdAfterContinue, currentCmd);
 
             } catch (final ImapAsyncClientException | RuntimeException e) { // when encountering an error on building request from client
@@ -430,26 +1262,20 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
                                 new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, sessionId, sessionCtx));
                         return;
                     }
-
-                    final Channel ch = channelRef.get();
-                    final ChannelPipeline pipeline = ch.pipeline();
-                    final JdkZlibDecoder decoder = new JdkZlibDecoder(ZlibWrapper.NONE);
-                    final JdkZlibEncoder encoder = new JdkZlibEncoder(ZlibWrapper.NONE, 5);
-                    if (pipeline.get(ImapAsyncClient.SSL_HANDLER) == null) {
-                        // no SSL handler, deflater/enflater has to be first
-                        pipeline.addFirst(ZLIB_DECODER, decoder);
-                        pipeline.addFirst(ZLIB_ENCODER, encoder);
-                    } else {
-                        pipeline.addAfter(ImapAsyncClient.SSL_HANDLER, ZLIB_DECODER, decoder);
-                        pipeline.addAfter(ImapAsyncClient.SSL_HANDLER, ZLIB_ENCODER, encoder);
-                    }
+                    enableCompression();
+                } else if (isAutoCompressNeeded(currentCmd, serverResponse, responses)) {
+                    // authentication is done once compression is enabled, so caller does not send a command while COMPRESS is in progress
+                    final ImapAsyncResponse authResponse = new ImapAsyncResponse(responses);
+                    removeFirstEntry();
+                    startAutoCompression(curEntry.getFuture(), authResponse);
+                    return;
                 }
                 // see rfc3501, page 63 for details, since we always give a tagged command, response completion should be the first tagged response
                 final ImapAsyncResponse doneResponse = new ImapAsyncResponse(responses);
                 removeFirstEntry();
                 curEntry.getFuture().done(doneResponse);
                 return;
-            } catch (final RuntimeException e) {
+            } catch (final ImapAsyncClientException | RuntimeException e) {
                 requestDoneWithException(
                         new ImapAsyncClientException(ImapAsyncClientException.FailureType.CHANNEL_EXCEPTION, e, sessionId, sessionCtx));
             }
@@ -458,6 +1284,109 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
         // none-tagged server responses if reaching here
     }
 
+    /**
+     * Adds the deflate decoder and encoder, created by the engine in configuration, to the pipeline, right before the plain byte counter so it
+     * counts uncompressed bytes, or right after SSL handler if there is no counter.
+     */
+    private void enableCompression() {
+        final ChannelPipeline pipeline = channel.pipeline();
+        final ChannelHandler decoder;
+        final ChannelHandler encoder;
+        if (config.getCompressionEngine() == CompressionEngine.ZLIB_CODEC_FACTORY) {
+            decoder = ZlibCodecFactory.newZlibDecoder(ZlibWrapper.NONE);
+            encoder = ZlibCodecFactory.newZlibEncoder(ZlibWrapper.NONE, config.getCompressionLevel(), config.getCompressionWindowBits(),
+                    config.getCompressionMemLevel());
+        } else {
+            decoder = new JdkZlibDecoder(ZlibWrapper.NONE);
+            encoder = new JdkZlibEncoder(ZlibWrapper.NONE, config.getCompressionLevel());
+        }
+        if (pipeline.get(ImapAsyncClient.PLAIN_BYTE_COUNTER) != null) {
+            pipeline.addBefore(ImapAsyncClient.PLAIN_BYTE_COUNTER, ZLIB_DECODER, decoder);
+            pipeline.addBefore(ImapAsyncClient.PLAIN_BYTE_COUNTER, ZLIB_ENCODER, encoder);
+        } else if (pipeline.get(ImapAsyncClient.SSL_HANDLER) == null) {
+            // no SSL handler, deflater/enflater has to be first
+            pipeline.addFirst(ZLIB_DECODER, decoder);
+            pipeline.addFirst(ZLIB_ENCODER, encoder);
+        } else {
+            pipeline.addAfter(ImapAsyncClient.SSL_HANDLER, ZLIB_DECODER, decoder);
+            pipeline.addAfter(ImapAsyncClient.SSL_HANDLER, ZLIB_ENCODER, encoder);
+        }
+        isCompressionEnabled = true;
+    }
+
+    /**
+     * Checks whether compression should be enabled automatically after the given command completes: it is a successful authentication, auto
+     * compression is configured, and server advertises COMPRESS=DEFLATE in the responses of the authentication.
+     *
+     * @param cmd the command
+     * @param taggedResponse the tagged response of the command
+     * @param responses all the responses of the command
+     * @return true if compression should be enabled now
+     */
+    private boolean isAutoCompressNeeded(@Nonnull final ImapRequest cmd, @Nonnull final IMAPResponse taggedResponse,
+            @Nonnull final Collection<IMAPResponse> responses) {
+        final ImapCommandType type = cmd.getCommandType();
+        if (!config.isAutoCompressEnabled() || isCompressionEnabled || !taggedResponse.isOK()
+                || (type != ImapCommandType.AUTHENTICATE && type != ImapCommandType.LOGIN)) {
+            return false;
+        }
+        // parses copies so the responses given to caller can still be read from the start
+        final IMAPResponse[] copies = new IMAPResponse[responses.size()];
+        int i = 0;
+        for (final IMAPResponse r : responses) {
+            copies[i++] = new IMAPResponse(r);
+        }
+        final Capability capa;
+        try {
+            capa = new ImapResponseMapper().readValue(copies, Capability.class);
+        } catch (final ImapAsyncClientException | ParsingException e) {
+            return false;
+        }
+        final List<String> mechanisms = capa.getCapability(KnownCapability.COMPRESS.getName());
+        if (mechanisms != null) {
+            for (final String mechanism : mechanisms) {
+                if (DEFLATE.equalsIgnoreCase(mechanism)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends COMPRESS DEFLATE right after authentication, and completes the authentication future once it is done. Server refusing compression
+     * does not fail the authentication, neither do compression settings that cannot be applied, in which case COMPRESS is not sent.
+     *
+     * @param authFuture future of the authentication
+     * @param authResponse response of the authentication
+     * @throws ImapAsyncClientException when COMPRESS cannot be sent
+     */
+    private void startAutoCompression(@Nonnull final ImapFuture<ImapAsyncResponse> authFuture, @Nonnull final ImapAsyncResponse authResponse)
+            throws ImapAsyncClientException {
+        try {
+            config.validateCompressionEngine();
+        } catch (final ImapAsyncClientException e) {
+            authFuture.done(authResponse);
+            return;
+        }
+        final ImapFuture<ImapAsyncResponse> compressFuture = new ImapFuture<ImapAsyncResponse>();
+        compressFuture.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                authFuture.done(cause);
+            }
+        });
+        compressFuture.setDoneCallback(new Consumer<ImapAsyncResponse>() {
+            @Override
+            public void accept(final ImapAsyncResponse response) {
+                authFuture.done(authResponse);
+            }
+        });
+        final CompressCommand cmd = new CompressCommand();
+        requestsQueue.add(new ImapCommandEntry(cmd, compressFuture, null));
+        sendCommand(cmd);
+    }
+
     @Override
     public ImapFuture<Boolean> close() {
         final ImapFuture<Boolean> closeFuture = new ImapFuture<Boolean>();
@@ -467,7 +1396,6 @@ public class ImapAsyncSessionImpl implements ImapAsyncSession, ImapCommandChanne
             if (isDebugEnabled()) {
                 logger.debug(SESSION_LOG_REC, sessionId, getUserInfo(), "Closing the session via close().");
             }
-            final Channel channel = channelRef.get();
             final ChannelPromise channelPromise = channel.newPromise();
             final ImapChannelClosedListener channelClosedListener = new ImapChannelClosedListener(closeFuture);
             channelPromise.addListener(channelClosedListener);
@@ -0,0 +1,94 @@
+package com.yahoo.imapnio.async.netty;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+
+/**
+ * This class counts the bytes passing through its position in the pipeline, for one channel. Placed next to the socket it counts the bytes on the
+ * wire, placed after SSL and deflate handlers it counts the plain IMAP bytes. Counts are also added to totals shared by all channels of a client.
+ */
+public class ImapByteCountingHandler extends ChannelDuplexHandler {
+
+    /** Total bytes read by all channels at this position, shared with other handlers. */
+    private final LongAdder totalBytesRead;
+
+    /** Total bytes written by all channels at this position, shared with other handlers. */
+    private final LongAdder totalBytesWritten;
+
+    /** Bytes read by this channel. */
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    /** Bytes written by this channel. */
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Initializes a {@code ImapByteCountingHandler}.
+     *
+     * @param totalBytesRead total bytes read by all channels, which this handler adds to
+     * @param totalBytesWritten total bytes written by all channels, which this handler adds to
+     */
+    public ImapByteCountingHandler(@Nonnull final LongAdder totalBytesRead, @Nonnull final LongAdder totalBytesWritten) {
+        this.totalBytesRead = totalBytesRead;
+        this.totalBytesWritten = totalBytesWritten;
+    }
+
+    /**
+     * @param msg the message passing through the pipeline
+     * @return the number of bytes in the message, 0 if it is neither a buffer nor a file region
+     */
+    private static long sizeOf(final Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        if (msg instanceof FileRegion) {
+            return ((FileRegion) msg).count();
+        }
+        return 0;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+        final long size = sizeOf(msg);
+        if (size > 0) {
+            bytesRead.addAndGet(size);
+            totalBytesRead.add(size);
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) throws Exception {
+        final long size = sizeOf(msg);
+        if (size > 0) {
+            bytesWritten.addAndGet(size);
+            totalBytesWritten.add(size);
+        }
+        ctx.write(msg, promise);
+    }
+
+    /**
+     * @return the number of bytes read by this channel
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * @return the number of bytes written by this channel
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+}
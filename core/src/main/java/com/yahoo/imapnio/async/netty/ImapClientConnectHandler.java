@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.client.ImapAsyncCreateSessionResponse;
 import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
+import com.yahoo.imapnio.async.client.ImapAsyncSessionConfig;
 import com.yahoo.imapnio.async.client.ImapFuture;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
@@ -43,6 +44,9 @@ public class ImapClientConnectHandler extends MessageToMessageDecoder<IMAPRespon
     /** Session Id. */
     private long sessionId;
 
+    /** Session configuration. */
+    private ImapAsyncSessionConfig config;
+
     /** Context for session information, its toString() method will be called to be used for logging and exception getMessage(). */
     @Nonnull
     private Object sessionCtx;
@@ -58,6 +62,22 @@ public class ImapClientConnectHandler extends MessageToMessageDecoder<IMAPRespon
      */
     public ImapClientConnectHandler(@Nonnull final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture, @Nonnull final Logger logger,
             @Nonnull final DebugMode logOpt, final long sessionId, @Nonnull final Object sessionCtx) {
+        this(sessionFuture, logger, logOpt, sessionId, sessionCtx, new ImapAsyncSessionConfig());
+    }
+
+    /**
+     * Initializes @{code ImapClientConnectHandler} to process ok greeting after connection.
+     *
+     * @param sessionFuture imap session future, should be set to done once ok is received
+     * @param logger the @{code Logger} instance for @{ImapAsyncSessionImpl}
+     * @param logOpt logging option for the session to be created
+     * @param sessionId the session id
+     * @param sessionCtx context for the session information, its toString() method will be called to be used for logging and exception getMessage()
+     * @param config configuration of the session to be created
+     */
+    public ImapClientConnectHandler(@Nonnull final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture, @Nonnull final Logger logger,
+            @Nonnull final DebugMode logOpt, final long sessionId, @Nonnull final Object sessionCtx, @Nonnull final ImapAsyncSessionConfig config) {
+        this.config = config;
         this.sessionCreatedFuture = sessionFuture;
         this.logger = logger;
         this.logOpt = logOpt;
@@ -73,7 +93,8 @@ public class ImapClientConnectHandler extends MessageToMessageDecoder<IMAPRespon
 
         if (serverResponse.isOK()) { // we can call it successful only when response is ok
             // add the command response handler
-            final ImapAsyncSessionImpl session = new ImapAsyncSessionImpl(ctx.channel(), logger, logOpt, sessionId, pipeline, sessionCtx);
+            final ImapAsyncSessionImpl session = new ImapAsyncSessionImpl(ctx.channel(), logger, logOpt, sessionId, pipeline, sessionCtx,
+                    config);
             final ImapAsyncCreateSessionResponse response = new ImapAsyncCreateSessionResponse(session, serverResponse);
             sessionCreatedFuture.done(response);
 
@@ -120,5 +141,6 @@ public class ImapClientConnectHandler extends MessageToMessageDecoder<IMAPRespon
         logger = null;
         logOpt = null;
         sessionCtx = null;
+        config = null;
     }
 }
@@ -0,0 +1,150 @@
+package com.yahoo.imapnio.async.netty;
+
+import java.util.ArrayDeque;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.client.ImapTenantScheduler;
+import com.yahoo.imapnio.async.client.ImapTenantScheduler.PendingDispatch;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * This class dispatches the response frames of one session within the budget of its tenant. Placed after the response line reader, frames are
+ * passed on, to be decoded and handled, while the tenant has budget in the current tick; otherwise they are queued, reading from server is paused,
+ * and the queued frames are passed on in the next ticks as scheduled by {@link ImapTenantScheduler}.
+ *
+ * <p>
+ * Reading from server may also be paused by the session, for example by a response publisher waiting for its subscriber. Reading is resumed only
+ * when neither has it paused, hence the session pauses and resumes reading through {@link #setSessionReadPaused(boolean)}.
+ * </p>
+ */
+public class ImapFairDispatchHandler extends ChannelInboundHandlerAdapter implements PendingDispatch {
+
+    /** Literal for the name registered in pipeline. */
+    public static final String HANDLER_NAME = "ImapFairDispatchHandler";
+
+    /** Reading paused by the session. */
+    private static final int PAUSED_BY_SESSION = 1;
+
+    /** Reading paused by this handler for queued frames. */
+    private static final int PAUSED_BY_SCHEDULER = 2;
+
+    /** The scheduler of the client. */
+    private final ImapTenantScheduler scheduler;
+
+    /** Tenant of the session. */
+    private final String tenantId;
+
+    /** Frames waiting for budget. */
+    private final ArrayDeque<ByteBuf> pending = new ArrayDeque<ByteBuf>();
+
+    /** Context of this handler, set once added to pipeline. */
+    private ChannelHandlerContext context;
+
+    /** Reasons reading from server is paused for, guarded by this handler. */
+    private int pauses;
+
+    /**
+     * Initializes a {@code ImapFairDispatchHandler}.
+     *
+     * @param scheduler the scheduler of the client
+     * @param tenantId tenant of the session
+     */
+    public ImapFairDispatchHandler(@Nonnull final ImapTenantScheduler scheduler, @Nonnull final String tenantId) {
+        this.scheduler = scheduler;
+        this.tenantId = tenantId;
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) {
+        context = ctx;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        final ByteBuf frame = (ByteBuf) msg;
+        if (pending.isEmpty() && scheduler.tryDispatch(ctx.executor(), tenantId, frame.readableBytes())) {
+            ctx.fireChannelRead(frame);
+            return;
+        }
+        pending.add(frame);
+        scheduler.addQueueDepth(tenantId, 1);
+        if (pending.size() == 1) {
+            setReadPaused(PAUSED_BY_SCHEDULER, true);
+            scheduler.defer(ctx.executor(), tenantId, this);
+        }
+    }
+
+    @Override
+    public boolean dispatchPending() {
+        boolean isDispatched = false;
+        try {
+            while (!pending.isEmpty()) {
+                if (!scheduler.tryDispatch(context.executor(), tenantId, pending.peek().readableBytes())) {
+                    return true;
+                }
+                scheduler.addQueueDepth(tenantId, -1);
+                isDispatched = true;
+                context.fireChannelRead(pending.poll());
+            }
+            setReadPaused(PAUSED_BY_SCHEDULER, false);
+            return false;
+        } finally {
+            if (isDispatched) { // ends the batch like a socket read, so handlers waiting for read complete, such as flush consolidation, proceed
+                context.fireChannelReadComplete();
+            }
+        }
+    }
+
+    @Override
+    public void channelInactive(final ChannelHandlerContext ctx) {
+        // responses received before the connection is closed are not held back
+        scheduler.addQueueDepth(tenantId, -pending.size());
+        while (!pending.isEmpty()) {
+            ctx.fireChannelRead(pending.poll());
+        }
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) {
+        scheduler.addQueueDepth(tenantId, -pending.size());
+        while (!pending.isEmpty()) {
+            pending.poll().release();
+        }
+    }
+
+    /**
+     * Pauses or resumes reading from server on behalf of the session.
+     *
+     * @param isPaused true to pause reading, false to resume it unless paused for queued frames
+     */
+    public void setSessionReadPaused(final boolean isPaused) {
+        setReadPaused(PAUSED_BY_SESSION, isPaused);
+    }
+
+    /**
+     * Pauses or resumes reading from server for one reason, reading only when paused for none.
+     *
+     * @param reason the reason
+     * @param isPaused true to pause reading, false to resume it
+     */
+    private synchronized void setReadPaused(final int reason, final boolean isPaused) {
+        pauses = isPaused ? (pauses | reason) : (pauses & ~reason);
+        context.channel().config().setAutoRead(pauses == 0);
+    }
+
+    /**
+     * @return the number of frames waiting for budget
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
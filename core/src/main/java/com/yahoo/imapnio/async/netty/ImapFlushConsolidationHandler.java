@@ -0,0 +1,125 @@
+package com.yahoo.imapnio.async.netty;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * This class consolidates consecutive flushes of one channel into one, so requests written back to back go out in one write to socket. A flush
+ * during a read is delayed till the read is complete, since responses handled in it often trigger more requests. Any other flush is delayed till
+ * the event loop runs its pending tasks, which follows the writes submitted to it from other threads. Pending writes are flushed right away once
+ * the maximum number of flushes is pending, and before the channel is closed.
+ *
+ * <p>
+ * Placed last in the pipeline, it sees the flushes before the SSL and compression handlers, which then encode the consolidated writes together.
+ * All methods are called on the event loop of the channel.
+ * </p>
+ */
+public class ImapFlushConsolidationHandler extends ChannelDuplexHandler {
+
+    /** Literal for the name registered in pipeline. */
+    public static final String HANDLER_NAME = "ImapFlushConsolidationHandler";
+
+    /** Maximum number of flushes consolidated into one. */
+    private final int maxConsolidatedFlushes;
+
+    /** Number of flushes delayed. */
+    private int pendingFlushes;
+
+    /** Flag whether a read is in progress. */
+    private boolean isReadInProgress;
+
+    /** Flag whether the delayed flush has been submitted to the event loop. */
+    private boolean isFlushScheduled;
+
+    /** Task flushing the delayed flushes, set once added to pipeline. */
+    private Runnable flushTask;
+
+    /**
+     * Initializes a {@code ImapFlushConsolidationHandler}.
+     *
+     * @param maxConsolidatedFlushes maximum number of flushes consolidated into one
+     */
+    public ImapFlushConsolidationHandler(final int maxConsolidatedFlushes) {
+        this.maxConsolidatedFlushes = Math.max(1, maxConsolidatedFlushes);
+    }
+
+    @Override
+    public void handlerAdded(final ChannelHandlerContext ctx) {
+        flushTask = new Runnable() {
+            @Override
+            public void run() {
+                isFlushScheduled = false;
+                if (!isReadInProgress) { // otherwise flushed once the read is complete
+                    flushPending(ctx);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void flush(final ChannelHandlerContext ctx) {
+        if (++pendingFlushes >= maxConsolidatedFlushes) {
+            flushPending(ctx);
+        } else if (!isReadInProgress && !isFlushScheduled) {
+            isFlushScheduled = true;
+            ctx.channel().eventLoop().execute(flushTask);
+        }
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+        isReadInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) {
+        isReadInProgress = false;
+        flushPending(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(final ChannelHandlerContext ctx) {
+        if (!ctx.channel().isWritable()) { // writes are waiting in outbound buffer, so they are not delayed further
+            flushPending(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+        flushPending(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(final ChannelHandlerContext ctx, final ChannelPromise promise) {
+        flushPending(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(final ChannelHandlerContext ctx, final ChannelPromise promise) {
+        flushPending(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(final ChannelHandlerContext ctx) {
+        flushPending(ctx);
+    }
+
+    /**
+     * Flushes the delayed flushes, if any.
+     *
+     * @param ctx the context of this handler
+     */
+    private void flushPending(final ChannelHandlerContext ctx) {
+        if (pendingFlushes > 0) {
+            pendingFlushes = 0;
+            ctx.flush();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.yahoo.imapnio.async.netty;
+
+import javax.annotation.Nonnull;
+
+import com.yahoo.imapnio.async.client.ImapWireCapture;
+import com.yahoo.imapnio.async.client.ImapWireCapture.Direction;
+import com.yahoo.imapnio.async.request.ImapRequest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * This class captures the frames of one session into the wire capture of its client. Placed after the response line reader, it captures every
+ * server response as one frame. Requests are captured by the session through {@link #captureRequest(ByteBuf, ImapRequest)}, since only the
+ * session knows whether a request carries sensitive data.
+ */
+public class ImapWireCaptureHandler extends ChannelInboundHandlerAdapter {
+
+    /** Literal for the name registered in pipeline. */
+    public static final String HANDLER_NAME = "ImapWireCaptureHandler";
+
+    /** The wire capture of the client. */
+    private final ImapWireCapture capture;
+
+    /** Session Id. */
+    private final long sessionId;
+
+    /**
+     * Initializes a {@code ImapWireCaptureHandler}.
+     *
+     * @param capture the wire capture of the client
+     * @param sessionId the session id
+     */
+    public ImapWireCaptureHandler(@Nonnull final ImapWireCapture capture, final long sessionId) {
+        this.capture = capture;
+        this.sessionId = sessionId;
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+        if (msg instanceof ByteBuf) {
+            capture.capture(sessionId, Direction.INBOUND, (ByteBuf) msg);
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    /**
+     * Captures a request sent to server, or the debug data of the command in place of it when the request has sensitive data.
+     *
+     * @param request the request
+     * @param command the command of the request
+     */
+    public void captureRequest(@Nonnull final ByteBuf request, @Nonnull final ImapRequest command) {
+        if (command.isCommandLineDataSensitive()) {
+            capture.captureRedacted(sessionId, Direction.OUTBOUND, String.valueOf(command.getDebugData()));
+        } else {
+            capture.capture(sessionId, Direction.OUTBOUND, request);
+        }
+    }
+}
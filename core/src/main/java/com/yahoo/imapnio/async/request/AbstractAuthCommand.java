@@ -7,11 +7,12 @@ import javax.annotation.Nonnull;
 
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.KnownCapability;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap authenticate command request from client.
@@ -42,7 +43,7 @@ public abstract class AbstractAuthCommand extends ImapRequestAdapter {
      * @param capa the capability obtained from server
      */
     public AbstractAuthCommand(@Nonnull final Capability capa) {
-        this.isSaslIREnabled = capa.hasCapability(ImapClientConstants.SASL_IR);
+        this.isSaslIREnabled = capa.hasCapability(KnownCapability.SASL_IR);
         this.isClientResponseSent = false;
         this.isDataSensitive = true;
     }
@@ -62,16 +63,16 @@ public abstract class AbstractAuthCommand extends ImapRequestAdapter {
     abstract String buildClientResponse();
 
     @Override
-    public ByteBuf getCommandLineBytes() {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) {
         if (isSaslIREnabled) { // server allows client response in one line
             this.isDataSensitive = true; // containing sensitive data
             final String clientResp = buildClientResponse();
 
             // SASL-IR, rfc4959. "AUTHENTICATE" SP auth-type [SP (base64 / "=")] *(CRLF base64) ex: AUTHENTICATE XOAUTH2 [base64 response]
-            final ByteBuf sb = Unpooled.buffer(clientResp.length() + ImapClientConstants.PAD_LEN);
+            final ByteBuf sb = alloc.buffer(clientResp.length() + ImapClientConstants.PAD_LEN);
             buildCommand(sb); // ex: AUTHENTICATE XOAUTH2
             sb.writeByte(ImapClientConstants.SPACE);
-            sb.writeBytes(clientResp.getBytes(StandardCharsets.US_ASCII)); // client responses
+            sb.writeCharSequence(clientResp, StandardCharsets.US_ASCII); // client responses
             sb.writeBytes(CRLF_B);
             this.isClientResponseSent = true; // setting to true to indicate client response is sent
             return sb;
@@ -79,7 +80,7 @@ public abstract class AbstractAuthCommand extends ImapRequestAdapter {
 
         // SASL-IR is not supported, just send command without client response
         this.isDataSensitive = false;
-        final ByteBuf buf = Unpooled.buffer(COMMAND_LEN);
+        final ByteBuf buf = alloc.buffer(COMMAND_LEN);
         buildCommand(buf);
         buf.writeBytes(CRLF_B);
         return buf;
@@ -96,10 +97,11 @@ public abstract class AbstractAuthCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getNextCommandLineAfterContinuation(final IMAPResponse serverResponse) throws ImapAsyncClientException {
+    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse, @Nonnull final ByteBufAllocator alloc)
+            throws ImapAsyncClientException {
         if (isClientResponseSent) { // when server sends "+ [base64 encoded error response]" after client response is sent, we send cancel
             this.isDataSensitive = false;
-            final ByteBuf buf = Unpooled.buffer(CANCEL_LEN);
+            final ByteBuf buf = alloc.buffer(CANCEL_LEN);
             buf.writeByte(ImapClientConstants.CANCEL_B);
             buf.writeBytes(CRLF_B);
             return buf;
@@ -108,15 +110,16 @@ public abstract class AbstractAuthCommand extends ImapRequestAdapter {
         // client response is not sent yet, sending it now
         this.isDataSensitive = true;
         final String clientResp = buildClientResponse();
-        final ByteBuf buf = Unpooled.buffer(clientResp.length() + ImapClientConstants.CRLFLEN);
-        buf.writeBytes(clientResp.getBytes(StandardCharsets.US_ASCII));
+        final ByteBuf buf = alloc.buffer(clientResp.length() + ImapClientConstants.CRLFLEN);
+        buf.writeCharSequence(clientResp, StandardCharsets.US_ASCII);
         buf.writeBytes(CRLF_B);
         isClientResponseSent = true; // setting to true to indicate client response is sent
         return buf;
     }
 
     @Override
-    public ByteBuf getTerminateCommandLine() throws ImapAsyncClientException {
+    public ByteBuf getTerminateCommandLine(@Nonnull final ByteBufAllocator alloc)
+            throws ImapAsyncClientException {
         throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
     }
 
@@ -7,7 +7,7 @@ import javax.annotation.Nonnull;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines IMAP fetch command request from client. ABNF in RFC3501 is described as following:
@@ -112,18 +112,18 @@ public abstract class AbstractFetchCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
-        final ByteBuf sb = Unpooled.buffer();
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) {
+        final ByteBuf sb = alloc.buffer();
         sb.writeBytes(isUid ? UID_FETCH_SP_B : FETCH_SP_B);
-        sb.writeBytes(msgNumbers.getBytes(StandardCharsets.US_ASCII));
+        sb.writeCharSequence(msgNumbers, StandardCharsets.US_ASCII);
         sb.writeByte(ImapClientConstants.SPACE);
 
         if (dataItems != null) {
             sb.writeByte(ImapClientConstants.L_PAREN);
-            sb.writeBytes(dataItems.getBytes(StandardCharsets.US_ASCII));
+            sb.writeCharSequence(dataItems, StandardCharsets.US_ASCII);
             sb.writeByte(ImapClientConstants.R_PAREN);
         } else {
-            sb.writeBytes(macro.name().getBytes(StandardCharsets.US_ASCII));
+            sb.writeCharSequence(macro.name(), StandardCharsets.US_ASCII);
         }
         sb.writeBytes(CRLF_B);
 
@@ -4,11 +4,10 @@ import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnull;
 
-import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap abstract commands related to change operation on folder, like create folder, rename folder, delete folder.
@@ -21,9 +20,24 @@ abstract class AbstractFolderActionCommand extends ImapRequestAdapter {
     /** Command operator, for example, "CREATE". */
     private String op;
 
+    /** Start of the QRESYNC parameter of SELECT and EXAMINE, RFC 7162, followed by the known UIDVALIDITY and modification sequence. */
+    private static final String QRESYNC_START = " (QRESYNC (";
+
+    /** End of the QRESYNC parameter. */
+    private static final String QRESYNC_END = "))";
+
+    /** Value of the known UIDVALIDITY when the command has no QRESYNC parameter. */
+    private static final long NO_QRESYNC = -1;
+
     /** Folder name. */
     private String folderName;
 
+    /** Last known UIDVALIDITY of the folder given in QRESYNC parameter, {@code NO_QRESYNC} if none. */
+    private final long knownUidValidity;
+
+    /** Last known modification sequence of the folder given in QRESYNC parameter. */
+    private final long knownModSeq;
+
     /**
      * Initializes a @{code FolderActionCommand}.
      *
@@ -31,8 +45,23 @@ abstract class AbstractFolderActionCommand extends ImapRequestAdapter {
      * @param folderName folder name
      */
     protected AbstractFolderActionCommand(@Nonnull final String op, @Nonnull final String folderName) {
+        this(op, folderName, NO_QRESYNC, NO_QRESYNC);
+    }
+
+    /**
+     * Initializes a @{code FolderActionCommand} with the QRESYNC parameter, RFC 7162, following the folder name.
+     *
+     * @param op command operator
+     * @param folderName folder name
+     * @param knownUidValidity the last known UIDVALIDITY of the folder
+     * @param knownModSeq the last known modification sequence of the folder
+     */
+    protected AbstractFolderActionCommand(@Nonnull final String op, @Nonnull final String folderName, final long knownUidValidity,
+            final long knownModSeq) {
         this.op = op;
         this.folderName = folderName;
+        this.knownUidValidity = knownUidValidity;
+        this.knownModSeq = knownModSeq;
     }
 
     @Override
@@ -41,20 +70,39 @@ abstract class AbstractFolderActionCommand extends ImapRequestAdapter {
         this.folderName = null;
     }
 
+    /**
+     * @return the folder name, null once the command is cleaned up
+     */
+    public String getFolderName() {
+        return folderName;
+    }
+
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
 
-        final String base64Folder = BASE64MailboxEncoder.encode(folderName);
+        final String base64Folder = MailboxNameCodec.encode(folderName);
         // 2 * base64Folder.length(): assuming every char needs to be escaped, goal is eliminating resizing, and avoid complex length calculation
         final int len = 2 * base64Folder.length() + ImapClientConstants.PAD_LEN;
-        final ByteBuf sb = Unpooled.buffer(len);
-        sb.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
-        sb.writeByte(ImapClientConstants.SPACE);
+        final ByteBuf sb = alloc.buffer(len);
+        try {
+            sb.writeCharSequence(op, StandardCharsets.US_ASCII);
+            sb.writeByte(ImapClientConstants.SPACE);
 
-        final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
-        formatter.formatArgument(base64Folder, sb, false); // already base64 encoded so can be formatted and write to sb
-        sb.writeBytes(CRLF_B);
+            final ImapArgumentFormatter formatter = ImapArgumentFormatter.INSTANCE;
+            formatter.formatArgument(base64Folder, sb, false); // already base64 encoded so can be formatted and write to sb
+            if (knownUidValidity != NO_QRESYNC) {
+                sb.writeCharSequence(QRESYNC_START, StandardCharsets.US_ASCII);
+                sb.writeCharSequence(Long.toString(knownUidValidity), StandardCharsets.US_ASCII);
+                sb.writeByte(ImapClientConstants.SPACE);
+                sb.writeCharSequence(Long.toString(knownModSeq), StandardCharsets.US_ASCII);
+                sb.writeCharSequence(QRESYNC_END, StandardCharsets.US_ASCII);
+            }
+            sb.writeBytes(CRLF_B);
 
-        return sb;
+            return sb;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            sb.release();
+            throw e;
+        }
     }
 }
@@ -4,13 +4,12 @@ import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnull;
 
-import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.sun.mail.imap.protocol.MessageSet;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap message change operation command from client. For example, copy message, move message.
@@ -103,28 +102,32 @@ abstract class AbstractMessageActionCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
 
         // encode the mbox as per RFC2060
-        final String base64Folder = BASE64MailboxEncoder.encode(targetFolder);
+        final String base64Folder = MailboxNameCodec.encode(targetFolder);
         // 2 * base64Folder.length(): assuming every char needs to be escaped, goal is eliminating resizing, and avoid complex length calculation
         final int len = 2 * base64Folder.length() + ImapClientConstants.PAD_LEN;
-        final ByteBuf sb = Unpooled.buffer(len);
-
-        if (isUid) {
-            sb.writeBytes(UID_B);
+        final ByteBuf sb = alloc.buffer(len);
+        try {
+            if (isUid) {
+                sb.writeBytes(UID_B);
+            }
+
+            sb.writeCharSequence(op, StandardCharsets.US_ASCII);
+            sb.writeByte(ImapClientConstants.SPACE);
+            sb.writeCharSequence(msgNumbers, StandardCharsets.US_ASCII);
+            sb.writeByte(ImapClientConstants.SPACE);
+
+            final ImapArgumentFormatter argWriter = ImapArgumentFormatter.INSTANCE;
+            argWriter.formatArgument(base64Folder, sb, false);
+
+            sb.writeBytes(CRLF_B);
+
+            return sb;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            sb.release();
+            throw e;
         }
-
-        sb.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
-        sb.writeByte(ImapClientConstants.SPACE);
-        sb.writeBytes(msgNumbers.getBytes(StandardCharsets.US_ASCII));
-        sb.writeByte(ImapClientConstants.SPACE);
-
-        final ImapArgumentFormatter argWriter = new ImapArgumentFormatter();
-        argWriter.formatArgument(base64Folder, sb, false);
-
-        sb.writeBytes(CRLF_B);
-
-        return sb;
     }
 }
@@ -5,7 +5,7 @@ import java.nio.charset.StandardCharsets;
 import javax.annotation.Nonnull;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines an Imap command that has no arguments sent from client.
@@ -34,10 +34,10 @@ public abstract class AbstractNoArgsCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) {
         final int len = op.length() + ImapClientConstants.CRLFLEN;
-        final ByteBuf sb = Unpooled.buffer(len);
-        sb.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
+        final ByteBuf sb = alloc.buffer(len);
+        sb.writeCharSequence(op, StandardCharsets.US_ASCII);
         sb.writeBytes(CRLF_B);
         return sb;
     }
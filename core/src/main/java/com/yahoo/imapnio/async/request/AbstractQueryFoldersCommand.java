@@ -4,11 +4,10 @@ import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnull;
 
-import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap selecct command request from client.
@@ -48,25 +47,30 @@ abstract class AbstractQueryFoldersCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
         // Ex:LIST /usr/staff/jones ""
 
         // encode the arguments as per RFC2060
-        final String ref64 = BASE64MailboxEncoder.encode(ref);
-        final String pat64 = BASE64MailboxEncoder.encode(pattern);
+        final String ref64 = MailboxNameCodec.encode(ref);
+        final String pat64 = MailboxNameCodec.encode(pattern);
 
         final int len = 2 * ref64.length() + 2 * pat64.length() + ImapClientConstants.PAD_LEN;
-        final ByteBuf sb = Unpooled.buffer(len);
-        sb.writeBytes(op.getBytes(StandardCharsets.US_ASCII));
-        sb.writeByte(ImapClientConstants.SPACE);
-
-        final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
-        formatter.formatArgument(ref64, sb, false); // already base64 encoded so can be formatted and write to sb
-        sb.writeByte(ImapClientConstants.SPACE);
-
-        formatter.formatArgument(pat64, sb, false);
-        sb.writeBytes(CRLF_B); // already base64 encoded so can be formatted and write to sb
-
-        return sb;
+        final ByteBuf sb = alloc.buffer(len);
+        try {
+            sb.writeCharSequence(op, StandardCharsets.US_ASCII);
+            sb.writeByte(ImapClientConstants.SPACE);
+
+            final ImapArgumentFormatter formatter = ImapArgumentFormatter.INSTANCE;
+            formatter.formatArgument(ref64, sb, false); // already base64 encoded so can be formatted and write to sb
+            sb.writeByte(ImapClientConstants.SPACE);
+
+            formatter.formatArgument(pat64, sb, false);
+            sb.writeBytes(CRLF_B); // already base64 encoded so can be formatted and write to sb
+
+            return sb;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            sb.release();
+            throw e;
+        }
     }
 }
@@ -2,23 +2,28 @@ package com.yahoo.imapnio.async.request;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import javax.mail.internet.MimeUtility;
 import javax.mail.search.SearchException;
 import javax.mail.search.SearchTerm;
 
 import com.sun.mail.iap.Argument;
 import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
 import com.sun.mail.imap.protocol.SearchSequence;
 import com.yahoo.imapnio.async.data.Capability;
+import com.yahoo.imapnio.async.data.KnownCapability;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * This class defines IMAP search command request from client.
@@ -45,6 +50,11 @@ import io.netty.buffer.Unpooled;
  *                  "UID" SP sequence-set / "UNDRAFT" / sequence-set /
  *                  "(" search-key *(SP search-key) ")"
  * </pre>
+ *
+ * <p>
+ * Strings that cannot be quoted are sent as literals. Without LITERAL+, the command line is sent in parts, the data of each literal once server
+ * sends continuation for it.
+ * </p>
  */
 public abstract class AbstractSearchCommand extends ImapRequestAdapter {
 
@@ -75,7 +85,10 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
     /** Message numbers in string type, specified based on RFC3501 sequence-set syntax. */
     private String msgNumbers;
 
-    /** The search expression. */
+    /** The search term, encoded straight into the command buffer. */
+    private SearchTerm searchTerm;
+
+    /** The search expression given as argument. */
     private Argument searchExpr;
 
     /** Character set. */
@@ -84,6 +97,9 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
     /** flag whether server allows LITERAL+. */
     private boolean isLiteralPlusEnabled;
 
+    /** Parts of the command line to send on server continuation, in order, null if none. */
+    private ArrayDeque<byte[]> pendingParts;
+
     /**
      * Initializes the object with the MessageNumberSet array, search string and character set name.
      *
@@ -124,10 +140,10 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
         this.charset = SearchSequence.isAscii(term) ? null : StandardCharsets.UTF_8.name();
 
         if (term != null) {
-            final SearchSequence searchSeq = new SearchSequence();
-            this.searchExpr = searchSeq.generateSequence(term, charset == null ? null : MimeUtility.javaCharset(charset));
+            SearchTermEncoder.validate(term);
+            this.searchTerm = term;
         }
-        this.isLiteralPlusEnabled = (capa != null) ? capa.hasCapability(ImapClientConstants.LITERAL_PLUS) : false;
+        this.isLiteralPlusEnabled = (capa != null) ? capa.hasCapability(KnownCapability.LITERAL_PLUS) : false;
     }
 
     /**
@@ -153,42 +169,109 @@ public abstract class AbstractSearchCommand extends ImapRequestAdapter {
         this.msgNumbers = msgNumbers;
         this.charset = charset;
         this.searchExpr = args;
-        this.isLiteralPlusEnabled = (capa != null) ? capa.hasCapability(ImapClientConstants.LITERAL_PLUS) : false;
+        this.isLiteralPlusEnabled = (capa != null) ? capa.hasCapability(KnownCapability.LITERAL_PLUS) : false;
     }
 
     @Override
     public void cleanup() {
         this.msgNumbers = null;
+        this.searchTerm = null;
         this.searchExpr = null;
         this.charset = null;
+        this.pendingParts = null;
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-        final ByteBuf sb = Unpooled.buffer();
-        sb.writeBytes(isUid ? UID_SEARCH_B : SEARCH_B);
-
-        if (charset != null) {
-            sb.writeByte(ImapClientConstants.SPACE);
-            sb.writeBytes(CHARSET_B);
-            sb.writeByte(ImapClientConstants.SPACE);
-            sb.writeBytes(charset.getBytes(StandardCharsets.US_ASCII));
+    public String getCommandLine() throws ImapAsyncClientException {
+        final ByteBuf buf = buildCommandLine(UnpooledByteBufAllocator.DEFAULT, null);
+        try {
+            return buf.toString(StandardCharsets.US_ASCII);
+        } finally {
+            buf.release();
         }
+    }
 
-        if (msgNumbers != null) {
-            sb.writeByte(ImapClientConstants.SPACE);
-            sb.writeBytes(msgNumbers.getBytes(StandardCharsets.US_ASCII));
+    @Override
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
+        final ArrayDeque<byte[]> parts = new ArrayDeque<byte[]>();
+        final ByteBuf sb = buildCommandLine(alloc, parts);
+        pendingParts = parts.isEmpty() ? null : parts;
+        return sb;
+    }
+
+    @Override
+    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse, @Nonnull final ByteBufAllocator alloc)
+            throws ImapAsyncClientException {
+        if (pendingParts == null || pendingParts.isEmpty()) {
+            throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
         }
+        final byte[] part = pendingParts.poll();
+        return alloc.buffer(part.length).writeBytes(part);
+    }
 
-        if (searchExpr != null) {
-            sb.writeByte(ImapClientConstants.SPACE);
-            try {
-                searchExpr.write(new ByteBufWriter(sb, isLiteralPlusEnabled));
-            } catch (final IOException | ProtocolException e) {
-                throw new ImapAsyncClientException(FailureType.INVALID_INPUT, e);
+    /**
+     * Builds the command line. When parts are to be kept, the line is cut at every synchronizing literal, the returned buffer holding the part up to
+     * the first one, and the following parts are added in order.
+     *
+     * @param alloc the allocator to obtain the buffer from
+     * @param parts the parts following the first one, null to return the whole command line
+     * @return the command line, or its first part
+     * @throws ImapAsyncClientException when the search cannot be encoded
+     */
+    private ByteBuf buildCommandLine(@Nonnull final ByteBufAllocator alloc, @Nullable final ArrayDeque<byte[]> parts)
+            throws ImapAsyncClientException {
+        final ByteBuf sb = alloc.buffer();
+        try {
+            sb.writeBytes(isUid ? UID_SEARCH_B : SEARCH_B);
+
+            if (charset != null) {
+                sb.writeByte(ImapClientConstants.SPACE);
+                sb.writeBytes(CHARSET_B);
+                sb.writeByte(ImapClientConstants.SPACE);
+                sb.writeCharSequence(charset, StandardCharsets.US_ASCII);
+            }
+
+            if (msgNumbers != null) {
+                sb.writeByte(ImapClientConstants.SPACE);
+                sb.writeCharSequence(msgNumbers, StandardCharsets.US_ASCII);
             }
+
+            List<Integer> continuationOffsets = Collections.emptyList();
+            if (searchTerm != null) {
+                sb.writeByte(ImapClientConstants.SPACE);
+                try {
+                    final SearchTermEncoder encoder = new SearchTermEncoder(charset == null ? null : StandardCharsets.UTF_8, isLiteralPlusEnabled);
+                    encoder.encode(searchTerm, sb);
+                    continuationOffsets = encoder.getContinuationOffsets();
+                } catch (final SearchException e) {
+                    throw new ImapAsyncClientException(FailureType.INVALID_INPUT, e);
+                }
+            } else if (searchExpr != null) {
+                sb.writeByte(ImapClientConstants.SPACE);
+                try {
+                    final ByteBufWriter writer = new ByteBufWriter(sb, isLiteralPlusEnabled);
+                    searchExpr.write(writer);
+                    continuationOffsets = writer.getContinuationOffsets();
+                } catch (final IOException | ProtocolException e) {
+                    throw new ImapAsyncClientException(FailureType.INVALID_INPUT, e);
+                }
+            }
+            sb.writeBytes(CRLF_B);
+
+            if (parts != null && !continuationOffsets.isEmpty()) {
+                for (int i = 0; i < continuationOffsets.size(); i++) {
+                    final int start = continuationOffsets.get(i);
+                    final int end = (i + 1 < continuationOffsets.size()) ? continuationOffsets.get(i + 1) : sb.writerIndex();
+                    final byte[] part = new byte[end - start];
+                    sb.getBytes(start, part);
+                    parts.add(part);
+                }
+                sb.writerIndex(continuationOffsets.get(0));
+            }
+            return sb;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            sb.release();
+            throw e;
         }
-        sb.writeBytes(CRLF_B);
-        return sb;
     }
 }
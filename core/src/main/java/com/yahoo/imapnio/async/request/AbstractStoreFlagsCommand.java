@@ -8,7 +8,7 @@ import javax.mail.Flags;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap store command request from client, with formal syntax below.
@@ -118,11 +118,11 @@ public abstract class AbstractStoreFlagsCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) {
         // Ex:STORE 2:4 +FLAGS (\Deleted)
-        final ByteBuf sb = Unpooled.buffer();
+        final ByteBuf sb = alloc.buffer();
         sb.writeBytes(isUid ? UID_STORE_SP_B : STORE_SP_B);
-        sb.writeBytes(msgNumbers.getBytes(StandardCharsets.US_ASCII));
+        sb.writeCharSequence(msgNumbers, StandardCharsets.US_ASCII);
         sb.writeByte(ImapClientConstants.SPACE);
 
         if (action == FlagsAction.ADD) {
@@ -138,9 +138,9 @@ public abstract class AbstractStoreFlagsCommand extends ImapRequestAdapter {
         }
 
         // buildFlagString generates "(" [flag *(SP flag)] ")"
-        final ImapArgumentFormatter argWriter = new ImapArgumentFormatter();
+        final ImapArgumentFormatter argWriter = ImapArgumentFormatter.INSTANCE;
         sb.writeByte(ImapClientConstants.SPACE);
-        sb.writeBytes(argWriter.buildFlagString(flags).getBytes(StandardCharsets.US_ASCII));
+        argWriter.writeFlags(flags, sb);
         sb.writeBytes(CRLF_B);
 
         return sb;
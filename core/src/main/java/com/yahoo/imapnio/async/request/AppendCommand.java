@@ -1,5 +1,11 @@
 package com.yahoo.imapnio.async.request;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -8,14 +14,16 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.mail.Flags;
 
-import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.sun.mail.imap.protocol.INTERNALDATE;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.stream.ChunkedNioFile;
 
 /**
  * This class defines IMAP append command request from client.
@@ -40,9 +48,21 @@ public class AppendCommand implements ImapRequest {
     /** The internal date associated with the message. */
     private Date date;
 
-    /** The message data. */
+    /** The message data, null when the data is streamed from a file or channel. */
     private byte[] data;
 
+    /** The file to stream the message data from. */
+    private File dataFile;
+
+    /** The channel to stream the message data from. */
+    private ReadableByteChannel dataChannel;
+
+    /** The length of the message data in bytes. */
+    private long dataLength;
+
+    /** Whether the data channel is handed over to the message writing it, which then closes it. */
+    private boolean isDataChannelHandedOver;
+
     /** Whether to enable Literal support option. */
     private LiteralSupport literalOpt;
 
@@ -74,15 +94,132 @@ public class AppendCommand implements ImapRequest {
         this.flags = imapFlags;
         this.date = internalDate;
         this.data = data;
+        this.dataLength = data.length;
         this.literalOpt = literalOpt;
     }
 
+    /**
+     * Initializes an append command for client that streams the message data from the given file. The file is sent with zero copy when the
+     * connection is neither encrypted nor compressed, and in chunks otherwise, so the message is never held in memory as a whole.
+     *
+     * @param folderName the folder to which the message must be appended
+     * @param imapFlags the flags for the message
+     * @param internalDate the internal date associated with the message
+     * @param file the file holding the message data
+     */
+    public AppendCommand(@Nonnull final String folderName, @Nullable final Flags imapFlags, @Nullable final Date internalDate,
+            @Nonnull final File file) {
+        this(folderName, imapFlags, internalDate, file, LiteralSupport.DISABLE);
+    }
+
+    /**
+     * Initializes an append command for client that streams the message data from the given file.
+     *
+     * @param folderName the folder to which the message must be appended
+     * @param imapFlags the flags for the message
+     * @param internalDate the internal date associated with the message
+     * @param file the file holding the message data
+     * @param literalOpt literal support option
+     */
+    public AppendCommand(@Nonnull final String folderName, @Nullable final Flags imapFlags, @Nullable final Date internalDate,
+            @Nonnull final File file, @Nonnull final LiteralSupport literalOpt) {
+        this.folderName = folderName;
+        this.flags = imapFlags;
+        this.date = internalDate;
+        this.dataFile = file;
+        this.dataLength = file.length();
+        this.literalOpt = literalOpt;
+    }
+
+    /**
+     * Initializes an append command for client that streams the message data from the given channel. A {@link FileChannel} is sent from its current
+     * position with zero copy when the connection is neither encrypted nor compressed. The channel is closed once the data is written, or when the
+     * command ends without writing it.
+     *
+     * @param folderName the folder to which the message must be appended
+     * @param imapFlags the flags for the message
+     * @param internalDate the internal date associated with the message
+     * @param channel the channel to read the message data from
+     * @param length the number of bytes of the message data to read from the channel
+     */
+    public AppendCommand(@Nonnull final String folderName, @Nullable final Flags imapFlags, @Nullable final Date internalDate,
+            @Nonnull final ReadableByteChannel channel, final long length) {
+        this(folderName, imapFlags, internalDate, channel, length, LiteralSupport.DISABLE);
+    }
+
+    /**
+     * Initializes an append command for client that streams the message data from the given channel. The channel is closed once the data is written,
+     * or when the command ends without writing it.
+     *
+     * @param folderName the folder to which the message must be appended
+     * @param imapFlags the flags for the message
+     * @param internalDate the internal date associated with the message
+     * @param channel the channel to read the message data from
+     * @param length the number of bytes of the message data to read from the channel
+     * @param literalOpt literal support option
+     */
+    public AppendCommand(@Nonnull final String folderName, @Nullable final Flags imapFlags, @Nullable final Date internalDate,
+            @Nonnull final ReadableByteChannel channel, final long length, @Nonnull final LiteralSupport literalOpt) {
+        this.folderName = folderName;
+        this.flags = imapFlags;
+        this.date = internalDate;
+        this.dataChannel = channel;
+        this.dataLength = length;
+        this.literalOpt = literalOpt;
+    }
+
+    /**
+     * Initializes an append command for client that streams the message data from the given input stream. The stream is closed once the data is
+     * written, or when the command ends without writing it.
+     *
+     * <p>
+     * The stream is read on the event loop of the session, and a read blocking there holds up every session of that event loop. The stream should
+     * hence be backed by memory or a local file; data from a slow source, such as a remote one, should be staged to a file first.
+     * </p>
+     *
+     * @param folderName the folder to which the message must be appended
+     * @param imapFlags the flags for the message
+     * @param internalDate the internal date associated with the message
+     * @param in the stream to read the message data from
+     * @param length the number of bytes of the message data to read from the stream
+     */
+    public AppendCommand(@Nonnull final String folderName, @Nullable final Flags imapFlags, @Nullable final Date internalDate,
+            @Nonnull final InputStream in, final long length) {
+        this(folderName, imapFlags, internalDate, in, length, LiteralSupport.DISABLE);
+    }
+
+    /**
+     * Initializes an append command for client that streams the message data from the given input stream. The stream is closed once the data is
+     * written, or when the command ends without writing it.
+     *
+     * <p>
+     * The stream is read on the event loop of the session, and a read blocking there holds up every session of that event loop. The stream should
+     * hence be backed by memory or a local file; data from a slow source, such as a remote one, should be staged to a file first.
+     * </p>
+     *
+     * @param folderName the folder to which the message must be appended
+     * @param imapFlags the flags for the message
+     * @param internalDate the internal date associated with the message
+     * @param in the stream to read the message data from
+     * @param length the number of bytes of the message data to read from the stream
+     * @param literalOpt literal support option
+     */
+    public AppendCommand(@Nonnull final String folderName, @Nullable final Flags imapFlags, @Nullable final Date internalDate,
+            @Nonnull final InputStream in, final long length, @Nonnull final LiteralSupport literalOpt) {
+        this(folderName, imapFlags, internalDate, Channels.newChannel(in), length, literalOpt);
+    }
+
     @Override
     public void cleanup() {
+        if (dataChannel != null && !isDataChannelHandedOver) { // the command ended before its data was written, on NO or BAD for example
+            closeDataChannel();
+        }
         this.folderName = null;
         this.flags = null;
         this.date = null;
         this.data = null;
+        this.dataFile = null;
+        this.dataChannel = null;
         this.literalOpt = null;
     }
 
@@ -92,57 +229,130 @@ public class AppendCommand implements ImapRequest {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
         // Ex: APPEND saved-messages (\Seen) {310}
         // encode the folder name as per RFC2060
-        final String base64Folder = BASE64MailboxEncoder.encode(folderName);
+        final String base64Folder = MailboxNameCodec.encode(folderName);
         final int len = 2 * base64Folder.length() + ImapClientConstants.PAD_LEN;
 
-        final ByteBuf buf = Unpooled.buffer(len);
-        buf.writeBytes(APPEND_SP.getBytes(StandardCharsets.US_ASCII));
-
-        // folder
-        final ImapArgumentFormatter argWriter = new ImapArgumentFormatter();
-        argWriter.formatArgument(base64Folder, buf, false); // already base64 encoded so can be formatted and write to buf
-        buf.writeByte(ImapClientConstants.SPACE);
+        final ByteBuf buf = alloc.buffer(len);
+        try {
+            buf.writeCharSequence(APPEND_SP, StandardCharsets.US_ASCII);
 
-        // flags
-        if (flags != null) { // set Flags in appended message
-            buf.writeBytes(argWriter.buildFlagString(flags).getBytes(StandardCharsets.US_ASCII));
+            // folder
+            final ImapArgumentFormatter argWriter = ImapArgumentFormatter.INSTANCE;
+            argWriter.formatArgument(base64Folder, buf, false); // already base64 encoded so can be formatted and write to buf
             buf.writeByte(ImapClientConstants.SPACE);
-        }
 
-        // date
-        if (date != null) {
-            argWriter.formatArgument(INTERNALDATE.format(date), buf, false);
-            buf.writeByte(ImapClientConstants.SPACE);
+            // flags
+            if (flags != null) { // set Flags in appended message
+                argWriter.writeFlags(flags, buf);
+                buf.writeByte(ImapClientConstants.SPACE);
+            }
+
+            // date
+            if (date != null) {
+                argWriter.formatArgument(INTERNALDATE.format(date), buf, false);
+                buf.writeByte(ImapClientConstants.SPACE);
+            }
+
+            // length of the literal
+            buf.writeByte('{');
+            buf.writeCharSequence(Long.toString(dataLength), StandardCharsets.US_ASCII);
+            if (isNonSynchronizingLiteral()) {
+                buf.writeByte(literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS ? '+' : '-');
+            }
+            buf.writeByte('}');
+            buf.writeBytes(CRLF_B);
+
+            // decide to send literal, streamed data is written by the session right after this command line
+            if (isNonSynchronizingLiteral() && !isDataStreamed()) {
+                writeData(buf);
+            }
+            return buf;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            buf.release();
+            throw e;
         }
+    }
 
-        // length of the literal
-        final boolean isLiteralPlus = (literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS);
-        final boolean isLiteralMinus = (literalOpt == LiteralSupport.ENABLE_LITERAL_MINUS && data.length < MAX_LITERAL_MINUS_DATA_LEN);
+    /**
+     * @return true if the literal is sent right after the command line without waiting for server continuation, that is LITERAL+ or LITERAL-
+     */
+    public boolean isNonSynchronizingLiteral() {
+        return literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS
+                || (literalOpt == LiteralSupport.ENABLE_LITERAL_MINUS && dataLength < MAX_LITERAL_MINUS_DATA_LEN);
+    }
+
+    /**
+     * @return true if the message data is streamed from a file or channel, in which case it is obtained through {@link #getStreamedData(boolean)}
+     */
+    public boolean isDataStreamed() {
+        return dataFile != null || dataChannel != null;
+    }
 
-        buf.writeByte('{');
-        buf.writeBytes(Integer.toString(data.length).getBytes(StandardCharsets.US_ASCII));
-        if (isLiteralPlus) {
-            buf.writeByte('+');
-        } else if (isLiteralMinus) {
-            buf.writeByte('-');
+    /**
+     * Builds the message that writes the streamed literal data to the channel. It is either a {@link DefaultFileRegion} that the transport sends
+     * with zero copy, or a {@link io.netty.handler.stream.ChunkedInput} that requires a {@link io.netty.handler.stream.ChunkedWriteHandler} in the
+     * pipeline. The CRLF ending the literal is not part of it, see {@link #getLiteralEnd(ByteBufAllocator)}.
+     *
+     * @param isZeroCopyAllowed whether the connection can take a file region, that is neither encrypted nor compressed
+     * @return the message to write to the channel
+     * @throws ImapAsyncClientException when the data is not streamed or the file cannot be opened
+     */
+    public Object getStreamedData(final boolean isZeroCopyAllowed) throws ImapAsyncClientException {
+        try {
+            if (dataFile != null) {
+                return isZeroCopyAllowed ? new DefaultFileRegion(dataFile, 0, dataLength)
+                        : new ChunkedNioFile(FileChannel.open(dataFile.toPath()), 0, dataLength, LiteralChunkedInput.CHUNK_SIZE);
+            }
+            if (dataChannel instanceof FileChannel) {
+                final FileChannel fileChannel = (FileChannel) dataChannel;
+                final Object region = isZeroCopyAllowed ? new DefaultFileRegion(fileChannel, fileChannel.position(), dataLength)
+                        : new ChunkedNioFile(fileChannel, fileChannel.position(), dataLength, LiteralChunkedInput.CHUNK_SIZE);
+                isDataChannelHandedOver = true;
+                return region;
+            }
+            if (dataChannel != null) {
+                isDataChannelHandedOver = true;
+                return new LiteralChunkedInput(dataChannel, dataLength);
+            }
+        } catch (final IOException e) {
+            if (dataChannel != null) {
+                closeDataChannel();
+                isDataChannelHandedOver = true; // closed already
+            }
+            throw new ImapAsyncClientException(FailureType.CHANNEL_EXCEPTION, e);
         }
-        buf.writeByte('}');
-        buf.writeBytes(CRLF_B);
+        throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
+    }
 
-        // decide to send literal
-        if (isLiteralPlus || isLiteralMinus) {
-            buf.writeBytes(buildDataByteBuf());
+    /**
+     * Closes the data channel, which is not handed over to any message that would close it.
+     */
+    private void closeDataChannel() {
+        try {
+            dataChannel.close();
+        } catch (final IOException e) { // nothing more can be done with the channel, and the command is over anyway
         }
-        return buf;
+    }
 
+    /**
+     * @param alloc the allocator to obtain the buffer from
+     * @return the CRLF that ends the streamed literal data
+     */
+    public ByteBuf getLiteralEnd(@Nonnull final ByteBufAllocator alloc) {
+        return alloc.buffer(ImapClientConstants.CRLFLEN).writeBytes(CRLF_B);
     }
 
     @Override
     public String getCommandLine() throws ImapAsyncClientException {
-        return getCommandLineBytes().toString(StandardCharsets.UTF_8);
+        final ByteBuf buf = getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
+        try {
+            return buf.toString(StandardCharsets.UTF_8);
+        } finally {
+            buf.release();
+        }
     }
 
     @Override
@@ -156,30 +366,40 @@ public class AppendCommand implements ImapRequest {
     }
 
     /**
-     * @return the byte buffer for the literal data
+     * Writes the literal data followed by CRLF to the given buffer.
+     *
+     * @param buf the buffer to write to
      */
-    private ByteBuf buildDataByteBuf() {
+    private void writeData(@Nonnull final ByteBuf buf) {
         // Note: we obtain only binary from client, therefore need to write binary directly to retain the correct charset encoding, CANNOT convert it
         // to String since we do not know the charset.
-        final int length = data.length + ImapClientConstants.CRLFLEN;
-        final ByteBuf buffer = Unpooled.buffer(length);
-        buffer.writeBytes(data);
-        buffer.writeBytes(CRLF_B); // CRLF is 10 and 13, < 128, so either ASCII or UTF-8 is fine
+        buf.writeBytes(data);
+        buf.writeBytes(CRLF_B); // CRLF is 10 and 13, < 128, so either ASCII or UTF-8 is fine
+    }
+
+    /**
+     * @param alloc the allocator to obtain the buffer from
+     * @return the byte buffer for the literal data
+     */
+    private ByteBuf buildDataByteBuf(@Nonnull final ByteBufAllocator alloc) {
+        final ByteBuf buffer = alloc.buffer(data.length + ImapClientConstants.CRLFLEN);
+        writeData(buffer);
         return buffer;
     }
 
     @Override
-    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse) throws ImapAsyncClientException {
-        if (literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS
-                || (literalOpt == LiteralSupport.ENABLE_LITERAL_MINUS && data.length < MAX_LITERAL_MINUS_DATA_LEN)) {
+    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse, @Nonnull final ByteBufAllocator alloc)
+            throws ImapAsyncClientException {
+        if (isNonSynchronizingLiteral()) {
             // should not reach here, since if LITERAL+ or LITERAL- is requested, server should not ask for next line
             throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
         }
-        return buildDataByteBuf();
+        // streamed data is written by the session ahead of this line
+        return isDataStreamed() ? getLiteralEnd(alloc) : buildDataByteBuf(alloc);
     }
 
     @Override
-    public ByteBuf getTerminateCommandLine() throws ImapAsyncClientException {
+    public ByteBuf getTerminateCommandLine(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
         throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
     }
 
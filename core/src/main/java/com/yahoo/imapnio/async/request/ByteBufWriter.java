@@ -3,6 +3,8 @@ package com.yahoo.imapnio.async.request;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import javax.annotation.Nonnull;
@@ -16,7 +18,8 @@ import com.sun.mail.util.MailLogger;
 import io.netty.buffer.ByteBuf;
 
 /**
- * This class allows writing the data from argument to ByteBuf directly.
+ * This class allows writing the data from argument to ByteBuf directly. Offsets where the data of a synchronizing literal starts are kept, for the
+ * command line to be sent in parts as server sends continuation.
  */
 final class ByteBufWriter extends Protocol {
 
@@ -29,6 +32,12 @@ final class ByteBufWriter extends Protocol {
     /** Flag to indicate whether literal plus is enabled. */
     private boolean isLiteralPlus;
 
+    /** The buffer written to. */
+    private ByteBuf buf;
+
+    /** Offsets in the buffer where the data of a synchronizing literal starts, in order. */
+    private List<Integer> continuationOffsets = new ArrayList<Integer>();
+
     /**
      * Creates a ByteBufWriter object.
      *
@@ -36,10 +45,18 @@ final class ByteBufWriter extends Protocol {
      */
     ByteBufWriter(@Nonnull final ByteBuf buf, final boolean isLiteralPlus) throws IOException {
         super(null, null, new Properties(), false);
+        this.buf = buf;
         this.outputStream = new ByteBufOutputStream(buf);
         this.isLiteralPlus = isLiteralPlus;
     }
 
+    /**
+     * @return offsets in the buffer where the data of a synchronizing literal starts, to be sent once server sends continuation, empty if none
+     */
+    List<Integer> getContinuationOffsets() {
+        return continuationOffsets;
+    }
+
     /**
      * Never used but must be implemented.
      *
@@ -58,10 +75,12 @@ final class ByteBufWriter extends Protocol {
     }
 
     /**
-     * Returns a continuation response in order to avoid @{code com.sun.mail.iap.Argument} blocking on literal method to wait for server continuation.
+     * Returns a continuation response in order to avoid @{code com.sun.mail.iap.Argument} blocking on literal method to wait for server continuation,
+     * keeping the offset where the literal data starts instead.
      */
     @Override
     public Response readResponse() throws IOException, ProtocolException {
+        continuationOffsets.add(buf.writerIndex());
         return new IMAPResponse(CONTINUE_SYMBOL);
     }
 
@@ -96,4 +115,9 @@ class ByteBufOutputStream extends OutputStream {
     public void write(final int b) throws IOException {
         buf.writeByte(b);
     }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        buf.writeBytes(b, off, len);
+    }
 }
@@ -7,7 +7,7 @@ import javax.annotation.Nonnull;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap enable command request from client. RFC5161 ABNF: https://tools.ietf.org/html/rfc5161
@@ -40,8 +40,8 @@ public class EnableCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-        final ByteBuf sb = Unpooled.buffer(ENABLE_BUF_LEN);
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
+        final ByteBuf sb = alloc.buffer(ENABLE_BUF_LEN);
 
         sb.writeBytes(ENABLE_B);
 
@@ -49,7 +49,7 @@ public class EnableCommand extends ImapRequestAdapter {
             sb.writeByte(ImapClientConstants.SPACE);
             // capability ABNF is:
             // capability = ("AUTH=" auth-type) / atom
-            sb.writeBytes(capabilities[i].getBytes(StandardCharsets.US_ASCII));
+            sb.writeCharSequence(capabilities[i], StandardCharsets.US_ASCII);
         }
         sb.writeBytes(CRLF_B);
         return sb;
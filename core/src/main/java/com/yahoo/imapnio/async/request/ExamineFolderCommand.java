@@ -21,6 +21,18 @@ public class ExamineFolderCommand extends AbstractFolderActionCommand {
         super(EXAMINE, folderName);
     }
 
+    /**
+     * Initializes a @{code ExamineCommand} that resynchronizes the folder quickly, QRESYNC in RFC 7162, which requires QRESYNC to be enabled in the
+     * session.
+     *
+     * @param folderName folder name to examine
+     * @param knownUidValidity the last known UIDVALIDITY of the folder
+     * @param knownModSeq the last known modification sequence of the folder
+     */
+    public ExamineFolderCommand(@Nonnull final String folderName, final long knownUidValidity, final long knownModSeq) {
+        super(EXAMINE, folderName, knownUidValidity, knownModSeq);
+    }
+
     @Override
     public ImapCommandType getCommandType() {
         return ImapCommandType.EXAMINE_FOLDER;
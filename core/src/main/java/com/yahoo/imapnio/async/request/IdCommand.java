@@ -3,10 +3,12 @@ package com.yahoo.imapnio.async.request;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
+import javax.annotation.Nonnull;
+
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap id command request from client.
@@ -46,33 +48,38 @@ public class IdCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
-        final ByteBuf sb = Unpooled.buffer(IDLINE_LEN);
-        sb.writeBytes(ID_SP_B);
-
-        if (params == null) {
-            sb.writeBytes(NIL_B);
-        } else {
-            // every token has to be encoded (double quoted and escaped) if needed
-            // ex: a023 ID ("name" "so/"dr" "version" "19.34")
-            final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
-            sb.writeByte(ImapClientConstants.L_PAREN);
-            boolean isFirstEntry = true;
-            for (final Map.Entry<String, String> e : params.entrySet()) {
-                if (!isFirstEntry) {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
+        final ByteBuf sb = alloc.buffer(IDLINE_LEN);
+        try {
+            sb.writeBytes(ID_SP_B);
+
+            if (params == null) {
+                sb.writeBytes(NIL_B);
+            } else {
+                // every token has to be encoded (double quoted and escaped) if needed
+                // ex: a023 ID ("name" "so/"dr" "version" "19.34")
+                final ImapArgumentFormatter formatter = ImapArgumentFormatter.INSTANCE;
+                sb.writeByte(ImapClientConstants.L_PAREN);
+                boolean isFirstEntry = true;
+                for (final Map.Entry<String, String> e : params.entrySet()) {
+                    if (!isFirstEntry) {
+                        sb.writeByte(ImapClientConstants.SPACE);
+                    } else {
+                        isFirstEntry = false;
+                    }
+                    formatter.formatArgument(e.getKey(), sb, true);
                     sb.writeByte(ImapClientConstants.SPACE);
-                } else {
-                    isFirstEntry = false;
+                    formatter.formatArgument(e.getValue(), sb, true);
                 }
-                formatter.formatArgument(e.getKey(), sb, true);
-                sb.writeByte(ImapClientConstants.SPACE);
-                formatter.formatArgument(e.getValue(), sb, true);
+                sb.writeByte(ImapClientConstants.R_PAREN);
             }
-            sb.writeByte(ImapClientConstants.R_PAREN);
-        }
 
-        sb.writeBytes(CRLF_B);
-        return sb;
+            sb.writeBytes(CRLF_B);
+            return sb;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            sb.release();
+            throw e;
+        }
     }
 
     @Override
@@ -2,13 +2,15 @@ package com.yahoo.imapnio.async.request;
 
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.sun.mail.imap.protocol.IMAPResponse;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap idle command request from client.
@@ -36,6 +38,9 @@ public class IdleCommand extends ImapRequestAdapter {
     /** ConcurrentLinkedQueue shared from caller and @{code ImapAsyncSession}. */
     private ConcurrentLinkedQueue<IMAPResponse> serverStreamingResponses;
 
+    /** Consumer given the untagged server responses as they arrive, instead of placing them in a queue. */
+    private Consumer<IMAPResponse> responseConsumer;
+
     /**
      * Initializes a @{code IdleCommand}.
      *
@@ -45,9 +50,28 @@ public class IdleCommand extends ImapRequestAdapter {
         this.serverStreamingResponses = serverStreamingResponses;
     }
 
+    /**
+     * Initializes a @{code IdleCommand} that gives the untagged server responses to the consumer as they arrive, so caller does not need to poll.
+     * The consumer is called on the I/O thread of the session, hence it should not block.
+     *
+     * @param responseConsumer consumer of the untagged server responses
+     */
+    public IdleCommand(@Nonnull final Consumer<IMAPResponse> responseConsumer) {
+        this.responseConsumer = responseConsumer;
+    }
+
     @Override
     public void cleanup() {
         this.serverStreamingResponses = null;
+        this.responseConsumer = null;
+    }
+
+    /**
+     * @return the consumer of the untagged server responses, null if the responses are placed in the streaming responses queue
+     */
+    @Nullable
+    public Consumer<IMAPResponse> getResponseConsumer() {
+        return responseConsumer;
     }
 
     @Override
@@ -66,21 +90,21 @@ public class IdleCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
-        final ByteBuf buf = Unpooled.buffer(LINE_LEN);
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) {
+        final ByteBuf buf = alloc.buffer(LINE_LEN);
         buf.writeBytes(IDLE_B);
         buf.writeBytes(CRLF_B);
         return buf;
     }
 
     @Override
-    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse) {
+    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse, @Nonnull final ByteBufAllocator alloc) {
         return null;
     }
 
     @Override
-    public ByteBuf getTerminateCommandLine() {
-        final ByteBuf buf = Unpooled.buffer(LINE_LEN);
+    public ByteBuf getTerminateCommandLine(@Nonnull final ByteBufAllocator alloc) {
+        final ByteBuf buf = alloc.buffer(LINE_LEN);
         buf.writeBytes(DONE_B);
         buf.writeBytes(CRLF_B);
         return buf;
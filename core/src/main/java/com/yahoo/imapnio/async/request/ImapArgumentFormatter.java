@@ -11,19 +11,20 @@ import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 import io.netty.buffer.ByteBuf;
 
 /**
- * This class encodes/formats imap command arguments properly based on the data value. The input data should be within ASCII chars.
+ * This class encodes/formats imap command arguments properly based on the data value. The input data should be within ASCII chars. It holds no
+ * state, so commands share {@link #INSTANCE} instead of creating one per command line.
  */
 public class ImapArgumentFormatter {
 
+    /** Shared instance used by all commands. */
+    static final ImapArgumentFormatter INSTANCE = new ImapArgumentFormatter();
+
     /** Primitive int 3. */
     private static final int THREE = 3;
 
     /** Ascii code 127, chars after that are symbols. */
     private static final int ASCII_CODE_127 = 0177;
 
-    /** Low bits mask. */
-    private static final int MASK = 0xff;
-
     /** Literal. */
     private static final String SEEN = "\\Seen";
 
@@ -43,7 +44,9 @@ public class ImapArgumentFormatter {
     private static final String ANSWERED = "\\Answered";
 
     /**
-     * Writes out given imap (UTF-7) String. An imap String is defined in RFC 3501, page 16.
+     * Writes out given imap (UTF-7) String. An imap String is defined in RFC 3501, page 16. The string is validated, quoted and escaped in a single
+     * pass writing each char directly to the buffer. Chars are written unquoted until the first one requiring quotes, at which point the prefix
+     * written so far, which never needs escaping, is shifted by one byte for the opening quote.
      *
      * @param src the source string, assuming it is from ascii code 0000 - 0177 already!
      * @param out the ButeBuf to write to
@@ -51,29 +54,39 @@ public class ImapArgumentFormatter {
      * @throws ImapAsyncClientException when src String that is > 0177
      */
     void formatArgument(@Nonnull final String src, @Nonnull final ByteBuf out, final boolean doQuote) throws ImapAsyncClientException {
-        int len = src.length();
+        final int len = src.length();
+        final int start = out.writerIndex();
+        out.ensureWritable(len + 2);
 
         // if 0 length, send as quoted-string
-        boolean quote = len == 0 ? true : doQuote;
-        boolean escape = false;
+        boolean quote = len == 0 || doQuote;
+        if (quote) {
+            out.writeByte('"');
+        }
 
         char b;
         for (int i = 0; i < len; i++) {
             b = src.charAt(i);
             if (b == '\0' || b == '\r' || b == '\n') {
                 // NUL, CR or LF means the bytes need to be sent as literals
-                out.writeBytes(src.getBytes(StandardCharsets.US_ASCII));
+                out.writerIndex(start);
+                out.writeCharSequence(src, StandardCharsets.US_ASCII);
                 return;
             }
-            if ((b & MASK) > ASCII_CODE_127) {
+            if (b > ASCII_CODE_127) {
+                out.writerIndex(start);
                 throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
             }
-            if (b == '*' || b == '%' || b == '(' || b == ')' || b == '{' || b == '"' || b == '\\' || ((b & MASK) <= ' ')) {
-                quote = true;
+            if (b == '*' || b == '%' || b == '(' || b == ')' || b == '{' || b == '"' || b == '\\' || b <= ' ') {
+                if (!quote) {
+                    insertQuote(out, start);
+                    quote = true;
+                }
                 if (b == '"' || b == '\\') {
-                    escape = true;
+                    out.writeByte('\\');
                 }
             }
+            out.writeByte(b);
         }
 
         /*
@@ -83,29 +96,28 @@ public class ImapArgumentFormatter {
          */
         if (!quote && len == THREE && (src.charAt(0) == 'N' || src.charAt(0) == 'n') && (src.charAt(1) == 'I' || src.charAt(1) == 'i')
                 && (src.charAt(2) == 'L' || src.charAt(2) == 'l')) {
+            insertQuote(out, start);
             quote = true;
         }
 
         if (quote) {
             out.writeByte('"');
         }
+    }
 
-        if (escape) {
-            // already quoted
-            for (int i = 0; i < len; i++) {
-                b = src.charAt(i);
-                if (b == '"' || b == '\\') {
-                    out.writeByte('\\');
-                }
-                out.writeByte(b);
-            }
-        } else {
-            out.writeBytes(src.getBytes(StandardCharsets.US_ASCII));
-        }
-
-        if (quote) {
-            out.writeByte('"');
+    /**
+     * Inserts an opening quote at the given index, shifting the bytes written after it by one.
+     *
+     * @param out the ByteBuf written to
+     * @param index the index of the opening quote
+     */
+    private static void insertQuote(@Nonnull final ByteBuf out, final int index) {
+        final int end = out.writerIndex();
+        out.writeByte('"');
+        for (int i = end; i > index; i--) {
+            out.setByte(i, out.getByte(i - 1));
         }
+        out.setByte(index, '"');
     }
 
     /**
@@ -132,10 +144,10 @@ public class ImapArgumentFormatter {
                 return;
             }
 
-            if ((b & MASK) > ASCII_CODE_127) {
+            if (b > ASCII_CODE_127) {
                 throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
             }
-            if (b == '*' || b == '%' || b == '(' || b == ')' || b == '{' || b == '"' || b == '\\' || ((b & MASK) <= ' ')) {
+            if (b == '*' || b == '%' || b == '(' || b == ')' || b == '{' || b == '"' || b == '\\' || b <= ' ') {
                 quote = true;
                 if (b == '"' || b == '\\') {
                     escape = true;
@@ -175,6 +187,62 @@ public class ImapArgumentFormatter {
         }
     }
 
+    /**
+     * Writes an IMAP flag_list from the given Flags object directly to the buffer.
+     *
+     * @param flags the flags
+     * @param out the ByteBuf to write to
+     */
+    void writeFlags(@Nonnull final Flags flags, @Nonnull final ByteBuf out) {
+        out.writeByte(ImapClientConstants.L_PAREN); // start of flag_list
+
+        boolean first = true;
+        for (final Flags.Flag f : flags.getSystemFlags()) {
+            final String s = getSystemFlagName(f);
+            if (s == null) {
+                continue; // skip it
+            }
+            if (first) {
+                first = false;
+            } else {
+                out.writeByte(ImapClientConstants.SPACE);
+            }
+            out.writeCharSequence(s, StandardCharsets.US_ASCII);
+        }
+
+        for (final String uf : flags.getUserFlags()) {
+            if (first) {
+                first = false;
+            } else {
+                out.writeByte(ImapClientConstants.SPACE);
+            }
+            out.writeCharSequence(uf, StandardCharsets.US_ASCII);
+        }
+
+        out.writeByte(ImapClientConstants.R_PAREN); // terminate flag_list
+    }
+
+    /**
+     * @param f the system flag
+     * @return the IMAP name of the system flag, null if it is not known
+     */
+    private static String getSystemFlagName(@Nonnull final Flags.Flag f) {
+        if (f == Flags.Flag.ANSWERED) {
+            return ANSWERED;
+        } else if (f == Flags.Flag.DELETED) {
+            return DELETED;
+        } else if (f == Flags.Flag.DRAFT) {
+            return DRAFT;
+        } else if (f == Flags.Flag.FLAGGED) {
+            return FLAGGED;
+        } else if (f == Flags.Flag.RECENT) {
+            return RECENT;
+        } else if (f == Flags.Flag.SEEN) {
+            return SEEN;
+        }
+        return null;
+    }
+
     /**
      * Creates an IMAP flag_list from the given Flags object.
      *
@@ -188,21 +256,8 @@ public class ImapArgumentFormatter {
         Flags.Flag[] sf = flags.getSystemFlags(); // get the system flags
         boolean first = true;
         for (int i = 0; i < sf.length; i++) {
-            String s;
-            Flags.Flag f = sf[i];
-            if (f == Flags.Flag.ANSWERED) {
-                s = ANSWERED;
-            } else if (f == Flags.Flag.DELETED) {
-                s = DELETED;
-            } else if (f == Flags.Flag.DRAFT) {
-                s = DRAFT;
-            } else if (f == Flags.Flag.FLAGGED) {
-                s = FLAGGED;
-            } else if (f == Flags.Flag.RECENT) {
-                s = RECENT;
-            } else if (f == Flags.Flag.SEEN) {
-                s = SEEN;
-            } else {
+            final String s = getSystemFlagName(sf[i]);
+            if (s == null) {
                 continue; // skip it
             }
             if (first) {
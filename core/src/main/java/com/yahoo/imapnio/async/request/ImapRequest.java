@@ -10,6 +10,7 @@ import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines an Imap command sent from client.
@@ -23,11 +24,12 @@ public interface ImapRequest {
     /**
      * Builds the command line in bytes - the line to be sent over wire.
      *
+     * @param alloc the allocator to obtain the buffer from, normally the channel allocator so the buffer is pooled
      * @return command line in binary form
      * @throws ImapAsyncClientException when encountering an error in building terminate command line
      */
     @Nonnull
-    ByteBuf getCommandLineBytes() throws ImapAsyncClientException;
+    ByteBuf getCommandLineBytes(@Nonnull ByteBufAllocator alloc) throws ImapAsyncClientException;
 
     /**
      * Builds the command line for this command - the line to be sent over wire.
@@ -60,20 +62,23 @@ public interface ImapRequest {
      * Builds the next command line after server challenge.
      *
      * @param serverResponse the server response
+     * @param alloc the allocator to obtain the buffer from, normally the channel allocator so the buffer is pooled
      * @throws ImapAsyncClientException when building command line encounters an error
      * @return command line
      */
     @Nullable
-    ByteBuf getNextCommandLineAfterContinuation(@Nonnull IMAPResponse serverResponse) throws ImapAsyncClientException;
+    ByteBuf getNextCommandLineAfterContinuation(@Nonnull IMAPResponse serverResponse, @Nonnull ByteBufAllocator alloc)
+            throws ImapAsyncClientException;
 
     /**
      * Builds the next command line after server challenge.
      *
+     * @param alloc the allocator to obtain the buffer from, normally the channel allocator so the buffer is pooled
      * @throws ImapAsyncClientException when encountering an error in building terminate command line
      * @return command line
      */
     @Nullable
-    ByteBuf getTerminateCommandLine() throws ImapAsyncClientException;
+    ByteBuf getTerminateCommandLine(@Nonnull ByteBufAllocator alloc) throws ImapAsyncClientException;
 
     /**
      * Avoids loitering.
@@ -10,6 +10,8 @@ import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * This class is an adapter for commands with no continuation request or terminal request.
@@ -23,7 +25,12 @@ public abstract class ImapRequestAdapter implements ImapRequest {
 
     @Override
     public String getCommandLine() throws ImapAsyncClientException {
-        return getCommandLineBytes().toString(StandardCharsets.US_ASCII);
+        final ByteBuf buf = getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
+        try {
+            return buf.toString(StandardCharsets.US_ASCII);
+        } finally {
+            buf.release();
+        }
     }
 
     @Override
@@ -37,12 +44,14 @@ public abstract class ImapRequestAdapter implements ImapRequest {
     }
 
     @Override
-    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse) throws ImapAsyncClientException {
+    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse, @Nonnull final ByteBufAllocator alloc)
+            throws ImapAsyncClientException {
         throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
     }
 
     @Override
-    public ByteBuf getTerminateCommandLine() throws ImapAsyncClientException {
+    public ByteBuf getTerminateCommandLine(@Nonnull final ByteBufAllocator alloc)
+            throws ImapAsyncClientException {
         throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
     }
 }
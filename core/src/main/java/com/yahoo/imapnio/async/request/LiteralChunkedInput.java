@@ -0,0 +1,118 @@
+package com.yahoo.imapnio.async.request;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import javax.annotation.Nonnull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+/**
+ * A {@link ChunkedInput} that reads exactly the given number of bytes of an IMAP literal from a {@link ReadableByteChannel}, one chunk at a time,
+ * so the literal is never held in memory as a whole. Unlike {@code ChunkedNioStream}, it stops at the literal length instead of reading until end
+ * of stream, and it fails if the source ends before the literal length is reached.
+ *
+ * <p>
+ * Reads are made on the event loop of the channel, hence the source is expected to be backed by memory or a local file. A source having no data
+ * for now is read again till it has some, since returning no chunk before the end of input would stall the write, and the write fails once the
+ * source has given no data {@link #MAX_EMPTY_READS} times in a row.
+ * </p>
+ */
+final class LiteralChunkedInput implements ChunkedInput<ByteBuf> {
+
+    /** Size of a chunk read from the source. */
+    static final int CHUNK_SIZE = 8192;
+
+    /** Number of reads in a row returning no data after which a source is given up on. */
+    static final int MAX_EMPTY_READS = 1024;
+
+    /** The source of the literal data. */
+    private final ReadableByteChannel in;
+
+    /** Number of bytes of the literal. */
+    private final long length;
+
+    /** Number of bytes read so far. */
+    private long offset;
+
+    /**
+     * Initializes a {@link LiteralChunkedInput}.
+     *
+     * @param in the source of the literal data
+     * @param length the number of bytes of the literal
+     */
+    LiteralChunkedInput(@Nonnull final ReadableByteChannel in, final long length) {
+        this.in = in;
+        this.length = length;
+        this.offset = 0;
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return offset >= length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    @Deprecated
+    @Override
+    public ByteBuf readChunk(final ChannelHandlerContext ctx) throws IOException {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(final ByteBufAllocator allocator) throws IOException {
+        if (isEndOfInput()) {
+            return null;
+        }
+
+        final int chunkSize = (int) Math.min(CHUNK_SIZE, length - offset);
+        final ByteBuf buf = allocator.buffer(chunkSize);
+        boolean release = true;
+        try {
+            final ByteBuffer target = buf.nioBuffer(0, chunkSize); // shares the memory of buf
+            int emptyReads = 0;
+            while (target.hasRemaining()) {
+                final int n = in.read(target);
+                if (n < 0) {
+                    throw new EOFException("Literal source ended after " + (offset + target.position()) + " of " + length + " bytes");
+                }
+                if (n > 0) {
+                    emptyReads = 0;
+                } else if (target.position() > 0) {
+                    break; // a partial chunk is sent, the rest comes with the next chunk
+                } else if (++emptyReads >= MAX_EMPTY_READS) {
+                    // returning no chunk before the end of input would stall ChunkedWriteHandler till a resumeTransfer() nobody calls
+                    throw new IOException("Literal source gave no data after " + offset + " of " + length + " bytes");
+                }
+            }
+            final int read = target.position();
+            buf.writerIndex(read);
+            offset += read;
+            release = false;
+            return buf;
+        } finally {
+            if (release) {
+                buf.release();
+            }
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long progress() {
+        return offset;
+    }
+}
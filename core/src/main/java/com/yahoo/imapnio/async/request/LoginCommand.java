@@ -7,7 +7,7 @@ import javax.annotation.Nonnull;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines IMAP login command request from client.
@@ -50,19 +50,24 @@ public class LoginCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
 
-        final ByteBuf sb = Unpooled.buffer(username.length() + dwp.length() + ImapClientConstants.PAD_LEN);
-        sb.writeBytes(LOGIN_SP_B);
+        final ByteBuf sb = alloc.buffer(username.length() + dwp.length() + ImapClientConstants.PAD_LEN);
+        try {
+            sb.writeBytes(LOGIN_SP_B);
 
-        final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
-        formatter.formatArgument(username, sb, false);
-        sb.writeByte(ImapClientConstants.SPACE);
+            final ImapArgumentFormatter formatter = ImapArgumentFormatter.INSTANCE;
+            formatter.formatArgument(username, sb, false);
+            sb.writeByte(ImapClientConstants.SPACE);
 
-        formatter.formatArgument(dwp, sb, false);
-        sb.writeBytes(CRLF_B);
+            formatter.formatArgument(dwp, sb, false);
+            sb.writeBytes(CRLF_B);
 
-        return sb;
+            return sb;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            sb.release();
+            throw e;
+        }
     }
 
     @Override
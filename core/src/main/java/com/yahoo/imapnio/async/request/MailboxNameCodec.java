@@ -0,0 +1,95 @@
+package com.yahoo.imapnio.async.request;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+
+import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
+
+/**
+ * This class encodes mailbox names in modified UTF-7 (RFC 3501, section 5.1.3) for the commands. Names made of printable ASCII chars without
+ * '&amp;' are the same in both forms and are returned as they are. Other names are cached since the same few hundred folder names are used over and
+ * over by a client. The cache is bounded, an entry is evicted for every new one once it is full, so a client going through many distinct names does
+ * not grow it forever. Names in responses are decoded by the javamail parsers the responses are mapped with.
+ */
+public final class MailboxNameCodec {
+
+    /** Maximum number of names kept by the cache. */
+    static final int MAX_CACHE_SIZE = 1024;
+
+    /** Modified UTF-7 shift character. */
+    private static final char SHIFT = '&';
+
+    /** First printable ASCII char. */
+    private static final char FIRST_PRINTABLE = 0x20;
+
+    /** Last printable ASCII char. */
+    private static final char LAST_PRINTABLE = 0x7e;
+
+    /** Cache of mailbox names to their encoded form. */
+    private static final ConcurrentHashMap<String, String> ENCODED = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Private constructor to avoid constructing instance of this class.
+     */
+    private MailboxNameCodec() {
+    }
+
+    /**
+     * Encodes the mailbox name in modified UTF-7.
+     *
+     * @param name the mailbox name
+     * @return the encoded mailbox name
+     */
+    @Nonnull
+    public static String encode(@Nonnull final String name) {
+        if (isPrintableAsciiWithoutShift(name)) {
+            return name;
+        }
+        String encoded = ENCODED.get(name);
+        if (encoded == null) {
+            encoded = BASE64MailboxEncoder.encode(name);
+            put(ENCODED, name, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Adds the entry to the cache, evicting an arbitrary entry first when it is full, so the names in use are mostly kept.
+     *
+     * @param cache the cache
+     * @param key the key
+     * @param value the value
+     */
+    private static void put(@Nonnull final ConcurrentHashMap<String, String> cache, @Nonnull final String key, @Nonnull final String value) {
+        if (cache.size() >= MAX_CACHE_SIZE) {
+            final Iterator<String> keys = cache.keySet().iterator();
+            if (keys.hasNext()) {
+                cache.remove(keys.next());
+            }
+        }
+        cache.put(key, value);
+    }
+
+    /**
+     * @return the number of names in the cache
+     */
+    static int getCacheSize() {
+        return ENCODED.size();
+    }
+
+    /**
+     * @param s the string
+     * @return true if all chars of the string are printable ASCII chars other than '&amp;'
+     */
+    private static boolean isPrintableAsciiWithoutShift(@Nonnull final String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c < FIRST_PRINTABLE || c > LAST_PRINTABLE || c == SHIFT) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,274 @@
+package com.yahoo.imapnio.async.request;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.mail.Flags;
+
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.INTERNALDATE;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * This class defines IMAP MULTIAPPEND command request from client, which appends several messages to a folder in one APPEND command (RFC 3502).
+ * Server assigns the UIDs atomically, either all messages are appended or none.
+ */
+public class MultiAppendCommand implements ImapRequest {
+
+    /** Byte array for CR and LF, keeping the array local so it cannot be modified by others. */
+    private static final byte[] CRLF_B = { '\r', '\n' };
+
+    /** Maximum length of data that can be sent in alternate literal form when LITERAL- is supported. */
+    private static final int MAX_LITERAL_MINUS_DATA_LEN = 4096;
+
+    /** Literal for append. */
+    private static final String APPEND_SP = "APPEND ";
+
+    /** The folder for the messages to be appended to. */
+    private String folderName;
+
+    /** The messages to append. */
+    private List<Message> messages;
+
+    /** Whether to enable Literal support option. */
+    private LiteralSupport literalOpt;
+
+    /** Index of the message whose data is sent on next server continuation. */
+    private int nextMsgIndex;
+
+    /**
+     * A message to append along with its flags and internal date.
+     */
+    public static final class Message {
+
+        /** The flags for the message. */
+        private final Flags flags;
+
+        /** The internal date associated with the message. */
+        private final Date date;
+
+        /** The message data. */
+        private final byte[] data;
+
+        /**
+         * Initializes a message to append.
+         *
+         * @param imapFlags the flags for the message
+         * @param internalDate the internal date associated with the message
+         * @param data the message data
+         */
+        public Message(@Nullable final Flags imapFlags, @Nullable final Date internalDate, @Nonnull final byte[] data) {
+            this.flags = imapFlags;
+            this.date = internalDate;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Initializes a MULTIAPPEND command for client.
+     *
+     * @param folderName the folder to which the messages must be appended
+     * @param messages the messages to append, at least one
+     * @throws ImapAsyncClientException when no message is given
+     */
+    public MultiAppendCommand(@Nonnull final String folderName, @Nonnull final List<Message> messages) throws ImapAsyncClientException {
+        this(folderName, messages, LiteralSupport.DISABLE);
+    }
+
+    /**
+     * Initializes a MULTIAPPEND command for client.
+     *
+     * @param folderName the folder to which the messages must be appended
+     * @param messages the messages to append, at least one
+     * @param literalOpt literal support option, with LITERAL+ all messages are sent without waiting for server continuation
+     * @throws ImapAsyncClientException when no message is given
+     */
+    public MultiAppendCommand(@Nonnull final String folderName, @Nonnull final List<Message> messages, @Nonnull final LiteralSupport literalOpt)
+            throws ImapAsyncClientException {
+        if (messages.isEmpty()) {
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+        }
+        this.folderName = folderName;
+        this.messages = messages;
+        this.literalOpt = literalOpt;
+        this.nextMsgIndex = 0;
+    }
+
+    @Override
+    public void cleanup() {
+        this.folderName = null;
+        this.messages = null;
+        this.literalOpt = null;
+    }
+
+    @Override
+    public ConcurrentLinkedQueue<IMAPResponse> getStreamingResponsesQueue() {
+        return null;
+    }
+
+    /**
+     * @return true if all literals are sent without waiting for server continuation, that is LITERAL+ or LITERAL- with only small messages
+     */
+    private boolean isNonSynchronizingLiteral() {
+        if (literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS) {
+            return true;
+        }
+        if (literalOpt != LiteralSupport.ENABLE_LITERAL_MINUS) {
+            return false;
+        }
+        for (final Message msg : messages) {
+            if (msg.data.length >= MAX_LITERAL_MINUS_DATA_LEN) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the flags, internal date and literal length of a message, ending with CRLF.
+     *
+     * @param msg the message
+     * @param isNonSync whether the literal is non-synchronizing
+     * @param argWriter the argument formatter
+     * @param buf the buffer to write to
+     * @throws ImapAsyncClientException when formatting fails
+     */
+    private void writeMessageHeader(@Nonnull final Message msg, final boolean isNonSync, @Nonnull final ImapArgumentFormatter argWriter,
+            @Nonnull final ByteBuf buf) throws ImapAsyncClientException {
+        // flags
+        if (msg.flags != null) {
+            argWriter.writeFlags(msg.flags, buf);
+            buf.writeByte(ImapClientConstants.SPACE);
+        }
+
+        // date
+        if (msg.date != null) {
+            argWriter.formatArgument(INTERNALDATE.format(msg.date), buf, false);
+            buf.writeByte(ImapClientConstants.SPACE);
+        }
+
+        // length of the literal
+        buf.writeByte('{');
+        buf.writeCharSequence(Integer.toString(msg.data.length), StandardCharsets.US_ASCII);
+        if (isNonSync) {
+            buf.writeByte(literalOpt == LiteralSupport.ENABLE_LITERAL_PLUS ? '+' : '-');
+        }
+        buf.writeByte('}');
+        buf.writeBytes(CRLF_B);
+    }
+
+    /**
+     * Writes the data of the message at the given index, followed by the header of the next message or the final CRLF if it is the last one.
+     *
+     * @param index index of the message
+     * @param isNonSync whether the literal is non-synchronizing
+     * @param argWriter the argument formatter
+     * @param buf the buffer to write to
+     * @throws ImapAsyncClientException when formatting fails
+     */
+    private void writeMessageData(final int index, final boolean isNonSync, @Nonnull final ImapArgumentFormatter argWriter,
+            @Nonnull final ByteBuf buf) throws ImapAsyncClientException {
+        // Note: we obtain only binary from client, therefore need to write binary directly to retain the correct charset encoding
+        buf.writeBytes(messages.get(index).data);
+        if (index + 1 < messages.size()) {
+            buf.writeByte(ImapClientConstants.SPACE);
+            writeMessageHeader(messages.get(index + 1), isNonSync, argWriter, buf);
+        } else {
+            buf.writeBytes(CRLF_B);
+        }
+    }
+
+    @Override
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
+        // Ex: APPEND saved-messages (\Seen) {310}
+        // encode the folder name as per RFC2060
+        final String base64Folder = MailboxNameCodec.encode(folderName);
+        final boolean isNonSync = isNonSynchronizingLiteral();
+        int len = 2 * base64Folder.length() + ImapClientConstants.PAD_LEN;
+        if (isNonSync) {
+            for (final Message msg : messages) {
+                len += msg.data.length + ImapClientConstants.PAD_LEN;
+            }
+        }
+
+        final ByteBuf buf = alloc.buffer(len);
+        try {
+            buf.writeCharSequence(APPEND_SP, StandardCharsets.US_ASCII);
+
+            // folder
+            final ImapArgumentFormatter argWriter = ImapArgumentFormatter.INSTANCE;
+            argWriter.formatArgument(base64Folder, buf, false); // already base64 encoded so can be formatted and write to buf
+            buf.writeByte(ImapClientConstants.SPACE);
+
+            writeMessageHeader(messages.get(0), isNonSync, argWriter, buf);
+
+            // send all literals at once since server does not send continuation
+            if (isNonSync) {
+                for (int i = 0; i < messages.size(); i++) {
+                    writeMessageData(i, true, argWriter, buf);
+                }
+            }
+            return buf;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            buf.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public String getCommandLine() throws ImapAsyncClientException {
+        final ByteBuf buf = getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
+        try {
+            return buf.toString(StandardCharsets.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Override
+    public boolean isCommandLineDataSensitive() {
+        return false;
+    }
+
+    @Override
+    public String getDebugData() {
+        return null;
+    }
+
+    @Override
+    public ByteBuf getNextCommandLineAfterContinuation(@Nonnull final IMAPResponse serverResponse, @Nonnull final ByteBufAllocator alloc)
+            throws ImapAsyncClientException {
+        if (isNonSynchronizingLiteral() || nextMsgIndex >= messages.size()) {
+            // should not reach here, server asks for next line only once per synchronizing literal
+            throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
+        }
+        final int index = nextMsgIndex++;
+        final ByteBuf buf = alloc.buffer(messages.get(index).data.length + ImapClientConstants.PAD_LEN);
+        try {
+            writeMessageData(index, false, ImapArgumentFormatter.INSTANCE, buf);
+            return buf;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            buf.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public ByteBuf getTerminateCommandLine(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
+        throw new ImapAsyncClientException(FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND);
+    }
+
+    @Override
+    public ImapCommandType getCommandType() {
+        return ImapCommandType.APPEND_MESSAGE;
+    }
+}
@@ -4,11 +4,10 @@ import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnull;
 
-import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines IMAP rename command request from client.
@@ -48,20 +47,25 @@ public class RenameFolderCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
         final int len = oldFolder.length() * 2 + newFolder.length() * 2 + ImapClientConstants.PAD_LEN;
-        final ByteBuf sb = Unpooled.buffer(len);
-        sb.writeBytes(RENAME_SP_B);
-
-        final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
-        final String o = BASE64MailboxEncoder.encode(oldFolder);
-        formatter.formatArgument(o, sb, false); // already base64 encoded so can be formatted and write to sb
-        sb.writeByte(ImapClientConstants.SPACE);
-        final String n = BASE64MailboxEncoder.encode(newFolder);
-        formatter.formatArgument(n, sb, false); // already base64 encoded so can be formatted and write to sb
-        sb.writeBytes(CRLF_B);
-
-        return sb;
+        final ByteBuf sb = alloc.buffer(len);
+        try {
+            sb.writeBytes(RENAME_SP_B);
+
+            final ImapArgumentFormatter formatter = ImapArgumentFormatter.INSTANCE;
+            final String o = MailboxNameCodec.encode(oldFolder);
+            formatter.formatArgument(o, sb, false); // already base64 encoded so can be formatted and write to sb
+            sb.writeByte(ImapClientConstants.SPACE);
+            final String n = MailboxNameCodec.encode(newFolder);
+            formatter.formatArgument(n, sb, false); // already base64 encoded so can be formatted and write to sb
+            sb.writeBytes(CRLF_B);
+
+            return sb;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            sb.release();
+            throw e;
+        }
     }
 
     @Override
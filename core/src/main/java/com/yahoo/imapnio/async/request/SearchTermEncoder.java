@@ -0,0 +1,473 @@
+package com.yahoo.imapnio.async.request;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.mail.Flags;
+import javax.mail.Message;
+import javax.mail.search.AndTerm;
+import javax.mail.search.BodyTerm;
+import javax.mail.search.ComparisonTerm;
+import javax.mail.search.DateTerm;
+import javax.mail.search.FlagTerm;
+import javax.mail.search.FromStringTerm;
+import javax.mail.search.FromTerm;
+import javax.mail.search.HeaderTerm;
+import javax.mail.search.MessageIDTerm;
+import javax.mail.search.NotTerm;
+import javax.mail.search.OrTerm;
+import javax.mail.search.ReceivedDateTerm;
+import javax.mail.search.RecipientStringTerm;
+import javax.mail.search.RecipientTerm;
+import javax.mail.search.SearchException;
+import javax.mail.search.SearchTerm;
+import javax.mail.search.SentDateTerm;
+import javax.mail.search.SizeTerm;
+import javax.mail.search.SubjectTerm;
+
+import com.sun.mail.imap.ModifiedSinceTerm;
+import com.sun.mail.imap.OlderTerm;
+import com.sun.mail.imap.YoungerTerm;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * This class encodes a {@link SearchTerm} tree into search keys written directly to a {@link ByteBuf}. It produces the same search keys as
+ * {@code com.sun.mail.imap.protocol.SearchSequence} followed by {@code Argument.write}, but writes atoms and strings in bulk instead of one byte at a
+ * time through a {@code Protocol} output stream, and without building the intermediate {@code Argument} tree. Instances keep a calendar for date
+ * formatting and are not thread safe.
+ *
+ * <p>
+ * Without LITERAL+, client has to wait for server continuation after the length of a literal before sending its data, hence the offsets where
+ * literal data starts are kept, for the command line to be sent in parts.
+ * </p>
+ */
+final class SearchTermEncoder {
+
+    /** Strings longer than this are sent as literal. */
+    private static final int MAX_QUOTED_LEN = 1024;
+
+    /** Largest 7-bit character. */
+    private static final int ASCII_MAX = 0x7f;
+
+    /** Mask for unsigned byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Month names used in IMAP date. */
+    private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    /** NIL literal, which has to be quoted when given as string. */
+    private static final String NIL = "NIL";
+
+    /** Error message when a term cannot be expressed in IMAP search. */
+    private static final String SEARCH_TOO_COMPLEX = "Search too complex";
+
+    /** Charset to encode strings, null for ASCII only strings. */
+    private final Charset charset;
+
+    /** Flag whether server allows LITERAL+. */
+    private final boolean isLiteralPlus;
+
+    /** Calendar to format dates. */
+    private final Calendar cal;
+
+    /** Offsets in the buffer where the data of a synchronizing literal starts, in order. */
+    private final List<Integer> continuationOffsets;
+
+    /**
+     * Initializes a {@link SearchTermEncoder}.
+     *
+     * @param charset charset to encode strings, null when all strings are ASCII
+     * @param isLiteralPlus flag whether server allows LITERAL+
+     */
+    SearchTermEncoder(@Nullable final Charset charset, final boolean isLiteralPlus) {
+        this.charset = charset;
+        this.isLiteralPlus = isLiteralPlus;
+        this.cal = new GregorianCalendar();
+        this.continuationOffsets = new ArrayList<Integer>();
+    }
+
+    /**
+     * @return offsets in the buffer where the data of a synchronizing literal starts, to be sent once server sends continuation, empty if none
+     */
+    List<Integer> getContinuationOffsets() {
+        return continuationOffsets;
+    }
+
+    /**
+     * Checks whether the given term can be expressed as IMAP search keys, so an invalid term fails when the command is built rather than when
+     * it is sent.
+     *
+     * @param term the search term
+     * @throws SearchException when the term cannot be expressed as IMAP search keys
+     */
+    static void validate(@Nonnull final SearchTerm term) throws SearchException {
+        if (term instanceof AndTerm || term instanceof OrTerm) {
+            final SearchTerm[] terms = (term instanceof AndTerm) ? ((AndTerm) term).getTerms() : ((OrTerm) term).getTerms();
+            for (final SearchTerm t : terms) {
+                validate(t);
+            }
+        } else if (term instanceof NotTerm) {
+            validate(((NotTerm) term).getTerm());
+        } else if (term instanceof FlagTerm) {
+            final Flags flags = ((FlagTerm) term).getFlags();
+            if (flags.getSystemFlags().length == 0 && flags.getUserFlags().length == 0) {
+                throw new SearchException("Invalid FlagTerm");
+            }
+        } else if (term instanceof SizeTerm) {
+            final int comparison = ((SizeTerm) term).getComparison();
+            if (comparison != ComparisonTerm.GT && comparison != ComparisonTerm.LT) {
+                throw new SearchException("Cannot handle Comparison");
+            }
+        } else if (term instanceof RecipientTerm) {
+            recipientKey(((RecipientTerm) term).getRecipientType());
+        } else if (term instanceof RecipientStringTerm) {
+            recipientKey(((RecipientStringTerm) term).getRecipientType());
+        } else if (!(term instanceof HeaderTerm || term instanceof MessageIDTerm || term instanceof FromTerm || term instanceof FromStringTerm
+                || term instanceof SubjectTerm || term instanceof BodyTerm || term instanceof SentDateTerm || term instanceof ReceivedDateTerm
+                || term instanceof OlderTerm || term instanceof YoungerTerm || term instanceof ModifiedSinceTerm)) {
+            throw new SearchException(SEARCH_TOO_COMPLEX);
+        }
+    }
+
+    /**
+     * Writes the search keys of the given term to the buffer.
+     *
+     * @param term the search term
+     * @param out the buffer to write to
+     * @throws SearchException when the term cannot be expressed as IMAP search keys
+     */
+    void encode(@Nonnull final SearchTerm term, @Nonnull final ByteBuf out) throws SearchException {
+        if (term instanceof AndTerm) {
+            final SearchTerm[] terms = ((AndTerm) term).getTerms();
+            encode(terms[0], out);
+            for (int i = 1; i < terms.length; i++) {
+                out.writeByte(ImapClientConstants.SPACE);
+                encode(terms[i], out);
+            }
+        } else if (term instanceof OrTerm) {
+            final SearchTerm[] terms = ((OrTerm) term).getTerms();
+            encodeOr(terms, terms.length - 1, out);
+        } else if (term instanceof NotTerm) {
+            writeAtom("NOT ", out);
+            encodeOperand(((NotTerm) term).getTerm(), out);
+        } else if (term instanceof HeaderTerm) {
+            final HeaderTerm header = (HeaderTerm) term;
+            writeAtom("HEADER ", out);
+            writeString(header.getHeaderName(), null, out);
+            out.writeByte(ImapClientConstants.SPACE);
+            writeString(header.getPattern(), charset, out);
+        } else if (term instanceof MessageIDTerm) {
+            writeAtom("HEADER Message-ID ", out);
+            writeString(((MessageIDTerm) term).getPattern(), charset, out);
+        } else if (term instanceof FlagTerm) {
+            encodeFlags((FlagTerm) term, out);
+        } else if (term instanceof FromTerm) {
+            writeAtom("FROM ", out);
+            writeString(((FromTerm) term).getAddress().toString(), charset, out);
+        } else if (term instanceof FromStringTerm) {
+            writeAtom("FROM ", out);
+            writeString(((FromStringTerm) term).getPattern(), charset, out);
+        } else if (term instanceof RecipientTerm) {
+            final RecipientTerm recipient = (RecipientTerm) term;
+            writeAtom(recipientKey(recipient.getRecipientType()), out);
+            writeString(recipient.getAddress().toString(), charset, out);
+        } else if (term instanceof RecipientStringTerm) {
+            final RecipientStringTerm recipient = (RecipientStringTerm) term;
+            writeAtom(recipientKey(recipient.getRecipientType()), out);
+            writeString(recipient.getPattern(), charset, out);
+        } else if (term instanceof SubjectTerm) {
+            writeAtom("SUBJECT ", out);
+            writeString(((SubjectTerm) term).getPattern(), charset, out);
+        } else if (term instanceof BodyTerm) {
+            writeAtom("BODY ", out);
+            writeString(((BodyTerm) term).getPattern(), charset, out);
+        } else if (term instanceof SizeTerm) {
+            final SizeTerm size = (SizeTerm) term;
+            switch (size.getComparison()) {
+            case ComparisonTerm.GT:
+                writeAtom("LARGER ", out);
+                break;
+            case ComparisonTerm.LT:
+                writeAtom("SMALLER ", out);
+                break;
+            default:
+                throw new SearchException("Cannot handle Comparison");
+            }
+            writeAtom(Integer.toString(size.getNumber()), out);
+        } else if (term instanceof SentDateTerm) {
+            encodeDate((DateTerm) term, "SENTON ", "SENTSINCE ", "SENTBEFORE ", out);
+        } else if (term instanceof ReceivedDateTerm) {
+            encodeDate((DateTerm) term, "ON ", "SINCE ", "BEFORE ", out);
+        } else if (term instanceof OlderTerm) {
+            writeAtom("OLDER ", out);
+            writeAtom(Integer.toString(((OlderTerm) term).getInterval()), out);
+        } else if (term instanceof YoungerTerm) {
+            writeAtom("YOUNGER ", out);
+            writeAtom(Integer.toString(((YoungerTerm) term).getInterval()), out);
+        } else if (term instanceof ModifiedSinceTerm) {
+            writeAtom("MODSEQ ", out);
+            writeAtom(Long.toString(((ModifiedSinceTerm) term).getModSeq()), out);
+        } else {
+            throw new SearchException(SEARCH_TOO_COMPLEX);
+        }
+    }
+
+    /**
+     * Writes OR of the operands from the first one to the given last index. IMAP OR takes two keys, so more operands are nested to the left like
+     * {@code OR OR t1 t2 t3}, same as SearchSequence does.
+     *
+     * @param terms the OR operands
+     * @param last index of the last operand to include
+     * @param out the buffer to write to
+     * @throws SearchException when a term cannot be expressed as IMAP search keys
+     */
+    private void encodeOr(@Nonnull final SearchTerm[] terms, final int last, @Nonnull final ByteBuf out) throws SearchException {
+        if (last == 0) {
+            encodeOperand(terms[0], out);
+            return;
+        }
+        writeAtom("OR ", out);
+        if (last == 1) {
+            encodeOperand(terms[0], out);
+        } else {
+            encodeOr(terms, last - 1, out); // nested OR is not parenthesized
+        }
+        out.writeByte(ImapClientConstants.SPACE);
+        encodeOperand(terms[last], out);
+    }
+
+    /**
+     * Writes an operand of OR or NOT, parenthesizing AND and flag terms since they may expand to more than one search key.
+     *
+     * @param term the operand
+     * @param out the buffer to write to
+     * @throws SearchException when the term cannot be expressed as IMAP search keys
+     */
+    private void encodeOperand(@Nonnull final SearchTerm term, @Nonnull final ByteBuf out) throws SearchException {
+        if (term instanceof AndTerm || term instanceof FlagTerm) {
+            out.writeByte(ImapClientConstants.L_PAREN);
+            encode(term, out);
+            out.writeByte(ImapClientConstants.R_PAREN);
+        } else {
+            encode(term, out);
+        }
+    }
+
+    /**
+     * Writes the flag search keys.
+     *
+     * @param term the flag term
+     * @param out the buffer to write to
+     * @throws SearchException when no flag is given
+     */
+    private void encodeFlags(@Nonnull final FlagTerm term, @Nonnull final ByteBuf out) throws SearchException {
+        final boolean set = term.getTestSet();
+        final Flags flags = term.getFlags();
+        final Flags.Flag[] sf = flags.getSystemFlags();
+        final String[] uf = flags.getUserFlags();
+        if (sf.length == 0 && uf.length == 0) {
+            throw new SearchException("Invalid FlagTerm");
+        }
+
+        boolean isFirst = true;
+        for (final Flags.Flag f : sf) {
+            final String key;
+            if (f == Flags.Flag.DELETED) {
+                key = set ? "DELETED" : "UNDELETED";
+            } else if (f == Flags.Flag.ANSWERED) {
+                key = set ? "ANSWERED" : "UNANSWERED";
+            } else if (f == Flags.Flag.DRAFT) {
+                key = set ? "DRAFT" : "UNDRAFT";
+            } else if (f == Flags.Flag.FLAGGED) {
+                key = set ? "FLAGGED" : "UNFLAGGED";
+            } else if (f == Flags.Flag.RECENT) {
+                key = set ? "RECENT" : "OLD";
+            } else if (f == Flags.Flag.SEEN) {
+                key = set ? "SEEN" : "UNSEEN";
+            } else {
+                continue; // USER flag is not searchable
+            }
+            if (!isFirst) {
+                out.writeByte(ImapClientConstants.SPACE);
+            }
+            writeAtom(key, out);
+            isFirst = false;
+        }
+        for (final String userFlag : uf) {
+            if (!isFirst) {
+                out.writeByte(ImapClientConstants.SPACE);
+            }
+            writeAtom(set ? "KEYWORD " : "UNKEYWORD ", out);
+            writeAtom(userFlag, out);
+            isFirst = false;
+        }
+    }
+
+    /**
+     * Writes the date search keys for the date comparison.
+     *
+     * @param term the date term
+     * @param on the search key for same date, followed by a space
+     * @param since the search key for same or later date, followed by a space
+     * @param before the search key for earlier date, followed by a space
+     * @param out the buffer to write to
+     * @throws SearchException when the comparison is not supported
+     */
+    private void encodeDate(@Nonnull final DateTerm term, @Nonnull final String on, @Nonnull final String since, @Nonnull final String before,
+            @Nonnull final ByteBuf out) throws SearchException {
+        switch (term.getComparison()) {
+        case ComparisonTerm.GT:
+            writeAtom(since, out);
+            break;
+        case ComparisonTerm.EQ:
+            writeAtom(on, out);
+            break;
+        case ComparisonTerm.LT:
+            writeAtom(before, out);
+            break;
+        case ComparisonTerm.GE:
+            writeAtom("OR ", out);
+            writeAtom(since, out);
+            writeDate(term.getDate(), out);
+            out.writeByte(ImapClientConstants.SPACE);
+            writeAtom(on, out);
+            break;
+        case ComparisonTerm.LE:
+            writeAtom("OR ", out);
+            writeAtom(before, out);
+            writeDate(term.getDate(), out);
+            out.writeByte(ImapClientConstants.SPACE);
+            writeAtom(on, out);
+            break;
+        case ComparisonTerm.NE:
+            writeAtom("NOT ", out);
+            writeAtom(on, out);
+            break;
+        default:
+            throw new SearchException("Cannot handle Date Comparison");
+        }
+        writeDate(term.getDate(), out);
+    }
+
+    /**
+     * Writes the date in IMAP date format, for ex: 2-Mar-2019.
+     *
+     * @param date the date
+     * @param out the buffer to write to
+     */
+    private void writeDate(@Nonnull final Date date, @Nonnull final ByteBuf out) {
+        cal.setTime(date);
+        writeAtom(Integer.toString(cal.get(Calendar.DATE)), out);
+        out.writeByte(ImapClientConstants.MINUS);
+        writeAtom(MONTHS[cal.get(Calendar.MONTH)], out);
+        out.writeByte(ImapClientConstants.MINUS);
+        writeAtom(Integer.toString(cal.get(Calendar.YEAR)), out);
+    }
+
+    /**
+     * Writes the ASCII atom as is.
+     *
+     * @param atom the atom
+     * @param out the buffer to write to
+     */
+    private static void writeAtom(@Nonnull final String atom, @Nonnull final ByteBuf out) {
+        out.writeCharSequence(atom, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param type the recipient type
+     * @return the search key for the recipient type, followed by a space
+     * @throws SearchException when the recipient type is not supported
+     */
+    private static String recipientKey(@Nonnull final Message.RecipientType type) throws SearchException {
+        if (type == Message.RecipientType.TO) {
+            return "TO ";
+        } else if (type == Message.RecipientType.CC) {
+            return "CC ";
+        } else if (type == Message.RecipientType.BCC) {
+            return "BCC ";
+        }
+        throw new SearchException("Illegal Recipient type");
+    }
+
+    /**
+     * Writes the string as atom, quoted string or literal as needed, following the same rules as {@code Argument.astring}.
+     *
+     * @param s the string
+     * @param cs charset to encode the string, null to take each character as one byte
+     * @param out the buffer to write to
+     */
+    private void writeString(@Nonnull final String s, @Nullable final Charset cs, @Nonnull final ByteBuf out) {
+        final byte[] bytes = s.getBytes(cs != null ? cs : StandardCharsets.ISO_8859_1);
+        final int len = bytes.length;
+        if (len > MAX_QUOTED_LEN) {
+            writeLiteral(bytes, out);
+            return;
+        }
+
+        boolean quote = (len == 0);
+        boolean escape = false;
+        for (final byte b : bytes) {
+            if (b == '\0' || b == '\r' || b == '\n' || (b & BYTE_MASK) > ASCII_MAX) {
+                writeLiteral(bytes, out); // NUL, CR, LF or 8-bit needs to be sent as literal
+                return;
+            }
+            if (b == '*' || b == '%' || b == '(' || b == ')' || b == '{' || b == '"' || b == '\\' || (b & BYTE_MASK) <= ' ') {
+                quote = true;
+                if (b == '"' || b == '\\') {
+                    escape = true;
+                }
+            }
+        }
+        // make sure the string NIL is always quoted
+        if (!quote && len == NIL.length() && NIL.equalsIgnoreCase(s)) {
+            quote = true;
+        }
+
+        if (quote) {
+            out.writeByte('"');
+        }
+        if (escape) {
+            for (final byte b : bytes) {
+                if (b == '"' || b == '\\') {
+                    out.writeByte('\\');
+                }
+                out.writeByte(b);
+            }
+        } else {
+            out.writeBytes(bytes);
+        }
+        if (quote) {
+            out.writeByte('"');
+        }
+    }
+
+    /**
+     * Writes the bytes as literal, keeping the offset of the data when it is a synchronizing literal.
+     *
+     * @param bytes the bytes
+     * @param out the buffer to write to
+     */
+    private void writeLiteral(@Nonnull final byte[] bytes, @Nonnull final ByteBuf out) {
+        out.writeByte('{');
+        writeAtom(Integer.toString(bytes.length), out);
+        if (isLiteralPlus) {
+            out.writeByte(ImapClientConstants.PLUS);
+        }
+        out.writeByte('}');
+        out.writeByte('\r');
+        out.writeByte('\n');
+        if (!isLiteralPlus) {
+            continuationOffsets.add(out.writerIndex());
+        }
+        out.writeBytes(bytes);
+    }
+}
@@ -19,6 +19,18 @@ public class SelectFolderCommand extends AbstractFolderActionCommand {
         super(SELECT, folderName);
     }
 
+    /**
+     * Initializes a @{code SelectCommand} that resynchronizes the folder quickly, QRESYNC in RFC 7162, which requires QRESYNC to be enabled in the
+     * session.
+     *
+     * @param folderName folder name to select
+     * @param knownUidValidity the last known UIDVALIDITY of the folder
+     * @param knownModSeq the last known modification sequence of the folder
+     */
+    public SelectFolderCommand(@Nonnull final String folderName, final long knownUidValidity, final long knownModSeq) {
+        super(SELECT, folderName, knownUidValidity, knownModSeq);
+    }
+
     @Override
     public ImapCommandType getCommandType() {
         return ImapCommandType.SELECT_FOLDER;
@@ -4,11 +4,10 @@ import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnull;
 
-import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines imap status command request from client. RFC 3501 ABNF for status command.
@@ -55,29 +54,34 @@ public class StatusCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() throws ImapAsyncClientException {
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) throws ImapAsyncClientException {
 
-        final ByteBuf sb = Unpooled.buffer(ImapClientConstants.PAD_LEN);
-        // ex: STATUS "test1" (UIDNEXT MESSAGES UIDVALIDITY RECENT)
-        sb.writeBytes(STATUS_SP_B);
+        final ByteBuf sb = alloc.buffer(ImapClientConstants.PAD_LEN);
+        try {
+            // ex: STATUS "test1" (UIDNEXT MESSAGES UIDVALIDITY RECENT)
+            sb.writeBytes(STATUS_SP_B);
 
-        final ImapArgumentFormatter formatter = new ImapArgumentFormatter();
+            final ImapArgumentFormatter formatter = ImapArgumentFormatter.INSTANCE;
 
-        final String encoded64Folder = BASE64MailboxEncoder.encode(folderName);
-        formatter.formatArgument(encoded64Folder, sb, false); // already base64 encoded so can be formatted and write to sb
+            final String encoded64Folder = MailboxNameCodec.encode(folderName);
+            formatter.formatArgument(encoded64Folder, sb, false); // already base64 encoded so can be formatted and write to sb
 
-        sb.writeByte(ImapClientConstants.SPACE);
-        sb.writeByte(ImapClientConstants.L_PAREN);
-        for (int i = 0, len = items.length; i < len; i++) {
-            formatter.formatArgument(items[i], sb, false);
-            if (i < len - 1) { // do not add space for last item
-                sb.writeByte(ImapClientConstants.SPACE);
+            sb.writeByte(ImapClientConstants.SPACE);
+            sb.writeByte(ImapClientConstants.L_PAREN);
+            for (int i = 0, len = items.length; i < len; i++) {
+                formatter.formatArgument(items[i], sb, false);
+                if (i < len - 1) { // do not add space for last item
+                    sb.writeByte(ImapClientConstants.SPACE);
+                }
             }
-        }
-        sb.writeByte(ImapClientConstants.R_PAREN);
+            sb.writeByte(ImapClientConstants.R_PAREN);
 
-        sb.writeBytes(CRLF_B);
-        return sb;
+            sb.writeBytes(CRLF_B);
+            return sb;
+        } catch (final ImapAsyncClientException e) { // buffer is not handed over to caller
+            sb.release();
+            throw e;
+        }
     }
 
     @Override
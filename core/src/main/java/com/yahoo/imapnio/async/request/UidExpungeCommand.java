@@ -8,7 +8,7 @@ import com.sun.mail.imap.protocol.UIDSet;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 
 /**
  * This class defines IMAP UID EXPUNGE command from client.
@@ -60,11 +60,11 @@ public class UidExpungeCommand extends ImapRequestAdapter {
     }
 
     @Override
-    public ByteBuf getCommandLineBytes() {
-        final ByteBuf buf = Unpooled.buffer(UID_EXPUNGE.length() + uids.length() + ImapClientConstants.PAD_LEN);
+    public ByteBuf getCommandLineBytes(@Nonnull final ByteBufAllocator alloc) {
+        final ByteBuf buf = alloc.buffer(UID_EXPUNGE.length() + uids.length() + ImapClientConstants.PAD_LEN);
         buf.writeBytes(UID_EXPUNGE_B);
         buf.writeByte(ImapClientConstants.SPACE);
-        buf.writeBytes(uids.getBytes(StandardCharsets.US_ASCII));
+        buf.writeCharSequence(uids, StandardCharsets.US_ASCII);
         buf.writeBytes(CRLF_B);
         return buf;
     }
@@ -1,5 +1,8 @@
 package com.yahoo.imapnio.async.request;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 
 import com.yahoo.imapnio.async.data.MessageNumberSet;
@@ -49,6 +52,42 @@ public class UidFetchCommand extends AbstractFetchCommand {
         super(true, uids, macro);
     }
 
+    /**
+     * Creates one or more @{code UidFetchCommand} for the given @{code MessageNumberSet} array, splitting it so the UID set of each command is no
+     * longer than the given length. It allows a large fragmented set to be fetched within the command line limit of server, see
+     * {@code ImapAsyncSession.executeAll}.
+     *
+     * @param msgsets the set of message set
+     * @param items the data items
+     * @param maxUidsLength maximum length of the UID set in each command
+     * @return the commands covering all the given message sets
+     */
+    public static List<UidFetchCommand> split(@Nonnull final MessageNumberSet[] msgsets, @Nonnull final String items, final int maxUidsLength) {
+        final List<UidFetchCommand> cmds = new ArrayList<UidFetchCommand>();
+        for (final String uids : MessageNumberSet.buildStrings(msgsets, maxUidsLength)) {
+            cmds.add(new UidFetchCommand(uids, items));
+        }
+        return cmds;
+    }
+
+    /**
+     * Creates one or more @{code UidFetchCommand} for the given @{code MessageNumberSet} array, splitting it so the UID set of each command is no
+     * longer than the given length.
+     *
+     * @param msgsets the set of message set
+     * @param macro the macro, for example, ALL
+     * @param maxUidsLength maximum length of the UID set in each command
+     * @return the commands covering all the given message sets
+     */
+    public static List<UidFetchCommand> split(@Nonnull final MessageNumberSet[] msgsets, @Nonnull final FetchMacro macro,
+            final int maxUidsLength) {
+        final List<UidFetchCommand> cmds = new ArrayList<UidFetchCommand>();
+        for (final String uids : MessageNumberSet.buildStrings(msgsets, maxUidsLength)) {
+            cmds.add(new UidFetchCommand(uids, macro));
+        }
+        return cmds;
+    }
+
     @Override
     public ImapCommandType getCommandType() {
         return ImapCommandType.UID_FETCH;
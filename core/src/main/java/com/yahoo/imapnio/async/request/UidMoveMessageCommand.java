@@ -1,5 +1,8 @@
 package com.yahoo.imapnio.async.request;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 
 import com.sun.mail.imap.protocol.UIDSet;
@@ -43,6 +46,25 @@ public class UidMoveMessageCommand extends AbstractMessageActionCommand {
         super(MOVE, true, msgsets, targetFolder);
     }
 
+    /**
+     * Creates one or more @{code UidMoveMessageCommand} for the given @{code MessageNumberSet} array, splitting it so the UID set of each command is
+     * no longer than the given length. It allows a large fragmented set to be moved within the command line limit of server, see
+     * {@code ImapAsyncSession.executeAll}.
+     *
+     * @param msgsets the set of @{code MessageNumberSet}
+     * @param targetFolder the targetFolder to be stored
+     * @param maxUidsLength maximum length of the UID set in each command
+     * @return the commands covering all the given message sets
+     */
+    public static List<UidMoveMessageCommand> split(@Nonnull final MessageNumberSet[] msgsets, @Nonnull final String targetFolder,
+            final int maxUidsLength) {
+        final List<UidMoveMessageCommand> cmds = new ArrayList<UidMoveMessageCommand>();
+        for (final String uids : MessageNumberSet.buildStrings(msgsets, maxUidsLength)) {
+            cmds.add(new UidMoveMessageCommand(uids, targetFolder));
+        }
+        return cmds;
+    }
+
     @Override
     public ImapCommandType getCommandType() {
         return ImapCommandType.UID_MOVE_MESSAGE;
@@ -1,5 +1,8 @@
 package com.yahoo.imapnio.async.request;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 import javax.mail.Flags;
 
@@ -48,6 +51,27 @@ public class UidStoreFlagsCommand extends AbstractStoreFlagsCommand {
         super(true, uids, flags, action, silent);
     }
 
+    /**
+     * Creates one or more @{code UidStoreFlagsCommand} for the given @{code MessageNumberSet} array, splitting it so the UID set of each command
+     * is no longer than the given length. It allows flags of a large fragmented set to be stored within the command line limit of server, see
+     * {@code ImapAsyncSession.executeAll}.
+     *
+     * @param msgsets the set of message set
+     * @param flags the flags to be stored
+     * @param action whether to replace, add or remove the flags
+     * @param silent true if asking server to respond silently; false if requesting server to return the new values
+     * @param maxUidsLength maximum length of the UID set in each command
+     * @return the commands covering all the given message sets
+     */
+    public static List<UidStoreFlagsCommand> split(@Nonnull final MessageNumberSet[] msgsets, @Nonnull final Flags flags,
+            @Nonnull final FlagsAction action, final boolean silent, final int maxUidsLength) {
+        final List<UidStoreFlagsCommand> cmds = new ArrayList<UidStoreFlagsCommand>();
+        for (final String uids : MessageNumberSet.buildStrings(msgsets, maxUidsLength)) {
+            cmds.add(new UidStoreFlagsCommand(uids, flags, action, silent));
+        }
+        return cmds;
+    }
+
     @Override
     public ImapCommandType getCommandType() {
         return ImapCommandType.UID_STORE_FLAGS;
@@ -2,6 +2,7 @@ package com.yahoo.imapnio.async.response;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -12,17 +13,21 @@ import javax.annotation.Nullable;
 import javax.mail.Folder;
 
 import com.sun.mail.iap.ParsingException;
+import com.sun.mail.iap.ProtocolException;
 import com.sun.mail.iap.Response;
 import com.sun.mail.imap.AppendUID;
 import com.sun.mail.imap.CopyUID;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.sun.mail.imap.protocol.ListInfo;
 import com.sun.mail.imap.protocol.MailboxInfo;
+import com.sun.mail.imap.protocol.Namespaces;
 import com.sun.mail.imap.protocol.Status;
 import com.sun.mail.imap.protocol.UIDSet;
+import com.yahoo.imapnio.async.data.AppendUidResult;
 import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.data.ExtensionMailboxInfo;
 import com.yahoo.imapnio.async.data.IdResult;
+import com.yahoo.imapnio.async.data.KnownCapability;
 import com.yahoo.imapnio.async.data.ListInfoList;
 import com.yahoo.imapnio.async.data.SearchResult;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
@@ -36,8 +41,11 @@ public class ImapResponseMapper {
     /** APPENDUID keyword. */
     private static final String APPENDUID = "APPENDUID";
 
+    /** NAMESPACE keyword. */
+    private static final String NAMESPACE = "NAMESPACE";
+
     /** EQUAL sign. */
-    private static final String EQUAL = "=";
+    private static final char EQUAL = '=';
 
     /** [ char. */
     private static final char L_BRACKET = '[';
@@ -75,6 +83,9 @@ public class ImapResponseMapper {
         if (valueType == AppendUID.class) {
             return (T) parser.parseToAppendUid(content);
         }
+        if (valueType == AppendUidResult.class) {
+            return (T) parser.parseToAppendUidResult(content);
+        }
         if (valueType == CopyUID.class) {
             return (T) parser.parseToCopyUid(content);
         }
@@ -96,6 +107,9 @@ public class ImapResponseMapper {
         if (valueType == SearchResult.class) {
             return (T) parser.parseToSearchResult(content);
         }
+        if (valueType == Namespaces.class) {
+            return (T) parser.parseToNamespaces(content);
+        }
         throw new ImapAsyncClientException(FailureType.UNKNOWN_PARSE_RESULT_TYPE);
     }
 
@@ -117,6 +131,7 @@ public class ImapResponseMapper {
         @Nonnull
         private Capability parseToCapabilities(@Nonnull final IMAPResponse[] rs) throws ImapAsyncClientException {
             String s;
+            final EnumSet<KnownCapability> knownCapas = EnumSet.noneOf(KnownCapability.class);
             final Map<String, List<String>> capas = new HashMap<String, List<String>>();
             if (rs.length < 1) {
                 throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
@@ -137,14 +152,25 @@ public class ImapResponseMapper {
                         // The "*" in the middle of the capability list causes us to loop forever here.
                         r.skipToken();
                     } else {
-                        final String[] tokens = s.split(EQUAL);
-                        final String key = tokens[0];
-                        final String value = (tokens.length > 1) ? tokens[1] : null;
-                        final String upperCase = key.toUpperCase(Locale.ENGLISH);
-                        List<String> values = capas.get(upperCase);
+                        // scans for the equal sign instead of splitting with a regular expression
+                        final int eq = s.indexOf(EQUAL);
+                        final String key = (eq < 0) ? s : s.substring(0, eq);
+                        final String value = (eq < 0 || eq == s.length() - 1) ? null : s.substring(eq + 1);
+                        final KnownCapability known = KnownCapability.fromName(key);
+                        final String name;
+                        if (known != null) {
+                            knownCapas.add(known);
+                            if (value == null) {
+                                continue; // well-known capability without value is kept in the bitset only
+                            }
+                            name = known.getName();
+                        } else {
+                            name = key.toUpperCase(Locale.ENGLISH);
+                        }
+                        List<String> values = capas.get(name);
                         if (values == null) {
                             values = new ArrayList<>();
-                            capas.put(upperCase, values);
+                            capas.put(name, values);
                         }
                         // AUTH key allows more than one pair(ex:AUTH=XOAUTH2 AUTH=PLAIN), parsing value out to List, otherwise add key to list
                         if (value != null) {
@@ -157,7 +183,7 @@ public class ImapResponseMapper {
             for (final Map.Entry<String, List<String>> entry : capas.entrySet()) {
                 entry.setValue(Collections.unmodifiableList(entry.getValue()));
             }
-            return new Capability(capas);
+            return new Capability(knownCapas, capas);
         }
 
         /**
@@ -217,6 +243,46 @@ public class ImapResponseMapper {
             return new AppendUID(uidvalidity, uid);
         }
 
+        /**
+         * Parses APPEND or MULTIAPPEND response to a AppendUidResult instance, expanding the APPENDUID uid set to the list of UIDs.
+         *
+         * @param rs the APPEND responses
+         * @return AppendUidResult instance
+         * @throws ImapAsyncClientException when input value is not valid
+         */
+        @Nonnull
+        private AppendUidResult parseToAppendUidResult(@Nonnull final IMAPResponse[] rs) throws ImapAsyncClientException {
+            if (rs.length < 1) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final IMAPResponse r = rs[rs.length - 1];
+            if (!r.isOK()) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            byte b;
+            while ((b = r.readByte()) > 0 && b != (byte) L_BRACKET) {
+                // eat chars till [
+            }
+
+            if (b == 0) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final String s = r.readAtom();
+            if (!s.equalsIgnoreCase(APPENDUID)) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final long uidvalidity = r.readLong();
+            final UIDSet[] uidSets = UIDSet.parseUIDSets(r.readAtom());
+            if (uidSets == null) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final List<Long> uids = new ArrayList<>();
+            for (final long uid : UIDSet.toArray(uidSets)) {
+                uids.add(uid);
+            }
+            return new AppendUidResult(uidvalidity, uids);
+        }
+
         /**
          * Parses COPY or MOVE command responses to a CopyUID instance.
          *
@@ -343,6 +409,34 @@ public class ImapResponseMapper {
             return new ListInfoList(v);
         }
 
+        /**
+         * Parses the NAMESPACE responses to a @{code Namespaces}.
+         *
+         * @param r the list of responses from NAMESPACE command, the input responses array should contain the tagged/final one
+         * @return Namespaces object constructed based on the r array
+         * @throws ImapAsyncClientException when input value is not valid
+         */
+        private Namespaces parseToNamespaces(@Nonnull final IMAPResponse[] r) throws ImapAsyncClientException {
+            if (r.length < 1) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            final Response taggedResponse = r[r.length - 1];
+            if (!taggedResponse.isOK()) {
+                throw new ImapAsyncClientException(FailureType.INVALID_INPUT);
+            }
+            for (int i = 0, len = r.length; i < len; i++) {
+                final IMAPResponse ir = r[i];
+                if (ir.keyEquals(NAMESPACE)) {
+                    try {
+                        return new Namespaces(ir);
+                    } catch (final ProtocolException e) {
+                        throw new ImapAsyncClientException(FailureType.INVALID_INPUT, e);
+                    }
+                }
+            }
+            throw new ImapAsyncClientException(FailureType.INVALID_INPUT); // no NAMESPACE response
+        }
+
         /**
          * Parses the Status responses to a @{code Status}.
          *
@@ -14,13 +14,16 @@ import com.sun.mail.imap.protocol.IMAPResponse;
  * @author kraman
  *
  */
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 
 /**
- * Basic response decoder. A ResponseDecoder (as opposed to a handler) is anything that outputs an IMAPResponse.
+ * Basic response decoder. A ResponseDecoder (as opposed to a handler) is anything that outputs an IMAPResponse. It keeps no state, hence one
+ * instance can be shared by all channels.
  *
  * @author kraman
  */
+@Sharable
 public class ImapClientRespDecoder extends MessageToMessageDecoder<String> {
 
     @Override
@@ -3,6 +3,7 @@ package com.yahoo.imapnio.command;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Properties;
 
 import com.sun.mail.iap.Protocol;
@@ -87,22 +88,53 @@ public class ProxyProtocol extends Protocol {
 }
 
 /**
- * Proxy class for the OutputStream.
+ * Proxy class for the OutputStream, collecting the written bytes in a growable array so serializing an argument is linear in its length.
  *
  * @author kraman
  *
  */
 class OutputStreamProxy extends OutputStream {
-    /** Serialized string. */
-    private String result = "";
+    /** Initial capacity of the byte array. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Bytes written so far. */
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+
+    /** Number of bytes written. */
+    private int count;
+
+    /**
+     * Grows the byte array so it can take the given number of more bytes.
+     *
+     * @param len number of bytes to be written
+     */
+    private void ensureCapacity(final int len) {
+        final int minCapacity = count + len;
+        if (minCapacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, minCapacity));
+        }
+    }
 
     @Override
     public void write(final int b) throws IOException {
-        result = result.concat(String.valueOf((char) b));
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
     }
 
     @Override
     public String toString() {
-        return result;
+        // each byte becomes one char, sign extended as it always has been
+        final char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = (char) buf[i];
+        }
+        return new String(chars);
     }
 }
@@ -0,0 +1,36 @@
+package com.yahoo.imapnio.async.client;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+/**
+ * Unit test for {@code ImapAsyncClientConfig}.
+ */
+public class ImapAsyncClientConfigTest {
+
+    /**
+     * Tests ImapAsyncClientConfig defaults, getters and setters.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGettersSetters() throws ImapAsyncClientException {
+        final ImapAsyncClientConfig config = new ImapAsyncClientConfig();
+        Assert.assertNull(config.getServerInfoCache(), "Result mismatched.");
+        Assert.assertNull(config.getWireCapture(), "Result mismatched.");
+        Assert.assertNull(config.getTenantScheduler(), "Result mismatched.");
+        Assert.assertNull(config.getAdmissionControl(), "Result mismatched.");
+
+        final ImapServerInfoCache cache = new ImapServerInfoCache(60000L);
+        final ImapTenantScheduler scheduler = new ImapTenantScheduler(65536, 16);
+        final ImapHostAdmissionControl admission = new ImapHostAdmissionControl(1, 10, 10, 1, 60000);
+        config.setServerInfoCache(cache);
+        config.setTenantScheduler(scheduler);
+        config.setAdmissionControl(admission);
+        Assert.assertSame(config.getServerInfoCache(), cache, "Result mismatched.");
+        Assert.assertSame(config.getTenantScheduler(), scheduler, "Result mismatched.");
+        Assert.assertSame(config.getAdmissionControl(), admission, "Result mismatched.");
+    }
+}
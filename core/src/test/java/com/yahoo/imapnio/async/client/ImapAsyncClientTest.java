@@ -1,40 +1,67 @@
 package com.yahoo.imapnio.async.client;
 
+import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import javax.net.ssl.SSLException;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.helpers.NOPLogger;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.client.ImapAsyncClient.ImapClientChannelInitializer;
 import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
+import com.yahoo.imapnio.async.client.ImapHostAdmissionControl.CircuitState;
+import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.netty.ImapByteCountingHandler;
 import com.yahoo.imapnio.async.netty.ImapClientConnectHandler;
+import com.yahoo.imapnio.async.netty.ImapFairDispatchHandler;
+import com.yahoo.imapnio.async.netty.ImapFlushConsolidationHandler;
+import com.yahoo.imapnio.async.netty.ImapWireCaptureHandler;
 import com.yahoo.imapnio.client.ImapClientRespReader;
 import com.yahoo.imapnio.command.ImapClientRespDecoder;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.codec.string.StringEncoder;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.GenericFutureListener;
 
 /**
@@ -58,7 +85,7 @@ public class ImapAsyncClientTest {
     @Test
     public void testCreateSessionNoLocalAddressNoSNISuccessful() throws SSLException, URISyntaxException, Exception {
 
-        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        final Bootstrap bootstrap = mockBootstrap();
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -67,7 +94,7 @@ public class ImapAsyncClientTest {
         Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
         Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
 
-        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        final EventLoopGroup group = mockGroup();
         final Logger logger = Mockito.mock(Logger.class);
         Mockito.when(logger.isTraceEnabled()).thenReturn(true);
 
@@ -110,20 +137,23 @@ public class ImapAsyncClientTest {
 
         // verify initChannel
         final ArgumentCaptor<ChannelHandler> handlerCaptor = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(socketPipeline, Mockito.times(5)).addLast(Mockito.anyString(), handlerCaptor.capture());
-        Assert.assertEquals(handlerCaptor.getAllValues().size(), 5, "Unexpected count of ChannelHandler added.");
+        Mockito.verify(socketPipeline, Mockito.times(7)).addLast(Mockito.anyString(), handlerCaptor.capture());
+        Assert.assertEquals(handlerCaptor.getAllValues().size(), 7, "Unexpected count of ChannelHandler added.");
         // following order should be preserved
-        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), IdleStateHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespReader.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), StringDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(5).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(6).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
         listener.operationComplete(nettyConnectFuture);
         final ArgumentCaptor<ChannelHandler> handlerCaptorFirst = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(nettyPipeline, Mockito.times(1)).addFirst(Mockito.anyString(), handlerCaptorFirst.capture());
+        Mockito.verify(nettyPipeline, Mockito.times(1)).addAfter(Mockito.eq(ImapAsyncClient.SOCKET_BYTE_COUNTER),
+                Mockito.eq(ImapAsyncClient.SSL_HANDLER), handlerCaptorFirst.capture());
         Assert.assertEquals(handlerCaptorFirst.getAllValues().size(), 1, "number of handlers mismatched.");
         Assert.assertEquals(handlerCaptorFirst.getAllValues().get(0).getClass(), SslHandler.class, "expected class mismatched.");
 
@@ -150,7 +180,7 @@ public class ImapAsyncClientTest {
     @Test
     public void testCreateSessionNoLocalAddressNoSSLSuccessful() throws SSLException, URISyntaxException, Exception {
 
-        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        final Bootstrap bootstrap = mockBootstrap();
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -159,7 +189,7 @@ public class ImapAsyncClientTest {
         Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
         Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
 
-        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        final EventLoopGroup group = mockGroup();
         final Logger logger = Mockito.mock(Logger.class);
         Mockito.when(logger.isTraceEnabled()).thenReturn(true);
 
@@ -200,20 +230,23 @@ public class ImapAsyncClientTest {
 
         // verify initChannel
         final ArgumentCaptor<ChannelHandler> handlerCaptor = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(socketPipeline, Mockito.times(5)).addLast(Mockito.anyString(), handlerCaptor.capture());
-        Assert.assertEquals(handlerCaptor.getAllValues().size(), 5, "Unexpected count of ChannelHandler added.");
+        Mockito.verify(socketPipeline, Mockito.times(7)).addLast(Mockito.anyString(), handlerCaptor.capture());
+        Assert.assertEquals(handlerCaptor.getAllValues().size(), 7, "Unexpected count of ChannelHandler added.");
         // following order should be preserved
-        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), IdleStateHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespReader.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), StringDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(5).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(6).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
         listener.operationComplete(nettyConnectFuture);
         final ArgumentCaptor<ChannelHandler> handlerCaptorFirst = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(nettyPipeline, Mockito.times(0)).addFirst(Mockito.anyString(), handlerCaptorFirst.capture());
+        Mockito.verify(nettyPipeline, Mockito.times(0)).addAfter(Mockito.anyString(), Mockito.anyString(),
+                handlerCaptorFirst.capture());
         Assert.assertEquals(handlerCaptorFirst.getAllValues().size(), 0, "number of handlers mismatched.");
 
         final ArgumentCaptor<ChannelHandler> handlerCaptorLast = ArgumentCaptor.forClass(ChannelHandler.class);
@@ -238,7 +271,7 @@ public class ImapAsyncClientTest {
     @Test
     public void testCreateSessionNoLocalAddressSNIEmptySuccessful() throws SSLException, URISyntaxException, Exception {
 
-        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        final Bootstrap bootstrap = mockBootstrap();
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -247,7 +280,7 @@ public class ImapAsyncClientTest {
         Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
         Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
 
-        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        final EventLoopGroup group = mockGroup();
         final Logger logger = Mockito.mock(Logger.class);
         Mockito.when(logger.isTraceEnabled()).thenReturn(false);
         Mockito.when(logger.isDebugEnabled()).thenReturn(true);
@@ -289,20 +322,23 @@ public class ImapAsyncClientTest {
 
         // verify initChannel
         final ArgumentCaptor<ChannelHandler> handlerCaptor = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(socketPipeline, Mockito.times(5)).addLast(Mockito.anyString(), handlerCaptor.capture());
-        Assert.assertEquals(handlerCaptor.getAllValues().size(), 5, "Unexpected count of ChannelHandler added.");
+        Mockito.verify(socketPipeline, Mockito.times(7)).addLast(Mockito.anyString(), handlerCaptor.capture());
+        Assert.assertEquals(handlerCaptor.getAllValues().size(), 7, "Unexpected count of ChannelHandler added.");
         // following order should be preserved
-        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), IdleStateHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespReader.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), StringDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(5).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(6).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
         listener.operationComplete(nettyConnectFuture);
         final ArgumentCaptor<ChannelHandler> handlerCaptorFirst = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(nettyPipeline, Mockito.times(1)).addFirst(Mockito.anyString(), handlerCaptorFirst.capture());
+        Mockito.verify(nettyPipeline, Mockito.times(1)).addAfter(Mockito.eq(ImapAsyncClient.SOCKET_BYTE_COUNTER),
+                Mockito.eq(ImapAsyncClient.SSL_HANDLER), handlerCaptorFirst.capture());
         Assert.assertEquals(handlerCaptorFirst.getAllValues().size(), 1, "number of handlers mismatched.");
         Assert.assertEquals(handlerCaptorFirst.getAllValues().get(0).getClass(), SslHandler.class, "expected class mismatched.");
 
@@ -327,7 +363,7 @@ public class ImapAsyncClientTest {
     @Test
     public void testCreateSessionWithLocalAddressSniSuccessfulSessionDebugOff() throws SSLException, URISyntaxException, Exception {
 
-        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        final Bootstrap bootstrap = mockBootstrap();
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -336,7 +372,7 @@ public class ImapAsyncClientTest {
         Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
         Mockito.when(bootstrap.connect(Mockito.any(SocketAddress.class), Mockito.any(SocketAddress.class))).thenReturn(nettyConnectFuture);
 
-        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        final EventLoopGroup group = mockGroup();
         final Logger logger = Mockito.mock(Logger.class);
         Mockito.when(logger.isDebugEnabled()).thenReturn(true);
 
@@ -376,20 +412,23 @@ public class ImapAsyncClientTest {
 
         // verify initChannel
         final ArgumentCaptor<ChannelHandler> handlerCaptor = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(socketPipeline, Mockito.times(5)).addLast(Mockito.anyString(), handlerCaptor.capture());
-        Assert.assertEquals(handlerCaptor.getAllValues().size(), 5, "Unexpected count of ChannelHandler added.");
+        Mockito.verify(socketPipeline, Mockito.times(7)).addLast(Mockito.anyString(), handlerCaptor.capture());
+        Assert.assertEquals(handlerCaptor.getAllValues().size(), 7, "Unexpected count of ChannelHandler added.");
         // following order should be preserved
-        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), IdleStateHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespReader.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), StringDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(5).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(6).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
         listener.operationComplete(nettyConnectFuture);
         final ArgumentCaptor<ChannelHandler> handlerCaptorFirst = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(nettyPipeline, Mockito.times(1)).addFirst(Mockito.anyString(), handlerCaptorFirst.capture());
+        Mockito.verify(nettyPipeline, Mockito.times(1)).addAfter(Mockito.eq(ImapAsyncClient.SOCKET_BYTE_COUNTER),
+                Mockito.eq(ImapAsyncClient.SSL_HANDLER), handlerCaptorFirst.capture());
         Assert.assertEquals(handlerCaptorFirst.getAllValues().size(), 1, "number of handlers mismatched.");
         Assert.assertEquals(handlerCaptorFirst.getAllValues().get(0).getClass(), SslHandler.class, "expected class mismatched.");
 
@@ -410,7 +449,7 @@ public class ImapAsyncClientTest {
     @Test
     public void testCreateSessionWithLocalAddressSniSuccessfulSessionDebugOn() throws SSLException, URISyntaxException, Exception {
 
-        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        final Bootstrap bootstrap = mockBootstrap();
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -419,7 +458,7 @@ public class ImapAsyncClientTest {
         Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
         Mockito.when(bootstrap.connect(Mockito.any(SocketAddress.class), Mockito.any(SocketAddress.class))).thenReturn(nettyConnectFuture);
 
-        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        final EventLoopGroup group = mockGroup();
         final Logger logger = Mockito.mock(Logger.class);
         Mockito.when(logger.isDebugEnabled()).thenReturn(true);
 
@@ -462,20 +501,23 @@ public class ImapAsyncClientTest {
 
         // verify initChannel
         final ArgumentCaptor<ChannelHandler> handlerCaptor = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(socketPipeline, Mockito.times(5)).addLast(Mockito.anyString(), handlerCaptor.capture());
-        Assert.assertEquals(handlerCaptor.getAllValues().size(), 5, "Unexpected count of ChannelHandler added.");
+        Mockito.verify(socketPipeline, Mockito.times(7)).addLast(Mockito.anyString(), handlerCaptor.capture());
+        Assert.assertEquals(handlerCaptor.getAllValues().size(), 7, "Unexpected count of ChannelHandler added.");
         // following order should be preserved
-        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientRespReader.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), StringDecoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), StringEncoder.class, "expected class mismatched.");
-        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapByteCountingHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(2).getClass(), IdleStateHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(3).getClass(), ImapClientRespReader.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(4).getClass(), StringDecoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(5).getClass(), StringEncoder.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(6).getClass(), ImapClientRespDecoder.class, "expected class mismatched.");
 
         // verify GenericFutureListener.operationComplete()
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
         listener.operationComplete(nettyConnectFuture);
         final ArgumentCaptor<ChannelHandler> handlerCaptorFirst = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(nettyPipeline, Mockito.times(1)).addFirst(Mockito.anyString(), handlerCaptorFirst.capture());
+        Mockito.verify(nettyPipeline, Mockito.times(1)).addAfter(Mockito.eq(ImapAsyncClient.SOCKET_BYTE_COUNTER),
+                Mockito.eq(ImapAsyncClient.SSL_HANDLER), handlerCaptorFirst.capture());
         Assert.assertEquals(handlerCaptorFirst.getAllValues().size(), 1, "number of handlers mismatched.");
         Assert.assertEquals(handlerCaptorFirst.getAllValues().get(0).getClass(), SslHandler.class, "expected class mismatched.");
 
@@ -499,7 +541,7 @@ public class ImapAsyncClientTest {
     @Test
     public void testCreateSessionNoLocalAddressConnectFailed() throws SSLException, URISyntaxException, Exception {
 
-        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        final Bootstrap bootstrap = mockBootstrap();
         final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
         Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(false);
         final Channel nettyChannel = Mockito.mock(Channel.class);
@@ -508,7 +550,7 @@ public class ImapAsyncClientTest {
         Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
         Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
 
-        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        final EventLoopGroup group = mockGroup();
         final Logger logger = Mockito.mock(Logger.class);
         Mockito.when(logger.isDebugEnabled()).thenReturn(true);
 
@@ -545,7 +587,8 @@ public class ImapAsyncClientTest {
         final GenericFutureListener listener = listenerCaptor.getAllValues().get(0);
         listener.operationComplete(nettyConnectFuture);
         final ArgumentCaptor<ChannelHandler> handlerCaptorFirst = ArgumentCaptor.forClass(ChannelHandler.class);
-        Mockito.verify(nettyPipeline, Mockito.times(0)).addFirst(Mockito.anyString(), handlerCaptorFirst.capture());
+        Mockito.verify(nettyPipeline, Mockito.times(0)).addAfter(Mockito.anyString(), Mockito.anyString(),
+                handlerCaptorFirst.capture());
         Assert.assertEquals(handlerCaptorFirst.getAllValues().size(), 0, "number of handlers mismatched.");
 
         final ArgumentCaptor<ChannelHandler> handlerCaptorLast = ArgumentCaptor.forClass(ChannelHandler.class);
@@ -558,4 +601,550 @@ public class ImapAsyncClientTest {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests createSession method validates the server greeting against the server info cache, also when caller sets its own callback on the future.
+     *
+     * @throws Exception when calling operationComplete() at GenericFutureListenr
+     */
+    @Test
+    public void testCreateSessionValidateGreetingWithCache() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
+        final Channel nettyChannel = Mockito.mock(Channel.class);
+        final ChannelPipeline nettyPipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(nettyChannel.pipeline()).thenReturn(nettyPipeline);
+        Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+
+        final EventLoopGroup group = mockGroup();
+        final Logger logger = Mockito.mock(Logger.class);
+        final ImapServerInfoCache cache = new ImapServerInfoCache(60000L);
+        final ImapAsyncClientConfig clientConfig = new ImapAsyncClientConfig();
+        clientConfig.setServerInfoCache(cache);
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, group, logger, clientConfig);
+        Assert.assertSame(aclient.getServerInfoCache(), cache, "Cache mismatched.");
+
+        final URI serverUri = new URI(NO_SSL_SERVER_URI_STR);
+        cache.validateGreeting(serverUri, new IMAPResponse("* OK [CAPABILITY IMAP4rev1 SASL-IR AUTH=PLAIN] IMAP4rev1 Hello"));
+        cache.putCapability(serverUri, new Capability(new HashMap<String, List<String>>()));
+
+        final ImapFuture<ImapAsyncCreateSessionResponse> future = (ImapFuture<ImapAsyncCreateSessionResponse>) aclient.createSession(serverUri,
+                new ImapAsyncSessionConfig(), null, null, DebugMode.DEBUG_OFF);
+        final List<ImapAsyncCreateSessionResponse> responses = new ArrayList<ImapAsyncCreateSessionResponse>();
+        future.setDoneCallback(new Consumer<ImapAsyncCreateSessionResponse>() {
+            @Override
+            public void accept(final ImapAsyncCreateSessionResponse response) {
+                responses.add(response);
+            }
+        });
+        final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+        Mockito.verify(nettyConnectFuture, Mockito.times(1)).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().operationComplete(nettyConnectFuture);
+        final ArgumentCaptor<ChannelHandler> handlerCaptor = ArgumentCaptor.forClass(ChannelHandler.class);
+        Mockito.verify(nettyPipeline, Mockito.times(1)).addLast(Mockito.anyString(), handlerCaptor.capture());
+        final ImapClientConnectHandler connectHandler = (ImapClientConnectHandler) handlerCaptor.getValue();
+
+        // server now advertises a different capability in greeting
+        final ChannelHandlerContext ctx = Mockito.mock(ChannelHandlerContext.class);
+        Mockito.when(ctx.pipeline()).thenReturn(nettyPipeline);
+        Mockito.when(ctx.channel()).thenReturn(nettyChannel);
+        final IMAPResponse greeting = new IMAPResponse("* OK [CAPABILITY IMAP4rev1 SASL-IR AUTH=PLAIN MOVE] IMAP4rev1 Hello");
+        connectHandler.decode(ctx, greeting, new ArrayList<Object>());
+
+        Assert.assertTrue(future.isDone(), "Future should be done");
+        Assert.assertSame(future.get().getServerGreeting(), greeting, "Greeting mismatched.");
+        Assert.assertEquals(responses.size(), 1, "Callback of caller should be called.");
+        Assert.assertNull(cache.getCapability(serverUri), "Cached capability should be invalidated.");
+    }
+
+    /**
+     * Tests getWireStats method sums the byte counters of all channels initialized by the client.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testGetWireStats() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class));
+        aclient.createSession(new URI(SERVER_URI_STR), new ImapAsyncSessionConfig(), null, null, DebugMode.DEBUG_OFF);
+        final ArgumentCaptor<ImapClientChannelInitializer> initializerCaptor = ArgumentCaptor.forClass(ImapClientChannelInitializer.class);
+        Mockito.verify(bootstrap, Mockito.times(1)).handler(initializerCaptor.capture());
+
+        final ChannelHandlerContext ctx = Mockito.mock(ChannelHandlerContext.class);
+        for (int i = 0; i < 2; i++) {
+            final SocketChannel socketChannel = Mockito.mock(SocketChannel.class);
+            final ChannelPipeline socketPipeline = Mockito.mock(ChannelPipeline.class);
+            Mockito.when(socketChannel.pipeline()).thenReturn(socketPipeline);
+            initializerCaptor.getValue().initChannel(socketChannel);
+            final ArgumentCaptor<ImapByteCountingHandler> socketCaptor = ArgumentCaptor.forClass(ImapByteCountingHandler.class);
+            Mockito.verify(socketPipeline, Mockito.times(1)).addLast(Mockito.eq(ImapAsyncClient.SOCKET_BYTE_COUNTER), socketCaptor.capture());
+            final ArgumentCaptor<ImapByteCountingHandler> plainCaptor = ArgumentCaptor.forClass(ImapByteCountingHandler.class);
+            Mockito.verify(socketPipeline, Mockito.times(1)).addLast(Mockito.eq(ImapAsyncClient.PLAIN_BYTE_COUNTER), plainCaptor.capture());
+            socketCaptor.getValue().channelRead(ctx, Unpooled.wrappedBuffer(new byte[100]));
+            socketCaptor.getValue().write(ctx, Unpooled.wrappedBuffer(new byte[20]), Mockito.mock(ChannelPromise.class));
+            plainCaptor.getValue().channelRead(ctx, Unpooled.wrappedBuffer(new byte[300]));
+            plainCaptor.getValue().write(ctx, Unpooled.wrappedBuffer(new byte[30]), Mockito.mock(ChannelPromise.class));
+        }
+
+        final ImapWireStats stats = aclient.getWireStats();
+        Assert.assertEquals(stats.getSocketBytesRead(), 200L, "Socket bytes read mismatched.");
+        Assert.assertEquals(stats.getSocketBytesWritten(), 40L, "Socket bytes written mismatched.");
+        Assert.assertEquals(stats.getPlainBytesRead(), 600L, "Plain bytes read mismatched.");
+        Assert.assertEquals(stats.getPlainBytesWritten(), 60L, "Plain bytes written mismatched.");
+        Assert.assertEquals(stats.getReadCompressionRatio(), 3.0d, "Read compression ratio mismatched.");
+        Assert.assertEquals(stats.getWriteCompressionRatio(), 1.5d, "Write compression ratio mismatched.");
+        Assert.assertEquals(stats.getCompressionRatio(), 2.75d, "Compression ratio mismatched.");
+    }
+
+    /**
+     * Tests createSession method adds the wire capture handler after the response line reader when wire capture is enabled.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionWithWireCapture() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
+        final Channel nettyChannel = Mockito.mock(Channel.class);
+        final ChannelPipeline nettyPipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(nettyChannel.pipeline()).thenReturn(nettyPipeline);
+        Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final Path file = Files.createTempFile("imapnio", ".ring");
+        try {
+            final ImapWireCapture capture = new ImapWireCapture(file, 4096);
+            final ImapAsyncClientConfig clientConfig = new ImapAsyncClientConfig();
+            clientConfig.setWireCapture(capture);
+            final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class),
+                    clientConfig);
+            aclient.createSession(new URI(NO_SSL_SERVER_URI_STR), new ImapAsyncSessionConfig(), null, null, DebugMode.DEBUG_OFF);
+            final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+            Mockito.verify(nettyConnectFuture, Mockito.times(1)).addListener(listenerCaptor.capture());
+            listenerCaptor.getValue().operationComplete(nettyConnectFuture);
+
+            Mockito.verify(nettyPipeline, Mockito.times(1)).addAfter(Mockito.eq("ImapClientRespReader"), Mockito.eq(ImapWireCaptureHandler.HANDLER_NAME),
+                    Mockito.isA(ImapWireCaptureHandler.class));
+            capture.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests createSession method with a tenant scheduler adds the fair dispatch handler for sessions with a tenant only.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionWithTenantScheduler() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
+        final Channel nettyChannel = Mockito.mock(Channel.class);
+        final ChannelPipeline nettyPipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(nettyChannel.pipeline()).thenReturn(nettyPipeline);
+        Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final ImapTenantScheduler scheduler = new ImapTenantScheduler(65536, 16);
+        final ImapAsyncClientConfig clientConfig = new ImapAsyncClientConfig();
+        clientConfig.setTenantScheduler(scheduler);
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class), clientConfig);
+        Assert.assertSame(aclient.getTenantScheduler(), scheduler, "Tenant scheduler mismatched.");
+        aclient.createSession(new URI(NO_SSL_SERVER_URI_STR), new ImapAsyncSessionConfig(), null, null, DebugMode.DEBUG_OFF);
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setTenantId("tenant1");
+        aclient.createSession(new URI(NO_SSL_SERVER_URI_STR), config, null, null, DebugMode.DEBUG_OFF);
+        final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+        Mockito.verify(nettyConnectFuture, Mockito.times(2)).addListener(listenerCaptor.capture());
+
+        listenerCaptor.getAllValues().get(0).operationComplete(nettyConnectFuture);
+        Mockito.verify(nettyPipeline, Mockito.times(0)).addAfter(Mockito.anyString(), Mockito.anyString(), Mockito.any(ChannelHandler.class));
+        listenerCaptor.getAllValues().get(1).operationComplete(nettyConnectFuture);
+        Mockito.verify(nettyPipeline, Mockito.times(1)).addAfter(Mockito.eq("ImapClientRespReader"), Mockito.eq(ImapFairDispatchHandler.HANDLER_NAME),
+                Mockito.isA(ImapFairDispatchHandler.class));
+    }
+
+    /**
+     * Tests createSession method with flush consolidation enabled adds the flush consolidation handler.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionWithFlushConsolidation() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
+        final Channel nettyChannel = Mockito.mock(Channel.class);
+        final ChannelPipeline nettyPipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(nettyChannel.pipeline()).thenReturn(nettyPipeline);
+        Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class));
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        Assert.assertFalse(config.isFlushConsolidationEnabled(), "Flush consolidation should be disabled by default.");
+        Assert.assertEquals(config.getMaxConsolidatedFlushes(), ImapAsyncSessionConfig.DEFAULT_MAX_CONSOLIDATED_FLUSHES, "Max flushes mismatched.");
+        config.setFlushConsolidationEnabled(true);
+        config.setMaxConsolidatedFlushes(16);
+        aclient.createSession(new URI(NO_SSL_SERVER_URI_STR), config, null, null, DebugMode.DEBUG_OFF);
+        final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+        Mockito.verify(nettyConnectFuture, Mockito.times(1)).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().operationComplete(nettyConnectFuture);
+
+        final ArgumentCaptor<ChannelHandler> handlerCaptor = ArgumentCaptor.forClass(ChannelHandler.class);
+        Mockito.verify(nettyPipeline, Mockito.times(2)).addLast(Mockito.anyString(), handlerCaptor.capture());
+        Assert.assertEquals(handlerCaptor.getAllValues().get(0).getClass(), ImapFlushConsolidationHandler.class, "expected class mismatched.");
+        Assert.assertEquals(handlerCaptor.getAllValues().get(1).getClass(), ImapClientConnectHandler.class, "expected class mismatched.");
+    }
+
+    /**
+     * Tests createSession method with admission control fails fast when too many connects are in progress, and when the circuit of the host is
+     * opened by connect failures.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionWithAdmissionControl() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(false);
+        Mockito.when(nettyConnectFuture.cause()).thenReturn(new ConnectException("refused"));
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final ImapHostAdmissionControl admission = new ImapHostAdmissionControl(1, 10, 10, 1, 60000);
+        final ImapAsyncClientConfig clientConfig = new ImapAsyncClientConfig();
+        clientConfig.setAdmissionControl(admission);
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class), clientConfig);
+        Assert.assertSame(aclient.getAdmissionControl(), admission, "Admission control mismatched.");
+        final URI serverUri = new URI(NO_SSL_SERVER_URI_STR);
+
+        final Future<ImapAsyncCreateSessionResponse> future1 = aclient.createSession(serverUri, new ImapAsyncSessionConfig(), null, null,
+                DebugMode.DEBUG_OFF);
+        final Future<ImapAsyncCreateSessionResponse> future2 = aclient.createSession(serverUri, new ImapAsyncSessionConfig(), null, null,
+                DebugMode.DEBUG_OFF);
+        Assert.assertTrue(future2.isDone(), "Future should be done.");
+        assertFailureType(future2, FailureType.CONNECTION_THROTTLED);
+        Mockito.verify(bootstrap, Mockito.times(1)).connect(Mockito.anyString(), Mockito.anyInt());
+        Assert.assertEquals(admission.getConnectsInProgress(serverUri), 1, "Connects in progress mismatched.");
+
+        final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+        Mockito.verify(nettyConnectFuture, Mockito.times(1)).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().operationComplete(nettyConnectFuture);
+        assertFailureType(future1, FailureType.CONNECTION_FAILED_EXCEPTION);
+        Assert.assertEquals(admission.getConnectsInProgress(serverUri), 0, "Connects in progress mismatched.");
+        Assert.assertEquals(admission.getCircuitState(serverUri), CircuitState.OPEN, "Circuit state mismatched.");
+
+        final Future<ImapAsyncCreateSessionResponse> future3 = aclient.createSession(serverUri, new ImapAsyncSessionConfig(), null, null,
+                DebugMode.DEBUG_OFF);
+        assertFailureType(future3, FailureType.CONNECTION_CIRCUIT_OPEN);
+        Mockito.verify(bootstrap, Mockito.times(1)).connect(Mockito.anyString(), Mockito.anyInt());
+    }
+
+    /**
+     * Tests createSession method fails the connect, closing the channel and releasing its admission, when setting up the channel throws, such as
+     * upon an invalid SNI name.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionInvalidSniName() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
+        final Channel nettyChannel = Mockito.mock(Channel.class);
+        Mockito.when(nettyChannel.pipeline()).thenReturn(Mockito.mock(ChannelPipeline.class));
+        Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final ImapHostAdmissionControl admission = new ImapHostAdmissionControl(1, 10, 10, 1, 60000);
+        final ImapAsyncClientConfig clientConfig = new ImapAsyncClientConfig();
+        clientConfig.setAdmissionControl(admission);
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class), clientConfig);
+        final URI serverUri = new URI(SERVER_URI_STR);
+
+        final Future<ImapAsyncCreateSessionResponse> future = aclient.createSession(serverUri, new ImapAsyncSessionConfig(), null,
+                Arrays.asList(""), DebugMode.DEBUG_OFF);
+        Assert.assertEquals(admission.getConnectsInProgress(serverUri), 1, "Connects in progress mismatched.");
+        final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+        Mockito.verify(nettyConnectFuture, Mockito.times(1)).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().operationComplete(nettyConnectFuture);
+
+        Assert.assertTrue(future.isDone(), "Future should be done.");
+        assertFailureType(future, FailureType.CONNECTION_FAILED_EXCEPTION);
+        Assert.assertEquals(admission.getConnectsInProgress(serverUri), 0, "Connects in progress mismatched.");
+        Mockito.verify(nettyChannel, Mockito.times(1)).close();
+    }
+
+    /**
+     * Tests createSession method fails without connecting when the compression settings need JZlib, which is not in the class path.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionCompressionEngineUnavailable() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class));
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setCompressionEngine(ImapAsyncSessionConfig.CompressionEngine.ZLIB_CODEC_FACTORY);
+        config.setCompressionMemLevel(4);
+
+        final Future<ImapAsyncCreateSessionResponse> future = aclient.createSession(new URI(NO_SSL_SERVER_URI_STR), config, null, null,
+                DebugMode.DEBUG_OFF);
+        Assert.assertTrue(future.isDone(), "Future should be done.");
+        assertFailureType(future, FailureType.INVALID_INPUT);
+        Mockito.verify(bootstrap, Mockito.times(0)).connect(Mockito.anyString(), Mockito.anyInt());
+    }
+
+    /**
+     * Tests the optional features of the client combine, each taken from the client configuration when constructing.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testConstructWithCombinedFeatures() throws Exception {
+        final ImapAsyncClientConfig clientConfig = new ImapAsyncClientConfig();
+        final ImapServerInfoCache cache = new ImapServerInfoCache(60000L);
+        final ImapTenantScheduler scheduler = new ImapTenantScheduler(65536, 16);
+        final ImapHostAdmissionControl admission = new ImapHostAdmissionControl(1, 10, 10, 1, 60000);
+        clientConfig.setServerInfoCache(cache);
+        clientConfig.setTenantScheduler(scheduler);
+        clientConfig.setAdmissionControl(admission);
+        final ImapAsyncClient aclient = new ImapAsyncClient(mockBootstrap(), mockGroup(), Mockito.mock(Logger.class),
+                clientConfig);
+        clientConfig.setServerInfoCache(null);
+
+        Assert.assertSame(aclient.getServerInfoCache(), cache, "Cache mismatched.");
+        Assert.assertSame(aclient.getTenantScheduler(), scheduler, "Tenant scheduler mismatched.");
+        Assert.assertSame(aclient.getAdmissionControl(), admission, "Admission control mismatched.");
+    }
+
+    /**
+     * Tests createSession method with an endpoint group connects to the chosen endpoint, and marks it unhealthy when the connect fails so that the
+     * next session goes to another endpoint.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionWithEndpointGroup() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(false);
+        Mockito.when(nettyConnectFuture.cause()).thenReturn(new ConnectException("refused"));
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class));
+        final ImapEndpointGroup endpointGroup = new ImapEndpointGroup(Arrays.asList(new URI("imap://imap1.one.com:143"),
+                new URI("imap://imap2.one.com:143")), ImapEndpointGroup.Strategy.ROUND_ROBIN, 60000);
+
+        final Future<ImapAsyncCreateSessionResponse> future = aclient.createSession(endpointGroup, new ImapAsyncSessionConfig(), null, null,
+                DebugMode.DEBUG_OFF, "ctx");
+        Mockito.verify(bootstrap, Mockito.times(1)).connect("imap1.one.com", 143);
+        Assert.assertEquals(endpointGroup.getEndpoints().get(0).getActiveSessions(), 1, "Active sessions mismatched.");
+        final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+        Mockito.verify(nettyConnectFuture, Mockito.times(1)).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().operationComplete(nettyConnectFuture);
+        assertFailureType(future, FailureType.CONNECTION_FAILED_EXCEPTION);
+        Assert.assertEquals(endpointGroup.getEndpoints().get(0).getActiveSessions(), 0, "Active sessions mismatched.");
+        Assert.assertFalse(endpointGroup.isHealthy(endpointGroup.getEndpoints().get(0)), "Endpoint should be unhealthy.");
+
+        aclient.createSession(endpointGroup, new ImapAsyncSessionConfig(), null, null, DebugMode.DEBUG_OFF, "ctx");
+        aclient.createSession(endpointGroup, new ImapAsyncSessionConfig(), null, null, DebugMode.DEBUG_OFF, "ctx");
+        Mockito.verify(bootstrap, Mockito.times(2)).connect("imap2.one.com", 143);
+    }
+
+    /**
+     * @return a mocked event loop group without event loops, which the client lists when constructed
+     */
+    private EventLoopGroup mockGroup() {
+        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        Mockito.when(group.iterator()).thenReturn(Collections.<EventExecutor> emptyIterator());
+        return group;
+    }
+
+    /**
+     * @return a mocked bootstrap, whose copy is itself so that the tests follow the copy each session connects with
+     */
+    private Bootstrap mockBootstrap() {
+        final Bootstrap bootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone()).thenReturn(bootstrap);
+        return bootstrap;
+    }
+
+    /**
+     * Asserts the future failed with the given failure type.
+     *
+     * @param future the future
+     * @param failureType the expected failure type
+     * @throws InterruptedException will not throw
+     */
+    private void assertFailureType(final Future<ImapAsyncCreateSessionResponse> future, final FailureType failureType)
+            throws InterruptedException {
+        ExecutionException ex = null;
+        try {
+            future.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFaiureType(), failureType, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests createSession method with affinity keys registers the sessions of equal keys to the same event loop.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionWithAffinityKey() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final EventLoopGroup group = Mockito.mock(EventLoopGroup.class);
+        final List<EventExecutor> loops = new ArrayList<EventExecutor>();
+        for (int i = 0; i < 4; i++) {
+            loops.add(Mockito.mock(EventLoop.class));
+        }
+        Mockito.when(group.iterator()).thenAnswer(new Answer<Iterator<EventExecutor>>() {
+            @Override
+            public Iterator<EventExecutor> answer(final InvocationOnMock invocation) {
+                return loops.iterator();
+            }
+        });
+        final Bootstrap clonedBootstrap = Mockito.mock(Bootstrap.class);
+        Mockito.when(bootstrap.clone(Mockito.any(EventLoopGroup.class))).thenReturn(clonedBootstrap);
+        Mockito.when(clonedBootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(Mockito.mock(ChannelFuture.class));
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, group, Mockito.mock(Logger.class));
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        final URI serverUri = new URI(SERVER_URI_STR);
+
+        for (final String key : Arrays.asList("joe@example.com", "amy@example.com", "joe@example.com", "bob@example.com", "amy@example.com")) {
+            aclient.createSession(serverUri, config, null, null, DebugMode.DEBUG_OFF, "ctx", key);
+        }
+        final ArgumentCaptor<EventLoopGroup> loopCaptor = ArgumentCaptor.forClass(EventLoopGroup.class);
+        Mockito.verify(bootstrap, Mockito.times(5)).clone(loopCaptor.capture());
+        final List<EventLoopGroup> chosen = loopCaptor.getAllValues();
+        Assert.assertTrue(loops.contains(chosen.get(0)), "Event loop should be of the group.");
+        Assert.assertSame(chosen.get(2), chosen.get(0), "Sessions of the same key should share event loop.");
+        Assert.assertSame(chosen.get(4), chosen.get(1), "Sessions of the same key should share event loop.");
+        Mockito.verify(clonedBootstrap, Mockito.times(5)).connect(serverUri.getHost(), serverUri.getPort());
+        Mockito.verify(bootstrap, Mockito.times(0)).connect(Mockito.anyString(), Mockito.anyInt());
+        Mockito.verify(group, Mockito.times(0)).next();
+        Mockito.verify(group, Mockito.times(1)).iterator(); // event loops are listed once, when constructing
+
+        // without key, a plain copy of bootstrap lets the group choose
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(Mockito.mock(ChannelFuture.class));
+        aclient.createSession(serverUri, config, null, null, DebugMode.DEBUG_OFF, "ctx", null);
+        Mockito.verify(bootstrap, Mockito.times(1)).connect(serverUri.getHost(), serverUri.getPort());
+        Mockito.verify(bootstrap, Mockito.times(5)).clone(Mockito.any(EventLoopGroup.class));
+        Mockito.verify(bootstrap, Mockito.times(1)).clone();
+    }
+
+    /**
+     * Tests createSession method in low footprint mode shares the stateless handlers among channels, and adds no byte counters, even when the
+     * config is changed before the connect completes.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCreateSessionLowFootprint() throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        final ChannelFuture nettyConnectFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(nettyConnectFuture.isSuccess()).thenReturn(true);
+        final Channel nettyChannel = Mockito.mock(Channel.class);
+        final ChannelPipeline nettyPipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(nettyChannel.pipeline()).thenReturn(nettyPipeline);
+        Mockito.when(nettyConnectFuture.channel()).thenReturn(nettyChannel);
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(nettyConnectFuture);
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class));
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setLowFootprintEnabled(true);
+        aclient.createSession(new URI(SERVER_URI_STR), config, null, null, DebugMode.DEBUG_OFF);
+        config.setLowFootprintEnabled(false); // the session keeps the mode it was created with
+        final ArgumentCaptor<ImapClientChannelInitializer> initializerCaptor = ArgumentCaptor.forClass(ImapClientChannelInitializer.class);
+        Mockito.verify(bootstrap, Mockito.times(1)).handler(initializerCaptor.capture());
+
+        final List<List<ChannelHandler>> handlers = new ArrayList<List<ChannelHandler>>();
+        for (int i = 0; i < 2; i++) {
+            final Channel socketChannel = Mockito.mock(Channel.class);
+            final ChannelPipeline socketPipeline = Mockito.mock(ChannelPipeline.class);
+            Mockito.when(socketChannel.pipeline()).thenReturn(socketPipeline);
+            initializerCaptor.getValue().initChannel(socketChannel);
+            final ArgumentCaptor<ChannelHandler> handlerCaptor = ArgumentCaptor.forClass(ChannelHandler.class);
+            Mockito.verify(socketPipeline, Mockito.times(5)).addLast(Mockito.anyString(), handlerCaptor.capture());
+            handlers.add(handlerCaptor.getAllValues());
+        }
+        Assert.assertEquals(handlers.get(0).get(0).getClass(), IdleStateHandler.class, "expected class mismatched.");
+        Assert.assertNotSame(handlers.get(0).get(1), handlers.get(1).get(1), "Response reader should not be shared.");
+        for (int i = 2; i < 5; i++) {
+            Assert.assertSame(handlers.get(0).get(i), handlers.get(1).get(i), "Stateless handler should be shared.");
+        }
+
+        final ArgumentCaptor<GenericFutureListener> listenerCaptor = ArgumentCaptor.forClass(GenericFutureListener.class);
+        Mockito.verify(nettyConnectFuture, Mockito.times(1)).addListener(listenerCaptor.capture());
+        listenerCaptor.getValue().operationComplete(nettyConnectFuture);
+        Mockito.verify(nettyPipeline, Mockito.times(1)).addFirst(Mockito.eq(ImapAsyncClient.SSL_HANDLER), Mockito.isA(SslHandler.class));
+        Mockito.verify(nettyPipeline, Mockito.times(0)).addAfter(Mockito.anyString(), Mockito.anyString(), Mockito.any(ChannelHandler.class));
+    }
+
+    /**
+     * Measures the heap retained per idle session, with and without low footprint mode, by holding many sessions created on embedded channels
+     * through the same pipeline as real connections. The figures are reported in the log.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testIdleSessionFootprint() throws Exception {
+        final int count = 5000;
+        measureRetainedHeapPerSession(false, count / 10); // warms up the classes loaded and the code run
+        final long defaultBytes = measureRetainedHeapPerSession(false, count);
+        final long lowFootprintBytes = measureRetainedHeapPerSession(true, count);
+        LoggerFactory.getLogger(ImapAsyncClientTest.class).info("Heap retained per idle session: default={} bytes, low footprint={} bytes",
+                defaultBytes, lowFootprintBytes);
+        Assert.assertTrue(defaultBytes > 0 && lowFootprintBytes > 0, "Retained heap should be measured.");
+    }
+
+    /**
+     * Creates sessions on embedded channels initialized by the client and measures the heap they retain.
+     *
+     * @param isLowFootprint flag whether the sessions are created in low footprint mode
+     * @param count number of sessions to create
+     * @return the heap retained per session in bytes
+     * @throws Exception will not throw
+     */
+    private long measureRetainedHeapPerSession(final boolean isLowFootprint, final int count) throws Exception {
+        final Bootstrap bootstrap = mockBootstrap();
+        Mockito.when(bootstrap.connect(Mockito.anyString(), Mockito.anyInt())).thenReturn(Mockito.mock(ChannelFuture.class));
+        final ImapAsyncClient aclient = new ImapAsyncClient(bootstrap, mockGroup(), Mockito.mock(Logger.class));
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setLowFootprintEnabled(isLowFootprint);
+        aclient.createSession(new URI(NO_SSL_SERVER_URI_STR), config, null, null, DebugMode.DEBUG_OFF);
+        final ArgumentCaptor<ImapClientChannelInitializer> initializerCaptor = ArgumentCaptor.forClass(ImapClientChannelInitializer.class);
+        Mockito.verify(bootstrap, Mockito.times(1)).handler(initializerCaptor.capture());
+
+        final List<Object> retained = new ArrayList<Object>(count * 2);
+        final long before = getUsedHeap();
+        for (int i = 0; i < count; i++) {
+            final EmbeddedChannel channel = new EmbeddedChannel(initializerCaptor.getValue());
+            final ImapFuture<ImapAsyncCreateSessionResponse> sessionFuture = new ImapFuture<ImapAsyncCreateSessionResponse>();
+            channel.pipeline().addLast(ImapClientConnectHandler.HANDLER_NAME,
+                    new ImapClientConnectHandler(sessionFuture, NOPLogger.NOP_LOGGER, DebugMode.DEBUG_OFF, i, "ctx", config));
+            channel.writeInbound(Unpooled.copiedBuffer("* OK IMAP4rev1 Hello\r\n", StandardCharsets.US_ASCII));
+            retained.add(channel);
+            retained.add(sessionFuture.get().getSession());
+        }
+        final long after = getUsedHeap();
+        Assert.assertEquals(retained.size(), count * 2, "Sessions should be created.");
+        return (after - before) / count;
+    }
+
+    /**
+     * @return the heap in use after garbage collection, in bytes
+     * @throws InterruptedException will not throw
+     */
+    private long getUsedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
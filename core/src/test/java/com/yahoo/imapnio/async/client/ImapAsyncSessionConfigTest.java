@@ -3,6 +3,9 @@ package com.yahoo.imapnio.async.client;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
 /**
  * Unit test for {@code ImapAsyncSessionConfig}.
  */
@@ -24,4 +27,119 @@ public class ImapAsyncSessionConfigTest {
         Assert.assertEquals(config.getReadTimeoutMillis(), readTimeout, "Result mismatched.");
     }
 
+    /**
+     * Tests compression settings defaults, getters and setters.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testCompressionSettings() throws ImapAsyncClientException {
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        Assert.assertEquals(config.getCompressionLevel(), ImapAsyncSessionConfig.DEFAULT_COMPRESSION_LEVEL, "Result mismatched.");
+        Assert.assertEquals(config.getCompressionWindowBits(), ImapAsyncSessionConfig.DEFAULT_COMPRESSION_WINDOW_BITS, "Result mismatched.");
+        Assert.assertEquals(config.getCompressionMemLevel(), ImapAsyncSessionConfig.DEFAULT_COMPRESSION_MEM_LEVEL, "Result mismatched.");
+        Assert.assertEquals(config.getCompressionEngine(), ImapAsyncSessionConfig.CompressionEngine.JDK, "Result mismatched.");
+        Assert.assertFalse(config.isAutoCompressEnabled(), "Result mismatched.");
+
+        config.setCompressionLevel(9);
+        config.setCompressionWindowBits(12);
+        config.setCompressionMemLevel(4);
+        config.setCompressionEngine(ImapAsyncSessionConfig.CompressionEngine.ZLIB_CODEC_FACTORY);
+        config.setAutoCompressEnabled(true);
+        Assert.assertEquals(config.getCompressionLevel(), 9, "Result mismatched.");
+        Assert.assertEquals(config.getCompressionWindowBits(), 12, "Result mismatched.");
+        Assert.assertEquals(config.getCompressionMemLevel(), 4, "Result mismatched.");
+        Assert.assertEquals(config.getCompressionEngine(), ImapAsyncSessionConfig.CompressionEngine.ZLIB_CODEC_FACTORY, "Result mismatched.");
+        Assert.assertTrue(config.isAutoCompressEnabled(), "Result mismatched.");
+    }
+
+    /**
+     * Tests compression setters reject values out of range, keeping the previous ones.
+     */
+    @Test
+    public void testInvalidCompressionSettings() {
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        ImapAsyncClientException ex = null;
+        try {
+            config.setCompressionLevel(10);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            config.setCompressionLevel(-1);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            config.setCompressionWindowBits(8);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            config.setCompressionWindowBits(16);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            config.setCompressionMemLevel(0);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            config.setCompressionMemLevel(10);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        Assert.assertEquals(config.getCompressionLevel(), ImapAsyncSessionConfig.DEFAULT_COMPRESSION_LEVEL, "Result mismatched.");
+        Assert.assertEquals(config.getCompressionWindowBits(), ImapAsyncSessionConfig.DEFAULT_COMPRESSION_WINDOW_BITS, "Result mismatched.");
+        Assert.assertEquals(config.getCompressionMemLevel(), ImapAsyncSessionConfig.DEFAULT_COMPRESSION_MEM_LEVEL, "Result mismatched.");
+    }
+
+    /**
+     * Tests validateCompressionEngine method fails only when the settings need JZlib, which is not in the test class path.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testValidateCompressionEngine() throws ImapAsyncClientException {
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setCompressionWindowBits(12);
+        config.validateCompressionEngine();
+
+        config.setCompressionEngine(ImapAsyncSessionConfig.CompressionEngine.ZLIB_CODEC_FACTORY);
+        ImapAsyncClientException ex = null;
+        try {
+            config.validateCompressionEngine();
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        config.setCompressionWindowBits(ImapAsyncSessionConfig.DEFAULT_COMPRESSION_WINDOW_BITS);
+        config.validateCompressionEngine();
+    }
 }
@@ -0,0 +1,159 @@
+package com.yahoo.imapnio.async.client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.client.ImapEndpointGroup.Endpoint;
+import com.yahoo.imapnio.async.client.ImapEndpointGroup.Strategy;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Unit test for {@code ImapEndpointGroup}.
+ */
+public class ImapEndpointGroupTest {
+
+    /** Time an endpoint is unhealthy in the tests. */
+    private static final long UNHEALTHY_MILLIS = 10000L;
+
+    /** Server URIs of the endpoints. */
+    private List<URI> uris;
+
+    /** Clock of the group. */
+    private Clock clock;
+
+    /**
+     * Sets up the endpoints and the clock.
+     *
+     * @throws URISyntaxException will not throw
+     */
+    @BeforeMethod
+    public void setUp() throws URISyntaxException {
+        uris = Arrays.asList(new URI("imaps://imap1.one.com:993"), new URI("imaps://imap2.one.com:993"), new URI("imaps://imap3.one.com:993"));
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1000L);
+    }
+
+    /**
+     * Tests round robin takes the endpoints in turn, skipping the unhealthy ones till their unhealthy time is over.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testRoundRobinSkipsUnhealthy() throws ImapAsyncClientException {
+        final ImapEndpointGroup group = new ImapEndpointGroup(uris, Strategy.ROUND_ROBIN, UNHEALTHY_MILLIS, clock, null);
+        Assert.assertEquals(group.getStrategy(), Strategy.ROUND_ROBIN, "Strategy mismatched.");
+        final List<Endpoint> endpoints = group.getEndpoints();
+        Assert.assertSame(group.select(), endpoints.get(0), "Endpoint mismatched.");
+        Assert.assertSame(group.select(), endpoints.get(1), "Endpoint mismatched.");
+        Assert.assertSame(group.select(), endpoints.get(2), "Endpoint mismatched.");
+
+        group.failed(endpoints.get(1), new ImapAsyncClientException(FailureType.CONNECTION_FAILED_WITHOUT_OK_RESPONSE));
+        Assert.assertFalse(group.isHealthy(endpoints.get(1)), "Endpoint should be unhealthy.");
+        Assert.assertEquals(endpoints.get(1).getActiveSessions(), 0, "Active sessions mismatched.");
+        group.failed(endpoints.get(2), new ImapAsyncClientException(FailureType.CONNECTION_THROTTLED)); // not a failure of the endpoint
+        Assert.assertTrue(group.isHealthy(endpoints.get(2)), "Endpoint should be healthy.");
+        for (int i = 0; i < 4; i++) {
+            Assert.assertNotSame(group.select(), endpoints.get(1), "Unhealthy endpoint should be skipped.");
+        }
+        group.failed(endpoints.get(0), new ImapAsyncClientException(FailureType.CONNECTION_INACTIVE)); // closed before greeting
+        Assert.assertFalse(group.isHealthy(endpoints.get(0)), "Endpoint should be unhealthy.");
+        for (int i = 0; i < 2; i++) {
+            Assert.assertSame(group.select(), endpoints.get(2), "Unhealthy endpoints should be skipped.");
+        }
+
+        Mockito.when(clock.millis()).thenReturn(1000L + UNHEALTHY_MILLIS);
+        Assert.assertTrue(group.isHealthy(endpoints.get(0)), "Endpoint should be healthy again.");
+        Assert.assertTrue(group.isHealthy(endpoints.get(1)), "Endpoint should be healthy again.");
+    }
+
+    /**
+     * Tests all endpoints are chosen from when none is healthy.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testAllUnhealthy() throws ImapAsyncClientException {
+        final ImapEndpointGroup group = new ImapEndpointGroup(uris, Strategy.ROUND_ROBIN, UNHEALTHY_MILLIS, clock, null);
+        for (final Endpoint endpoint : group.getEndpoints()) {
+            group.select();
+            group.failed(endpoint, new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION));
+        }
+        Assert.assertNotNull(group.select(), "An endpoint should be chosen.");
+    }
+
+    /**
+     * Tests least active sessions spreads sessions created at once evenly, counting them from the moment they are chosen, and follows closed
+     * sessions.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testLeastActiveSessions() throws ImapAsyncClientException {
+        final ImapEndpointGroup group = new ImapEndpointGroup(uris, Strategy.LEAST_ACTIVE_SESSIONS, UNHEALTHY_MILLIS, clock, null);
+        final List<Endpoint> endpoints = group.getEndpoints();
+        final List<Endpoint> chosen = new ArrayList<Endpoint>();
+        for (int i = 0; i < 9; i++) {
+            chosen.add(group.select());
+        }
+        for (final Endpoint endpoint : endpoints) {
+            Assert.assertEquals(endpoint.getActiveSessions(), 3, "Active sessions mismatched.");
+        }
+        for (final Endpoint endpoint : chosen) {
+            group.connected(endpoint, 5);
+        }
+        group.closed(endpoints.get(2));
+        group.closed(endpoints.get(2));
+        Assert.assertSame(group.select(), endpoints.get(2), "Endpoint mismatched.");
+        Assert.assertSame(group.select(), endpoints.get(2), "Endpoint mismatched.");
+    }
+
+    /**
+     * Tests latency weighted choice favors the endpoints that connect faster, and tries endpoints without latency yet.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testLatencyWeighted() throws ImapAsyncClientException {
+        final ImapEndpointGroup group = new ImapEndpointGroup(uris, Strategy.LATENCY_WEIGHTED, UNHEALTHY_MILLIS, clock, new Random(7));
+        final List<Endpoint> endpoints = group.getEndpoints();
+        group.connected(endpoints.get(0), 10);
+        group.connected(endpoints.get(1), 1000);
+        group.connected(endpoints.get(1), 2000);
+        Assert.assertEquals(endpoints.get(0).getLatencyMillis(), 10d, "Latency mismatched.");
+        Assert.assertEquals(endpoints.get(1).getLatencyMillis(), 1300d, 0.001, "Latency mismatched.");
+        Assert.assertTrue(endpoints.get(2).getLatencyMillis() < 0, "Latency should be unknown.");
+
+        final int[] counts = new int[endpoints.size()];
+        for (int i = 0; i < 1000; i++) {
+            counts[endpoints.indexOf(group.select())]++;
+        }
+        Assert.assertTrue(counts[0] > 400 && counts[2] > 400, "Fast and new endpoints should be favored: " + Arrays.toString(counts));
+        Assert.assertTrue(counts[1] < 20, "Slow endpoint should be rarely chosen: " + Arrays.toString(counts));
+    }
+
+    /**
+     * Tests an empty group is rejected.
+     */
+    @Test
+    public void testNoEndpoint() {
+        ImapAsyncClientException ex = null;
+        try {
+            new ImapEndpointGroup(new ArrayList<URI>(), Strategy.ROUND_ROBIN, UNHEALTHY_MILLIS);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+}
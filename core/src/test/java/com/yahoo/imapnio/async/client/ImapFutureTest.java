@@ -12,6 +12,8 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -188,4 +190,98 @@ public class ImapFutureTest {
         imapFuture.get(mockTimeoutForFailure, TimeUnit.MILLISECONDS);
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests the done callback is invoked on completion, and right away when set after completion.
+     */
+    @Test
+    public void testDoneCallback() {
+        final ImapFuture<ImapAsyncResponse> imapFuture = new ImapFuture<ImapAsyncResponse>();
+        final AtomicReference<ImapAsyncResponse> resultRef = new AtomicReference<ImapAsyncResponse>();
+        final Consumer<ImapAsyncResponse> callback = new Consumer<ImapAsyncResponse>() {
+            @Override
+            public void accept(final ImapAsyncResponse resp) {
+                resultRef.set(resp);
+            }
+        };
+        final AtomicReference<Exception> causeRef = new AtomicReference<Exception>();
+        imapFuture.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                causeRef.set(cause);
+            }
+        });
+        imapFuture.setDoneCallback(callback);
+        Assert.assertNull(resultRef.get(), "Callback should not be invoked yet.");
+
+        imapFuture.done(imapAsyncResp);
+        assertEquals(resultRef.get(), imapAsyncResp, "result mismatched");
+        Assert.assertNull(causeRef.get(), "Exception callback should not be invoked.");
+
+        resultRef.set(null);
+        imapFuture.setDoneCallback(callback);
+        assertEquals(resultRef.get(), imapAsyncResp, "result mismatched");
+    }
+
+    /**
+     * Tests the exception callback is invoked on failure, and right away when set after failure.
+     */
+    @Test
+    public void testExceptionCallback() {
+        final ImapFuture<ImapAsyncResponse> imapFuture = new ImapFuture<ImapAsyncResponse>();
+        final AtomicReference<Exception> causeRef = new AtomicReference<Exception>();
+        final Consumer<Exception> callback = new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                causeRef.set(cause);
+            }
+        };
+        final AtomicReference<ImapAsyncResponse> resultRef = new AtomicReference<ImapAsyncResponse>();
+        imapFuture.setDoneCallback(new Consumer<ImapAsyncResponse>() {
+            @Override
+            public void accept(final ImapAsyncResponse resp) {
+                resultRef.set(resp);
+            }
+        });
+        imapFuture.setExceptionCallback(callback);
+
+        final Exception ex = new Exception("test");
+        imapFuture.done(ex);
+        assertEquals(causeRef.get(), ex, "cause mismatched");
+        Assert.assertNull(resultRef.get(), "Done callback should not be invoked.");
+
+        causeRef.set(null);
+        imapFuture.setExceptionCallback(callback);
+        assertEquals(causeRef.get(), ex, "cause mismatched");
+    }
+
+    /**
+     * Tests the canceled callback is invoked on cancellation, and right away when set after cancellation.
+     */
+    @Test
+    public void testCanceledCallback() {
+        final ImapFuture<ImapAsyncResponse> imapFuture = new ImapFuture<ImapAsyncResponse>();
+        final AtomicReference<Boolean> canceledRef = new AtomicReference<Boolean>(false);
+        final Runnable callback = new Runnable() {
+            @Override
+            public void run() {
+                canceledRef.set(true);
+            }
+        };
+        final AtomicReference<Exception> causeRef = new AtomicReference<Exception>();
+        imapFuture.setExceptionCallback(new Consumer<Exception>() {
+            @Override
+            public void accept(final Exception cause) {
+                causeRef.set(cause);
+            }
+        });
+        imapFuture.setCanceledCallback(callback);
+
+        imapFuture.cancel(false);
+        assertTrue(canceledRef.get(), "Callback should be invoked.");
+        Assert.assertNull(causeRef.get(), "Exception callback should not be invoked.");
+
+        canceledRef.set(false);
+        imapFuture.setCanceledCallback(callback);
+        assertTrue(canceledRef.get(), "Callback should be invoked.");
+    }
+}
@@ -0,0 +1,147 @@
+package com.yahoo.imapnio.async.client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Clock;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.client.ImapHostAdmissionControl.CircuitState;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Unit test for {@code ImapHostAdmissionControl}.
+ */
+public class ImapHostAdmissionControlTest {
+
+    /** Time the circuit stays open in the tests. */
+    private static final long OPEN_MILLIS = 5000L;
+
+    /** Server URI. */
+    private URI serverUri;
+
+    /** Another server URI, on the same host with another port. */
+    private URI otherUri;
+
+    /** Clock of the admission control. */
+    private Clock clock;
+
+    /**
+     * Sets up the server URIs and the clock.
+     *
+     * @throws URISyntaxException will not throw
+     */
+    @BeforeMethod
+    public void setUp() throws URISyntaxException {
+        serverUri = new URI("imaps://imap.one.com:993");
+        otherUri = new URI("imap://imap.one.com:143");
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1000L);
+    }
+
+    /**
+     * Asserts acquire fails with the given failure type.
+     *
+     * @param admission the admission control
+     * @param uri the server URI
+     * @param failureType the expected failure type
+     */
+    private void assertRejected(final ImapHostAdmissionControl admission, final URI uri, final FailureType failureType) {
+        ImapAsyncClientException ex = null;
+        try {
+            admission.acquire(uri);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), failureType, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests connects in progress are capped per host, and new sessions are limited by the token bucket refilled over time.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testConnectCapAndRateLimit() throws ImapAsyncClientException {
+        final ImapHostAdmissionControl admission = new ImapHostAdmissionControl(2, 2, 3, 3, OPEN_MILLIS, clock);
+        admission.acquire(serverUri);
+        admission.acquire(serverUri);
+        Assert.assertEquals(admission.getConnectsInProgress(serverUri), 2, "Connects in progress mismatched.");
+        assertRejected(admission, serverUri, FailureType.CONNECTION_THROTTLED);
+        admission.acquire(otherUri); // other hosts are not affected
+        admission.release(otherUri, null);
+
+        admission.release(serverUri, null);
+        admission.release(serverUri, null);
+        Assert.assertEquals(admission.getConnectsInProgress(serverUri), 0, "Connects in progress mismatched.");
+        admission.acquire(serverUri);
+        admission.release(serverUri, null);
+        assertRejected(admission, serverUri, FailureType.CONNECTION_THROTTLED); // burst of 3 used up
+
+        Mockito.when(clock.millis()).thenReturn(1500L); // half a second refills one token
+        admission.acquire(serverUri);
+        admission.release(serverUri, null);
+        assertRejected(admission, serverUri, FailureType.CONNECTION_THROTTLED);
+        Assert.assertEquals(admission.getCircuitState(serverUri), CircuitState.CLOSED, "Circuit state mismatched.");
+    }
+
+    /**
+     * Tests the circuit opens after consecutive connect failures, and a probe after the open time closes or opens it again.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testCircuitBreaker() throws ImapAsyncClientException {
+        final ImapHostAdmissionControl admission = new ImapHostAdmissionControl(10, 100, 100, 2, OPEN_MILLIS, clock);
+        final ImapAsyncClientException failure = new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION);
+        admission.acquire(serverUri);
+        admission.release(serverUri, failure);
+        admission.acquire(serverUri);
+        admission.release(serverUri, new ImapAsyncClientException(FailureType.INVALID_INPUT)); // not a host failure
+        Assert.assertEquals(admission.getCircuitState(serverUri), CircuitState.CLOSED, "Circuit state mismatched.");
+        admission.acquire(serverUri);
+        admission.release(serverUri, new ImapAsyncClientException(FailureType.CONNECTION_FAILED_WITHOUT_OK_RESPONSE));
+        Assert.assertEquals(admission.getCircuitState(serverUri), CircuitState.OPEN, "Circuit state mismatched.");
+        assertRejected(admission, serverUri, FailureType.CONNECTION_CIRCUIT_OPEN);
+
+        // a failed probe opens the circuit again
+        Mockito.when(clock.millis()).thenReturn(1000L + OPEN_MILLIS);
+        admission.acquire(serverUri);
+        Assert.assertEquals(admission.getCircuitState(serverUri), CircuitState.HALF_OPEN, "Circuit state mismatched.");
+        assertRejected(admission, serverUri, FailureType.CONNECTION_CIRCUIT_OPEN); // one probe at a time
+        admission.release(serverUri, failure);
+        Assert.assertEquals(admission.getCircuitState(serverUri), CircuitState.OPEN, "Circuit state mismatched.");
+        assertRejected(admission, serverUri, FailureType.CONNECTION_CIRCUIT_OPEN);
+
+        // a successful probe closes the circuit
+        Mockito.when(clock.millis()).thenReturn(1000L + 2 * OPEN_MILLIS);
+        admission.acquire(serverUri);
+        admission.release(serverUri, null);
+        Assert.assertEquals(admission.getCircuitState(serverUri), CircuitState.CLOSED, "Circuit state mismatched.");
+        admission.acquire(serverUri);
+        admission.release(serverUri, failure);
+        Assert.assertEquals(admission.getCircuitState(serverUri), CircuitState.CLOSED, "Failures should be counted from zero again.");
+        Assert.assertEquals(admission.getCircuitState(otherUri), CircuitState.CLOSED, "Circuit state mismatched.");
+        Assert.assertEquals(admission.getConnectsInProgress(otherUri), 0, "Connects in progress mismatched.");
+    }
+
+    /**
+     * Tests limits that are not positive are rejected.
+     */
+    @Test
+    public void testInvalidLimits() {
+        ImapAsyncClientException ex = null;
+        try {
+            new ImapHostAdmissionControl(1, 0, 1, 1, 1);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+}
@@ -0,0 +1,233 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.FetchResponse;
+import com.sun.mail.imap.protocol.FLAGS;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.IdleCommand;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+/**
+ * Unit test for {@code ImapIdleManager}.
+ */
+public class ImapIdleManagerTest {
+
+    /** Renew interval used in tests. */
+    private static final long RENEW_MILLIS = 1000L;
+
+    /**
+     * Creates the responses of a completed IDLE command.
+     *
+     * @param tagged the tagged response line
+     * @return the responses
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    private ImapAsyncResponse createIdleResponse(final String tagged) throws IOException, ProtocolException {
+        return new ImapAsyncResponse(Arrays.asList(new IMAPResponse("+ idling"), new IMAPResponse(tagged)));
+    }
+
+    /**
+     * Tests the whole flow: start idle, receive events, renew by timer, stop idle.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testStartRenewStop() throws Exception {
+        final Timer timer = Mockito.mock(Timer.class);
+        final Timeout timeout1 = Mockito.mock(Timeout.class);
+        final Timeout timeout2 = Mockito.mock(Timeout.class);
+        Mockito.when(timer.newTimeout(Mockito.any(TimerTask.class), Mockito.eq(RENEW_MILLIS), Mockito.eq(TimeUnit.MILLISECONDS)))
+                .thenReturn(timeout1, timeout2);
+        final ImapAsyncSession session = Mockito.mock(ImapAsyncSession.class);
+        final ImapFuture<ImapAsyncResponse> future1 = new ImapFuture<ImapAsyncResponse>();
+        final ImapFuture<ImapAsyncResponse> future2 = new ImapFuture<ImapAsyncResponse>();
+        Mockito.when(session.execute(Mockito.any(ImapRequest.class))).thenReturn(future1, future2);
+        final ImapIdleListener listener = Mockito.mock(ImapIdleListener.class);
+
+        final ImapIdleManager manager = new ImapIdleManager(timer, RENEW_MILLIS);
+        manager.startIdle(session, listener);
+        Assert.assertTrue(manager.isIdling(session), "Session should be idling.");
+        Assert.assertEquals(manager.getIdleSessionCount(), 1, "Idle session count mismatched.");
+
+        final ArgumentCaptor<IdleCommand> cmdCaptor = ArgumentCaptor.forClass(IdleCommand.class);
+        Mockito.verify(session, Mockito.times(1)).execute(cmdCaptor.capture());
+        final IdleCommand cmd1 = cmdCaptor.getValue();
+
+        // server responses are given to listener by type
+        cmd1.getResponseConsumer().accept(new IMAPResponse("* 5 EXISTS"));
+        cmd1.getResponseConsumer().accept(new IMAPResponse("* 2 EXPUNGE"));
+        cmd1.getResponseConsumer().accept(new IMAPResponse("* 1 FETCH (FLAGS (\\Seen))"));
+        final IMAPResponse recent = new IMAPResponse("* 1 RECENT");
+        cmd1.getResponseConsumer().accept(recent);
+        Mockito.verify(listener, Mockito.times(1)).onExists(session, 5);
+        Mockito.verify(listener, Mockito.times(1)).onExpunge(session, 2);
+        final ArgumentCaptor<FetchResponse> fetchCaptor = ArgumentCaptor.forClass(FetchResponse.class);
+        Mockito.verify(listener, Mockito.times(1)).onFetch(Mockito.eq(session), fetchCaptor.capture());
+        Assert.assertNotNull(fetchCaptor.getValue().getItem(FLAGS.class), "Flags should be parsed.");
+        Mockito.verify(listener, Mockito.times(1)).onOtherResponse(session, recent);
+
+        // renew: timer sends DONE, IDLE is issued again once server completes the command
+        final ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
+        Mockito.verify(timer, Mockito.times(1)).newTimeout(taskCaptor.capture(), Mockito.eq(RENEW_MILLIS), Mockito.eq(TimeUnit.MILLISECONDS));
+        taskCaptor.getValue().run(timeout1);
+        Mockito.verify(session, Mockito.times(1)).terminateCommand(cmd1);
+        future1.done(createIdleResponse("a1 OK IDLE terminated"));
+        Mockito.verify(timeout1, Mockito.times(1)).cancel();
+        Mockito.verify(session, Mockito.times(2)).execute(cmdCaptor.capture());
+        final IdleCommand cmd2 = cmdCaptor.getValue();
+        Assert.assertNotSame(cmd2, cmd1, "IDLE should be issued with a new command.");
+
+        // stale timeout is ignored
+        taskCaptor.getValue().run(timeout1);
+        Mockito.verify(session, Mockito.times(0)).terminateCommand(cmd2);
+
+        // stop
+        final ImapFuture<ImapAsyncResponse> stopFuture = manager.stopIdle(session);
+        Assert.assertFalse(manager.isIdling(session), "Session should not be idling.");
+        Mockito.verify(timeout2, Mockito.times(1)).cancel();
+        Mockito.verify(session, Mockito.times(1)).terminateCommand(cmd2);
+        Assert.assertFalse(stopFuture.isDone(), "Stop should wait for server.");
+        final ImapAsyncResponse stopResp = createIdleResponse("a2 OK IDLE terminated");
+        future2.done(stopResp);
+        Assert.assertTrue(stopFuture.isDone(), "Stop should be done.");
+        Mockito.verify(session, Mockito.times(2)).execute(Mockito.any(ImapRequest.class));
+        Mockito.verify(listener, Mockito.times(0)).onIdleFailed(Mockito.any(ImapAsyncSession.class), Mockito.any(Exception.class));
+    }
+
+    /**
+     * Tests stopIdle does not send DONE again when it is sent for renewal.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testStopDuringRenewal() throws Exception {
+        final Timer timer = Mockito.mock(Timer.class);
+        final Timeout timeout = Mockito.mock(Timeout.class);
+        Mockito.when(timer.newTimeout(Mockito.any(TimerTask.class), Mockito.anyLong(), Mockito.any(TimeUnit.class))).thenReturn(timeout);
+        final ImapAsyncSession session = Mockito.mock(ImapAsyncSession.class);
+        final ImapFuture<ImapAsyncResponse> future = new ImapFuture<ImapAsyncResponse>();
+        Mockito.when(session.execute(Mockito.any(ImapRequest.class))).thenReturn(future);
+        final ImapIdleManager manager = new ImapIdleManager(timer, RENEW_MILLIS);
+        manager.startIdle(session, Mockito.mock(ImapIdleListener.class));
+
+        final ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
+        Mockito.verify(timer, Mockito.times(1)).newTimeout(taskCaptor.capture(), Mockito.anyLong(), Mockito.any(TimeUnit.class));
+        taskCaptor.getValue().run(timeout);
+        final ImapFuture<ImapAsyncResponse> stopFuture = manager.stopIdle(session);
+        Mockito.verify(session, Mockito.times(1)).terminateCommand(Mockito.any(ImapRequest.class));
+
+        future.done(createIdleResponse("a1 OK IDLE terminated"));
+        Assert.assertTrue(stopFuture.isDone(), "Stop should be done.");
+        Mockito.verify(session, Mockito.times(1)).execute(Mockito.any(ImapRequest.class));
+    }
+
+    /**
+     * Tests IDLE rejected by server and IDLE failed with exception are reported to listener and the session is no longer managed.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testIdleFailed() throws ImapAsyncClientException, IOException, ProtocolException {
+        final Timer timer = Mockito.mock(Timer.class);
+        final Timeout timeout = Mockito.mock(Timeout.class);
+        Mockito.when(timer.newTimeout(Mockito.any(TimerTask.class), Mockito.anyLong(), Mockito.any(TimeUnit.class))).thenReturn(timeout);
+        final ImapAsyncSession session = Mockito.mock(ImapAsyncSession.class);
+        final ImapFuture<ImapAsyncResponse> future1 = new ImapFuture<ImapAsyncResponse>();
+        final ImapFuture<ImapAsyncResponse> future2 = new ImapFuture<ImapAsyncResponse>();
+        Mockito.when(session.execute(Mockito.any(ImapRequest.class))).thenReturn(future1, future2);
+        final ImapIdleListener listener = Mockito.mock(ImapIdleListener.class);
+        final ImapIdleManager manager = new ImapIdleManager(timer, RENEW_MILLIS);
+
+        manager.startIdle(session, listener);
+        future1.done(new ImapAsyncResponse(Arrays.asList(new IMAPResponse("a1 NO IDLE not allowed"))));
+        final ArgumentCaptor<Exception> causeCaptor = ArgumentCaptor.forClass(Exception.class);
+        Mockito.verify(listener, Mockito.times(1)).onIdleFailed(Mockito.eq(session), causeCaptor.capture());
+        Assert.assertEquals(((ImapAsyncClientException) causeCaptor.getValue()).getFaiureType(), FailureType.COMMAND_NOT_ALLOWED,
+                "Failure type mismatched.");
+        Assert.assertFalse(manager.isIdling(session), "Session should not be idling.");
+
+        manager.startIdle(session, listener);
+        final ImapAsyncClientException cause = new ImapAsyncClientException(FailureType.CHANNEL_DISCONNECTED);
+        future2.done(cause);
+        Mockito.verify(listener, Mockito.times(1)).onIdleFailed(session, cause);
+        Assert.assertEquals(manager.getIdleSessionCount(), 0, "Idle session count mismatched.");
+    }
+
+    /**
+     * Tests startIdle on an idling session, stopIdle on a session not idling, and execute failure.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testStartStopNotAllowed() throws ImapAsyncClientException {
+        final Timer timer = Mockito.mock(Timer.class);
+        Mockito.when(timer.newTimeout(Mockito.any(TimerTask.class), Mockito.anyLong(), Mockito.any(TimeUnit.class)))
+                .thenReturn(Mockito.mock(Timeout.class));
+        final ImapAsyncSession session = Mockito.mock(ImapAsyncSession.class);
+        Mockito.when(session.execute(Mockito.any(ImapRequest.class))).thenReturn(new ImapFuture<ImapAsyncResponse>());
+        final ImapIdleListener listener = Mockito.mock(ImapIdleListener.class);
+        final ImapIdleManager manager = new ImapIdleManager(timer, RENEW_MILLIS);
+
+        ImapAsyncClientException ex = null;
+        try {
+            manager.stopIdle(session);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.COMMAND_NOT_ALLOWED, "Failure type mismatched.");
+
+        manager.startIdle(session, listener);
+        ex = null;
+        try {
+            manager.startIdle(session, listener);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.COMMAND_NOT_ALLOWED, "Failure type mismatched.");
+
+        final ImapAsyncSession closedSession = Mockito.mock(ImapAsyncSession.class);
+        Mockito.when(closedSession.execute(Mockito.any(ImapRequest.class)))
+                .thenThrow(new ImapAsyncClientException(FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL));
+        ex = null;
+        try {
+            manager.startIdle(closedSession, listener);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertFalse(manager.isIdling(closedSession), "Session should not be idling.");
+        Assert.assertEquals(manager.getIdleSessionCount(), 1, "Idle session count mismatched.");
+    }
+
+    /**
+     * Tests the manager creating its own timer can be shut down.
+     */
+    @Test
+    public void testShutdown() {
+        final ImapIdleManager manager = new ImapIdleManager();
+        Assert.assertEquals(manager.getIdleSessionCount(), 0, "Idle session count mismatched.");
+        manager.shutdown();
+        new ImapIdleManager(Mockito.mock(Timer.class), RENEW_MILLIS).shutdown();
+    }
+}
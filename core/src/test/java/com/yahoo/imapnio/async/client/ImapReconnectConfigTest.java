@@ -0,0 +1,84 @@
+package com.yahoo.imapnio.async.client;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+/**
+ * Unit test for {@code ImapReconnectConfig}.
+ */
+public class ImapReconnectConfigTest {
+
+    /**
+     * Tests defaults, getters and setters.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGettersSetters() throws ImapAsyncClientException {
+        final ImapReconnectConfig config = new ImapReconnectConfig();
+        Assert.assertEquals(config.getMaxAttempts(), ImapReconnectConfig.DEFAULT_MAX_ATTEMPTS, "Result mismatched.");
+        Assert.assertEquals(config.getInitialBackoffMillis(), ImapReconnectConfig.DEFAULT_INITIAL_BACKOFF_MILLIS, "Result mismatched.");
+        Assert.assertEquals(config.getMaxBackoffMillis(), ImapReconnectConfig.DEFAULT_MAX_BACKOFF_MILLIS, "Result mismatched.");
+        Assert.assertEquals(config.getMaxCommandRetries(), ImapReconnectConfig.DEFAULT_MAX_COMMAND_RETRIES, "Result mismatched.");
+
+        config.setMaxAttempts(1);
+        config.setInitialBackoffMillis(0);
+        config.setMaxBackoffMillis(0);
+        config.setMaxCommandRetries(0);
+        Assert.assertEquals(config.getMaxAttempts(), 1, "Result mismatched.");
+        Assert.assertEquals(config.getInitialBackoffMillis(), 0L, "Result mismatched.");
+        Assert.assertEquals(config.getMaxBackoffMillis(), 0L, "Result mismatched.");
+        Assert.assertEquals(config.getMaxCommandRetries(), 0, "Result mismatched.");
+    }
+
+    /**
+     * Tests setters reject values out of range, keeping the previous ones.
+     */
+    @Test
+    public void testInvalidSettings() {
+        final ImapReconnectConfig config = new ImapReconnectConfig();
+        ImapAsyncClientException ex = null;
+        try {
+            config.setMaxAttempts(0);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            config.setInitialBackoffMillis(-1);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            config.setMaxBackoffMillis(-1);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            config.setMaxCommandRetries(-1);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        Assert.assertEquals(config.getMaxAttempts(), ImapReconnectConfig.DEFAULT_MAX_ATTEMPTS, "Result mismatched.");
+        Assert.assertEquals(config.getInitialBackoffMillis(), ImapReconnectConfig.DEFAULT_INITIAL_BACKOFF_MILLIS, "Result mismatched.");
+        Assert.assertEquals(config.getMaxBackoffMillis(), ImapReconnectConfig.DEFAULT_MAX_BACKOFF_MILLIS, "Result mismatched.");
+        Assert.assertEquals(config.getMaxCommandRetries(), ImapReconnectConfig.DEFAULT_MAX_COMMAND_RETRIES, "Result mismatched.");
+    }
+}
@@ -0,0 +1,347 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+import com.yahoo.imapnio.async.request.CloseCommand;
+import com.yahoo.imapnio.async.request.EnableCommand;
+import com.yahoo.imapnio.async.request.ExamineFolderCommand;
+import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.NoopCommand;
+import com.yahoo.imapnio.async.request.SelectFolderCommand;
+import com.yahoo.imapnio.async.response.ImapAsyncResponse;
+
+import io.netty.channel.EventLoopGroup;
+
+/**
+ * Unit test for {@code ImapResilientSession}.
+ */
+public class ImapResilientSessionTest {
+
+    /** Server URI. */
+    private URI serverUri;
+
+    /** Client creating the sessions. */
+    private ImapAsyncClient client;
+
+    /** Event loop group of the client, scheduling the attempts after backoff. */
+    private EventLoopGroup group;
+
+    /** Reconnect settings. */
+    private ImapReconnectConfig reconnectConfig;
+
+    /** Supplier of the authentication commands. */
+    private Supplier<ImapRequest> authenticator;
+
+    /**
+     * Sets up the client mock.
+     *
+     * @throws URISyntaxException will not throw
+     */
+    @BeforeMethod
+    public void setUp() throws URISyntaxException {
+        serverUri = new URI("imaps://one.two.three.com:993");
+        client = Mockito.mock(ImapAsyncClient.class);
+        group = Mockito.mock(EventLoopGroup.class);
+        Mockito.when(client.getEventLoopGroup()).thenReturn(group);
+        reconnectConfig = new ImapReconnectConfig();
+        authenticator = new Supplier<ImapRequest>() {
+            @Override
+            public ImapRequest get() {
+                return new NoopCommand();
+            }
+        };
+    }
+
+    /**
+     * @param session the session the client creates
+     * @return the future of the created session
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    private ImapFuture<ImapAsyncCreateSessionResponse> created(final ImapAsyncSession session) throws IOException, ProtocolException {
+        final ImapFuture<ImapAsyncCreateSessionResponse> future = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        future.done(new ImapAsyncCreateSessionResponse(session, new IMAPResponse("* OK ready")));
+        return future;
+    }
+
+    /**
+     * @param lines the response lines
+     * @return a future done with the response
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    private ImapFuture<ImapAsyncResponse> response(final String... lines) throws IOException, ProtocolException {
+        final List<IMAPResponse> responses = new ArrayList<IMAPResponse>();
+        for (final String line : lines) {
+            responses.add(new IMAPResponse(line));
+        }
+        final ImapFuture<ImapAsyncResponse> future = new ImapFuture<ImapAsyncResponse>();
+        future.done(new ImapAsyncResponse(responses));
+        return future;
+    }
+
+    /**
+     * @param type the failure type
+     * @return a future done with the failure
+     */
+    private ImapFuture<ImapAsyncResponse> failure(final FailureType type) {
+        final ImapFuture<ImapAsyncResponse> future = new ImapFuture<ImapAsyncResponse>();
+        future.done(new ImapAsyncClientException(type));
+        return future;
+    }
+
+    /**
+     * Tests a retryable command is sent again in a new session, once authenticated with QRESYNC enabled and the folder selected again with the
+     * QRESYNC parameters known from the failed session, the highest mod-sequence being the latest seen, and the restore responses given to the
+     * listener.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testReconnectRestoresStateAndRetriesCommand() throws Exception {
+        final ImapAsyncSession session1 = Mockito.mock(ImapAsyncSession.class);
+        final ImapAsyncSession session2 = Mockito.mock(ImapAsyncSession.class);
+        Mockito.when(client.createSession(Mockito.eq(serverUri), Mockito.any(ImapAsyncSessionConfig.class), Mockito.any(), Mockito.any(),
+                Mockito.any(DebugMode.class), Mockito.any(), Mockito.any())).thenReturn(created(session1), created(session2));
+        Mockito.when(session1.execute(Mockito.any(ImapRequest.class))).thenReturn(response("a1 OK LOGIN completed"),
+                response("* ENABLED QRESYNC", "a2 OK ENABLE completed"),
+                response("* OK [UIDVALIDITY 3857529045] UIDs valid", "* OK [HIGHESTMODSEQ 20010715194045007] Highest", "a3 OK [READ-WRITE] done"),
+                response("* 2 FETCH (UID 7 MODSEQ (20010715194045319) FLAGS (\\Seen))", "a4 OK NOOP completed"),
+                failure(FailureType.CHANNEL_DISCONNECTED));
+        Mockito.when(session2.execute(Mockito.any(ImapRequest.class))).thenReturn(response("b1 OK LOGIN completed"),
+                response("b4 OK NOOP completed"));
+        Mockito.when(session2.executeAll(Mockito.anyListOf(ImapRequest.class))).thenReturn(response("* ENABLED QRESYNC", "b2 OK ENABLE completed",
+                "* OK [UIDVALIDITY 3857529045] UIDs valid", "* VANISHED (EARLIER) 41,43", "* 3 FETCH (UID 9 MODSEQ (20010715194045320) FLAGS ())",
+                "b3 OK [READ-WRITE] done"));
+
+        final ImapResilientSession session = new ImapResilientSession(client, serverUri, new ImapAsyncSessionConfig(), null, reconnectConfig,
+                authenticator, "ctx");
+        final List<ImapAsyncResponse> restored = new ArrayList<ImapAsyncResponse>();
+        session.setRestoreListener(new Consumer<ImapAsyncResponse>() {
+            @Override
+            public void accept(final ImapAsyncResponse response) {
+                restored.add(response);
+            }
+        });
+        final ImapAsyncResponse authResponse = session.connect().get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(authResponse.getResponseLines().iterator().next().toString(), "a1 OK LOGIN completed", "Response mismatched.");
+        Assert.assertTrue(session.execute(new EnableCommand(new String[] { "QRESYNC" })).isDone(), "ENABLE should be done.");
+        Assert.assertTrue(session.execute(new SelectFolderCommand("Inbox")).isDone(), "SELECT should be done.");
+        Assert.assertEquals(session.getSelectedFolder(), "Inbox", "Selected folder mismatched.");
+        Assert.assertTrue(session.execute(new NoopCommand()).isDone(), "NOOP should be done.");
+
+        final ImapFuture<ImapAsyncResponse> noop = session.execute(new NoopCommand());
+        Assert.assertEquals(noop.get(1, TimeUnit.SECONDS).getResponseLines().iterator().next().toString(), "b4 OK NOOP completed",
+                "Response mismatched.");
+        Assert.assertEquals(session.getReconnectCount(), 1L, "Reconnect count mismatched.");
+        Mockito.verify(session1, Mockito.times(1)).close();
+
+        final ArgumentCaptor<List> restoreCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(session2, Mockito.times(1)).executeAll(restoreCaptor.capture());
+        final List<?> restore = restoreCaptor.getValue();
+        Assert.assertEquals(restore.size(), 2, "Restore command count mismatched.");
+        Assert.assertEquals(((ImapRequest) restore.get(0)).getCommandLine(), "ENABLE QRESYNC\r\n", "Command line mismatched.");
+        Assert.assertEquals(((ImapRequest) restore.get(1)).getCommandLine(), "SELECT Inbox (QRESYNC (3857529045 20010715194045319))\r\n",
+                "Command line mismatched.");
+        Assert.assertEquals(session.getSelectedFolder(), "Inbox", "Selected folder mismatched.");
+        Assert.assertEquals(restored.size(), 1, "Restore response count mismatched.");
+        Assert.assertEquals(restored.get(0).getResponseLines().size(), 6, "Restore response lines mismatched.");
+
+        // commands that are not safe to send again fail with the connection failure, and the session reconnects for the next ones
+        Mockito.when(session2.execute(Mockito.any(ImapRequest.class))).thenReturn(failure(FailureType.CHANNEL_DISCONNECTED));
+        Mockito.when(client.createSession(Mockito.eq(serverUri), Mockito.any(ImapAsyncSessionConfig.class), Mockito.any(), Mockito.any(),
+                Mockito.any(DebugMode.class), Mockito.any(), Mockito.any())).thenReturn(new ImapFuture<ImapAsyncCreateSessionResponse>());
+        final ImapFuture<ImapAsyncResponse> close = session.execute(new CloseCommand());
+        ExecutionException ex = null;
+        try {
+            close.get(1, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFaiureType(), FailureType.CHANNEL_DISCONNECTED, "Failure type mismatched.");
+        Assert.assertEquals(session.getReconnectCount(), 2L, "Reconnect count mismatched.");
+
+        session.close();
+        Mockito.verify(session2, Mockito.times(1)).close();
+    }
+
+    /**
+     * Tests the folder is selected again without QRESYNC parameters when no restore listener is set, since the changes reported would be lost.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testReconnectWithoutRestoreListener() throws Exception {
+        final ImapAsyncSession session1 = Mockito.mock(ImapAsyncSession.class);
+        final ImapAsyncSession session2 = Mockito.mock(ImapAsyncSession.class);
+        Mockito.when(client.createSession(Mockito.eq(serverUri), Mockito.any(ImapAsyncSessionConfig.class), Mockito.any(), Mockito.any(),
+                Mockito.any(DebugMode.class), Mockito.any(), Mockito.any())).thenReturn(created(session1), created(session2));
+        Mockito.when(session1.execute(Mockito.any(ImapRequest.class))).thenReturn(response("a1 OK LOGIN completed"),
+                response("* ENABLED QRESYNC", "a2 OK ENABLE completed"),
+                response("* OK [UIDVALIDITY 3857529045] UIDs valid", "* OK [HIGHESTMODSEQ 20010715194045007] Highest", "a3 OK [READ-ONLY] done"),
+                failure(FailureType.CHANNEL_DISCONNECTED));
+        Mockito.when(session2.execute(Mockito.any(ImapRequest.class))).thenReturn(response("b1 OK LOGIN completed"),
+                response("b4 OK NOOP completed"));
+        Mockito.when(session2.executeAll(Mockito.anyListOf(ImapRequest.class))).thenReturn(
+                response("* ENABLED QRESYNC", "b2 OK ENABLE completed", "* OK [UIDVALIDITY 3857529045] UIDs valid", "b3 OK [READ-ONLY] done"));
+
+        final ImapResilientSession session = new ImapResilientSession(client, serverUri, new ImapAsyncSessionConfig(), null, reconnectConfig,
+                authenticator, "ctx");
+        session.connect().get(1, TimeUnit.SECONDS);
+        session.execute(new EnableCommand(new String[] { "QRESYNC" }));
+        session.execute(new ExamineFolderCommand("Inbox"));
+        session.execute(new NoopCommand()).get(1, TimeUnit.SECONDS);
+
+        final ArgumentCaptor<List> restoreCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(session2, Mockito.times(1)).executeAll(restoreCaptor.capture());
+        final List<?> restore = restoreCaptor.getValue();
+        Assert.assertEquals(restore.size(), 2, "Restore command count mismatched.");
+        Assert.assertEquals(((ImapRequest) restore.get(1)).getCommandLine(), "EXAMINE Inbox\r\n", "Command line mismatched.");
+        Assert.assertEquals(session.getSelectedFolder(), "Inbox", "Selected folder mismatched.");
+        session.close();
+    }
+
+    /**
+     * Tests reconnect fails once the attempts are used up, with every failed attempt scheduled after backoff.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testConnectFailsAfterMaxAttempts() throws Exception {
+        reconnectConfig.setMaxAttempts(2);
+        final ImapFuture<ImapAsyncCreateSessionResponse> failed = new ImapFuture<ImapAsyncCreateSessionResponse>();
+        failed.done(new ImapAsyncClientException(FailureType.CONNECTION_FAILED_EXCEPTION));
+        Mockito.when(client.createSession(Mockito.eq(serverUri), Mockito.any(ImapAsyncSessionConfig.class), Mockito.any(), Mockito.any(),
+                Mockito.any(DebugMode.class), Mockito.any(), Mockito.any())).thenReturn(failed);
+
+        final ImapResilientSession session = new ImapResilientSession(client, serverUri, new ImapAsyncSessionConfig(), null, reconnectConfig,
+                authenticator, "ctx");
+        final ImapFuture<ImapAsyncResponse> future = session.connect();
+        Assert.assertFalse(future.isDone(), "Should wait for the backoff.");
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        final ArgumentCaptor<Long> delayCaptor = ArgumentCaptor.forClass(Long.class);
+        Mockito.verify(group, Mockito.times(1)).schedule(taskCaptor.capture(), delayCaptor.capture(), Mockito.eq(TimeUnit.MILLISECONDS));
+        final long delay = delayCaptor.getValue();
+        Assert.assertTrue(delay >= ImapReconnectConfig.DEFAULT_INITIAL_BACKOFF_MILLIS / 2 && delay <= ImapReconnectConfig.DEFAULT_INITIAL_BACKOFF_MILLIS,
+                "Backoff mismatched: " + delay);
+
+        taskCaptor.getValue().run();
+        ExecutionException ex = null;
+        try {
+            future.get(1, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        final ImapAsyncClientException cause = (ImapAsyncClientException) ex.getCause();
+        Assert.assertEquals(cause.getFaiureType(), FailureType.RECONNECT_FAILED, "Failure type mismatched.");
+        Assert.assertEquals(((ImapAsyncClientException) cause.getCause()).getFaiureType(), FailureType.CONNECTION_FAILED_EXCEPTION,
+                "Cause mismatched.");
+
+        // no session to run commands without connecting
+        Assert.assertEquals(session.getWireStats().getSocketBytesRead(), 0L, "Bytes read mismatched.");
+        ImapAsyncClientException executeEx = null;
+        try {
+            session.executeAll(Arrays.asList(new NoopCommand()));
+        } catch (final ImapAsyncClientException e) {
+            executeEx = e;
+        }
+        Assert.assertNotNull(executeEx, "Exception should occur.");
+        Assert.assertEquals(executeEx.getFaiureType(), FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests a session whose first authentication is rejected is closed instead of kept for commands, which fail, and a later connect succeeds.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testConnectAuthenticationRejected() throws Exception {
+        final ImapAsyncSession session1 = Mockito.mock(ImapAsyncSession.class);
+        final ImapAsyncSession session2 = Mockito.mock(ImapAsyncSession.class);
+        Mockito.when(client.createSession(Mockito.eq(serverUri), Mockito.any(ImapAsyncSessionConfig.class), Mockito.any(), Mockito.any(),
+                Mockito.any(DebugMode.class), Mockito.any(), Mockito.any())).thenReturn(created(session1), created(session2));
+        Mockito.when(session1.execute(Mockito.any(ImapRequest.class))).thenReturn(response("a1 NO [AUTHENTICATIONFAILED] Invalid credentials"));
+        Mockito.when(session2.execute(Mockito.any(ImapRequest.class))).thenReturn(response("b1 OK LOGIN completed"),
+                response("b2 OK NOOP completed"));
+
+        final ImapResilientSession session = new ImapResilientSession(client, serverUri, new ImapAsyncSessionConfig(), null, reconnectConfig,
+                authenticator, "ctx");
+        final ImapAsyncResponse rejected = session.connect().get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(rejected.getResponseLines().iterator().next().toString(), "a1 NO [AUTHENTICATIONFAILED] Invalid credentials",
+                "Response mismatched.");
+        Mockito.verify(session1, Mockito.times(1)).close();
+
+        final ImapAsyncResponse accepted = session.connect().get(1, TimeUnit.SECONDS);
+        Assert.assertEquals(accepted.getResponseLines().iterator().next().toString(), "b1 OK LOGIN completed", "Response mismatched.");
+        Assert.assertEquals(session.execute(new NoopCommand()).get(1, TimeUnit.SECONDS).getResponseLines().iterator().next().toString(),
+                "b2 OK NOOP completed", "Response mismatched.");
+        Mockito.verify(session1, Mockito.times(1)).execute(Mockito.any(ImapRequest.class));
+    }
+
+    /**
+     * Tests commands waiting for the first connect fail when its authentication is rejected.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCommandAuthenticationRejected() throws Exception {
+        final ImapAsyncSession session1 = Mockito.mock(ImapAsyncSession.class);
+        Mockito.when(client.createSession(Mockito.eq(serverUri), Mockito.any(ImapAsyncSessionConfig.class), Mockito.any(), Mockito.any(),
+                Mockito.any(DebugMode.class), Mockito.any(), Mockito.any())).thenReturn(created(session1));
+        Mockito.when(session1.execute(Mockito.any(ImapRequest.class))).thenReturn(response("a1 NO [AUTHENTICATIONFAILED] Invalid credentials"));
+
+        final ImapResilientSession session = new ImapResilientSession(client, serverUri, new ImapAsyncSessionConfig(), null, reconnectConfig,
+                authenticator, "ctx");
+        ExecutionException ex = null;
+        try {
+            session.execute(new NoopCommand()).get(1, TimeUnit.SECONDS);
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFaiureType(), FailureType.RECONNECT_FAILED, "Failure type mismatched.");
+        Mockito.verify(session1, Mockito.times(1)).close();
+    }
+
+    /**
+     * Tests the backoff doubles with every attempt within the maximum, less a jitter of up to half of it.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGetBackoffMillis() throws ImapAsyncClientException {
+        reconnectConfig.setInitialBackoffMillis(100);
+        reconnectConfig.setMaxBackoffMillis(1000);
+        final ImapResilientSession session = new ImapResilientSession(client, serverUri, new ImapAsyncSessionConfig(), null, reconnectConfig,
+                authenticator, "ctx");
+        final long[] caps = { 100, 200, 400, 800, 1000, 1000 };
+        for (int i = 0; i < caps.length; i++) {
+            final long backoff = session.getBackoffMillis(i + 1);
+            Assert.assertTrue(backoff >= caps[i] / 2 && backoff <= caps[i], "Backoff mismatched: " + backoff);
+        }
+        final long backoff = session.getBackoffMillis(Integer.MAX_VALUE);
+        Assert.assertTrue(backoff >= 500 && backoff <= 1000, "Backoff mismatched: " + backoff);
+    }
+}
@@ -0,0 +1,124 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
+import com.sun.mail.imap.protocol.Namespaces;
+import com.yahoo.imapnio.async.data.Capability;
+
+/**
+ * Unit test for {@code ImapServerInfoCache}.
+ */
+public class ImapServerInfoCacheTest {
+
+    /** Time to live of cache entries. */
+    private static final long TTL_MILLIS = 1000L;
+
+    /**
+     * Creates a capability with the given names.
+     *
+     * @param names capability names
+     * @return the capability
+     */
+    private Capability createCapability(final String... names) {
+        final Map<String, List<String>> map = new HashMap<String, List<String>>();
+        for (final String name : names) {
+            map.put(name, Arrays.asList(name));
+        }
+        return new Capability(map);
+    }
+
+    /**
+     * Tests entries are found by server URI, ignoring case of scheme and host, and expire after time to live.
+     *
+     * @throws URISyntaxException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testGetPutExpire() throws URISyntaxException, IOException, ProtocolException {
+        final Clock clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(0L);
+        final ImapServerInfoCache cache = new ImapServerInfoCache(TTL_MILLIS, clock);
+        final URI uri = new URI("imaps://imap.server.com:993");
+        final Capability capa = createCapability("IDLE", "X-CUSTOM");
+        final Namespaces ns = new Namespaces(new IMAPResponse("* NAMESPACE ((\"\" \"/\")) NIL NIL"));
+
+        Assert.assertNull(cache.getCapability(uri), "Should not be found.");
+        Assert.assertNull(cache.getNamespaces(uri), "Should not be found.");
+        cache.putCapability(uri, capa);
+        cache.putNamespaces(uri, ns);
+        Assert.assertSame(cache.getCapability(new URI("IMAPS://IMAP.Server.com:993")), capa, "Result mismatched.");
+        Assert.assertSame(cache.getNamespaces(uri), ns, "Result mismatched.");
+        Assert.assertNull(cache.getCapability(new URI("imaps://imap.server.com:994")), "Should not be found.");
+        Assert.assertNull(cache.getCapability(new URI("imap://imap.server.com:993")), "Should not be found.");
+
+        Mockito.when(clock.millis()).thenReturn(TTL_MILLIS);
+        Assert.assertNull(cache.getCapability(uri), "Should be expired.");
+        Assert.assertNull(cache.getNamespaces(uri), "Should be expired.");
+    }
+
+    /**
+     * Tests validateCapability invalidates all entries of the server only when capability differs.
+     *
+     * @throws URISyntaxException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testValidateCapability() throws URISyntaxException, IOException, ProtocolException {
+        final ImapServerInfoCache cache = new ImapServerInfoCache(TTL_MILLIS);
+        final URI uri = new URI("imaps://imap.server.com:993");
+        Assert.assertTrue(cache.validateCapability(uri, createCapability("IDLE")), "Result mismatched.");
+
+        cache.putCapability(uri, createCapability("IDLE", "MOVE"));
+        cache.putNamespaces(uri, new Namespaces(new IMAPResponse("* NAMESPACE ((\"\" \"/\")) NIL NIL")));
+        Assert.assertTrue(cache.validateCapability(uri, createCapability("MOVE", "IDLE")), "Result mismatched.");
+        Assert.assertNotNull(cache.getCapability(uri), "Should be found.");
+
+        Assert.assertFalse(cache.validateCapability(uri, createCapability("IDLE")), "Result mismatched.");
+        Assert.assertNull(cache.getCapability(uri), "Should be invalidated.");
+        Assert.assertNull(cache.getNamespaces(uri), "Should be invalidated.");
+    }
+
+    /**
+     * Tests validateGreeting invalidates entries of the server when greeting capabilities differ from the previous greeting.
+     *
+     * @throws URISyntaxException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testValidateGreeting() throws URISyntaxException, IOException, ProtocolException {
+        final ImapServerInfoCache cache = new ImapServerInfoCache(TTL_MILLIS);
+        final URI uri = new URI("imaps://imap.server.com:993");
+        final IMAPResponse greeting = new IMAPResponse("* OK [CAPABILITY IMAP4rev1 SASL-IR AUTH=PLAIN] Hello");
+        Assert.assertTrue(cache.validateGreeting(uri, greeting), "Result mismatched.");
+        Assert.assertEquals(greeting.readAtom(), "[CAPABILITY", "Greeting should be readable from the start.");
+
+        cache.putCapability(uri, createCapability("IDLE"));
+        Assert.assertTrue(cache.validateGreeting(uri, new IMAPResponse("* OK [CAPABILITY IMAP4rev1 SASL-IR AUTH=PLAIN] Hi")), "Result mismatched.");
+        Assert.assertTrue(cache.validateGreeting(uri, new IMAPResponse("* OK Hello")), "Result mismatched.");
+        Assert.assertTrue(cache.validateGreeting(uri, new IMAPResponse("* OK [ALERT] [CAPABILITY IMAP4rev1] later")), "Result mismatched.");
+        Assert.assertNotNull(cache.getCapability(uri), "Should be found.");
+
+        Assert.assertFalse(cache.validateGreeting(uri, new IMAPResponse("* OK [CAPABILITY IMAP4rev1 AUTH=PLAIN] Hello")), "Result mismatched.");
+        Assert.assertNull(cache.getCapability(uri), "Should be invalidated.");
+
+        cache.putCapability(uri, createCapability("IDLE"));
+        cache.invalidate(uri);
+        Assert.assertNull(cache.getCapability(uri), "Should be invalidated.");
+    }
+}
@@ -0,0 +1,184 @@
+package com.yahoo.imapnio.async.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.client.ImapTenantScheduler.PendingDispatch;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+import io.netty.util.concurrent.EventExecutor;
+
+/**
+ * Unit test for {@code ImapTenantScheduler}.
+ */
+public class ImapTenantSchedulerTest {
+
+    /**
+     * A dispatcher of queued responses recording the order of dispatch.
+     */
+    private static final class TestDispatch implements PendingDispatch {
+
+        /** The scheduler. */
+        private final ImapTenantScheduler scheduler;
+
+        /** The event loop. */
+        private final EventExecutor loop;
+
+        /** Tenant id. */
+        private final String tenantId;
+
+        /** Number of queued responses. */
+        private int queued;
+
+        /** Dispatch order shared by the dispatchers. */
+        private final List<String> dispatched;
+
+        /**
+         * Initializes a {@code TestDispatch}.
+         *
+         * @param scheduler the scheduler
+         * @param loop the event loop
+         * @param tenantId tenant id
+         * @param queued number of queued responses
+         * @param dispatched dispatch order shared by the dispatchers
+         */
+        TestDispatch(final ImapTenantScheduler scheduler, final EventExecutor loop, final String tenantId, final int queued,
+                final List<String> dispatched) {
+            this.scheduler = scheduler;
+            this.loop = loop;
+            this.tenantId = tenantId;
+            this.queued = queued;
+            this.dispatched = dispatched;
+        }
+
+        @Override
+        public boolean dispatchPending() {
+            while (queued > 0) {
+                if (!scheduler.tryDispatch(loop, tenantId, 10)) {
+                    return true;
+                }
+                queued--;
+                dispatched.add(tenantId);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Tests the budget of tenants per tick, and queued responses are dispatched in the next ticks with tenants taking turns.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testTryDispatchAndDefer() throws ImapAsyncClientException {
+        final ImapTenantScheduler scheduler = new ImapTenantScheduler(25, 2);
+        Assert.assertEquals(scheduler.getMaxBytesPerTick(), 25L, "Max bytes mismatched.");
+        Assert.assertEquals(scheduler.getMaxResponsesPerTick(), 2, "Max responses mismatched.");
+        final EventExecutor loop = Mockito.mock(EventExecutor.class);
+        final EventExecutor otherLoop = Mockito.mock(EventExecutor.class);
+
+        // response budget
+        Assert.assertTrue(scheduler.tryDispatch(loop, "batch", 1), "Should be within budget.");
+        Assert.assertTrue(scheduler.tryDispatch(loop, "batch", 1), "Should be within budget.");
+        Assert.assertFalse(scheduler.tryDispatch(loop, "batch", 1), "Response budget should be used up.");
+        // other tenants and other loops have their own budgets
+        Assert.assertTrue(scheduler.tryDispatch(loop, "interactive", 1), "Should be within budget.");
+        Assert.assertTrue(scheduler.tryDispatch(otherLoop, "batch", 1), "Should be within budget.");
+        // byte budget, the first response of a tick is allowed however large
+        Assert.assertTrue(scheduler.tryDispatch(otherLoop, "large", 1000), "First response should be allowed.");
+        Assert.assertFalse(scheduler.tryDispatch(otherLoop, "large", 1), "Byte budget should be used up.");
+
+        final ArgumentCaptor<Runnable> tickEndCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(loop, Mockito.times(1)).schedule(tickEndCaptor.capture(), Mockito.eq(0L), Mockito.eq(TimeUnit.NANOSECONDS));
+        final Runnable tickEnd = tickEndCaptor.getValue();
+
+        final List<String> dispatched = new ArrayList<String>();
+        scheduler.defer(loop, "batch", new TestDispatch(scheduler, loop, "batch", 5, dispatched));
+        scheduler.defer(loop, "interactive", new TestDispatch(scheduler, loop, "interactive", 1, dispatched));
+        scheduler.addQueueDepth("batch", 5);
+        scheduler.addQueueDepth("interactive", 1);
+        Assert.assertEquals(scheduler.getQueueDepth("batch"), 5L, "Queue depth mismatched.");
+        Assert.assertEquals(scheduler.getQueueDepth("unknown"), 0L, "Queue depth mismatched.");
+        final Map<String, Long> depths = scheduler.getQueueDepths();
+        Assert.assertEquals(depths.size(), 2, "Tenant count mismatched.");
+        Assert.assertEquals(depths.get("interactive"), Long.valueOf(1), "Queue depth mismatched.");
+        Mockito.verify(loop, Mockito.times(1)).schedule(Mockito.any(Runnable.class), Mockito.anyLong(), Mockito.any(TimeUnit.class));
+
+        tickEnd.run();
+        Assert.assertEquals(dispatched.toString(), "[batch, batch, interactive]", "Dispatch order mismatched.");
+        Mockito.verify(loop, Mockito.times(2)).schedule(tickEnd, 0L, TimeUnit.NANOSECONDS);
+        tickEnd.run();
+        tickEnd.run();
+        Assert.assertEquals(dispatched.toString(), "[batch, batch, interactive, batch, batch, batch]", "Dispatch order mismatched.");
+        // last tick dispatched responses, so the budget is reset once more
+        Mockito.verify(loop, Mockito.times(4)).schedule(tickEnd, 0L, TimeUnit.NANOSECONDS);
+        tickEnd.run();
+        Mockito.verify(loop, Mockito.times(4)).schedule(tickEnd, 0L, TimeUnit.NANOSECONDS);
+        Assert.assertEquals(scheduler.getTenantCount(loop), 0, "Drained tenants should be dropped.");
+    }
+
+    /**
+     * Tests tenants are dropped once they have neither usage in the current tick nor queued responses.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testDrainedTenantsDropped() throws ImapAsyncClientException {
+        final ImapTenantScheduler scheduler = new ImapTenantScheduler(25, 1);
+        final EventExecutor loop = Mockito.mock(EventExecutor.class);
+        Assert.assertTrue(scheduler.tryDispatch(loop, "t1", 1), "Should be within budget.");
+        Assert.assertTrue(scheduler.tryDispatch(loop, "t2", 1), "Should be within budget.");
+        Assert.assertFalse(scheduler.tryDispatch(loop, "t2", 1), "Response budget should be used up.");
+        final List<String> dispatched = new ArrayList<String>();
+        scheduler.defer(loop, "t2", new TestDispatch(scheduler, loop, "t2", 1, dispatched));
+        scheduler.addQueueDepth("t2", 1);
+        scheduler.addQueueDepth("t3", 0);
+        Assert.assertEquals(scheduler.getTenantCount(loop), 2, "Tenant count mismatched.");
+        Assert.assertEquals(scheduler.getQueueDepths().size(), 1, "Tenant count mismatched.");
+
+        final ArgumentCaptor<Runnable> tickEndCaptor = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(loop, Mockito.times(1)).schedule(tickEndCaptor.capture(), Mockito.eq(0L), Mockito.eq(TimeUnit.NANOSECONDS));
+        final Runnable tickEnd = tickEndCaptor.getValue();
+        tickEnd.run();
+        Assert.assertEquals(dispatched.toString(), "[t2]", "Dispatch order mismatched.");
+        Assert.assertEquals(scheduler.getTenantCount(loop), 1, "Tenant without waiting dispatchers should be dropped.");
+        scheduler.addQueueDepth("t2", -1);
+        Assert.assertEquals(scheduler.getQueueDepth("t2"), 0L, "Queue depth mismatched.");
+        Assert.assertTrue(scheduler.getQueueDepths().isEmpty(), "Tenant without queued responses should be dropped.");
+
+        tickEnd.run();
+        Assert.assertEquals(scheduler.getTenantCount(loop), 0, "Drained tenants should be dropped.");
+    }
+
+    /**
+     * Tests budgets must be positive.
+     */
+    @Test
+    public void testInvalidBudget() {
+        ImapAsyncClientException ex = null;
+        try {
+            new ImapTenantScheduler(0, 1);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        try {
+            new ImapTenantScheduler(1, 0);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+}
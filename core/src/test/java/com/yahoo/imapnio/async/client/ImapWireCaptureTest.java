@@ -0,0 +1,173 @@
+package com.yahoo.imapnio.async.client;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.client.ImapWireCapture.Direction;
+import com.yahoo.imapnio.async.client.ImapWireCaptureDecoder.Record;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Unit test for {@code ImapWireCapture} and {@code ImapWireCaptureDecoder}.
+ */
+public class ImapWireCaptureTest {
+
+    /** Ring capacity used by the tests. */
+    private static final int CAPACITY = 4096;
+
+    /** The ring file. */
+    private Path file;
+
+    /**
+     * Creates the ring file.
+     *
+     * @throws IOException will not throw
+     */
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = Files.createTempFile("imapnio", ".ring");
+    }
+
+    /**
+     * Deletes the ring file.
+     *
+     * @throws IOException will not throw
+     */
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * @param s the string
+     * @return the buffer of the string
+     */
+    private ByteBuf toBuf(final String s) {
+        return Unpooled.copiedBuffer(s, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Tests frames are read back in order with their session, direction and flags, and without changing the captured buffers.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testCaptureAndRead() throws IOException, ImapAsyncClientException {
+        final ImapWireCapture capture = new ImapWireCapture(file, CAPACITY + 3);
+        Assert.assertEquals(capture.getCapacity(), CAPACITY, "Capacity should be aligned.");
+        final ByteBuf greeting = toBuf("* OK ready\r\n");
+        capture.capture(1L, Direction.INBOUND, greeting);
+        capture.captureRedacted(1L, Direction.OUTBOUND, "LOGIN FOR USER:joe");
+        capture.capture(2L, Direction.OUTBOUND, toBuf("a1 NOOP\r\n"));
+        capture.capture(2L, Direction.INBOUND, Unpooled.wrappedBuffer(new byte[CAPACITY]));
+        Assert.assertEquals(greeting.readableBytes(), 12, "Captured buffer should not be consumed.");
+
+        final List<Record> records = ImapWireCaptureDecoder.read(file);
+        Assert.assertEquals(records.size(), 4, "Record count mismatched.");
+        Assert.assertEquals(records.get(0).getSessionId(), 1L, "Session id mismatched.");
+        Assert.assertEquals(records.get(0).getDirection(), Direction.INBOUND, "Direction mismatched.");
+        Assert.assertEquals(new String(records.get(0).getPayload(), StandardCharsets.US_ASCII), "* OK ready\r\n", "Payload mismatched.");
+        Assert.assertFalse(records.get(0).isRedacted(), "Should not be redacted.");
+        Assert.assertTrue(records.get(0).getTimestampMillis() > 0, "Timestamp should be set.");
+        Assert.assertTrue(records.get(1).isRedacted(), "Should be redacted.");
+        Assert.assertEquals(new String(records.get(1).getPayload(), StandardCharsets.US_ASCII), "LOGIN FOR USER:joe", "Payload mismatched.");
+        Assert.assertEquals(records.get(2).getSessionId(), 2L, "Session id mismatched.");
+        Assert.assertEquals(records.get(2).getDirection(), Direction.OUTBOUND, "Direction mismatched.");
+        Assert.assertTrue(records.get(3).isTruncated(), "Should be truncated.");
+        Assert.assertEquals(records.get(3).getPayload().length, CAPACITY / 8, "Payload length mismatched.");
+
+        final StringWriter writer = new StringWriter();
+        ImapWireCaptureDecoder.write(records.subList(0, 3), writer);
+        final String[] lines = writer.toString().split("\n");
+        Assert.assertEquals(lines.length, 3, "Line count mismatched.");
+        Assert.assertTrue(lines[0].endsWith(" [1] S: * OK ready\r"), "Line mismatched: " + lines[0]);
+        Assert.assertTrue(lines[1].endsWith(" [1] C: (redacted) LOGIN FOR USER:joe"), "Line mismatched: " + lines[1]);
+        Assert.assertTrue(lines[2].endsWith(" [2] C: a1 NOOP\r"), "Line mismatched: " + lines[2]);
+
+        capture.close();
+        capture.capture(1L, Direction.INBOUND, toBuf("* BYE\r\n"));
+        Assert.assertEquals(ImapWireCaptureDecoder.read(file).size(), 4, "Closed capture should not capture.");
+    }
+
+    /**
+     * Tests only the frames of the last lap are read back once the ring wraps, oldest first.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testReadWrappedRing() throws IOException, ImapAsyncClientException {
+        final ImapWireCapture capture = new ImapWireCapture(file, CAPACITY);
+        final int count = 500;
+        for (int i = 0; i < count; i++) {
+            capture.capture(1L, Direction.OUTBOUND, toBuf("a" + i + " NOOP\r\n"));
+        }
+        capture.close();
+
+        final List<Record> records = ImapWireCaptureDecoder.read(file);
+        Assert.assertTrue(records.size() > 50 && records.size() < count, "Record count mismatched: " + records.size());
+        final int first = count - records.size();
+        for (int i = 0; i < records.size(); i++) {
+            Assert.assertEquals(new String(records.get(i).getPayload(), StandardCharsets.US_ASCII), "a" + (first + i) + " NOOP\r\n",
+                    "Payload mismatched.");
+        }
+
+        // a new capture on the file drops the previous records
+        new ImapWireCapture(file, CAPACITY).close();
+        Assert.assertEquals(ImapWireCaptureDecoder.read(file).size(), 0, "Record count mismatched.");
+    }
+
+    /**
+     * Tests the decoder tool writes the records of a ring file to a text file, and invalid input is rejected.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testDecoderMainAndInvalidInput() throws IOException, ImapAsyncClientException {
+        final ImapWireCapture capture = new ImapWireCapture(file, CAPACITY);
+        capture.capture(3L, Direction.INBOUND, toBuf("* OK ready\r\n"));
+        capture.close();
+        final Path text = Files.createTempFile("imapnio", ".txt");
+        try {
+            ImapWireCaptureDecoder.main(new String[] { file.toString(), text.toString() });
+            final String output = new String(Files.readAllBytes(text), StandardCharsets.UTF_8);
+            Assert.assertTrue(output.endsWith(" [3] S: * OK ready\r\n"), "Output mismatched: " + output);
+        } finally {
+            Files.deleteIfExists(text);
+        }
+
+        ImapAsyncClientException ex = null;
+        try {
+            new ImapWireCapture(file, CAPACITY - 1);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        ex = null;
+        Files.write(file, new byte[ImapWireCapture.FILE_HEADER_LEN]);
+        try {
+            ImapWireCaptureDecoder.read(file);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+}
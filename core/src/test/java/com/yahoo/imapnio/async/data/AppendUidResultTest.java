@@ -0,0 +1,22 @@
+package com.yahoo.imapnio.async.data;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@code AppendUidResult}.
+ */
+public class AppendUidResultTest {
+
+    /**
+     * Tests AppendUidResult constructor and getters.
+     */
+    @Test
+    public void testAppendUidResult() {
+        final AppendUidResult result = new AppendUidResult(1459808247L, Arrays.asList(5L, 6L));
+        Assert.assertEquals(result.getUidValidity(), 1459808247L, "Result mismatched.");
+        Assert.assertEquals(result.getUids(), Arrays.asList(5L, 6L), "Result mismatched.");
+    }
+}
@@ -1,5 +1,6 @@
 package com.yahoo.imapnio.async.data;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -35,4 +36,40 @@ public class CapabilityTest {
         Assert.assertEquals(values.get(1), "XOAUTH2", "Result mismatched.");
         Assert.assertEquals(values.get(2), "OAUTHBEARER", "Result mismatched.");
     }
+
+    /**
+     * Tests well-known capabilities given in the map are found by enum and by name in any case.
+     */
+    @Test
+    public void testCapabilityKnown() {
+        final Map<String, List<String>> map = new HashMap<String, List<String>>();
+        map.put("LITERAL+", Arrays.asList("LITERAL+"));
+        map.put("IDLE", new ArrayList<String>());
+        map.put("X-CUSTOM", new ArrayList<String>());
+
+        final Capability capa = new Capability(map);
+        Assert.assertTrue(capa.hasCapability(KnownCapability.LITERAL_PLUS), "Result mismatched.");
+        Assert.assertTrue(capa.hasCapability(KnownCapability.IDLE), "Result mismatched.");
+        Assert.assertTrue(capa.hasCapability("idle"), "Result mismatched.");
+        Assert.assertFalse(capa.hasCapability(KnownCapability.MOVE), "Result mismatched.");
+        Assert.assertTrue(capa.hasCapability("X-CUSTOM"), "Result mismatched.");
+        Assert.assertTrue(capa.hasCapability("x-custom"), "Result mismatched.");
+        Assert.assertEquals(capa.getCapability("LITERAL+"), Arrays.asList("LITERAL+"), "Result mismatched.");
+        Assert.assertTrue(capa.getCapability("IDLE").isEmpty(), "Result mismatched.");
+        Assert.assertNull(capa.getCapability("MOVE"), "Result mismatched.");
+    }
+
+    /**
+     * Tests KnownCapability lookup by name.
+     */
+    @Test
+    public void testKnownCapabilityFromName() {
+        for (final KnownCapability capa : KnownCapability.values()) {
+            Assert.assertSame(KnownCapability.fromName(capa.getName()), capa, "Result mismatched.");
+            Assert.assertSame(KnownCapability.fromName(capa.getName().toLowerCase()), capa, "Result mismatched.");
+        }
+        Assert.assertSame(KnownCapability.fromName("Sasl-IR"), KnownCapability.SASL_IR, "Result mismatched.");
+        Assert.assertNull(KnownCapability.fromName("SASL_IR"), "Result mismatched.");
+        Assert.assertSame(KnownCapability.valueOf("COMPRESS"), KnownCapability.COMPRESS, "Enum does not match.");
+    }
 }
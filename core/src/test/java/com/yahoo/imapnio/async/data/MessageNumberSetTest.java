@@ -1,5 +1,7 @@
 package com.yahoo.imapnio.async.data;
 
+import java.util.List;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -223,4 +225,39 @@ public class MessageNumberSetTest {
         final LastMessage value = LastMessage.valueOf("LAST_MESSAGE");
         Assert.assertSame(value, LastMessage.LAST_MESSAGE, "Enum does not match.");
     }
+
+    /**
+     * Tests buildStrings splits the sets so each string is within the length limit.
+     */
+    @Test
+    public void testBuildStrings() {
+        final long[] msgs = { 1L, 3L, 5L, 6L, 7L, 9L, 11L, 1000L };
+        final MessageNumberSet[] msgsets = MessageNumberSet.createMessageNumberSets(msgs);
+        final List<String> strs = MessageNumberSet.buildStrings(msgsets, 8);
+        Assert.assertEquals(strs.size(), 3, "Result mismatched.");
+        Assert.assertEquals(strs.get(0), "1,3,5:7", "Result mismatched.");
+        Assert.assertEquals(strs.get(1), "9,11", "Result mismatched.");
+        Assert.assertEquals(strs.get(2), "1000", "Result mismatched.");
+
+        final List<String> one = MessageNumberSet.buildStrings(msgsets, 1000);
+        Assert.assertEquals(one.size(), 1, "Result mismatched.");
+        Assert.assertEquals(one.get(0), MessageNumberSet.buildString(msgsets), "Result mismatched.");
+    }
+
+    /**
+     * Tests buildStrings with a seq-range longer than the limit, duplicates and empty input.
+     */
+    @Test
+    public void testBuildStringsEdgeCases() {
+        final MessageNumberSet[] msgsets = { new MessageNumberSet(1, 1), new MessageNumberSet(100000, 200000), new MessageNumberSet(1, 1),
+                new MessageNumberSet(5, LastMessage.LAST_MESSAGE) };
+        final List<String> strs = MessageNumberSet.buildStrings(msgsets, 4);
+        Assert.assertEquals(strs.size(), 3, "Result mismatched.");
+        Assert.assertEquals(strs.get(0), "1", "Result mismatched.");
+        Assert.assertEquals(strs.get(1), "100000:200000", "Result mismatched.");
+        Assert.assertEquals(strs.get(2), "5:*", "Result mismatched.");
+
+        Assert.assertTrue(MessageNumberSet.buildStrings(null, 4).isEmpty(), "Result mismatched.");
+        Assert.assertTrue(MessageNumberSet.buildStrings(new MessageNumberSet[0], 4).isEmpty(), "Result mismatched.");
+    }
 }
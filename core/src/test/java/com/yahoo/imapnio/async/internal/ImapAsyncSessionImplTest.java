@@ -1,8 +1,13 @@
 package com.yahoo.imapnio.async.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -15,6 +20,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import javax.mail.search.SearchException;
 
@@ -30,26 +37,50 @@ import com.sun.mail.iap.ProtocolException;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.client.ImapAsyncClient;
 import com.yahoo.imapnio.async.client.ImapAsyncSession.DebugMode;
+import com.yahoo.imapnio.async.client.ImapAsyncSession.IdleMode;
+import com.yahoo.imapnio.async.client.ImapAsyncSessionConfig;
 import com.yahoo.imapnio.async.client.ImapFuture;
+import com.yahoo.imapnio.async.client.ImapResponsePublisher;
+import com.yahoo.imapnio.async.client.ImapResponseSubscriber;
+import com.yahoo.imapnio.async.client.ImapResponseSubscription;
+import com.yahoo.imapnio.async.client.ImapWireStats;
 import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 import com.yahoo.imapnio.async.internal.ImapAsyncSessionImpl.ImapChannelClosedListener;
+import com.yahoo.imapnio.async.netty.ImapByteCountingHandler;
+import com.yahoo.imapnio.async.netty.ImapWireCaptureHandler;
+import com.yahoo.imapnio.async.request.AppendCommand;
 import com.yahoo.imapnio.async.request.AuthPlainCommand;
 import com.yahoo.imapnio.async.request.AuthXoauth2Command;
 import com.yahoo.imapnio.async.request.CapaCommand;
 import com.yahoo.imapnio.async.request.IdleCommand;
 import com.yahoo.imapnio.async.request.ImapRequest;
+import com.yahoo.imapnio.async.request.LiteralSupport;
+import com.yahoo.imapnio.async.request.LoginCommand;
+import com.yahoo.imapnio.async.request.NoopCommand;
 import com.yahoo.imapnio.async.response.ImapAsyncResponse;
 import com.yahoo.imapnio.async.response.ImapResponseMapper;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.handler.codec.compression.JdkZlibDecoder;
 import io.netty.handler.codec.compression.JdkZlibEncoder;
+import io.netty.handler.codec.compression.ZlibDecoder;
+import io.netty.handler.codec.compression.ZlibEncoder;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.IdleStateEvent;
 
 /**
@@ -102,6 +133,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -262,6 +294,7 @@ public class ImapAsyncSessionImplTest {
             ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -376,6 +409,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -475,6 +509,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -627,6 +662,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         final SslHandler sslHandler = Mockito.mock(SslHandler.class);
         Mockito.when(pipeline.get(ImapAsyncClient.SSL_HANDLER)).thenReturn(sslHandler);
@@ -783,6 +819,7 @@ public class ImapAsyncSessionImplTest {
             ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -936,6 +973,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -996,6 +1034,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1037,6 +1076,7 @@ public class ImapAsyncSessionImplTest {
             throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1073,6 +1113,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1199,6 +1240,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, IllegalArgumentException, IllegalAccessException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1287,6 +1329,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, IllegalArgumentException, IllegalAccessException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1361,6 +1404,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1463,6 +1507,676 @@ public class ImapAsyncSessionImplTest {
         Assert.assertEquals(logArgs.get(17), "a1 OK IDLE terminated", "log messages from server mismatched.");
     }
 
+    /**
+     * Tests execute idle with a response consumer, untagged responses are given to the consumer instead of the command responses.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteIdleWithResponseConsumer()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+        final Logger logger = Mockito.mock(Logger.class);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+
+        final List<IMAPResponse> consumed = new ArrayList<IMAPResponse>();
+        final IdleCommand cmd = new IdleCommand(new Consumer<IMAPResponse>() {
+            @Override
+            public void accept(final IMAPResponse response) {
+                consumed.add(response);
+            }
+        });
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(cmd);
+        aSession.handleChannelResponse(new IMAPResponse("+ idling"));
+        final IMAPResponse exists = new IMAPResponse("* 3 EXISTS");
+        aSession.handleChannelResponse(exists);
+        Assert.assertEquals(consumed.size(), 1, "Consumed responses count mismatched.");
+        Assert.assertSame(consumed.get(0), exists, "Consumed response mismatched.");
+
+        aSession.terminateCommand(cmd);
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK IDLE terminated"));
+        Assert.assertTrue(future.isDone(), "isDone() should be true now");
+        final Collection<IMAPResponse> lines = future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines();
+        Assert.assertEquals(lines.size(), 2, "Responses count mismatched.");
+        Assert.assertEquals(consumed.size(), 1, "Consumed responses count mismatched.");
+    }
+
+    /**
+     * Creates a session on a mocked channel which is active and accepts writes.
+     *
+     * @param channel the mocked channel
+     * @return the session
+     */
+    private ImapAsyncSessionImpl createIdleSession(final Channel channel) {
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+        final Logger logger = Mockito.mock(Logger.class);
+        return new ImapAsyncSessionImpl(channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+    }
+
+    /**
+     * Gets the command lines written to the channel.
+     *
+     * @param channel the mocked channel
+     * @param count expected number of writes
+     * @return the command lines in order
+     */
+    private List<String> getWrittenLines(final Channel channel, final int count) {
+        final ArgumentCaptor<ByteBuf> bufCapture = ArgumentCaptor.forClass(ByteBuf.class);
+        Mockito.verify(channel, Mockito.times(count)).writeAndFlush(bufCapture.capture(), Mockito.isA(ChannelPromise.class));
+        final List<String> lines = new ArrayList<String>();
+        for (final ByteBuf buf : bufCapture.getAllValues()) {
+            lines.add(buf.toString(StandardCharsets.US_ASCII));
+        }
+        return lines;
+    }
+
+    /**
+     * Tests execute while idling in auto suspend mode: DONE is sent, the command runs, and IDLE is resumed with queued responses preserved.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteIdleAutoSuspendResume()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ImapAsyncSessionImpl aSession = createIdleSession(channel);
+        aSession.setIdleMode(IdleMode.IDLE_AUTO_SUSPEND);
+
+        final ConcurrentLinkedQueue<IMAPResponse> serverResponesQ = new ConcurrentLinkedQueue<IMAPResponse>();
+        final IdleCommand idleCmd = new IdleCommand(serverResponesQ);
+        final ImapFuture<ImapAsyncResponse> idleFuture = aSession.execute(idleCmd);
+        aSession.handleChannelResponse(new IMAPResponse("+ idling"));
+        aSession.handleChannelResponse(new IMAPResponse("* 3 EXISTS"));
+
+        final ImapFuture<ImapAsyncResponse> noopFuture = aSession.execute(new NoopCommand());
+        Assert.assertEquals(getWrittenLines(channel, 2).get(1), "DONE\r\n", "Command line mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK IDLE terminated"));
+        Assert.assertFalse(idleFuture.isDone(), "IDLE should be suspended, not done.");
+        Assert.assertEquals(getWrittenLines(channel, 3).get(2), "a2 NOOP\r\n", "Command line mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("* 4 EXISTS"));
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK NOOP completed"));
+        Assert.assertTrue(noopFuture.isDone(), "isDone() should be true now");
+        Assert.assertEquals(noopFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().size(), 2, "Responses mismatched.");
+        Assert.assertEquals(getWrittenLines(channel, 4).get(3), "a3 IDLE\r\n", "Command line mismatched.");
+        Assert.assertFalse(idleFuture.isDone(), "IDLE should be resumed, not done.");
+        Assert.assertEquals(serverResponesQ.size(), 2, "Queued responses should be preserved.");
+        Assert.assertEquals(serverResponesQ.peek().toString(), "+ idling", "Queued responses should be preserved.");
+
+        // resumed IDLE can be suspended again, and terminated as usual
+        aSession.handleChannelResponse(new IMAPResponse("+ idling"));
+        Assert.assertSame(aSession.terminateCommand(idleCmd), idleFuture, "Future mismatched.");
+        aSession.handleChannelResponse(new IMAPResponse("a3 OK IDLE terminated"));
+        Assert.assertTrue(idleFuture.isDone(), "isDone() should be true now");
+        Assert.assertEquals(getWrittenLines(channel, 5).get(4), "DONE\r\n", "Command line mismatched.");
+    }
+
+    /**
+     * Tests execute while idling in auto suspend mode, before server accepts IDLE, and with caller terminating IDLE while it is suspended.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteIdleAutoSuspendTerminated()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ImapAsyncSessionImpl aSession = createIdleSession(channel);
+        final IdleCommand idleCmd = new IdleCommand(new ConcurrentLinkedQueue<IMAPResponse>());
+        final ImapFuture<ImapAsyncResponse> idleFuture = aSession.execute(idleCmd);
+
+        // manual mode by default
+        ImapAsyncClientException ex = null;
+        try {
+            aSession.execute(new NoopCommand());
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.COMMAND_NOT_ALLOWED, "Failure type mismatched.");
+
+        aSession.setIdleMode(IdleMode.IDLE_AUTO_SUSPEND);
+        final ImapFuture<ImapAsyncResponse> noopFuture = aSession.execute(new NoopCommand());
+        getWrittenLines(channel, 1);
+        aSession.handleChannelResponse(new IMAPResponse("+ idling"));
+        Assert.assertEquals(getWrittenLines(channel, 2).get(1), "DONE\r\n", "DONE should be sent after continuation.");
+
+        // only one command can wait for IDLE
+        ex = null;
+        try {
+            aSession.execute(new NoopCommand());
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+
+        Assert.assertSame(aSession.terminateCommand(idleCmd), idleFuture, "Future mismatched.");
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK IDLE terminated"));
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK NOOP completed"));
+        Assert.assertTrue(noopFuture.isDone(), "isDone() should be true now");
+        Assert.assertTrue(idleFuture.isDone(), "isDone() should be true now");
+        final Collection<IMAPResponse> idleLines = idleFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines();
+        Assert.assertEquals(idleLines.size(), 2, "Responses mismatched.");
+        final List<String> lines = getWrittenLines(channel, 3);
+        Assert.assertEquals(lines.get(2), "a2 NOOP\r\n", "IDLE should not be resumed.");
+    }
+
+    /**
+     * Tests the command run while IDLE is suspended completes with its responses even when IDLE cannot be resumed, which fails IDLE only.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testExecuteIdleAutoSuspendResumeFailed() throws Exception {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ImapAsyncSessionImpl aSession = createIdleSession(channel);
+        aSession.setIdleMode(IdleMode.IDLE_AUTO_SUSPEND);
+        final ImapFuture<ImapAsyncResponse> idleFuture = aSession.execute(new IdleCommand(new ConcurrentLinkedQueue<IMAPResponse>()));
+        aSession.handleChannelResponse(new IMAPResponse("+ idling"));
+        final ImapFuture<ImapAsyncResponse> noopFuture = aSession.execute(new NoopCommand());
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK IDLE terminated"));
+        getWrittenLines(channel, 3);
+
+        Mockito.when(channel.isActive()).thenReturn(false); // IDLE cannot be sent again
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK NOOP completed"));
+        Assert.assertTrue(noopFuture.isDone(), "isDone() should be true now");
+        final Collection<IMAPResponse> lines = noopFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines();
+        Assert.assertEquals(lines.iterator().next().toString(), "a2 OK NOOP completed", "Response mismatched.");
+        Assert.assertTrue(idleFuture.isDone(), "isDone() should be true now");
+        ExecutionException ex = null;
+        try {
+            idleFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        getWrittenLines(channel, 3);
+    }
+
+    /**
+     * Tests channel closed while IDLE is suspended fails both IDLE and the command.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteIdleAutoSuspendChannelClosed() throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ImapAsyncSessionImpl aSession = createIdleSession(channel);
+        aSession.setIdleMode(IdleMode.IDLE_AUTO_SUSPEND);
+        final ImapFuture<ImapAsyncResponse> idleFuture = aSession.execute(new IdleCommand(new ConcurrentLinkedQueue<IMAPResponse>()));
+        aSession.handleChannelResponse(new IMAPResponse("+ idling"));
+        final ImapFuture<ImapAsyncResponse> noopFuture = aSession.execute(new NoopCommand());
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK IDLE terminated"));
+
+        aSession.handleChannelClosed();
+        Assert.assertTrue(noopFuture.isDone(), "isDone() should be true now");
+        Assert.assertTrue(idleFuture.isDone(), "isDone() should be true now");
+        ExecutionException ex = null;
+        try {
+            idleFuture.get();
+        } catch (final ExecutionException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(((ImapAsyncClientException) ex.getCause()).getFaiureType(), FailureType.CHANNEL_DISCONNECTED, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests execute and executeAll with a response consumer, untagged responses are given to the consumer as they arrive and not kept.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteWithResponseConsumer()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ImapAsyncSessionImpl aSession = createIdleSession(channel);
+        final List<String> consumed = new ArrayList<String>();
+        final Consumer<IMAPResponse> consumer = new Consumer<IMAPResponse>() {
+            @Override
+            public void accept(final IMAPResponse response) {
+                consumed.add(response.toString());
+            }
+        };
+
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(new NoopCommand(), consumer);
+        aSession.handleChannelResponse(new IMAPResponse("* 1 FETCH (FLAGS (\\Seen))"));
+        Assert.assertEquals(consumed, Arrays.asList("* 1 FETCH (FLAGS (\\Seen))"), "Consumed responses mismatched.");
+        aSession.handleChannelResponse(new IMAPResponse("* 2 FETCH (FLAGS (\\Seen))"));
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK NOOP completed"));
+        Assert.assertEquals(consumed.size(), 2, "Consumed responses count mismatched.");
+        final Collection<IMAPResponse> lines = future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines();
+        Assert.assertEquals(lines.size(), 1, "Only tagged response should be kept.");
+        Assert.assertEquals(lines.iterator().next().toString(), "a1 OK NOOP completed", "Response mismatched.");
+
+        consumed.clear();
+        final ImapFuture<ImapAsyncResponse> allFuture = aSession.executeAll(Arrays.asList(new NoopCommand(), new NoopCommand()), consumer);
+        aSession.handleChannelResponse(new IMAPResponse("* 3 EXISTS"));
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK NOOP completed"));
+        aSession.handleChannelResponse(new IMAPResponse("* 4 EXISTS"));
+        aSession.handleChannelResponse(new IMAPResponse("a3 OK NOOP completed"));
+        Assert.assertEquals(consumed, Arrays.asList("* 3 EXISTS", "* 4 EXISTS"), "Consumed responses mismatched.");
+        Assert.assertEquals(allFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().size(), 2, "Responses mismatched.");
+    }
+
+    /**
+     * Subscriber keeping what it is given.
+     */
+    private static class TestSubscriber implements ImapResponseSubscriber {
+
+        /** The subscription. */
+        private ImapResponseSubscription subscription;
+
+        /** Responses given. */
+        private final List<IMAPResponse> responses = new ArrayList<IMAPResponse>();
+
+        /** Response given on completion. */
+        private ImapAsyncResponse doneResponse;
+
+        /** Error given. */
+        private Exception error;
+
+        @Override
+        public void onSubscribe(final ImapResponseSubscription s) {
+            this.subscription = s;
+        }
+
+        /**
+         * @return the subscription
+         */
+        ImapResponseSubscription getSubscription() {
+            return subscription;
+        }
+
+        @Override
+        public void onNext(final IMAPResponse response) {
+            responses.add(response);
+        }
+
+        @Override
+        public void onError(final Exception cause) {
+            this.error = cause;
+        }
+
+        @Override
+        public void onComplete(final ImapAsyncResponse response) {
+            this.doneResponse = response;
+        }
+    }
+
+    /**
+     * Tests createPublisher: responses are given as demanded, and reading from server is paused while too many responses are buffered.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testCreatePublisherBackpressure() throws IOException, ProtocolException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ImapAsyncSessionImpl aSession = createIdleSession(channel);
+        final ChannelConfig config = Mockito.mock(ChannelConfig.class);
+        Mockito.when(channel.config()).thenReturn(config);
+
+        final ImapResponsePublisher publisher = aSession.createPublisher(new NoopCommand());
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        Assert.assertEquals(getWrittenLines(channel, 1).get(0), "a1 NOOP\r\n", "Command should be sent on subscribe.");
+        subscriber.subscription.request(1);
+
+        final int total = 70;
+        for (int i = 1; i <= total; i++) {
+            aSession.handleChannelResponse(new IMAPResponse("* " + i + " FETCH (FLAGS (\\Seen))"));
+        }
+        Assert.assertEquals(subscriber.responses.size(), 1, "Only demanded responses should be given.");
+        Mockito.verify(config, Mockito.times(1)).setAutoRead(false);
+
+        subscriber.subscription.request(60);
+        Assert.assertEquals(subscriber.responses.size(), 61, "Demanded responses should be given.");
+        Mockito.verify(config, Mockito.times(1)).setAutoRead(true);
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK FETCH completed"));
+        Assert.assertNull(subscriber.doneResponse, "Should not complete before buffered responses are given.");
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        Assert.assertEquals(subscriber.responses.size(), total, "All responses should be given.");
+        Assert.assertEquals(subscriber.responses.get(total - 1).toString(), "* 70 FETCH (FLAGS (\\Seen))", "Responses order mismatched.");
+        Assert.assertNotNull(subscriber.doneResponse, "Should be completed.");
+        Assert.assertEquals(subscriber.doneResponse.getResponseLines().size(), 1, "Only tagged response should be kept.");
+        Assert.assertNull(subscriber.error, "Should not fail.");
+
+        // only one subscriber is allowed
+        final TestSubscriber another = new TestSubscriber();
+        publisher.subscribe(another);
+        Assert.assertNotNull(another.subscription, "Subscription should be given.");
+        another.subscription.request(1);
+        another.subscription.cancel();
+        Assert.assertEquals(((ImapAsyncClientException) another.error).getFaiureType(), FailureType.COMMAND_NOT_ALLOWED, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests createPublisher does not time out server while reading is paused for a slow subscriber, gives server a full period once reading is
+     * resumed, and signals subscriber outside the publisher lock.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testCreatePublisherPausedReadNotTimedOut() throws IOException, ProtocolException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ImapAsyncSessionImpl aSession = createIdleSession(channel);
+        final ChannelConfig config = Mockito.mock(ChannelConfig.class);
+        Mockito.when(channel.config()).thenReturn(config);
+        final List<Boolean> isLockHeld = new ArrayList<Boolean>();
+        final TestSubscriber subscriber = new TestSubscriber() {
+            @Override
+            public void onNext(final IMAPResponse response) {
+                isLockHeld.add(Thread.holdsLock(getSubscription()));
+                super.onNext(response);
+            }
+        };
+        aSession.createPublisher(new NoopCommand()).subscribe(subscriber);
+        final ChannelPromise writePromise = channel.newPromise();
+        Mockito.when(writePromise.isSuccess()).thenReturn(true);
+        aSession.operationComplete(writePromise);
+        for (int i = 1; i <= 64; i++) {
+            aSession.handleChannelResponse(new IMAPResponse("* " + i + " EXISTS"));
+        }
+        Mockito.verify(config, Mockito.times(1)).setAutoRead(false);
+
+        aSession.handleIdleEvent(null);
+        aSession.handleIdleEvent(null);
+        Assert.assertNull(subscriber.error, "Server should not be timed out while reading is paused.");
+
+        subscriber.getSubscription().request(Long.MAX_VALUE);
+        Mockito.verify(config, Mockito.times(1)).setAutoRead(true);
+        Assert.assertEquals(subscriber.responses.size(), 64, "Demanded responses should be given.");
+        Assert.assertFalse(isLockHeld.contains(Boolean.TRUE), "Subscriber should be signalled outside the lock.");
+        aSession.handleIdleEvent(null);
+        Assert.assertNull(subscriber.error, "Server should be given a full period once reading is resumed.");
+        aSession.handleIdleEvent(null);
+        Assert.assertEquals(((ImapAsyncClientException) subscriber.error).getFaiureType(), FailureType.CHANNEL_TIMEOUT, "Failure type mismatched.");
+    }
+
+    /**
+     * Tests createPublisher with cancel, invalid request, channel closed and command failing to be sent.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testCreatePublisherCancelAndFail() throws IOException, ProtocolException {
+        final Channel channel = Mockito.mock(Channel.class);
+        final ImapAsyncSessionImpl aSession = createIdleSession(channel);
+        final ChannelConfig config = Mockito.mock(ChannelConfig.class);
+        Mockito.when(channel.config()).thenReturn(config);
+
+        final TestSubscriber cancelled = new TestSubscriber();
+        aSession.createPublisher(new NoopCommand()).subscribe(cancelled);
+        for (int i = 1; i <= 64; i++) {
+            aSession.handleChannelResponse(new IMAPResponse("* " + i + " EXISTS"));
+        }
+        Mockito.verify(config, Mockito.times(1)).setAutoRead(false);
+        cancelled.subscription.cancel();
+        Mockito.verify(config, Mockito.times(1)).setAutoRead(true);
+        cancelled.subscription.request(1);
+        aSession.handleChannelResponse(new IMAPResponse("* 65 EXISTS"));
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK NOOP completed"));
+        Assert.assertEquals(cancelled.responses.size(), 0, "No response should be given after cancel.");
+        Assert.assertNull(cancelled.doneResponse, "Should not complete after cancel.");
+
+        final TestSubscriber invalid = new TestSubscriber();
+        aSession.createPublisher(new NoopCommand()).subscribe(invalid);
+        invalid.subscription.request(0);
+        Assert.assertEquals(((ImapAsyncClientException) invalid.error).getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK NOOP completed"));
+        Assert.assertNull(invalid.doneResponse, "Should not complete after error.");
+
+        final TestSubscriber closed = new TestSubscriber();
+        aSession.createPublisher(new NoopCommand()).subscribe(closed);
+        aSession.handleChannelClosed();
+        Assert.assertEquals(((ImapAsyncClientException) closed.error).getFaiureType(), FailureType.CHANNEL_DISCONNECTED, "Failure type mismatched.");
+
+        Mockito.when(channel.isActive()).thenReturn(false);
+        final TestSubscriber notSent = new TestSubscriber();
+        aSession.createPublisher(new NoopCommand()).subscribe(notSent);
+        Assert.assertEquals(((ImapAsyncClientException) notSent.error).getFaiureType(), FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL,
+                "Failure type mismatched.");
+    }
+
+    /**
+     * Tests compression is enabled automatically after login when server advertises COMPRESS=DEFLATE, with the configured engine.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testAutoCompressAfterLogin()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setAutoCompressEnabled(true);
+        config.setCompressionEngine(ImapAsyncSessionConfig.CompressionEngine.ZLIB_CODEC_FACTORY);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF, SESSION_ID,
+                pipeline, USER_ID, config);
+
+        final ImapFuture<ImapAsyncResponse> loginFuture = aSession.execute(new LoginCommand("user", "dwp"));
+        final IMAPResponse loginOk = new IMAPResponse("a1 OK [CAPABILITY IMAP4rev1 IDLE COMPRESS=DEFLATE] LOGIN completed");
+        aSession.handleChannelResponse(loginOk);
+        Assert.assertFalse(loginFuture.isDone(), "Login should be done after compression is enabled.");
+        Assert.assertEquals(getWrittenLines(channel, 2).get(1), "a2 COMPRESS DEFLATE\r\n", "Command line mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK DEFLATE active"));
+        Mockito.verify(pipeline, Mockito.times(1)).addFirst(Matchers.eq("DEFLATER"), Matchers.isA(ZlibDecoder.class));
+        Mockito.verify(pipeline, Mockito.times(1)).addFirst(Matchers.eq("INFLATER"), Matchers.isA(ZlibEncoder.class));
+        Assert.assertTrue(loginFuture.isDone(), "isDone() should be true now");
+        final Collection<IMAPResponse> lines = loginFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines();
+        Assert.assertEquals(lines.size(), 1, "Login responses mismatched.");
+        Assert.assertEquals(lines.iterator().next().readAtom(), "[CAPABILITY", "Login response should be readable from the start.");
+
+        // compression is enabled already, not again on another authentication
+        final ImapFuture<ImapAsyncResponse> secondFuture = aSession.execute(new LoginCommand("user", "dwp"));
+        aSession.handleChannelResponse(new IMAPResponse("a3 OK [CAPABILITY IMAP4rev1 COMPRESS=DEFLATE] LOGIN completed"));
+        Assert.assertTrue(secondFuture.isDone(), "isDone() should be true now");
+        getWrittenLines(channel, 3);
+    }
+
+    /**
+     * Tests compression is not enabled automatically when server does not advertise COMPRESS=DEFLATE, and server refusing it does not fail login.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testAutoCompressNotAdvertisedOrRefused()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setAutoCompressEnabled(true);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF, SESSION_ID,
+                pipeline, USER_ID, config);
+
+        final ImapFuture<ImapAsyncResponse> noCapaFuture = aSession.execute(new LoginCommand("user", "dwp"));
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK LOGIN completed"));
+        Assert.assertTrue(noCapaFuture.isDone(), "isDone() should be true now");
+
+        final ImapFuture<ImapAsyncResponse> noDeflateFuture = aSession.execute(new LoginCommand("user", "dwp"));
+        aSession.handleChannelResponse(new IMAPResponse("* CAPABILITY IMAP4rev1 COMPRESS=OTHER"));
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK LOGIN completed"));
+        Assert.assertTrue(noDeflateFuture.isDone(), "isDone() should be true now");
+
+        final ImapFuture<ImapAsyncResponse> refusedFuture = aSession.execute(new LoginCommand("user", "dwp"));
+        aSession.handleChannelResponse(new IMAPResponse("* CAPABILITY IMAP4rev1 COMPRESS=DEFLATE"));
+        aSession.handleChannelResponse(new IMAPResponse("a3 OK LOGIN completed"));
+        Assert.assertFalse(refusedFuture.isDone(), "Login should be done after compression is tried.");
+        aSession.handleChannelResponse(new IMAPResponse("a4 NO compression not allowed"));
+        Assert.assertTrue(refusedFuture.isDone(), "isDone() should be true now");
+        Assert.assertEquals(refusedFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().size(), 2, "Login should not fail.");
+        Mockito.verify(pipeline, Mockito.times(0)).addFirst(Mockito.anyString(), Mockito.any(ChannelHandler.class));
+        Assert.assertEquals(getWrittenLines(channel, 4).get(3), "a4 COMPRESS DEFLATE\r\n", "Command line mismatched.");
+    }
+
+    /**
+     * Tests compression is neither started nor enabled automatically when its settings need JZlib, which is not in the class path.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCompressionEngineUnavailable() throws Exception {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final ImapAsyncSessionConfig config = new ImapAsyncSessionConfig();
+        config.setAutoCompressEnabled(true);
+        config.setCompressionEngine(ImapAsyncSessionConfig.CompressionEngine.ZLIB_CODEC_FACTORY);
+        config.setCompressionWindowBits(12);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF, SESSION_ID,
+                pipeline, USER_ID, config);
+
+        final ImapFuture<ImapAsyncResponse> loginFuture = aSession.execute(new LoginCommand("user", "dwp"));
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK [CAPABILITY IMAP4rev1 COMPRESS=DEFLATE] LOGIN completed"));
+        Assert.assertTrue(loginFuture.isDone(), "Login should be done without compression.");
+        Assert.assertEquals(loginFuture.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getResponseLines().size(), 1, "Login should not fail.");
+
+        ImapAsyncClientException ex = null;
+        try {
+            aSession.startCompression();
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        getWrittenLines(channel, 1);
+        Mockito.verify(pipeline, Mockito.times(0)).addFirst(Mockito.anyString(), Mockito.any(ChannelHandler.class));
+    }
+
+    /**
+     * Tests getWireStats method reports the counters of the pipeline, and compression is enabled before the plain byte counter.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testGetWireStatsAndCompressionBeforeCounter() throws Exception {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final ImapByteCountingHandler socketCounter = new ImapByteCountingHandler(new LongAdder(), new LongAdder());
+        final ImapByteCountingHandler plainCounter = new ImapByteCountingHandler(new LongAdder(), new LongAdder());
+        Mockito.when(pipeline.get(ImapAsyncClient.SOCKET_BYTE_COUNTER)).thenReturn(socketCounter);
+        Mockito.when(pipeline.get(ImapAsyncClient.PLAIN_BYTE_COUNTER)).thenReturn(plainCounter);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF, SESSION_ID,
+                pipeline, USER_ID);
+
+        final ChannelHandlerContext ctx = Mockito.mock(ChannelHandlerContext.class);
+        socketCounter.channelRead(ctx, Unpooled.wrappedBuffer(new byte[10]));
+        socketCounter.write(ctx, Unpooled.wrappedBuffer(new byte[5]), Mockito.mock(ChannelPromise.class));
+        plainCounter.channelRead(ctx, Unpooled.wrappedBuffer(new byte[40]));
+        plainCounter.write(ctx, Unpooled.wrappedBuffer(new byte[5]), Mockito.mock(ChannelPromise.class));
+        final ImapWireStats stats = aSession.getWireStats();
+        Assert.assertEquals(stats.getSocketBytesRead(), 10L, "Socket bytes read mismatched.");
+        Assert.assertEquals(stats.getSocketBytesWritten(), 5L, "Socket bytes written mismatched.");
+        Assert.assertEquals(stats.getPlainBytesRead(), 40L, "Plain bytes read mismatched.");
+        Assert.assertEquals(stats.getPlainBytesWritten(), 5L, "Plain bytes written mismatched.");
+        Assert.assertEquals(stats.getReadCompressionRatio(), 4.0d, "Compression ratio mismatched.");
+
+        final ImapFuture<ImapAsyncResponse> future = aSession.startCompression();
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK Success"));
+        Assert.assertTrue(future.isDone(), "isDone() should be true now");
+        Mockito.verify(pipeline, Mockito.times(1)).addBefore(Matchers.eq(ImapAsyncClient.PLAIN_BYTE_COUNTER), Matchers.eq("DEFLATER"),
+                Matchers.isA(JdkZlibDecoder.class));
+        Mockito.verify(pipeline, Mockito.times(1)).addBefore(Matchers.eq(ImapAsyncClient.PLAIN_BYTE_COUNTER), Matchers.eq("INFLATER"),
+                Matchers.isA(JdkZlibEncoder.class));
+        Mockito.verify(pipeline, Mockito.times(0)).addFirst(Mockito.anyString(), Mockito.any(ChannelHandler.class));
+
+        // counters on a pipeline without them
+        final ImapAsyncSessionImpl noCounterSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF,
+                SESSION_ID, Mockito.mock(ChannelPipeline.class), USER_ID);
+        Assert.assertEquals(noCounterSession.getWireStats().getSocketBytesRead(), 0L, "Socket bytes read mismatched.");
+        Assert.assertEquals(noCounterSession.getWireStats().getCompressionRatio(), 1.0d, "Compression ratio mismatched.");
+    }
+
+    /**
+     * Tests requests are given to the wire capture handler in the pipeline along with their commands.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testExecuteWithWireCapture() throws ImapAsyncClientException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final ImapWireCaptureHandler captureHandler = Mockito.mock(ImapWireCaptureHandler.class);
+        Mockito.when(pipeline.get(ImapWireCaptureHandler.HANDLER_NAME)).thenReturn(captureHandler);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF, SESSION_ID,
+                pipeline, USER_ID);
+
+        final LoginCommand login = new LoginCommand("user", "dwp");
+        aSession.execute(login);
+        final ArgumentCaptor<ByteBuf> requestCaptor = ArgumentCaptor.forClass(ByteBuf.class);
+        Mockito.verify(captureHandler, Mockito.times(1)).captureRequest(requestCaptor.capture(), Mockito.eq(login));
+        Assert.assertEquals(requestCaptor.getValue().toString(StandardCharsets.US_ASCII), "a1 LOGIN user dwp\r\n", "Request mismatched.");
+    }
+
     /**
      * Tests execute method when command queue is not empty.
      *
@@ -1474,6 +2188,7 @@ public class ImapAsyncSessionImplTest {
     public void testExecuteFailedDueToQueueNotEmpty() throws ImapAsyncClientException, IOException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1518,6 +2233,7 @@ public class ImapAsyncSessionImplTest {
             throws ImapAsyncClientException, IOException, InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(false);
@@ -1558,6 +2274,42 @@ public class ImapAsyncSessionImplTest {
 
     }
 
+    /**
+     * Tests execute method releases the command line built when the channel is closed before it is written.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testExecuteChannelInactiveReleasesCommandLine() throws ImapAsyncClientException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true, false); // closed after the command is accepted, before it is written
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF, SESSION_ID,
+                pipeline, USER_ID);
+        final List<ByteBuf> lines = new ArrayList<ByteBuf>();
+        final ImapRequest cmd = new CapaCommand() {
+            @Override
+            public ByteBuf getCommandLineBytes(final ByteBufAllocator alloc) {
+                final ByteBuf line = super.getCommandLineBytes(alloc);
+                lines.add(line);
+                return line;
+            }
+        };
+
+        ImapAsyncClientException ex = null;
+        try {
+            aSession.execute(cmd);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.OPERATION_PROHIBITED_ON_CLOSED_CHANNEL, "Failure type mismatched.");
+        Assert.assertEquals(lines.size(), 1, "Command line should be built.");
+        Assert.assertEquals(lines.get(0).refCnt(), 0, "Command line should be released.");
+    }
+
     /**
      * Tests close() method and its close listener. Specifically testing operationComplete with a future that returns false for isSuccess().
      *
@@ -1574,6 +2326,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1628,6 +2381,7 @@ public class ImapAsyncSessionImplTest {
             ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1731,6 +2485,7 @@ public class ImapAsyncSessionImplTest {
             InterruptedException, ExecutionException, TimeoutException, SearchException {
 
         final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
         final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
         Mockito.when(channel.pipeline()).thenReturn(pipeline);
         Mockito.when(channel.isActive()).thenReturn(true);
@@ -1872,6 +2627,287 @@ public class ImapAsyncSessionImplTest {
         }
     }
 
+    /**
+     * Tests execute method writes the tag digits correctly when the tag sequence grows beyond one digit.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteMultipleDigitsTag()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+
+        final int numOfCmds = 12;
+        for (int i = 1; i <= numOfCmds; i++) {
+            final ImapFuture<ImapAsyncResponse> future = aSession.execute(new NoopCommand());
+            aSession.handleChannelResponse(new IMAPResponse("a" + i + " OK NOOP completed"));
+            Assert.assertTrue(future.isDone(), "isDone() should be true now");
+            future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        final ArgumentCaptor<ByteBuf> bufCapture = ArgumentCaptor.forClass(ByteBuf.class);
+        Mockito.verify(channel, Mockito.times(numOfCmds)).writeAndFlush(bufCapture.capture(), Mockito.isA(ChannelPromise.class));
+        final List<ByteBuf> bufs = bufCapture.getAllValues();
+        Assert.assertEquals(bufs.get(0).toString(StandardCharsets.US_ASCII), "a1 NOOP\r\n", "Command line mismatched.");
+        Assert.assertEquals(bufs.get(9).toString(StandardCharsets.US_ASCII), "a10 NOOP\r\n", "Command line mismatched.");
+        Assert.assertEquals(bufs.get(11).toString(StandardCharsets.US_ASCII), "a12 NOOP\r\n", "Command line mismatched.");
+    }
+
+    /**
+     * Tests executeAll method sends the commands one after another and merges their responses.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteAll()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+
+        final ImapFuture<ImapAsyncResponse> future = aSession.executeAll(Arrays.asList(new NoopCommand(), new NoopCommand()));
+        Mockito.verify(channel, Mockito.times(1)).writeAndFlush(Mockito.isA(ByteBuf.class), Mockito.isA(ChannelPromise.class));
+
+        aSession.handleChannelResponse(new IMAPResponse("* 3 EXISTS"));
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK NOOP completed"));
+        Assert.assertFalse(future.isDone(), "isDone() should be false");
+        final ArgumentCaptor<ByteBuf> bufCapture = ArgumentCaptor.forClass(ByteBuf.class);
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(bufCapture.capture(), Mockito.isA(ChannelPromise.class));
+        Assert.assertEquals(bufCapture.getAllValues().get(1).toString(StandardCharsets.US_ASCII), "a2 NOOP\r\n", "Command line mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a2 OK NOOP completed"));
+        Assert.assertTrue(future.isDone(), "isDone() should be true now");
+        final ImapAsyncResponse resp = future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        final Iterator<IMAPResponse> it = resp.getResponseLines().iterator();
+        Assert.assertEquals(resp.getResponseLines().size(), 3, "responses count mismatched.");
+        Assert.assertEquals(it.next().toString(), "* 3 EXISTS", "response mismatched.");
+        Assert.assertEquals(it.next().toString(), "a1 OK NOOP completed", "response mismatched.");
+        Assert.assertEquals(it.next().toString(), "a2 OK NOOP completed", "response mismatched.");
+    }
+
+    /**
+     * Tests executeAll method stops at a command answered with NO and completes with the responses so far, the NO response being the last.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteAllTaggedNo()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF, SESSION_ID,
+                pipeline, USER_ID);
+
+        final ImapFuture<ImapAsyncResponse> future = aSession.executeAll(Arrays.asList(new NoopCommand(), new NoopCommand(), new NoopCommand()));
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK NOOP completed"));
+        Assert.assertFalse(future.isDone(), "isDone() should be false");
+        aSession.handleChannelResponse(new IMAPResponse("* 3 EXISTS"));
+        aSession.handleChannelResponse(new IMAPResponse("a2 NO NOOP failed"));
+        Assert.assertTrue(future.isDone(), "isDone() should be true now");
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(Mockito.isA(ByteBuf.class), Mockito.isA(ChannelPromise.class));
+
+        final ImapAsyncResponse resp = future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        final Iterator<IMAPResponse> it = resp.getResponseLines().iterator();
+        Assert.assertEquals(resp.getResponseLines().size(), 3, "responses count mismatched.");
+        Assert.assertEquals(it.next().toString(), "a1 OK NOOP completed", "response mismatched.");
+        Assert.assertEquals(it.next().toString(), "* 3 EXISTS", "response mismatched.");
+        Assert.assertEquals(it.next().toString(), "a2 NO NOOP failed", "response mismatched.");
+    }
+
+    /**
+     * Tests executeAll method does not send the remaining commands once the future for all of them is cancelled.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testExecuteAllCancelled() throws ImapAsyncClientException, IOException, ProtocolException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        Mockito.when(channel.newPromise()).thenReturn(Mockito.mock(ChannelPromise.class));
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, Mockito.mock(Logger.class), DebugMode.DEBUG_OFF, SESSION_ID,
+                pipeline, USER_ID);
+
+        final ImapFuture<ImapAsyncResponse> future = aSession.executeAll(Arrays.asList(new NoopCommand(), new NoopCommand()));
+        Assert.assertTrue(future.cancel(false), "Future should be cancelled.");
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK NOOP completed"));
+        Assert.assertTrue(future.isCancelled(), "isCancelled() should be true");
+        Mockito.verify(channel, Mockito.times(1)).writeAndFlush(Mockito.isA(ByteBuf.class), Mockito.isA(ChannelPromise.class));
+    }
+
+    /**
+     * Tests executeAll method fails when one of the commands fails, and the remaining commands are not sent.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteAllFailed() throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+        final ChannelFuture closeFuture = Mockito.mock(ChannelFuture.class);
+        Mockito.when(channel.close()).thenReturn(closeFuture);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+
+        ImapAsyncClientException ex = null;
+        try {
+            aSession.executeAll(new ArrayList<ImapRequest>());
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+
+        final ImapFuture<ImapAsyncResponse> future = aSession.executeAll(Arrays.asList(new NoopCommand(), new NoopCommand()));
+        aSession.handleChannelException(new RuntimeException("test"));
+        Assert.assertTrue(future.isDone(), "isDone() should be true now");
+        ExecutionException cause = null;
+        try {
+            future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (final ExecutionException e) {
+            cause = e;
+        }
+        Assert.assertNotNull(cause, "Expect exception to be thrown.");
+        Assert.assertTrue(cause.getCause() instanceof ImapAsyncClientException, "Cause mismatched.");
+        Mockito.verify(channel, Mockito.times(1)).writeAndFlush(Mockito.isA(ByteBuf.class), Mockito.isA(ChannelPromise.class));
+    }
+
+    /**
+     * Tests executing an append command streaming from an input stream on an encrypted connection, data is written after continuation in chunks.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws TimeoutException will not throw
+     * @throws ExecutionException will not throw
+     * @throws InterruptedException will not throw
+     */
+    @Test
+    public void testExecuteAppendStreamedChunked()
+            throws ImapAsyncClientException, IOException, ProtocolException, InterruptedException, ExecutionException, TimeoutException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(pipeline.get(ImapAsyncClient.SSL_HANDLER)).thenReturn(Mockito.mock(SslHandler.class));
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+
+        final byte[] msg = "Subject: hi\r\n\r\nbody".getBytes(StandardCharsets.US_ASCII);
+        final ImapFuture<ImapAsyncResponse> future = aSession.execute(new AppendCommand("Inbox", null, null, new ByteArrayInputStream(msg), msg.length));
+        Mockito.verify(channel, Mockito.times(0)).write(Mockito.any(), Mockito.isA(ChannelPromise.class));
+
+        aSession.handleChannelResponse(new IMAPResponse("+ Ready for literal data"));
+        Mockito.verify(pipeline, Mockito.times(1)).addLast(Mockito.eq("chunkedWriter"), Mockito.isA(ChunkedWriteHandler.class));
+        Mockito.verify(channel, Mockito.times(1)).write(Mockito.isA(ChunkedInput.class), Mockito.isA(ChannelPromise.class));
+
+        final ArgumentCaptor<ByteBuf> bufCapture = ArgumentCaptor.forClass(ByteBuf.class);
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(bufCapture.capture(), Mockito.isA(ChannelPromise.class));
+        final List<ByteBuf> bufs = bufCapture.getAllValues();
+        Assert.assertEquals(bufs.get(0).toString(StandardCharsets.US_ASCII), "a1 APPEND Inbox {19}\r\n", "Command line mismatched.");
+        Assert.assertEquals(bufs.get(1).toString(StandardCharsets.US_ASCII), "\r\n", "Command line mismatched.");
+
+        aSession.handleChannelResponse(new IMAPResponse("a1 OK [APPENDUID 1 2] APPEND completed"));
+        Assert.assertTrue(future.isDone(), "isDone() should be true now");
+        future.get(FUTURE_GET_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tests executing an append command streaming from a file with LITERAL+ on a plain connection, data is written with zero copy right after the
+     * command line.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IOException will not throw
+     */
+    @Test
+    public void testExecuteAppendStreamedFileRegionLiteralPlus() throws ImapAsyncClientException, IOException {
+        final Channel channel = Mockito.mock(Channel.class);
+        Mockito.when(channel.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ChannelPipeline pipeline = Mockito.mock(ChannelPipeline.class);
+        Mockito.when(channel.pipeline()).thenReturn(pipeline);
+        Mockito.when(channel.isActive()).thenReturn(true);
+        final ChannelPromise writePromise = Mockito.mock(ChannelPromise.class);
+        Mockito.when(channel.newPromise()).thenReturn(writePromise);
+
+        final Logger logger = Mockito.mock(Logger.class);
+        Mockito.when(logger.isDebugEnabled()).thenReturn(false);
+        final ImapAsyncSessionImpl aSession = new ImapAsyncSessionImpl(channel, logger, DebugMode.DEBUG_OFF, SESSION_ID, pipeline, USER_ID);
+
+        final File file = File.createTempFile("append", ".eml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "Subject: hi\r\n\r\nbody".getBytes(StandardCharsets.US_ASCII));
+        aSession.execute(new AppendCommand("Inbox", null, null, file, LiteralSupport.ENABLE_LITERAL_PLUS));
+
+        Mockito.verify(pipeline, Mockito.times(0)).addLast(Mockito.eq("chunkedWriter"), Mockito.any(ChannelHandler.class));
+        final ArgumentCaptor<Object> dataCapture = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(channel, Mockito.times(1)).write(dataCapture.capture(), Mockito.isA(ChannelPromise.class));
+        Assert.assertTrue(dataCapture.getValue() instanceof DefaultFileRegion, "Data message mismatched.");
+        ((DefaultFileRegion) dataCapture.getValue()).release();
+
+        final ArgumentCaptor<ByteBuf> bufCapture = ArgumentCaptor.forClass(ByteBuf.class);
+        Mockito.verify(channel, Mockito.times(2)).writeAndFlush(bufCapture.capture(), Mockito.isA(ChannelPromise.class));
+        final List<ByteBuf> bufs = bufCapture.getAllValues();
+        Assert.assertEquals(bufs.get(0).toString(StandardCharsets.US_ASCII), "a1 APPEND Inbox {19+}\r\n", "Command line mismatched.");
+        Assert.assertEquals(bufs.get(1).toString(StandardCharsets.US_ASCII), "\r\n", "Command line mismatched.");
+    }
+
     /**
      * Tests DebugMode enum.
      */
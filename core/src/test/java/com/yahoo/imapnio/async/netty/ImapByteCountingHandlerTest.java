@@ -0,0 +1,85 @@
+package com.yahoo.imapnio.async.netty;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.DefaultByteBufHolder;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.DefaultFileRegion;
+
+/**
+ * Unit test for {@code ImapByteCountingHandler}.
+ */
+public class ImapByteCountingHandlerTest {
+
+    /**
+     * Tests channelRead and write count the buffers of the channel and add them to the shared totals, passing all messages on.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCountBytes() throws Exception {
+        final LongAdder totalRead = new LongAdder();
+        final LongAdder totalWritten = new LongAdder();
+        final ImapByteCountingHandler handler1 = new ImapByteCountingHandler(totalRead, totalWritten);
+        final ImapByteCountingHandler handler2 = new ImapByteCountingHandler(totalRead, totalWritten);
+        final ChannelHandlerContext ctx = Mockito.mock(ChannelHandlerContext.class);
+        final ChannelPromise promise = Mockito.mock(ChannelPromise.class);
+
+        final ByteBuf response = Unpooled.copiedBuffer("* OK ready\r\n", StandardCharsets.US_ASCII);
+        handler1.channelRead(ctx, response);
+        handler1.channelRead(ctx, "not a buffer");
+        Mockito.verify(ctx, Mockito.times(1)).fireChannelRead(response);
+        Mockito.verify(ctx, Mockito.times(1)).fireChannelRead("not a buffer");
+
+        final DefaultByteBufHolder request = new DefaultByteBufHolder(Unpooled.copiedBuffer("a1 NOOP\r\n", StandardCharsets.US_ASCII));
+        handler1.write(ctx, request, promise);
+        handler2.write(ctx, Unpooled.copiedBuffer("a1 CAPABILITY\r\n", StandardCharsets.US_ASCII), promise);
+        Mockito.verify(ctx, Mockito.times(1)).write(request, promise);
+
+        Assert.assertEquals(handler1.getBytesRead(), 12L, "Bytes read mismatched.");
+        Assert.assertEquals(handler1.getBytesWritten(), 9L, "Bytes written mismatched.");
+        Assert.assertEquals(handler2.getBytesRead(), 0L, "Bytes read mismatched.");
+        Assert.assertEquals(handler2.getBytesWritten(), 15L, "Bytes written mismatched.");
+        Assert.assertEquals(totalRead.sum(), 12L, "Total bytes read mismatched.");
+        Assert.assertEquals(totalWritten.sum(), 24L, "Total bytes written mismatched.");
+    }
+
+    /**
+     * Tests the bytes of a file region written are counted.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCountFileRegionBytes() throws Exception {
+        final LongAdder totalRead = new LongAdder();
+        final LongAdder totalWritten = new LongAdder();
+        final ImapByteCountingHandler handler = new ImapByteCountingHandler(totalRead, totalWritten);
+        final ChannelHandlerContext ctx = Mockito.mock(ChannelHandlerContext.class);
+        final ChannelPromise promise = Mockito.mock(ChannelPromise.class);
+
+        final File file = File.createTempFile("imapnio", ".eml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "Subject: hello\r\n\r\nworld\r\n".getBytes(StandardCharsets.US_ASCII));
+        final DefaultFileRegion region = new DefaultFileRegion(file, 0, file.length());
+        try {
+            handler.write(ctx, region, promise);
+            Mockito.verify(ctx, Mockito.times(1)).write(region, promise);
+        } finally {
+            region.release();
+        }
+
+        Assert.assertEquals(handler.getBytesWritten(), 25L, "Bytes written mismatched.");
+        Assert.assertEquals(totalWritten.sum(), 25L, "Total bytes written mismatched.");
+        Assert.assertEquals(handler.getBytesRead(), 0L, "Bytes read mismatched.");
+    }
+}
@@ -0,0 +1,122 @@
+package com.yahoo.imapnio.async.netty;
+
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.client.ImapTenantScheduler;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * Unit test for {@code ImapFairDispatchHandler}.
+ */
+public class ImapFairDispatchHandlerTest {
+
+    /**
+     * @param s the string
+     * @return the buffer of the string
+     */
+    private ByteBuf toBuf(final String s) {
+        return Unpooled.copiedBuffer(s, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Tests frames beyond the tenant budget are queued with reading paused, and passed on in order in the next ticks. Frames are fired through
+     * the pipeline since writing inbound to the embedded channel runs the scheduled tasks, which ends the tick.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testDispatchWithinBudget() throws ImapAsyncClientException {
+        final ImapTenantScheduler scheduler = new ImapTenantScheduler(1024, 2);
+        final ImapFairDispatchHandler handler = new ImapFairDispatchHandler(scheduler, "batch");
+        final EmbeddedChannel channel = new EmbeddedChannel(handler);
+
+        for (int i = 0; i < 5; i++) {
+            channel.pipeline().fireChannelRead(toBuf("* " + (i + 1) + " FETCH (UID " + i + ")\r\n"));
+        }
+        channel.pipeline().fireChannelRead("not a frame");
+        Assert.assertEquals(((ByteBuf) channel.readInbound()).toString(StandardCharsets.US_ASCII), "* 1 FETCH (UID 0)\r\n", "Frame mismatched.");
+        Assert.assertEquals(((ByteBuf) channel.readInbound()).toString(StandardCharsets.US_ASCII), "* 2 FETCH (UID 1)\r\n", "Frame mismatched.");
+        Assert.assertEquals((Object) channel.readInbound(), "not a frame", "Other messages should not be queued.");
+        Assert.assertNull(channel.readInbound(), "Frames beyond budget should be queued.");
+        Assert.assertEquals(handler.getPendingCount(), 3, "Pending count mismatched.");
+        Assert.assertEquals(scheduler.getQueueDepth("batch"), 3L, "Queue depth mismatched.");
+        Assert.assertFalse(channel.config().isAutoRead(), "Reading should be paused.");
+
+        // the session pausing reading keeps it paused after the queue is drained
+        handler.setSessionReadPaused(true);
+        channel.runScheduledPendingTasks();
+        Assert.assertEquals(((ByteBuf) channel.readInbound()).toString(StandardCharsets.US_ASCII), "* 3 FETCH (UID 2)\r\n", "Frame mismatched.");
+        Assert.assertEquals(((ByteBuf) channel.readInbound()).toString(StandardCharsets.US_ASCII), "* 4 FETCH (UID 3)\r\n", "Frame mismatched.");
+        Assert.assertNull(channel.readInbound(), "Frames beyond budget should be queued.");
+        Assert.assertEquals(scheduler.getQueueDepth("batch"), 1L, "Queue depth mismatched.");
+        channel.runScheduledPendingTasks();
+        Assert.assertEquals(((ByteBuf) channel.readInbound()).toString(StandardCharsets.US_ASCII), "* 5 FETCH (UID 4)\r\n", "Frame mismatched.");
+        Assert.assertEquals(handler.getPendingCount(), 0, "Pending count mismatched.");
+        Assert.assertEquals(scheduler.getQueueDepth("batch"), 0L, "Queue depth mismatched.");
+        Assert.assertFalse(channel.config().isAutoRead(), "Reading should be paused by session.");
+        handler.setSessionReadPaused(false);
+        Assert.assertTrue(channel.config().isAutoRead(), "Reading should be resumed.");
+        channel.finish();
+    }
+
+    /**
+     * Tests replies written while handling deferred frames are flushed by flush consolidation, since every batch of deferred frames ends with read
+     * complete as a socket read does.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testDeferredDispatchWithFlushConsolidation() throws ImapAsyncClientException {
+        final ImapTenantScheduler scheduler = new ImapTenantScheduler(1024, 1);
+        final ImapFairDispatchHandler handler = new ImapFairDispatchHandler(scheduler, "batch");
+        final ChannelInboundHandlerAdapter replier = new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(final ChannelHandlerContext ctx, final Object msg) {
+                ((ByteBuf) msg).release();
+                ctx.writeAndFlush(toBuf("a1 NOOP\r\n"));
+            }
+        };
+        final EmbeddedChannel channel = new EmbeddedChannel(handler, new ImapFlushConsolidationHandler(16), replier);
+
+        channel.pipeline().fireChannelRead(toBuf("* 1 EXISTS\r\n"));
+        channel.pipeline().fireChannelRead(toBuf("* 2 EXISTS\r\n"));
+        channel.pipeline().fireChannelReadComplete();
+        Assert.assertEquals(channel.outboundMessages().size(), 1, "Reply to the first frame should be flushed.");
+        Assert.assertEquals(handler.getPendingCount(), 1, "Pending count mismatched.");
+
+        channel.runScheduledPendingTasks();
+        Assert.assertEquals(handler.getPendingCount(), 0, "Pending count mismatched.");
+        Assert.assertEquals(channel.outboundMessages().size(), 2, "Reply to the deferred frame should be flushed.");
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * Tests queued frames are passed on when the channel is closed.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testChannelInactive() throws ImapAsyncClientException {
+        final ImapTenantScheduler scheduler = new ImapTenantScheduler(1024, 1);
+        final ImapFairDispatchHandler handler = new ImapFairDispatchHandler(scheduler, "batch");
+        final EmbeddedChannel channel = new EmbeddedChannel(handler);
+        channel.pipeline().fireChannelRead(toBuf("* 1 EXISTS\r\n"));
+        channel.pipeline().fireChannelRead(toBuf("* BYE\r\n"));
+        Assert.assertEquals(scheduler.getQueueDepth("batch"), 1L, "Queue depth mismatched.");
+
+        channel.close();
+        Assert.assertEquals(((ByteBuf) channel.readInbound()).toString(StandardCharsets.US_ASCII), "* 1 EXISTS\r\n", "Frame mismatched.");
+        Assert.assertEquals(((ByteBuf) channel.readInbound()).toString(StandardCharsets.US_ASCII), "* BYE\r\n", "Frame mismatched.");
+        Assert.assertEquals(handler.getPendingCount(), 0, "Pending count mismatched.");
+        Assert.assertEquals(scheduler.getQueueDepth("batch"), 0L, "Queue depth mismatched.");
+    }
+}
@@ -0,0 +1,67 @@
+package com.yahoo.imapnio.async.netty;
+
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+/**
+ * Unit test for {@code ImapFlushConsolidationHandler}.
+ */
+public class ImapFlushConsolidationHandlerTest {
+
+    /**
+     * @param s the string
+     * @return the buffer of the string
+     */
+    private ByteBuf toBuf(final String s) {
+        return Unpooled.copiedBuffer(s, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Tests flushes outside of a read are consolidated till the event loop runs its pending tasks, or till the maximum is pending.
+     */
+    @Test
+    public void testFlushConsolidated() {
+        final EmbeddedChannel channel = new EmbeddedChannel(new ImapFlushConsolidationHandler(3));
+        channel.pipeline().writeAndFlush(toBuf("a1 STORE 1 +FLAGS (\\\\Seen)\r\n"));
+        channel.pipeline().writeAndFlush(toBuf("a2 STORE 2 +FLAGS (\\\\Seen)\r\n"));
+        Assert.assertEquals(channel.outboundMessages().size(), 0, "Flushes should be delayed.");
+        channel.runPendingTasks();
+        Assert.assertEquals(channel.outboundMessages().size(), 2, "Writes should be flushed together.");
+
+        channel.pipeline().writeAndFlush(toBuf("a3 NOOP\r\n"));
+        channel.pipeline().writeAndFlush(toBuf("a4 NOOP\r\n"));
+        channel.pipeline().writeAndFlush(toBuf("a5 NOOP\r\n"));
+        Assert.assertEquals(channel.outboundMessages().size(), 5, "Writes should be flushed once the maximum is pending.");
+        channel.runPendingTasks();
+        Assert.assertEquals(channel.outboundMessages().size(), 5, "Nothing should be pending.");
+
+        channel.pipeline().writeAndFlush(toBuf("a6 LOGOUT\r\n"));
+        channel.close();
+        Assert.assertEquals(channel.outboundMessages().size(), 6, "Writes should be flushed before close.");
+        channel.finish();
+        channel.releaseOutbound();
+    }
+
+    /**
+     * Tests flushes during a read are delayed till the read is complete.
+     */
+    @Test
+    public void testFlushDuringRead() {
+        final EmbeddedChannel channel = new EmbeddedChannel(new ImapFlushConsolidationHandler(256));
+        channel.pipeline().fireChannelRead("* 1 EXISTS");
+        channel.pipeline().writeAndFlush(toBuf("a1 FETCH 1 FLAGS\r\n"));
+        channel.runPendingTasks();
+        Assert.assertEquals(channel.outboundMessages().size(), 0, "Flushes should be delayed till read is complete.");
+        channel.pipeline().fireChannelReadComplete();
+        Assert.assertEquals(channel.outboundMessages().size(), 1, "Writes should be flushed once read is complete.");
+        Assert.assertEquals(channel.readInbound(), "* 1 EXISTS", "Read message should be passed on.");
+        channel.finish();
+        channel.releaseOutbound();
+    }
+}
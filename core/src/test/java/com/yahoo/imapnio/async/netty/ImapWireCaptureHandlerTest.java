@@ -0,0 +1,69 @@
+package com.yahoo.imapnio.async.netty;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.client.ImapWireCapture;
+import com.yahoo.imapnio.async.client.ImapWireCapture.Direction;
+import com.yahoo.imapnio.async.client.ImapWireCaptureDecoder;
+import com.yahoo.imapnio.async.client.ImapWireCaptureDecoder.Record;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.request.LoginCommand;
+import com.yahoo.imapnio.async.request.NoopCommand;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Unit test for {@code ImapWireCaptureHandler}.
+ */
+public class ImapWireCaptureHandlerTest {
+
+    /** Ring capacity used by the test. */
+    private static final int CAPACITY = 4096;
+
+    /**
+     * Tests server responses are captured and passed on, and sensitive requests are captured as their debug data.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testCapture() throws IOException, ImapAsyncClientException {
+        final Path file = Files.createTempFile("imapnio", ".ring");
+        try {
+            final ImapWireCapture capture = new ImapWireCapture(file, CAPACITY);
+            final ImapWireCaptureHandler handler = new ImapWireCaptureHandler(capture, 5L);
+            final ChannelHandlerContext ctx = Mockito.mock(ChannelHandlerContext.class);
+
+            final ByteBuf response = Unpooled.copiedBuffer("* OK ready\r\n", StandardCharsets.US_ASCII);
+            handler.channelRead(ctx, response);
+            handler.channelRead(ctx, "not a buffer");
+            Mockito.verify(ctx, Mockito.times(1)).fireChannelRead(response);
+            Mockito.verify(ctx, Mockito.times(1)).fireChannelRead("not a buffer");
+
+            handler.captureRequest(Unpooled.copiedBuffer("a1 NOOP\r\n", StandardCharsets.US_ASCII), new NoopCommand());
+            handler.captureRequest(Unpooled.copiedBuffer("a2 LOGIN joe secret\r\n", StandardCharsets.US_ASCII), new LoginCommand("joe", "secret"));
+            capture.close();
+
+            final List<Record> records = ImapWireCaptureDecoder.read(file);
+            Assert.assertEquals(records.size(), 3, "Record count mismatched.");
+            Assert.assertEquals(records.get(0).getDirection(), Direction.INBOUND, "Direction mismatched.");
+            Assert.assertEquals(records.get(0).getSessionId(), 5L, "Session id mismatched.");
+            Assert.assertEquals(new String(records.get(1).getPayload(), StandardCharsets.US_ASCII), "a1 NOOP\r\n", "Payload mismatched.");
+            Assert.assertEquals(records.get(1).getDirection(), Direction.OUTBOUND, "Direction mismatched.");
+            Assert.assertTrue(records.get(2).isRedacted(), "Should be redacted.");
+            Assert.assertEquals(new String(records.get(2).getPayload(), StandardCharsets.US_ASCII), "LOGIN FOR USER:joe", "Payload mismatched.");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
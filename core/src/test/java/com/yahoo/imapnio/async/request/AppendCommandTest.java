@@ -1,9 +1,15 @@
 package com.yahoo.imapnio.async.request;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
@@ -20,6 +26,9 @@ import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.stream.ChunkedNioFile;
 
 /**
  * Unit test for {@code AppendCommand}.
@@ -90,12 +99,13 @@ public class AppendCommandTest {
 
         // verify getNextCommandLineAfterContinuation()
         final IMAPResponse serverResponse = null; // we dont care
-        final ByteBuf bytebuf = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf bytebuf = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertNotNull(bytebuf, "Expected result mismatched.");
 
         final byte[] actual = new byte[len];
         bytebuf.getBytes(0, actual, 0, len);
         Assert.assertEquals(actual, expectedMsg, "Expected result mismatched.");
+        bytebuf.release();
 
         cmd.cleanup();
         // Verify if cleanup happened correctly.
@@ -104,6 +114,132 @@ public class AppendCommandTest {
         }
     }
 
+    /**
+     * Tests getCommandLine and continuation when message data is streamed from a file.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testStreamedFile() throws Exception {
+        final File file = File.createTempFile("append", ".eml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), TEST_MSG_BYTE);
+
+        final AppendCommand cmd = new AppendCommand("Inbox", null, null, file);
+        Assert.assertTrue(cmd.isDataStreamed(), "Expected result mismatched.");
+        Assert.assertFalse(cmd.isNonSynchronizingLiteral(), "Expected result mismatched.");
+        Assert.assertEquals(cmd.getCommandLine(), "APPEND Inbox {300}\r\n", "Expected result mismatched.");
+
+        // data is streamed separately, only the literal end is returned after continuation
+        final ByteBuf bytebuf = cmd.getNextCommandLineAfterContinuation(null, UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(bytebuf.toString(StandardCharsets.US_ASCII), "\r\n", "Expected result mismatched.");
+        bytebuf.release();
+
+        final Object region = cmd.getStreamedData(true);
+        Assert.assertTrue(region instanceof DefaultFileRegion, "Expected result mismatched.");
+        Assert.assertEquals(((DefaultFileRegion) region).count(), TEST_MSG_BYTE.length, "Expected result mismatched.");
+        ((DefaultFileRegion) region).release();
+
+        final Object chunked = cmd.getStreamedData(false);
+        Assert.assertTrue(chunked instanceof ChunkedNioFile, "Expected result mismatched.");
+        Assert.assertEquals(((ChunkedNioFile) chunked).length(), TEST_MSG_BYTE.length, "Expected result mismatched.");
+        final ByteBuf chunk = ((ChunkedNioFile) chunked).readChunk(UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(chunk.toString(StandardCharsets.UTF_8), TEST_MSG_STR, "Expected result mismatched.");
+        Assert.assertTrue(((ChunkedNioFile) chunked).isEndOfInput(), "Expected result mismatched.");
+        chunk.release();
+        ((ChunkedNioFile) chunked).close();
+
+        cmd.cleanup();
+        // Verify if cleanup happened correctly.
+        for (final Field field : fieldsToCheck) {
+            Assert.assertNull(field.get(cmd), "Cleanup should set " + field.getName() + " as null");
+        }
+    }
+
+    /**
+     * Tests streaming message data from a file channel and an input stream with LITERAL+.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testStreamedChannelAndInputStreamLiteralPlus() throws Exception {
+        final File file = File.createTempFile("append", ".eml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), TEST_MSG_BYTE);
+
+        final FileChannel fileChannel = FileChannel.open(file.toPath());
+        final AppendCommand fileCmd = new AppendCommand("Inbox", null, null, fileChannel, TEST_MSG_BYTE.length, LiteralSupport.ENABLE_LITERAL_PLUS);
+        Assert.assertTrue(fileCmd.isNonSynchronizingLiteral(), "Expected result mismatched.");
+        // data is not part of the command line, session writes it right after
+        Assert.assertEquals(fileCmd.getCommandLine(), "APPEND Inbox {300+}\r\n", "Expected result mismatched.");
+        Assert.assertTrue(fileCmd.getStreamedData(false) instanceof ChunkedNioFile, "Expected result mismatched.");
+        final Object region = fileCmd.getStreamedData(true);
+        Assert.assertTrue(region instanceof DefaultFileRegion, "Expected result mismatched.");
+        ((DefaultFileRegion) region).release(); // closes the file channel
+
+        final AppendCommand streamCmd = new AppendCommand("Inbox", null, null, new ByteArrayInputStream(TEST_MSG_BYTE), TEST_MSG_BYTE.length,
+                LiteralSupport.ENABLE_LITERAL_PLUS);
+        Assert.assertEquals(streamCmd.getCommandLine(), "APPEND Inbox {300+}\r\n", "Expected result mismatched.");
+        final Object chunked = streamCmd.getStreamedData(true);
+        Assert.assertTrue(chunked instanceof LiteralChunkedInput, "Expected result mismatched.");
+        final ByteBuf chunk = ((LiteralChunkedInput) chunked).readChunk(UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(chunk.toString(StandardCharsets.UTF_8), TEST_MSG_STR, "Expected result mismatched.");
+        chunk.release();
+        ImapAsyncClientException ex = null;
+        try {
+            streamCmd.getNextCommandLineAfterContinuation(null, UnpooledByteBufAllocator.DEFAULT);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND, "Expected result mismatched.");
+
+        final AppendCommand channelCmd = new AppendCommand("Inbox", null, null, Channels.newChannel(new ByteArrayInputStream(TEST_MSG_BYTE)),
+                TEST_MSG_BYTE.length);
+        Assert.assertTrue(channelCmd.getStreamedData(false) instanceof LiteralChunkedInput, "Expected result mismatched.");
+    }
+
+    /**
+     * Tests the source of streamed data is closed when the command ends without writing the data, and left to the message writing it otherwise.
+     *
+     * @throws Exception will not throw
+     */
+    @Test
+    public void testCleanupClosesUnwrittenSource() throws Exception {
+        final ReadableByteChannel unwritten = Channels.newChannel(new ByteArrayInputStream(TEST_MSG_BYTE));
+        final AppendCommand rejectedCmd = new AppendCommand("Inbox", null, null, unwritten, TEST_MSG_BYTE.length);
+        Assert.assertEquals(rejectedCmd.getCommandLine(), "APPEND Inbox {300}\r\n", "Expected result mismatched.");
+        rejectedCmd.cleanup(); // server responded NO to the command line
+        Assert.assertFalse(unwritten.isOpen(), "Source should be closed.");
+
+        final ReadableByteChannel written = Channels.newChannel(new ByteArrayInputStream(TEST_MSG_BYTE));
+        final AppendCommand writtenCmd = new AppendCommand("Inbox", null, null, written, TEST_MSG_BYTE.length);
+        final LiteralChunkedInput input = (LiteralChunkedInput) writtenCmd.getStreamedData(false);
+        writtenCmd.cleanup();
+        Assert.assertTrue(written.isOpen(), "Source should be left to the message writing it.");
+        input.close();
+        Assert.assertFalse(written.isOpen(), "Source should be closed.");
+    }
+
+    /**
+     * Tests getStreamedData when message data is in memory.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testGetStreamedDataNotStreamed() throws ImapAsyncClientException {
+        final AppendCommand cmd = new AppendCommand("Inbox", null, null, TEST_MSG_BYTE);
+        Assert.assertFalse(cmd.isDataStreamed(), "Expected result mismatched.");
+        ImapAsyncClientException ex = null;
+        try {
+            cmd.getStreamedData(true);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND, "Expected result mismatched.");
+    }
+
     /**
      * Tests getCommandLine method.
      *
@@ -127,7 +263,9 @@ public class AppendCommandTest {
         final int startLen = expectedStart.length();
         final String dataLenStr = " {300+}\r\n";
         // we only have ascii in the binary
-        final String actualCmdLine = cmd.getCommandLineBytes().toString(StandardCharsets.UTF_8);
+        final ByteBuf cmdLineBytes = cmd.getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
+        final String actualCmdLine = cmdLineBytes.toString(StandardCharsets.UTF_8);
+        cmdLineBytes.release();
         Assert.assertNotNull(actualCmdLine, "Command line mismatched.");
         // do not compare timezone part since it depends on which slave machine it runs
         Assert.assertEquals(actualCmdLine.substring(0, startLen), expectedStart, "Expected result mismatched.");
@@ -140,7 +278,7 @@ public class AppendCommandTest {
         final IMAPResponse serverResponse = null; // we dont care
         ImapAsyncClientException actual = null;
         try {
-            cmd.getNextCommandLineAfterContinuation(serverResponse);
+            cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException e) {
             actual = e;
         }
@@ -177,7 +315,9 @@ public class AppendCommandTest {
         final int startLen = expectedStart.length();
         final String dataLenStr = " {300-}\r\n";
         // we only have ascii in the binary
-        final String actualCmdLine = cmd.getCommandLineBytes().toString(StandardCharsets.UTF_8);
+        final ByteBuf cmdLineBytes = cmd.getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
+        final String actualCmdLine = cmdLineBytes.toString(StandardCharsets.UTF_8);
+        cmdLineBytes.release();
         Assert.assertNotNull(actualCmdLine, "Command line mismatched.");
         // do not compare timezone part since it depends on which slave machine it runs
         Assert.assertEquals(actualCmdLine.substring(0, startLen), expectedStart, "Expected result mismatched.");
@@ -190,7 +330,7 @@ public class AppendCommandTest {
         final IMAPResponse serverResponse = null; // we dont care
         ImapAsyncClientException actual = null;
         try {
-            cmd.getNextCommandLineAfterContinuation(serverResponse);
+            cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException e) {
             actual = e;
         }
@@ -254,7 +394,7 @@ public class AppendCommandTest {
         final ImapRequest cmd = new AppendCommand("Inbox", expectedFlags, internalDate, expectedMsg);
         ImapAsyncClientException ex = null;
         try {
-            cmd.getTerminateCommandLine();
+            cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
@@ -23,6 +23,7 @@ import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * Unit test for {@code AuthOauthBearerCommand}.
@@ -108,10 +109,11 @@ public class AuthOauthBearerCommandTest {
         final IMAPResponse serverResponse = null; // null or not null does not matter
 
         // asks for the next command
-        final ByteBuf resp2 = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf resp2 = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertEquals(resp2.toString(StandardCharsets.US_ASCII),
                 "bixhPXVzZXJAZXhhbXBsZS5jb20sAWhvc3Q9c2VydmVyLmV4YW1wbGUuY29tAXBvcnQ9OTkzAWF1dGg9QmVhcmVyIHNlbGZkcml2aW5nAQE=\r\n",
                 "Expected result mismatched.");
+        resp2.release();
         Assert.assertTrue(cmd.isCommandLineDataSensitive(), "isCommandLineDataSensitive() result mismatched.");
 
         cmd.cleanup();
@@ -162,9 +164,10 @@ public class AuthOauthBearerCommandTest {
         // asks the next command after continuation with server error response encoded in base64
         final IMAPResponse serverResponse = new IMAPResponse(
                 "+ eyJzdGF0dXMiOiI0MDAiLCJzY2hlbWVzIjoiQmVhcmVyIiwic2NvcGUiOiJodHRwczovL21haWwuZ29vZ2xlLmNvbS8ifQ==");
-        final ByteBuf nextClientReq = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf nextClientReq = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertNotNull(nextClientReq, "expected command from client mismatched.");
         Assert.assertEquals(nextClientReq.toString(StandardCharsets.US_ASCII), "*\r\n", "expected command from client mismatched.");
+        nextClientReq.release();
         Assert.assertFalse(cmd.isCommandLineDataSensitive(), "isCommandLineDataSensitive() result mismatched.");
     }
 
@@ -182,7 +185,7 @@ public class AuthOauthBearerCommandTest {
         final ImapRequest cmd = new AuthOauthBearerCommand(emailId, hostname, port, token, new Capability(capas));
         ImapAsyncClientException ex = null;
         try {
-            cmd.getTerminateCommandLine();
+            cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
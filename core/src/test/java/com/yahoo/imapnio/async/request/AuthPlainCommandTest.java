@@ -21,6 +21,7 @@ import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * Unit test for {@code AuthPlainCommand}.
@@ -74,9 +75,10 @@ public class AuthPlainCommandTest {
 
         final IMAPResponse serverResponse = new IMAPResponse(
                 "+ eyJzdGF0dXMiOiI0MDAiLCJzY2hlbWVzIjoiQmVhcmVyIiwic2NvcGUiOiJodHRwczovL21haWwuZ29vZ2xlLmNvbS8ifQ==");
-        final ByteBuf nextClientReq = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf nextClientReq = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertNotNull(nextClientReq, "expected command from client mismatched.");
         Assert.assertEquals(nextClientReq.toString(StandardCharsets.US_ASCII), "*\r\n", "expected command from client mismatched.");
+        nextClientReq.release();
         Assert.assertFalse(cmd.isCommandLineDataSensitive(), "isCommandLineDataSensitive() result mismatched.");
 
         cmd.cleanup();
@@ -114,9 +116,10 @@ public class AuthPlainCommandTest {
         // asks the next command after continuation
         final IMAPResponse serverResponse = new IMAPResponse(
                 "+ eyJzdGF0dXMiOiI0MDAiLCJzY2hlbWVzIjoiQmVhcmVyIiwic2NvcGUiOiJodHRwczovL21haWwuZ29vZ2xlLmNvbS8ifQ==");
-        final ByteBuf nextClientReq = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf nextClientReq = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertNotNull(nextClientReq, "expected command from client mismatched.");
         Assert.assertEquals(nextClientReq.toString(StandardCharsets.US_ASCII), "*\r\n", "expected command from client mismatched.");
+        nextClientReq.release();
         Assert.assertFalse(cmd.isCommandLineDataSensitive(), "isCommandLineDataSensitive() result mismatched.");
 
         cmd.cleanup();
@@ -148,9 +151,10 @@ public class AuthPlainCommandTest {
 
         // verify getNextCommandLineAfterContinuation()
         final IMAPResponse serverResponse = null; // should not cause anything if it is null
-        final ByteBuf base64 = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf base64 = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertNotNull(base64, "Expected result mismatched.");
         Assert.assertEquals(base64.toString(StandardCharsets.US_ASCII), "AHRlc2xhAHNlbGZkcml2aW5n\r\n", "Expected result mismatched.");
+        base64.release();
         Assert.assertTrue(cmd.isCommandLineDataSensitive(), "isCommandLineDataSensitive() result mismatched.");
 
         cmd.cleanup();
@@ -179,7 +183,7 @@ public class AuthPlainCommandTest {
         final ImapRequest cmd = new AuthPlainCommand("tesla", "selfdriving", new Capability(capas));
         ImapAsyncClientException ex = null;
         try {
-            cmd.getTerminateCommandLine();
+            cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
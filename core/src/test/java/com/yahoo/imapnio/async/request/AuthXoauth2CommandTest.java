@@ -23,6 +23,7 @@ import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * Unit test for {@code AuthXoauth2Command}.
@@ -102,9 +103,10 @@ public class AuthXoauth2CommandTest {
 
         // asks the next command after continuation
         final IMAPResponse serverResponse = null; // null or not null does not matter
-        final ByteBuf resp2 = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf resp2 = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertEquals(resp2.toString(StandardCharsets.US_ASCII), "dXNlcj10ZXNsYQFhdXRoPUJlYXJlciBzZWxmZHJpdmluZwEB\r\n",
                 "Expected result mismatched.");
+        resp2.release();
         Assert.assertTrue(cmd.isCommandLineDataSensitive(), "isCommandLineDataSensitive() result mismatched.");
 
         cmd.cleanup();
@@ -151,9 +153,10 @@ public class AuthXoauth2CommandTest {
         // asks the next command after continuation with server error response encoded in base64
         final IMAPResponse serverResponse = new IMAPResponse(
                 "+ eyJzdGF0dXMiOiI0MDAiLCJzY2hlbWVzIjoiQmVhcmVyIiwic2NvcGUiOiJodHRwczovL21haWwuZ29vZ2xlLmNvbS8ifQ==");
-        final ByteBuf nextClientReq = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf nextClientReq = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertNotNull(nextClientReq, "expected command from client mismatched.");
         Assert.assertEquals(nextClientReq.toString(StandardCharsets.US_ASCII), "*\r\n", "expected command from client mismatched.");
+        nextClientReq.release();
         Assert.assertFalse(cmd.isCommandLineDataSensitive(), "isCommandLineDataSensitive() result mismatched.");
     }
 
@@ -169,7 +172,7 @@ public class AuthXoauth2CommandTest {
         final ImapRequest cmd = new AuthXoauth2Command(username, token, new Capability(capas));
         ImapAsyncClientException ex = null;
         try {
-            cmd.getTerminateCommandLine();
+            cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
@@ -15,6 +15,8 @@ import org.testng.annotations.Test;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
+import io.netty.buffer.UnpooledByteBufAllocator;
+
 /**
  * Unit test for {@code CapaCommand}.
  */
@@ -82,7 +84,7 @@ public class CapaCommandTest {
         final IMAPResponse serverResponse = null; // null or not null does not matter
         ImapAsyncClientException ex = null;
         try {
-            cmd.getNextCommandLineAfterContinuation(serverResponse);
+            cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
@@ -99,7 +101,7 @@ public class CapaCommandTest {
         final ImapRequest cmd = new CapaCommand();
         ImapAsyncClientException ex = null;
         try {
-            cmd.getTerminateCommandLine();
+            cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
@@ -12,6 +12,8 @@ import org.testng.annotations.Test;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
+import io.netty.buffer.UnpooledByteBufAllocator;
+
 public class EnableCommandTest {
     /** All capabilities to obtain. */
     private static final String[] CAPABILITIES = { "X-ALL-MAIL", "CONDSTORE" };
@@ -74,7 +76,7 @@ public class EnableCommandTest {
         final IMAPResponse serverResponse = null; // null or not null does not matter
         ImapAsyncClientException ex = null;
         try {
-            cmd.getNextCommandLineAfterContinuation(serverResponse);
+            cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
@@ -91,7 +93,7 @@ public class EnableCommandTest {
         final ImapRequest cmd = new EnableCommand(CAPABILITIES);
         ImapAsyncClientException ex = null;
         try {
-            cmd.getTerminateCommandLine();
+            cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
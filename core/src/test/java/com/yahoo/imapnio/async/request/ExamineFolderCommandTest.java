@@ -92,6 +92,22 @@ public class ExamineFolderCommandTest {
         Assert.assertEquals(cmd.getCommandLine(), EXAMINE + "&bUuL1Q-\r\n", "Expected result mismatched.");
     }
 
+    /**
+     * Tests getCommandLine method with QRESYNC parameter, and the folder name.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws SearchException will not throw
+     * @throws IOException will not throw
+     */
+    @Test
+    public void testGetCommandLineWithQResync() throws ImapAsyncClientException, SearchException, IOException {
+        final ExamineFolderCommand cmd = new ExamineFolderCommand("folder ABC", 67890007L, 20050715194045000L);
+        Assert.assertEquals(cmd.getFolderName(), "folder ABC", "Folder name mismatched.");
+        Assert.assertEquals(cmd.getCommandLine(), EXAMINE + "\"folder ABC\" (QRESYNC (67890007 20050715194045000))\r\n", "Expected result mismatched.");
+        cmd.cleanup();
+        Assert.assertNull(cmd.getFolderName(), "Folder name should be cleaned up.");
+    }
+
     /**
      * Tests getCommandType method.
      */
@@ -7,6 +7,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 import javax.mail.search.SearchException;
 
@@ -18,6 +19,7 @@ import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * Unit test for {@code IdleCommand}.
@@ -79,6 +81,31 @@ public class IdleCommandTest {
         Assert.assertEquals(cmd.getStreamingResponsesQueue(), serverStreamingResponses, "Expected result mismatched.");
     }
 
+    /**
+     * Tests getResponseConsumer method.
+     *
+     * @throws IllegalAccessException will not throw
+     * @throws IllegalArgumentException will not throw
+     */
+    @Test
+    public void testGetResponseConsumer() throws IllegalArgumentException, IllegalAccessException {
+        final Consumer<IMAPResponse> consumer = new Consumer<IMAPResponse>() {
+            @Override
+            public void accept(final IMAPResponse response) {
+            }
+        };
+        final IdleCommand cmd = new IdleCommand(consumer);
+        Assert.assertSame(cmd.getResponseConsumer(), consumer, "Expected result mismatched.");
+        Assert.assertNull(cmd.getStreamingResponsesQueue(), "Expected result mismatched.");
+        Assert.assertNull(new IdleCommand(new ConcurrentLinkedQueue<IMAPResponse>()).getResponseConsumer(), "Expected result mismatched.");
+
+        cmd.cleanup();
+        // Verify if cleanup happened correctly.
+        for (final Field field : fieldsToCheck) {
+            Assert.assertNull(field.get(cmd), "Cleanup should set " + field.getName() + " as null");
+        }
+    }
+
     /**
      * Tests getNextCommandLineAfterContinuation method.
      */
@@ -87,7 +114,7 @@ public class IdleCommandTest {
         final ConcurrentLinkedQueue<IMAPResponse> serverStreamingResponses = new ConcurrentLinkedQueue<IMAPResponse>();
         final IdleCommand cmd = new IdleCommand(serverStreamingResponses);
         final IMAPResponse serverResponse = null; // null or not null does not matter
-        final ByteBuf s = cmd.getNextCommandLineAfterContinuation(serverResponse);
+        final ByteBuf s = cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         Assert.assertNull(s, "Expect exception to be thrown.");
     }
 
@@ -102,7 +129,9 @@ public class IdleCommandTest {
     public void testGetTerminateCommandLine() throws ImapAsyncClientException, IllegalArgumentException, IllegalAccessException {
         final ConcurrentLinkedQueue<IMAPResponse> serverStreamingResponses = new ConcurrentLinkedQueue<IMAPResponse>();
         final ImapRequest cmd = new IdleCommand(serverStreamingResponses);
-        Assert.assertEquals(cmd.getTerminateCommandLine().toString(StandardCharsets.US_ASCII), "DONE\r\n", "Expected result mismatched.");
+        final ByteBuf done = cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(done.toString(StandardCharsets.US_ASCII), "DONE\r\n", "Expected result mismatched.");
+        done.release();
 
         cmd.cleanup();
         // Verify if cleanup happened correctly.
@@ -3,6 +3,8 @@ package com.yahoo.imapnio.async.request;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
+import javax.mail.Flags;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -30,6 +32,7 @@ public class ImapArgumentFormatterByteBufTest {
         final boolean doQuote = false;
         writer.formatArgument(src, out, doQuote);
         Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "Bulk", "Encoded result mismatched.");
+        out.release();
     }
 
     /**
@@ -49,6 +52,7 @@ public class ImapArgumentFormatterByteBufTest {
             final boolean doQuote = false;
             writer.formatArgument(src, out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "a\r", "Encoded result mismatched.");
+            out.release();
         }
         // \n
         {
@@ -59,6 +63,7 @@ public class ImapArgumentFormatterByteBufTest {
             final boolean doQuote = false;
             writer.formatArgument(src, out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "a\n", "Encoded result mismatched.");
+            out.release();
         }
         // \0
         {
@@ -69,6 +74,7 @@ public class ImapArgumentFormatterByteBufTest {
             final boolean doQuote = false;
             writer.formatArgument(src, out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "a\0", "Encoded result mismatched.");
+            out.release();
         }
         // Char ascii code > 127
         {
@@ -85,6 +91,43 @@ public class ImapArgumentFormatterByteBufTest {
             }
             Assert.assertNotNull(actual, "Should throw exception");
             Assert.assertEquals(actual.getFaiureType(), ImapAsyncClientException.FailureType.INVALID_INPUT, "Should throw exception");
+            out.release();
+        }
+    }
+
+    /**
+     * Tests chars above 127 whose low byte is a control or syntax char, such as U+010A (LF) and U+0122 (double quote), are rejected instead of being
+     * truncated to that byte, with nothing left written.
+     *
+     * @throws IOException will not throw
+     */
+    @Test
+    public void testSourceNonAsciiNotTruncated() throws IOException {
+        final ImapArgumentFormatter writer = new ImapArgumentFormatter();
+        for (final String src : new String[] { "pass\u010Aa1 DELETE INBOX", "pa\u0122ss", "a b\u010A", "\u0122" }) {
+            for (final boolean doQuote : new boolean[] { true, false }) {
+                final ByteBuf out = Unpooled.buffer();
+                out.writeByte('x');
+                ImapAsyncClientException actual = null;
+                try {
+                    writer.formatArgument(src, out, doQuote);
+                } catch (final ImapAsyncClientException e) {
+                    actual = e;
+                }
+                Assert.assertNotNull(actual, "Should throw exception");
+                Assert.assertEquals(actual.getFaiureType(), ImapAsyncClientException.FailureType.INVALID_INPUT, "Failure type mismatched.");
+                Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "x", "Nothing should be written.");
+
+                actual = null;
+                try {
+                    writer.formatArgument(src, new StringBuilder(), doQuote);
+                } catch (final ImapAsyncClientException e) {
+                    actual = e;
+                }
+                Assert.assertNotNull(actual, "Should throw exception");
+                Assert.assertEquals(actual.getFaiureType(), ImapAsyncClientException.FailureType.INVALID_INPUT, "Failure type mismatched.");
+                out.release();
+            }
         }
     }
 
@@ -103,36 +146,43 @@ public class ImapArgumentFormatterByteBufTest {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("B*", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"B*\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("B%", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"B%\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("B(", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"B(\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("B)", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"B)\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("B{", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"B{\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("B\"", out, doQuote); // excpects double quote and escape
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"B\\\"\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("B\\", out, doQuote); // excpects double quote and escape
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"B\\\\\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
@@ -140,12 +190,14 @@ public class ImapArgumentFormatterByteBufTest {
             final String src = Character.toString(c);
             writer.formatArgument(src, out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
             final String src = ""; // empty string
             writer.formatArgument(src, out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"\"", "Encoded result mismatched.");
+            out.release();
         }
     }
 
@@ -163,30 +215,95 @@ public class ImapArgumentFormatterByteBufTest {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("NIL", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"NIL\"", "Encoded result mismatched.");
+            out.release();
         }
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("nil", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "\"nil\"", "Encoded result mismatched.");
+            out.release();
         }
         // test false positive: qualify first 2 letters
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("NIi", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "NIi", "Encoded result mismatched.");
+            out.release();
         }
         // test false positive: qualify first letter
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("NxL", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "NxL", "Encoded result mismatched.");
+            out.release();
         }
         // test false positive: 3 chars
         {
             final ByteBuf out = Unpooled.buffer();
             writer.formatArgument("LIN", out, doQuote);
             Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "LIN", "Encoded result mismatched.");
+            out.release();
         }
     }
 
+    /**
+     * Tests quotes and escapes are added when the chars requiring them come after other chars, and existing buffer content is kept.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testQuoteAfterPrefixWithExistingContent() throws ImapAsyncClientException {
+        final ImapArgumentFormatter writer = ImapArgumentFormatter.INSTANCE;
+        final ByteBuf out = Unpooled.buffer(4);
+        out.writeBytes("SELECT ".getBytes(StandardCharsets.US_ASCII));
+        writer.formatArgument("Sent Items \"2019\" \\ old", out, false);
+        Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "SELECT \"Sent Items \\\"2019\\\" \\\\ old\"", "Encoded result mismatched.");
+
+        out.writeByte(' ');
+        writer.formatArgument("Inbox", out, true);
+        Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "SELECT \"Sent Items \\\"2019\\\" \\\\ old\" \"Inbox\"",
+                "Encoded result mismatched.");
+        out.release();
+    }
+
+    /**
+     * Tests buffer content is restored when the source is invalid or must be sent as it is after some chars were written.
+     */
+    @Test
+    public void testRewindOnInvalidSource() {
+        final ImapArgumentFormatter writer = ImapArgumentFormatter.INSTANCE;
+        final ByteBuf out = Unpooled.buffer();
+        out.writeBytes("LIST ".getBytes(StandardCharsets.US_ASCII));
+        ImapAsyncClientException actual = null;
+        try {
+            writer.formatArgument("ab c\u00FF", out, false);
+        } catch (final ImapAsyncClientException e) {
+            actual = e;
+        }
+        Assert.assertNotNull(actual, "Should throw exception");
+        Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), "LIST ", "Encoded result mismatched.");
+        out.release();
+    }
+
+    /**
+     * Tests writeFlags writes the same flag list as buildFlagString.
+     */
+    @Test
+    public void testWriteFlags() {
+        final ImapArgumentFormatter writer = ImapArgumentFormatter.INSTANCE;
+        final Flags flags = new Flags();
+        flags.add(Flags.Flag.SEEN);
+        flags.add(Flags.Flag.DELETED);
+        flags.add(Flags.Flag.USER);
+        flags.add("$Junk");
+        final ByteBuf out = Unpooled.buffer();
+        writer.writeFlags(flags, out);
+        Assert.assertEquals(out.toString(StandardCharsets.US_ASCII), writer.buildFlagString(flags), "Encoded result mismatched.");
+
+        final ByteBuf empty = Unpooled.buffer();
+        writer.writeFlags(new Flags(), empty);
+        Assert.assertEquals(empty.toString(StandardCharsets.US_ASCII), "()", "Encoded result mismatched.");
+        out.release();
+        empty.release();
+    }
 }
@@ -0,0 +1,110 @@
+package com.yahoo.imapnio.async.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Unit test for {@code LiteralChunkedInput}.
+ */
+public class LiteralChunkedInputTest {
+
+    /**
+     * Tests reading stops at the literal length even if the source has more data.
+     *
+     * @throws IOException will not throw
+     */
+    @SuppressWarnings("deprecation")
+    @Test
+    public void testReadChunkStopsAtLength() throws IOException {
+        final byte[] src = new byte[LiteralChunkedInput.CHUNK_SIZE + 20];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = (byte) ('a' + i % 26);
+        }
+        final int len = LiteralChunkedInput.CHUNK_SIZE + 10;
+        final ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(src));
+        final LiteralChunkedInput input = new LiteralChunkedInput(in, len);
+        Assert.assertEquals(input.length(), len, "Expected result mismatched.");
+        Assert.assertFalse(input.isEndOfInput(), "Expected result mismatched.");
+
+        final ByteBuf first = input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(first.readableBytes(), LiteralChunkedInput.CHUNK_SIZE, "Expected result mismatched.");
+        Assert.assertEquals(input.progress(), LiteralChunkedInput.CHUNK_SIZE, "Expected result mismatched.");
+        first.release();
+
+        final ChannelHandlerContext ctx = Mockito.mock(ChannelHandlerContext.class);
+        Mockito.when(ctx.alloc()).thenReturn(UnpooledByteBufAllocator.DEFAULT);
+        final ByteBuf second = input.readChunk(ctx);
+        Assert.assertEquals(second.readableBytes(), 10, "Expected result mismatched.");
+        Assert.assertEquals(second.getByte(0), src[LiteralChunkedInput.CHUNK_SIZE], "Expected result mismatched.");
+        second.release();
+
+        Assert.assertTrue(input.isEndOfInput(), "Expected result mismatched.");
+        Assert.assertNull(input.readChunk(UnpooledByteBufAllocator.DEFAULT), "Expected result mismatched.");
+        input.close();
+        Assert.assertFalse(in.isOpen(), "Expected result mismatched.");
+    }
+
+    /**
+     * Tests reading fails when the source ends before the literal length.
+     *
+     * @throws IOException will not throw
+     */
+    @Test
+    public void testReadChunkSourceTooShort() throws IOException {
+        final byte[] src = "short".getBytes(StandardCharsets.US_ASCII);
+        final LiteralChunkedInput input = new LiteralChunkedInput(Channels.newChannel(new ByteArrayInputStream(src)), src.length + 1);
+        EOFException ex = null;
+        try {
+            input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+        } catch (final EOFException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+    }
+
+    /**
+     * Tests a source having no data for now is read again till it has some, and given up on when it never has.
+     *
+     * @throws IOException will not throw
+     */
+    @Test
+    public void testReadChunkSourceWithoutDataForNow() throws IOException {
+        final ReadableByteChannel in = Mockito.mock(ReadableByteChannel.class);
+        Mockito.when(in.read(Mockito.any(ByteBuffer.class))).thenReturn(0).thenReturn(0).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(final InvocationOnMock invocation) {
+                ((ByteBuffer) invocation.getArguments()[0]).put((byte) 'a').put((byte) 'b');
+                return 2;
+            }
+        }).thenReturn(0);
+        final LiteralChunkedInput input = new LiteralChunkedInput(in, 3);
+        final ByteBuf chunk = input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(chunk.toString(StandardCharsets.US_ASCII), "ab", "Partial chunk should be returned.");
+        chunk.release();
+        Assert.assertEquals(input.progress(), 2L, "Expected result mismatched.");
+
+        IOException ex = null;
+        try {
+            input.readChunk(UnpooledByteBufAllocator.DEFAULT);
+        } catch (final IOException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Mockito.verify(in, Mockito.times(4 + LiteralChunkedInput.MAX_EMPTY_READS)).read(Mockito.any(ByteBuffer.class));
+    }
+}
@@ -8,6 +8,7 @@ import java.util.Set;
 
 import javax.mail.search.SearchException;
 
+import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -15,6 +16,11 @@ import org.testng.annotations.Test;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
 /**
  * Unit test for {@code LoginCommand}.
  */
@@ -110,7 +116,7 @@ public class LoginCommandTest {
         final IMAPResponse serverResponse = null; // null or not null does not matter
         ImapAsyncClientException ex = null;
         try {
-            cmd.getNextCommandLineAfterContinuation(serverResponse);
+            cmd.getNextCommandLineAfterContinuation(serverResponse, UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
@@ -127,7 +133,7 @@ public class LoginCommandTest {
         final ImapRequest cmd = new LoginCommand("tesla", "selfdriving");
         ImapAsyncClientException ex = null;
         try {
-            cmd.getTerminateCommandLine();
+            cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
         } catch (final ImapAsyncClientException imapAsyncEx) {
             ex = imapAsyncEx;
         }
@@ -144,4 +150,23 @@ public class LoginCommandTest {
         final ImapRequest cmd = new LoginCommand("neighbor", "hood");
         Assert.assertSame(cmd.getCommandType(), ImapCommandType.LOGIN);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests getCommandLineBytes method releases the buffer when an argument cannot be formatted.
+     */
+    @Test
+    public void testGetCommandLineBytesNonAsciiReleasesBuffer() {
+        final ByteBuf buf = Unpooled.buffer();
+        final ByteBufAllocator alloc = Mockito.mock(ByteBufAllocator.class);
+        Mockito.when(alloc.buffer(Mockito.anyInt())).thenReturn(buf);
+        final ImapRequest cmd = new LoginCommand("tesla", "self\u010Adriving");
+        ImapAsyncClientException ex = null;
+        try {
+            cmd.getCommandLineBytes(alloc);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(buf.refCnt(), 0, "Buffer should be released.");
+    }
+}
@@ -0,0 +1,63 @@
+package com.yahoo.imapnio.async.request;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.imap.protocol.BASE64MailboxEncoder;
+
+/**
+ * Unit test for {@code MailboxNameCodec}.
+ */
+public class MailboxNameCodecTest {
+
+    /** Mailbox names covering ASCII, shift char and non-ASCII names. */
+    private static final String[] NAMES = { "INBOX", "Sent Items", "Drafts/2019", "R&D", "&", "\u65E5\u672C\u8A9E", "Caf\u00E9 & Bar",
+            "Tab\tName", "" };
+
+    /**
+     * Tests encode gives the same result as BASE64MailboxEncoder, also when it is taken from cache.
+     */
+    @Test
+    public void testEncode() {
+        for (final String name : NAMES) {
+            final String expected = BASE64MailboxEncoder.encode(name);
+            Assert.assertEquals(MailboxNameCodec.encode(name), expected, "Encoded name mismatched.");
+            Assert.assertEquals(MailboxNameCodec.encode(new String(name)), expected, "Encoded name mismatched.");
+        }
+        Assert.assertEquals(MailboxNameCodec.encode("R&D"), "R&-D", "Encoded name mismatched.");
+        Assert.assertEquals(MailboxNameCodec.encode("\u65E5\u672C\u8A9E"), "&ZeVnLIqe-", "Encoded name mismatched.");
+    }
+
+    /**
+     * Tests the cache stays usable and full, evicting one entry for every new one, when more names than its size are encoded.
+     */
+    @Test
+    public void testEncodeManyNames() {
+        for (int i = 0; i < MailboxNameCodec.MAX_CACHE_SIZE * 2 + 1; i++) {
+            final String name = "\u00E9" + i;
+            Assert.assertEquals(MailboxNameCodec.encode(name), BASE64MailboxEncoder.encode(name), "Encoded name mismatched.");
+            Assert.assertEquals(MailboxNameCodec.encode(name), BASE64MailboxEncoder.encode(name), "Encoded name mismatched.");
+        }
+        Assert.assertEquals(MailboxNameCodec.getCacheSize(), MailboxNameCodec.MAX_CACHE_SIZE, "Cache size mismatched.");
+    }
+
+    /**
+     * Tests the constructor is private.
+     *
+     * @throws NoSuchMethodException will not throw
+     * @throws InstantiationException will not throw
+     * @throws IllegalAccessException will not throw
+     * @throws InvocationTargetException will not throw
+     */
+    @Test
+    public void testPrivateConstructor() throws NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+        final Constructor<MailboxNameCodec> constructor = MailboxNameCodec.class.getDeclaredConstructor();
+        Assert.assertTrue(Modifier.isPrivate(constructor.getModifiers()), "Constructor should be private.");
+        constructor.setAccessible(true);
+        Assert.assertNotNull(constructor.newInstance(), "Instance should be created.");
+    }
+}
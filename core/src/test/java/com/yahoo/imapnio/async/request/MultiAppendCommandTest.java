@@ -0,0 +1,169 @@
+package com.yahoo.imapnio.async.request;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.mail.Flags;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
+import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * Unit test for {@code MultiAppendCommand}.
+ */
+public class MultiAppendCommandTest {
+
+    /** Fields to check for cleanup. */
+    private Set<Field> fieldsToCheck;
+
+    /**
+     * Setup reflection.
+     */
+    @BeforeClass
+    public void setUp() {
+        // Use reflection to get all declared non-primitive non-static fields (We do not care about inherited fields)
+        final Class<?> classUnderTest = MultiAppendCommand.class;
+        fieldsToCheck = new HashSet<>();
+        for (Class<?> c = classUnderTest; c != null; c = c.getSuperclass()) {
+            for (final Field declaredField : c.getDeclaredFields()) {
+                if (!declaredField.getType().isPrimitive() && !Modifier.isStatic(declaredField.getModifiers())) {
+                    declaredField.setAccessible(true);
+                    fieldsToCheck.add(declaredField);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return two messages, first one flagged and seen with an internal date, second one without flags and date
+     */
+    private List<MultiAppendCommand.Message> buildMessages() {
+        final Flags flags = new Flags();
+        flags.add(Flags.Flag.SEEN);
+        final List<MultiAppendCommand.Message> msgs = new ArrayList<>();
+        msgs.add(new MultiAppendCommand.Message(flags, new Date(1552413335000L), "Subject: one\r\n\r\nA".getBytes(StandardCharsets.US_ASCII)));
+        msgs.add(new MultiAppendCommand.Message(null, null, "Subject: two\r\n\r\nBB".getBytes(StandardCharsets.US_ASCII)));
+        return msgs;
+    }
+
+    /**
+     * Tests synchronizing literals, each message data is sent on its own continuation.
+     *
+     * @throws ImapAsyncClientException will not throw
+     * @throws IllegalAccessException will not throw
+     * @throws IllegalArgumentException will not throw
+     */
+    @Test
+    public void testGetCommandLineAndContinuation() throws ImapAsyncClientException, IllegalArgumentException, IllegalAccessException {
+        final MultiAppendCommand cmd = new MultiAppendCommand("Inbox", buildMessages());
+        final String cmdLine = cmd.getCommandLine();
+        Assert.assertTrue(cmdLine.startsWith("APPEND Inbox (\\Seen) \"12-Mar-2019 "), "Command line mismatched.");
+        Assert.assertTrue(cmdLine.endsWith(" {17}\r\n"), "Command line mismatched.");
+        Assert.assertFalse(cmd.isCommandLineDataSensitive(), "Expected result mismatched.");
+        Assert.assertNull(cmd.getDebugData(), "Expected result mismatched.");
+        Assert.assertNull(cmd.getStreamingResponsesQueue(), "Expected result mismatched.");
+        Assert.assertEquals(cmd.getCommandType(), ImapCommandType.APPEND_MESSAGE, "Expected result mismatched.");
+
+        final ByteBuf first = cmd.getNextCommandLineAfterContinuation(null, UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(first.toString(StandardCharsets.US_ASCII), "Subject: one\r\n\r\nA {18}\r\n", "Continuation mismatched.");
+        first.release();
+        final ByteBuf second = cmd.getNextCommandLineAfterContinuation(null, UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(second.toString(StandardCharsets.US_ASCII), "Subject: two\r\n\r\nBB\r\n", "Continuation mismatched.");
+        second.release();
+
+        ImapAsyncClientException ex = null;
+        try {
+            cmd.getNextCommandLineAfterContinuation(null, UnpooledByteBufAllocator.DEFAULT);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND, "Expected result mismatched.");
+
+        cmd.cleanup();
+        // Verify if cleanup happened correctly.
+        for (final Field field : fieldsToCheck) {
+            Assert.assertNull(field.get(cmd), "Cleanup should set " + field.getName() + " as null");
+        }
+    }
+
+    /**
+     * Tests LITERAL+, all messages are sent with the command line.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testLiteralPlus() throws ImapAsyncClientException {
+        final List<MultiAppendCommand.Message> msgs = buildMessages();
+        final MultiAppendCommand cmd = new MultiAppendCommand("Inbox", Arrays.asList(msgs.get(1), msgs.get(1)), LiteralSupport.ENABLE_LITERAL_PLUS);
+        Assert.assertEquals(cmd.getCommandLine(), "APPEND Inbox {18+}\r\nSubject: two\r\n\r\nBB {18+}\r\nSubject: two\r\n\r\nBB\r\n",
+                "Command line mismatched.");
+
+        ImapAsyncClientException ex = null;
+        try {
+            cmd.getNextCommandLineAfterContinuation(null, UnpooledByteBufAllocator.DEFAULT);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND, "Expected result mismatched.");
+    }
+
+    /**
+     * Tests LITERAL-, used only when all messages are small.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testLiteralMinus() throws ImapAsyncClientException {
+        final List<MultiAppendCommand.Message> msgs = new ArrayList<>();
+        msgs.add(new MultiAppendCommand.Message(null, null, "Subject: two\r\n\r\nBB".getBytes(StandardCharsets.US_ASCII)));
+        final MultiAppendCommand small = new MultiAppendCommand("Inbox", msgs, LiteralSupport.ENABLE_LITERAL_MINUS);
+        Assert.assertEquals(small.getCommandLine(), "APPEND Inbox {18-}\r\nSubject: two\r\n\r\nBB\r\n", "Command line mismatched.");
+
+        msgs.add(new MultiAppendCommand.Message(null, null, new byte[5000]));
+        final MultiAppendCommand large = new MultiAppendCommand("Inbox", msgs, LiteralSupport.ENABLE_LITERAL_MINUS);
+        Assert.assertEquals(large.getCommandLine(), "APPEND Inbox {18}\r\n", "Command line mismatched.");
+    }
+
+    /**
+     * Tests constructor and getTerminateCommandLine failures.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testInvalidUsage() throws ImapAsyncClientException {
+        ImapAsyncClientException ex = null;
+        try {
+            new MultiAppendCommand("Inbox", new ArrayList<MultiAppendCommand.Message>());
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.INVALID_INPUT, "Expected result mismatched.");
+
+        final MultiAppendCommand cmd = new MultiAppendCommand("Inbox", buildMessages());
+        ex = null;
+        try {
+            cmd.getTerminateCommandLine(UnpooledByteBufAllocator.DEFAULT);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND, "Expected result mismatched.");
+    }
+}
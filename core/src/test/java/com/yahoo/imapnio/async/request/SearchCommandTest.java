@@ -14,8 +14,11 @@ import java.util.Map;
 import java.util.Set;
 
 import javax.mail.Flags;
+import javax.mail.search.AndTerm;
+import javax.mail.search.BodyTerm;
 import javax.mail.search.FlagTerm;
 import javax.mail.search.SearchException;
+import javax.mail.search.SearchTerm;
 import javax.mail.search.SubjectTerm;
 
 import org.testng.Assert;
@@ -24,6 +27,8 @@ import org.testng.annotations.Test;
 
 import com.sun.mail.iap.Argument;
 import com.sun.mail.iap.Literal;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 import com.yahoo.imapnio.async.data.MessageNumberSet.LastMessage;
@@ -31,6 +36,7 @@ import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * Unit test for {@code SearchCommand}.
@@ -117,11 +123,12 @@ public class SearchCommandTest {
         expectedOutput.write('\r');
         expectedOutput.write('\n');
         final byte[] expected = expectedOutput.toByteArray();
-        final ByteBuf actual = cmd.getCommandLineBytes();
+        final ByteBuf actual = cmd.getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
         Assert.assertEquals(actual.readableBytes(), expected.length, "Expected result mismatched.");
         for (int i = 0; i < expected.length; i++) {
             Assert.assertEquals(actual.getByte(i), expected[i], "byte mismatched in index:" + i);
         }
+        actual.release();
 
         cmd.cleanup();
         // Verify if cleanup happened correctly.
@@ -317,6 +324,42 @@ public class SearchCommandTest {
         }
     }
 
+    /**
+     * Tests getCommandLineBytes method without LITERAL+ sends the data of every literal only after server continuation.
+     *
+     * @throws IOException will not throw
+     * @throws ImapAsyncClientException will not throw
+     * @throws SearchException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testGetCommandLineBytesSyncLiterals() throws IOException, SearchException, ImapAsyncClientException, ProtocolException {
+        final SearchTerm term = new AndTerm(new SubjectTerm("ΩΩ"), new BodyTerm("a\r\nb"));
+        final Capability capa = null;
+        final ImapRequest cmd = new SearchCommand((MessageNumberSet[]) null, term, capa);
+        Assert.assertEquals(cmd.getCommandLine(), "SEARCH CHARSET UTF-8 SUBJECT {4}\r\n���� BODY {4}\r\na\r\nb\r\n", "Expected result mismatched.");
+
+        final ByteBuf first = cmd.getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(first.toString(StandardCharsets.US_ASCII), "SEARCH CHARSET UTF-8 SUBJECT {4}\r\n", "Expected result mismatched.");
+        first.release();
+        final IMAPResponse continuation = new IMAPResponse("+ Ready for literal data");
+        final ByteBuf second = cmd.getNextCommandLineAfterContinuation(continuation, UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(second.toString(StandardCharsets.UTF_8), "ΩΩ BODY {4}\r\n", "Expected result mismatched.");
+        second.release();
+        final ByteBuf third = cmd.getNextCommandLineAfterContinuation(continuation, UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(third.toString(StandardCharsets.US_ASCII), "a\r\nb\r\n", "Expected result mismatched.");
+        third.release();
+
+        ImapAsyncClientException ex = null;
+        try {
+            cmd.getNextCommandLineAfterContinuation(continuation, UnpooledByteBufAllocator.DEFAULT);
+        } catch (final ImapAsyncClientException e) {
+            ex = e;
+        }
+        Assert.assertNotNull(ex, "Exception should occur.");
+        Assert.assertEquals(ex.getFaiureType(), FailureType.OPERATION_NOT_SUPPORTED_FOR_COMMAND, "Failure type mismatched.");
+    }
+
     /**
      * Tests getCommandType method.
      *
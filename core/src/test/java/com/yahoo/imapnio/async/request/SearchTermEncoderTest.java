@@ -0,0 +1,185 @@
+package com.yahoo.imapnio.async.request;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import javax.mail.Flags;
+import javax.mail.Message;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.search.AndTerm;
+import javax.mail.search.BodyTerm;
+import javax.mail.search.ComparisonTerm;
+import javax.mail.search.FlagTerm;
+import javax.mail.search.FromStringTerm;
+import javax.mail.search.FromTerm;
+import javax.mail.search.HeaderTerm;
+import javax.mail.search.MessageIDTerm;
+import javax.mail.search.MessageNumberTerm;
+import javax.mail.search.NotTerm;
+import javax.mail.search.OrTerm;
+import javax.mail.search.ReceivedDateTerm;
+import javax.mail.search.RecipientStringTerm;
+import javax.mail.search.RecipientTerm;
+import javax.mail.search.SearchException;
+import javax.mail.search.SearchTerm;
+import javax.mail.search.SentDateTerm;
+import javax.mail.search.SizeTerm;
+import javax.mail.search.SubjectTerm;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.ModifiedSinceTerm;
+import com.sun.mail.imap.OlderTerm;
+import com.sun.mail.imap.YoungerTerm;
+import com.sun.mail.imap.protocol.SearchSequence;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Unit test for {@code SearchTermEncoder}.
+ */
+public class SearchTermEncoderTest {
+
+    /**
+     * Encodes the term with SearchSequence and ByteBufWriter, the way search command did before.
+     *
+     * @param term the search term
+     * @param isUtf8 whether strings are UTF-8 encoded
+     * @param isLiteralPlus whether LITERAL+ is enabled
+     * @return the encoded search keys
+     * @throws SearchException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    private String encodeWithSearchSequence(final SearchTerm term, final boolean isUtf8, final boolean isLiteralPlus)
+            throws SearchException, IOException, ProtocolException {
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            new SearchSequence().generateSequence(term, isUtf8 ? "UTF-8" : null).write(new ByteBufWriter(buf, isLiteralPlus));
+            return buf.toString(StandardCharsets.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Encodes the term with SearchTermEncoder.
+     *
+     * @param term the search term
+     * @param isUtf8 whether strings are UTF-8 encoded
+     * @param isLiteralPlus whether LITERAL+ is enabled
+     * @return the encoded search keys
+     * @throws SearchException will not throw
+     */
+    private String encode(final SearchTerm term, final boolean isUtf8, final boolean isLiteralPlus) throws SearchException {
+        SearchTermEncoder.validate(term);
+        final ByteBuf buf = Unpooled.buffer();
+        try {
+            new SearchTermEncoder(isUtf8 ? StandardCharsets.UTF_8 : null, isLiteralPlus).encode(term, buf);
+            return buf.toString(StandardCharsets.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Tests the encoded search keys are the same as the ones from SearchSequence for all supported terms.
+     *
+     * @throws SearchException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws AddressException will not throw
+     */
+    @Test
+    public void testEncodeSameAsSearchSequence() throws SearchException, IOException, ProtocolException, AddressException {
+        final Flags flags = new Flags();
+        flags.add(Flags.Flag.SEEN);
+        flags.add(Flags.Flag.DELETED);
+        flags.add(Flags.Flag.ANSWERED);
+        flags.add(Flags.Flag.DRAFT);
+        flags.add(Flags.Flag.FLAGGED);
+        flags.add(Flags.Flag.RECENT);
+        flags.add("$Junk");
+        final Date date = new Date(1552413335000L);
+        final StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 1030; i++) {
+            longString.append('x');
+        }
+
+        final SearchTerm[] terms = { new FlagTerm(flags, true), new FlagTerm(flags, false), new SubjectTerm("hello"),
+                new SubjectTerm("hello world"), new SubjectTerm("say \"hi\" \\o/"), new SubjectTerm(""), new SubjectTerm("nil"),
+                new SubjectTerm("line\r\nbreak"), new SubjectTerm(longString.toString()), new BodyTerm("(a*b%c{d}"),
+                new FromStringTerm("foo@bar.com"), new FromTerm(new InternetAddress("Foo <foo@bar.com>")),
+                new RecipientStringTerm(Message.RecipientType.TO, "to@bar.com"), new RecipientStringTerm(Message.RecipientType.CC, "cc@bar.com"),
+                new RecipientTerm(Message.RecipientType.BCC, new InternetAddress("bcc@bar.com")), new HeaderTerm("X-Mailer", "imapnio"),
+                new MessageIDTerm("<abc@bar.com>"), new SizeTerm(ComparisonTerm.GT, 1000), new SizeTerm(ComparisonTerm.LT, 10),
+                new SentDateTerm(ComparisonTerm.GT, date), new SentDateTerm(ComparisonTerm.EQ, date), new SentDateTerm(ComparisonTerm.LT, date),
+                new SentDateTerm(ComparisonTerm.GE, date), new SentDateTerm(ComparisonTerm.LE, date), new SentDateTerm(ComparisonTerm.NE, date),
+                new ReceivedDateTerm(ComparisonTerm.GT, date), new ReceivedDateTerm(ComparisonTerm.LE, date),
+                new ReceivedDateTerm(ComparisonTerm.GE, date), new ReceivedDateTerm(ComparisonTerm.EQ, date),
+                new ReceivedDateTerm(ComparisonTerm.LT, date), new ReceivedDateTerm(ComparisonTerm.NE, date), new OlderTerm(3600),
+                new YoungerTerm(60), new ModifiedSinceTerm(123456789012L),
+                new AndTerm(new SubjectTerm("a"), new FlagTerm(flags, true)),
+                new OrTerm(new SubjectTerm("a"), new FlagTerm(flags, true)),
+                new OrTerm(new SearchTerm[] { new SubjectTerm("a"), new BodyTerm("b"), new AndTerm(new SubjectTerm("c"), new BodyTerm("d")),
+                        new FromStringTerm("e") }),
+                new NotTerm(new AndTerm(new SubjectTerm("a"), new BodyTerm("b"))), new NotTerm(new SubjectTerm("a")),
+                new AndTerm(new SearchTerm[] { new NotTerm(new FlagTerm(flags, false)), new OrTerm(new SizeTerm(ComparisonTerm.GT, 5),
+                        new SentDateTerm(ComparisonTerm.LE, date)), new HeaderTerm("Subject", "x y") }) };
+
+        for (final SearchTerm term : terms) {
+            Assert.assertEquals(encode(term, false, false), encodeWithSearchSequence(term, false, false), "Encoded search keys mismatched.");
+            Assert.assertEquals(encode(term, false, true), encodeWithSearchSequence(term, false, true), "Encoded search keys mismatched.");
+        }
+    }
+
+    /**
+     * Tests non-ASCII strings are sent as literal in the given charset.
+     *
+     * @throws SearchException will not throw
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testEncodeUtf8() throws SearchException, IOException, ProtocolException {
+        final SearchTerm term = new AndTerm(new SubjectTerm("\u5929\u5C31"), new HeaderTerm("X-Tag", "abc"));
+        Assert.assertEquals(encode(term, true, true), "SUBJECT {6+}\r\n\u5929\u5C31 HEADER X-Tag abc", "Encoded search keys mismatched.");
+        Assert.assertEquals(encode(term, true, true), encodeWithSearchSequence(term, true, true), "Encoded search keys mismatched.");
+        Assert.assertEquals(encode(term, true, false), encodeWithSearchSequence(term, true, false), "Encoded search keys mismatched.");
+    }
+
+    /**
+     * Tests terms that cannot be expressed as IMAP search keys.
+     */
+    @Test
+    public void testValidateUnsupportedTerms() {
+        final SearchTerm[] terms = { new MessageNumberTerm(1), new FlagTerm(new Flags(), true), new SizeTerm(ComparisonTerm.EQ, 1),
+                new RecipientStringTerm(null, "a@b.com"), new NotTerm(new MessageNumberTerm(1)),
+                new OrTerm(new SubjectTerm("a"), new MessageNumberTerm(1)) };
+        for (final SearchTerm term : terms) {
+            SearchException ex = null;
+            try {
+                SearchTermEncoder.validate(term);
+            } catch (final SearchException e) {
+                ex = e;
+            }
+            Assert.assertNotNull(ex, "Expect exception to be thrown.");
+
+            ex = null;
+            final ByteBuf buf = Unpooled.buffer();
+            try {
+                new SearchTermEncoder(null, false).encode(term, buf);
+            } catch (final SearchException e) {
+                ex = e;
+            } finally {
+                buf.release();
+            }
+            Assert.assertNotNull(ex, "Expect exception to be thrown.");
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.mail.search.SearchException;
@@ -168,4 +169,25 @@ public class UidFetchCommandTest {
         final FetchMacro stateFull = FetchMacro.valueOf("FULL");
         Assert.assertSame(stateFull, FetchMacro.FULL, "Enum does not match.");
     }
+
+    /**
+     * Tests split method creates commands with UID sets within the length limit.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testSplit() throws ImapAsyncClientException {
+        final long[] msgs = { 1L, 3L, 5L, 7L, 9L };
+        final MessageNumberSet[] msgsets = MessageNumberSet.createMessageNumberSets(msgs);
+        final List<UidFetchCommand> cmds = UidFetchCommand.split(msgsets, DATA_ITEMS, 5);
+        Assert.assertEquals(cmds.size(), 2, "Expected result mismatched.");
+        Assert.assertEquals(cmds.get(0).getCommandLine(), "UID FETCH 1,3,5 (FLAGS BODY[HEADER.FIELDS (DATE FROM)])\r\n",
+                "Expected result mismatched.");
+        Assert.assertEquals(cmds.get(1).getCommandLine(), "UID FETCH 7,9 (FLAGS BODY[HEADER.FIELDS (DATE FROM)])\r\n",
+                "Expected result mismatched.");
+
+        final List<UidFetchCommand> macroCmds = UidFetchCommand.split(msgsets, FetchMacro.FAST, 5);
+        Assert.assertEquals(macroCmds.size(), 2, "Expected result mismatched.");
+        Assert.assertEquals(macroCmds.get(1).getCommandLine(), "UID FETCH 7,9 FAST\r\n", "Expected result mismatched.");
+    }
 }
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.mail.search.SearchException;
@@ -124,4 +125,19 @@ public class UidMoveMessageCommandTest {
         final ImapRequest cmd = new UidMoveMessageCommand("37850:37852", "targetFolder");
         Assert.assertSame(cmd.getCommandType(), ImapCommandType.UID_MOVE_MESSAGE);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests split method creates commands with UID sets within the length limit.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testSplit() throws ImapAsyncClientException {
+        final long[] msgs = { 1L, 3L, 5L, 7L, 9L };
+        final MessageNumberSet[] msgsets = MessageNumberSet.createMessageNumberSets(msgs);
+        final List<UidMoveMessageCommand> cmds = UidMoveMessageCommand.split(msgsets, "Trash", 5);
+        Assert.assertEquals(cmds.size(), 2, "Expected result mismatched.");
+        Assert.assertEquals(cmds.get(0).getCommandLine(), "UID MOVE 1,3,5 Trash\r\n", "Expected result mismatched.");
+        Assert.assertEquals(cmds.get(1).getCommandLine(), "UID MOVE 7,9 Trash\r\n", "Expected result mismatched.");
+    }
+}
@@ -24,6 +24,8 @@ import org.testng.annotations.Test;
 
 import com.sun.mail.iap.Argument;
 import com.sun.mail.iap.Literal;
+import com.sun.mail.iap.ProtocolException;
+import com.sun.mail.imap.protocol.IMAPResponse;
 import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.data.MessageNumberSet;
 import com.yahoo.imapnio.async.data.MessageNumberSet.LastMessage;
@@ -31,6 +33,7 @@ import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException.FailureType;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * Unit test for {@code UidSearchCommand}.
@@ -257,11 +260,12 @@ public class UidSearchCommandTest {
         expectedOutput.write('\r');
         expectedOutput.write('\n');
         final byte[] expected = expectedOutput.toByteArray();
-        final ByteBuf actual = cmd.getCommandLineBytes();
+        final ByteBuf actual = cmd.getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
         Assert.assertEquals(actual.readableBytes(), expected.length, "Expected result mismatched.");
         for (int i = 0; i < expected.length; i++) {
             Assert.assertEquals(actual.getByte(i), expected[i], "byte mismatched in index:" + i);
         }
+        actual.release();
 
         cmd.cleanup();
         // Verify if cleanup happened correctly.
@@ -278,10 +282,11 @@ public class UidSearchCommandTest {
      * @throws IllegalArgumentException will not throw
      * @throws ImapAsyncClientException will not throw
      * @throws SearchException will not throw
+     * @throws ProtocolException will not throw
      */
     @Test
-    public void testGetCommandLineWithoutLiteralPlusCapaEnabled()
-            throws IOException, IllegalArgumentException, IllegalAccessException, SearchException, ImapAsyncClientException {
+    public void testGetCommandLineWithoutLiteralPlusCapaEnabled() throws IOException, IllegalArgumentException, IllegalAccessException,
+            SearchException, ImapAsyncClientException, ProtocolException {
 
         final Argument args = new Argument();
 
@@ -293,18 +298,22 @@ public class UidSearchCommandTest {
 
         final Capability capa = null;
         final ImapRequest cmd = new UidSearchCommand(null, "UTF-8", args, capa);
-        final ByteArrayOutputStream expectedOutput = new ByteArrayOutputStream();
         final String cmdLine = "UID SEARCH CHARSET UTF-8 {15}\r\n";
-        expectedOutput.write(cmdLine.getBytes(StandardCharsets.UTF_8));
+        final ByteBuf actual = cmd.getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(actual.toString(StandardCharsets.US_ASCII), cmdLine, "Literal data should wait for continuation.");
+        actual.release();
+
+        final ByteArrayOutputStream expectedOutput = new ByteArrayOutputStream();
         expectedOutput.write(inputBytes);
         expectedOutput.write('\r');
         expectedOutput.write('\n');
         final byte[] expected = expectedOutput.toByteArray();
-        final ByteBuf actual = cmd.getCommandLineBytes();
-        Assert.assertEquals(actual.readableBytes(), expected.length, "Expected result mismatched.");
+        final ByteBuf next = cmd.getNextCommandLineAfterContinuation(new IMAPResponse("+ go ahead"), UnpooledByteBufAllocator.DEFAULT);
+        Assert.assertEquals(next.readableBytes(), expected.length, "Expected result mismatched.");
         for (int i = 0; i < expected.length; i++) {
-            Assert.assertEquals(actual.getByte(i), expected[i], "byte mismatched in index:" + i);
+            Assert.assertEquals(next.getByte(i), expected[i], "byte mismatched in index:" + i);
         }
+        next.release();
 
         cmd.cleanup();
         // Verify if cleanup happened correctly.
@@ -336,11 +345,12 @@ public class UidSearchCommandTest {
         expectedOutput.write(cmdLine.getBytes(StandardCharsets.UTF_8));
 
         final byte[] expected = expectedOutput.toByteArray();
-        final ByteBuf actual = cmd.getCommandLineBytes();
+        final ByteBuf actual = cmd.getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
         Assert.assertEquals(actual.readableBytes(), expected.length, "Expected result mismatched.");
         for (int i = 0; i < expected.length; i++) {
             Assert.assertEquals(actual.getByte(i), expected[i], "byte mismatched in index:" + i);
         }
+        actual.release();
 
         cmd.cleanup();
         // Verify if cleanup happened correctly.
@@ -374,11 +384,12 @@ public class UidSearchCommandTest {
         expectedOutput.write(cmdLine.getBytes(StandardCharsets.UTF_8));
 
         final byte[] expected = expectedOutput.toByteArray();
-        final ByteBuf actual = cmd.getCommandLineBytes();
+        final ByteBuf actual = cmd.getCommandLineBytes(UnpooledByteBufAllocator.DEFAULT);
         Assert.assertEquals(actual.readableBytes(), expected.length, "Expected result mismatched.");
         for (int i = 0; i < expected.length; i++) {
             Assert.assertEquals(actual.getByte(i), expected[i], "byte mismatched in index:" + i);
         }
+        actual.release();
 
         cmd.cleanup();
         // Verify if cleanup happened correctly.
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.mail.Flags;
@@ -243,4 +244,21 @@ public class UidStoreFlagsCommandTest {
         final ImapRequest cmd = new UidStoreFlagsCommand(new MessageNumberSet[] { new MessageNumberSet(1, 10000) }, flags, FlagsAction.ADD);
         Assert.assertSame(cmd.getCommandType(), ImapCommandType.UID_STORE_FLAGS);
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests split method creates commands with UID sets within the length limit.
+     *
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testSplit() throws ImapAsyncClientException {
+        final long[] msgs = { 1L, 3L, 5L, 7L, 9L };
+        final MessageNumberSet[] msgsets = MessageNumberSet.createMessageNumberSets(msgs);
+        final Flags flags = new Flags();
+        flags.add(Flags.Flag.SEEN);
+        final List<UidStoreFlagsCommand> cmds = UidStoreFlagsCommand.split(msgsets, flags, FlagsAction.ADD, true, 5);
+        Assert.assertEquals(cmds.size(), 2, "Expected result mismatched.");
+        Assert.assertEquals(cmds.get(0).getCommandLine(), "UID STORE 1,3,5 +FLAGS.SILENT (\\Seen)\r\n", "Expected result mismatched.");
+        Assert.assertEquals(cmds.get(1).getCommandLine(), "UID STORE 7,9 +FLAGS.SILENT (\\Seen)\r\n", "Expected result mismatched.");
+    }
+}
@@ -2,6 +2,7 @@ package com.yahoo.imapnio.async.response;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.mail.Flags.Flag;
@@ -10,6 +11,7 @@ import javax.mail.Folder;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.sun.mail.iap.ParsingException;
 import com.sun.mail.iap.ProtocolException;
 import com.sun.mail.imap.AppendUID;
 import com.sun.mail.imap.CopyUID;
@@ -17,10 +19,13 @@ import com.sun.mail.imap.protocol.ID;
 import com.sun.mail.imap.protocol.IMAPResponse;
 import com.sun.mail.imap.protocol.ListInfo;
 import com.sun.mail.imap.protocol.MailboxInfo;
+import com.sun.mail.imap.protocol.Namespaces;
 import com.sun.mail.imap.protocol.Status;
+import com.yahoo.imapnio.async.data.AppendUidResult;
 import com.yahoo.imapnio.async.data.Capability;
 import com.yahoo.imapnio.async.data.ExtensionMailboxInfo;
 import com.yahoo.imapnio.async.data.IdResult;
+import com.yahoo.imapnio.async.data.KnownCapability;
 import com.yahoo.imapnio.async.data.ListInfoList;
 import com.yahoo.imapnio.async.data.SearchResult;
 import com.yahoo.imapnio.async.exception.ImapAsyncClientException;
@@ -89,6 +94,40 @@ public class ImapResponseMapperTest {
         Assert.assertEquals(cause.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
     }
 
+    /**
+     * Tests parseToCapabilities method keeps well-known capabilities in the bitset and values or unknown capabilities in the map.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseToCapabilitiesKnownAndUnknown() throws IOException, ProtocolException, ImapAsyncClientException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[] content = { new IMAPResponse("* CAPABILITY imap4rev1 Literal+ COMPRESS=DEFLATE X-GM-EXT-1 XYZZY=a=b AUTH=\r\n"),
+                new IMAPResponse("a1 OK CAPABILITY completed\r\n") };
+        final Capability capa = mapper.readValue(content, Capability.class);
+
+        Assert.assertTrue(capa.hasCapability(KnownCapability.IMAP4REV1), "One capability missed.");
+        Assert.assertTrue(capa.hasCapability(KnownCapability.LITERAL_PLUS), "One capability missed.");
+        Assert.assertTrue(capa.hasCapability("literal+"), "One capability missed.");
+        Assert.assertTrue(capa.hasCapability(KnownCapability.COMPRESS), "One capability missed.");
+        Assert.assertTrue(capa.hasCapability(KnownCapability.AUTH), "One capability missed.");
+        Assert.assertFalse(capa.hasCapability(KnownCapability.IDLE), "Capability should not be found.");
+        Assert.assertFalse(capa.hasCapability("IDLE"), "Capability should not be found.");
+        Assert.assertTrue(capa.hasCapability("X-GM-EXT-1"), "One capability missed.");
+        Assert.assertTrue(capa.hasCapability("x-gm-ext-1"), "One capability missed.");
+        Assert.assertFalse(capa.hasCapability("X-UNKNOWN"), "Capability should not be found.");
+
+        Assert.assertEquals(capa.getCapability("COMPRESS"), Arrays.asList("DEFLATE"), "Values mismatched.");
+        Assert.assertEquals(capa.getCapability("XYZZY"), Arrays.asList("a=b"), "Values mismatched.");
+        Assert.assertTrue(capa.getCapability("IMAP4rev1").isEmpty(), "Values mismatched.");
+        Assert.assertTrue(capa.getCapability("AUTH").isEmpty(), "Values mismatched.");
+        Assert.assertTrue(capa.getCapability("X-GM-EXT-1").isEmpty(), "Values mismatched.");
+        Assert.assertNull(capa.getCapability("IDLE"), "Values mismatched.");
+        Assert.assertNull(capa.getCapability("X-UNKNOWN"), "Values mismatched.");
+    }
+
     /**
      * Tests parseToCapabilities method successfully from an OK response that has Capability response attached to.
      *
@@ -225,6 +264,58 @@ public class ImapResponseMapperTest {
         Assert.assertEquals(appendUid.uid, 150399, "result mismatched.");
     }
 
+    /**
+     * Tests parsing MULTIAPPEND response to AppendUidResult successfully.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseAppendUidResultSuccess() throws IOException, ProtocolException, ImapAsyncClientException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[] content = new IMAPResponse[2];
+        content[0] = new IMAPResponse("* 5 EXISTS");
+        content[1] = new IMAPResponse("a5 OK [APPENDUID 1459808247 150399:150401,150405] APPEND completed");
+        final AppendUidResult result = mapper.readValue(content, AppendUidResult.class);
+
+        // verify the result
+        Assert.assertNotNull(result, "result mismatched.");
+        Assert.assertEquals(result.getUidValidity(), 1459808247L, "result mismatched.");
+        Assert.assertEquals(result.getUids(), Arrays.asList(150399L, 150400L, 150401L, 150405L), "result mismatched.");
+    }
+
+    /**
+     * Tests parsing to AppendUidResult when the response is not valid.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testParseAppendUidResultInvalid() throws IOException, ProtocolException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final String[] lines = { "a5 NO APPEND failed", "a5 OK APPEND completed", "a5 OK [UIDNEXT 5] APPEND completed" };
+        for (final String line : lines) {
+            ImapAsyncClientException cause = null;
+            try {
+                mapper.readValue(new IMAPResponse[] { new IMAPResponse(line) }, AppendUidResult.class);
+            } catch (final ImapAsyncClientException e) {
+                cause = e;
+            }
+            Assert.assertNotNull(cause, "cause mismatched.");
+            Assert.assertEquals(cause.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        }
+
+        ImapAsyncClientException cause = null;
+        try {
+            mapper.readValue(new IMAPResponse[0], AppendUidResult.class);
+        } catch (final ImapAsyncClientException e) {
+            cause = e;
+        }
+        Assert.assertNotNull(cause, "cause mismatched.");
+        Assert.assertEquals(cause.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+    }
+
     /**
      * Tests parseToCapabilities method when ImapResponse array has zero length.
      *
@@ -702,6 +793,52 @@ public class ImapResponseMapperTest {
         Assert.assertEquals(cause.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
     }
 
+    /**
+     * Tests parseToNamespaces method successfully.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     * @throws ImapAsyncClientException will not throw
+     */
+    @Test
+    public void testParseToNamespaces() throws IOException, ProtocolException, ImapAsyncClientException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[] content = { new IMAPResponse("* NAMESPACE ((\"\" \"/\")) ((\"~\" \"/\")) NIL"),
+                new IMAPResponse("a1 OK NAMESPACE completed") };
+        final Namespaces ns = mapper.readValue(content, Namespaces.class);
+
+        Assert.assertNotNull(ns, "result should never return null.");
+        Assert.assertEquals(ns.personal.length, 1, "personal namespace mismatched.");
+        Assert.assertEquals(ns.personal[0].prefix, "", "personal namespace mismatched.");
+        Assert.assertEquals(ns.personal[0].delimiter, '/', "personal namespace mismatched.");
+        Assert.assertEquals(ns.otherUsers[0].prefix, "~", "other users namespace mismatched.");
+        Assert.assertNull(ns.shared, "shared namespace mismatched.");
+    }
+
+    /**
+     * Tests parseToNamespaces method with failed or missing NAMESPACE response.
+     *
+     * @throws IOException will not throw
+     * @throws ProtocolException will not throw
+     */
+    @Test
+    public void testParseToNamespacesInvalid() throws IOException, ProtocolException {
+        final ImapResponseMapper mapper = new ImapResponseMapper();
+        final IMAPResponse[][] contents = { new IMAPResponse[0], { new IMAPResponse("a1 NO NAMESPACE failed") },
+                { new IMAPResponse("a1 OK NAMESPACE completed") },
+                { new IMAPResponse("* NAMESPACE (\"x\")"), new IMAPResponse("a1 OK NAMESPACE completed") } };
+        for (final IMAPResponse[] content : contents) {
+            ImapAsyncClientException cause = null;
+            try {
+                mapper.readValue(content, Namespaces.class);
+            } catch (final ImapAsyncClientException | ParsingException e) {
+                cause = (e instanceof ImapAsyncClientException) ? (ImapAsyncClientException) e : null;
+            }
+            Assert.assertNotNull(cause, "cause mismatched.");
+            Assert.assertEquals(cause.getFaiureType(), FailureType.INVALID_INPUT, "Failure type mismatched.");
+        }
+    }
+
     /**
      * Tests parse a class that mapper does not support.
      *
@@ -75,4 +75,41 @@ public class ArgumentTest {
         final String searchStr = args.toString();
         Assert.assertEquals(searchStr, "SUBJECT {4+}\r\nￎﾩￎﾩ 1:5", "result mismatched.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Benchmarks toString() for arguments of several hundred KB, a long sequence set and a big search literal. Serializing used to create a new
+     * String for every byte, which took minutes at this size, so the timeout guards against quadratic cost coming back.
+     *
+     * @throws IOException will not throw
+     * @throws SearchException will not throw
+     */
+    @Test(timeOut = 10000)
+    public void testToStringLinearCost() throws SearchException, IOException {
+        final StringBuilder msgIds = new StringBuilder();
+        for (int i = 1; msgIds.length() < 300000; i += 2) {
+            if (msgIds.length() > 0) {
+                msgIds.append(',');
+            }
+            msgIds.append(i);
+        }
+        final StringBuilder subject = new StringBuilder();
+        for (int i = 0; subject.length() < 300000; i++) {
+            subject.append("line ").append(i).append("\r\n");
+        }
+
+        final Argument small = new Argument();
+        small.append(new SearchSequence().generateSequence(new SubjectTerm(subject.substring(0, 30000)), null));
+        small.writeAtom(msgIds.substring(0, 30000));
+
+        final Argument large = new Argument();
+        large.append(new SearchSequence().generateSequence(new SubjectTerm(subject.toString()), null));
+        large.writeAtom(msgIds.toString());
+
+        final String smallStr = small.toString();
+        final String largeStr = large.toString();
+
+        Assert.assertTrue(largeStr.startsWith("SUBJECT {" + subject.length() + "+}\r\nline 0\r\n"), "result mismatched.");
+        Assert.assertTrue(largeStr.endsWith(" " + msgIds), "result mismatched.");
+        Assert.assertEquals(largeStr.length() - smallStr.length(), subject.length() - 30000 + msgIds.length() - 30000 + 1, "result mismatched.");
+    }
+}